@@ -0,0 +1,102 @@
+package com.ryandw11.structure.benchmarks;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.logging.Logger;
+
+/**
+ * Stubs of the parts of the Bukkit API that the benchmarked code touches.
+ *
+ * <p>The stubs do as little as possible so the benchmarks measure the plugin and not the stubs. Every method
+ * that is not needed returns the default value of its return type.</p>
+ */
+public final class BenchmarkServer {
+    private static final Logger LOGGER = Logger.getLogger("CustomStructures-Benchmarks");
+
+    /**
+     * The world used by the benchmarks.
+     */
+    public static final World WORLD = stub(World.class, "world", (proxy, method, args) -> null);
+
+    // Every item shares the same empty meta, so items of the same type stack.
+    private static final ItemMeta ITEM_META = stub(ItemMeta.class, "ItemMeta", (proxy, method, args) ->
+            method.getName().equals("clone") ? proxy : null);
+    private static final ItemFactory ITEM_FACTORY = stub(ItemFactory.class, "ItemFactory", (proxy, method, args) ->
+            method.getName().equals("getItemMeta") ? ITEM_META : null);
+
+    private BenchmarkServer() {
+    }
+
+    /**
+     * Set the stub server as the Bukkit server. (Does nothing if it is already set).
+     */
+    public static synchronized void install() {
+        if (Bukkit.getServer() != null) return;
+        Bukkit.setServer(stub(Server.class, "CustomStructures-Benchmarks", (proxy, method, args) -> switch (method.getName()) {
+            case "getLogger" -> LOGGER;
+            case "getItemFactory" -> ITEM_FACTORY;
+            default -> null;
+        }));
+    }
+
+    /**
+     * Create an inventory that only stores its contents.
+     *
+     * @param size The number of slots of the inventory.
+     * @return The inventory.
+     */
+    public static Inventory createInventory(int size) {
+        ItemStack[][] contents = {new ItemStack[size]};
+        return stub(Inventory.class, "Inventory", (proxy, method, args) -> switch (method.getName()) {
+            case "getSize" -> contents[0].length;
+            case "getContents", "getStorageContents" -> contents[0].clone();
+            case "setContents", "setStorageContents" -> {
+                contents[0] = ((ItemStack[]) args[0]).clone();
+                yield null;
+            }
+            case "clear" -> {
+                contents[0] = new ItemStack[contents[0].length];
+                yield null;
+            }
+            default -> null;
+        });
+    }
+
+    private static <T> T stub(Class<T> type, String name, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(BenchmarkServer.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                case "getName":
+                case "getVersion":
+                case "getBukkitVersion":
+                    return name;
+            }
+            Object result = handler.invoke(proxy, method, args);
+            return result != null ? result : getDefaultValue(method.getReturnType());
+        }));
+    }
+
+    private static Object getDefaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        return 0d;
+    }
+}
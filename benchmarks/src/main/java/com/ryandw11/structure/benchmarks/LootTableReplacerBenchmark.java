@@ -0,0 +1,91 @@
+package com.ryandw11.structure.benchmarks;
+
+import com.ryandw11.structure.loottables.LootTable;
+import com.ryandw11.structure.schematic.LootTableReplacer;
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks filling a chest with the items of a loot table.
+ *
+ * <p>The chest starts out empty for every invocation. A few of the items can roll more than once, so the
+ * stacking of the same items is measured as well.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LootTableReplacerBenchmark {
+    private static final Material[] MATERIALS = {
+            Material.IRON_INGOT, Material.GOLD_INGOT, Material.DIAMOND, Material.BREAD,
+            Material.ARROW, Material.BONE, Material.STRING, Material.EMERALD
+    };
+
+    @Param({"3", "10", "27"})
+    public int rolls;
+
+    private LootTable lootTable;
+    private Inventory inventory;
+    private ItemStack[] emptyContents;
+    private Random random;
+
+    @Setup
+    public void setup() {
+        BenchmarkServer.install();
+        lootTable = new BenchmarkLootTable(rolls);
+        inventory = BenchmarkServer.createInventory(27);
+        emptyContents = new ItemStack[27];
+        random = new Random(42);
+    }
+
+    @Benchmark
+    public Inventory replaceChestContent() {
+        inventory.setContents(emptyContents);
+        LootTableReplacer.replaceChestContent(lootTable, random, inventory);
+        return inventory;
+    }
+
+    @Benchmark
+    public ItemStack[] replaceChestContentOffThread() {
+        ItemStack[] contents = new ItemStack[27];
+        LootTableReplacer.replaceChestContent(lootTable, random, contents);
+        return contents;
+    }
+
+    /**
+     * A loot table with a fixed set of items.
+     */
+    private static class BenchmarkLootTable extends LootTable {
+        private int rolls;
+
+        private BenchmarkLootTable(int rolls) {
+            this.rolls = rolls;
+            for (int i = 0; i < MATERIALS.length; i++) {
+                ItemStack item = new ItemStack(MATERIALS[i], 1 + i % 4);
+                addLootItem(MATERIALS.length - i, () -> item);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "benchmark";
+        }
+
+        @Override
+        public int getRolls() {
+            return rolls;
+        }
+
+        @Override
+        public void setRolls(int rolls) {
+            this.rolls = rolls;
+        }
+    }
+}
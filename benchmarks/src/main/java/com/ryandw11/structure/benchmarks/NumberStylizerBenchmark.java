@@ -0,0 +1,79 @@
+package com.ryandw11.structure.benchmarks;
+
+import com.ryandw11.structure.utils.NumberStylizer;
+import com.ryandw11.structure.utils.Pair;
+import com.ryandw11.structure.utils.StylizedInt;
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing the random ranges and SpawnY values of the config.
+ *
+ * <p>The <code>compiled</code> benchmarks sample a value that was parsed once, which is what the structures do
+ * for the values that are read from the config.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumberStylizerBenchmark {
+
+    @State(Scope.Thread)
+    public static class IntState {
+        @Param({"10", "[4;10]", "[ -20 ; 35 ]"})
+        public String input;
+
+        private String rangeInput;
+        private StylizedInt compiled;
+
+        @Setup
+        public void setup() {
+            // Constants are not ranges, so parse them as a range of one value.
+            rangeInput = input.indexOf(';') == -1 ? input + ";" + input : input;
+            compiled = StylizedInt.parse(input);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SpawnYState {
+        @Param({"top", "+[5;10]", "-[3]", "[60;80]"})
+        public String spawnY;
+
+        private StylizedInt compiled;
+        private Location location;
+
+        @Setup
+        public void setup() {
+            compiled = StylizedInt.parseSpawnY(spawnY);
+            location = new Location(BenchmarkServer.WORLD, 100, 64, -100);
+        }
+    }
+
+    @Benchmark
+    public int getStylizedInt(IntState state) {
+        return NumberStylizer.getStylizedInt(state.input);
+    }
+
+    @Benchmark
+    public Pair<Integer, Integer> parseRangedInput(IntState state) {
+        return NumberStylizer.parseRangedInput(state.rangeInput);
+    }
+
+    @Benchmark
+    public int compiledSample(IntState state) {
+        return state.compiled.sample();
+    }
+
+    @Benchmark
+    public int getStylizedSpawnY(SpawnYState state) {
+        return NumberStylizer.getStylizedSpawnY(state.spawnY, state.location);
+    }
+
+    @Benchmark
+    public int compiledSampleSpawnY(SpawnYState state) {
+        return state.compiled.sampleSpawnY(state.location);
+    }
+}
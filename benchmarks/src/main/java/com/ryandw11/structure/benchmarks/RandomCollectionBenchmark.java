@@ -0,0 +1,48 @@
+package com.ryandw11.structure.benchmarks;
+
+import com.ryandw11.structure.utils.RandomCollection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks picking a weighted value from a {@link RandomCollection}.
+ *
+ * <p>Loot tables and structure picking use this for every roll.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RandomCollectionBenchmark {
+
+    @Param({"4", "32", "256"})
+    public int size;
+
+    private RandomCollection<Integer> collection;
+    private Random random;
+
+    @Setup
+    public void setup() {
+        SplittableRandom weights = new SplittableRandom(42);
+        random = new Random(42);
+        collection = new RandomCollection<>(random);
+        for (int i = 0; i < size; i++) {
+            collection.add(1 + weights.nextInt(100), i);
+        }
+    }
+
+    @Benchmark
+    public Integer next() {
+        return collection.next();
+    }
+
+    @Benchmark
+    public Integer nextWithRandom() {
+        return collection.next(random);
+    }
+}
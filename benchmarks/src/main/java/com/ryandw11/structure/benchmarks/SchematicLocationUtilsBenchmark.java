@@ -0,0 +1,46 @@
+package com.ryandw11.structure.benchmarks;
+
+import com.ryandw11.structure.schematic.SchematicLocationUtils;
+import com.sk89q.worldedit.math.BlockVector3;
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks rotating a point around the paste location of a schematic.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SchematicLocationUtilsBenchmark {
+
+    @Param({"0", "90", "37.5"})
+    public double angle;
+
+    private Location point;
+    private Location center;
+    private BlockVector3 pointVector;
+    private BlockVector3 centerVector;
+
+    @Setup
+    public void setup() {
+        point = new Location(BenchmarkServer.WORLD, 1520, 70, -340);
+        center = new Location(BenchmarkServer.WORLD, 1500, 64, -320);
+        pointVector = BlockVector3.at(1520, 70, -340);
+        centerVector = BlockVector3.at(1500, 64, -320);
+    }
+
+    @Benchmark
+    public Location rotateAroundLocation() {
+        return SchematicLocationUtils.rotateAround(point, center, angle);
+    }
+
+    @Benchmark
+    public BlockVector3 rotateAroundVector() {
+        return SchematicLocationUtils.rotateAround(pointVector, centerVector, angle);
+    }
+}
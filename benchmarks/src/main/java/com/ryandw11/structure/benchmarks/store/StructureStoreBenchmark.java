@@ -0,0 +1,121 @@
+package com.ryandw11.structure.benchmarks.store;
+
+import com.ryandw11.structure.io.StoredStructure;
+import com.ryandw11.structure.io.StructureStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks the queries of every {@link StructureStore} on the workload of {@link StructureStoreConformance}.
+ *
+ * <p>Run the conformance check first, a fast store that answers wrong is not useful.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StructureStoreBenchmark {
+
+    @Param({"sqlite", "memory", "region"})
+    public String store;
+
+    @Param({"10000", "100000"})
+    public int spawnedStructures;
+
+    private Path directory;
+    private StructureStore structureStore;
+    private List<StoredStructure> structures;
+    private List<StoredStructure> insertBatch;
+    private long sequence;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("structure-store-" + store);
+        structureStore = StructureStoreConformance.open(store, directory.toFile());
+        structureStore.migrate(Logger.getLogger("StructureStore"), () -> false);
+        structures = StructureStoreConformance.generate(spawnedStructures, 42);
+        for (int from = 0; from < structures.size(); from += StructureStoreConformance.BATCH_SIZE) {
+            List<StoredStructure> batch = structures.subList(from, Math.min(structures.size(), from + StructureStoreConformance.BATCH_SIZE));
+            List<StoredStructure> placements = new ArrayList<>();
+            for (StoredStructure structure : batch)
+                placements.add(StructureStoreConformance.placementOf(structure, 90));
+            store(batch, placements);
+        }
+        structureStore.flush(true);
+        insertBatch = StructureStoreConformance.generate(StructureStoreConformance.BATCH_SIZE, 7);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        structureStore.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private void store(List<StoredStructure> spawns, List<StoredStructure> placements) {
+        sequence += spawns.size() + placements.size();
+        structureStore.save(spawns, placements, sequence);
+    }
+
+    private StoredStructure randomStructure() {
+        return structures.get(ThreadLocalRandom.current().nextInt(structures.size()));
+    }
+
+    private static int randomCoordinate() {
+        return ThreadLocalRandom.current().nextInt(-StructureStoreConformance.RANGE, StructureStoreConformance.RANGE);
+    }
+
+    @Benchmark
+    public StoredStructure pointLookup() {
+        StoredStructure structure = randomStructure();
+        return structureStore.getStructureAt(structure.getWorld(), structure.getX(), structure.getY(), structure.getZ());
+    }
+
+    @Benchmark
+    public List<StoredStructure> nearest() {
+        return structureStore.findNearest(StructureStoreConformance.WORLDS[0], null, randomCoordinate(), 64, randomCoordinate(), 10);
+    }
+
+    @Benchmark
+    public List<StoredStructure> nearestByName() {
+        return structureStore.findNearest(StructureStoreConformance.WORLDS[0], randomStructure().getName(), randomCoordinate(),
+                64, randomCoordinate(), 10);
+    }
+
+    @Benchmark
+    public List<StoredStructure> byNamePage() {
+        StoredStructure structure = randomStructure();
+        return structureStore.findByName(structure.getName(), ThreadLocalRandom.current().nextInt(spawnedStructures), 100);
+    }
+
+    @Benchmark
+    public List<StoredStructure> inside() {
+        int x = randomCoordinate();
+        int z = randomCoordinate();
+        return structureStore.findInside(StructureStoreConformance.WORLDS[0], x, -64, z, x + 512, 320, z + 512);
+    }
+
+    /**
+     * Saves a batch of structures the way the writer thread does. (The store grows during the benchmark).
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void insertBatch() {
+        store(insertBatch, List.of());
+        structureStore.flush(false);
+    }
+}
@@ -0,0 +1,419 @@
+package com.ryandw11.structure.benchmarks.store;
+
+import com.ryandw11.structure.io.StoredStructure;
+import com.ryandw11.structure.io.StructureStore;
+import com.ryandw11.structure.io.memory.MemoryStructureStore;
+import com.ryandw11.structure.io.region.RegionStructureStore;
+import com.ryandw11.structure.io.sql.SqliteStructureStore;
+import com.ryandw11.structure.io.sql.StructureDatabaseSchema;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Checks that every {@link StructureStore} answers the same as a brute force search over the structures that were
+ * saved.
+ *
+ * <p>The same workload is saved to each store: structures in batches, a few of them at the same location, and
+ * placements for some of them (in the same batch and in a later one). Every query is then compared to a scan of a plain
+ * list. The store is closed and opened again at the end, to check that nothing was lost.</p>
+ *
+ * <p>The migration of a database from before {@link StructureDatabaseSchema#VERSION} is checked as well. It is stopped
+ * after the first batch, resumed when the store is opened again, and every row of the old table is compared to the
+ * migrated structures.</p>
+ *
+ * <p>{@link StructureStoreBenchmark} uses the same workload, so the stores are benchmarked on data they were checked
+ * against.</p>
+ *
+ * <p>Usage: <code>java -cp benchmarks.jar com.ryandw11.structure.benchmarks.store.StructureStoreConformance [structures]</code></p>
+ *
+ * <p>The exit code is 1 if a store did not answer a query correctly.</p>
+ */
+public class StructureStoreConformance {
+    /**
+     * The stores that are checked and benchmarked.
+     */
+    public static final String[] STORES = {"sqlite", "memory", "region"};
+    static final String[] WORLDS = {"world", "world_nether"};
+    static final String[] NAMES = {"village", "tower", "ruins", "camp", "temple", "shrine", "well", "mineshaft"};
+    static final int BATCH_SIZE = 500;
+    // Structures are spread over this many blocks in each direction.
+    static final int RANGE = 20_000;
+    private static final int QUERIES = 200;
+    // Enough for the migration of the legacy database to take a few batches.
+    private static final int LEGACY_STRUCTURES = 25_000;
+
+    private final String type;
+    private final List<String> failures = new ArrayList<>();
+
+    private StructureStoreConformance(String type) {
+        this.type = type;
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        int structures = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        boolean failed = false;
+        for (String type : STORES) {
+            StructureStoreConformance conformance = new StructureStoreConformance(type);
+            conformance.run(structures);
+            failed |= !conformance.report(type);
+        }
+        StructureStoreConformance migration = new StructureStoreConformance("sqlite");
+        migration.runLegacyMigration();
+        failed |= !migration.report("sqlite migration");
+        System.exit(failed ? 1 : 0);
+    }
+
+    private boolean report(String label) {
+        if (failures.isEmpty()) {
+            System.out.println(label + ": OK");
+            return true;
+        }
+        System.out.println(label + ": " + failures.size() + " failures");
+        failures.stream().limit(20).forEach(failure -> System.out.println("  " + failure));
+        return false;
+    }
+
+    /**
+     * Open a store in a directory.
+     *
+     * @param type      The type of store. (One of {@link #STORES}).
+     * @param directory The directory to keep the files of the store in.
+     * @return The store.
+     */
+    static StructureStore open(String type, File directory) {
+        return switch (type) {
+            case "sqlite" -> new SqliteStructureStore(new File(directory, "structures.db"), 2);
+            // Snapshots are only written when the store is flushed with force.
+            case "memory" -> new MemoryStructureStore(new File(directory, "structures.snapshot"), Long.MAX_VALUE / 1_000_000L,
+                    Logger.getLogger("StructureStore"));
+            case "region" -> new RegionStructureStore(new File(directory, "regions"), Logger.getLogger("StructureStore"));
+            default -> throw new IllegalArgumentException("Unknown store: " + type);
+        };
+    }
+
+    /**
+     * Generate the structures of the workload.
+     *
+     * <p>Every 50th structure is at the same location as an earlier one.</p>
+     *
+     * @param count The number of structures.
+     * @param seed  The seed.
+     * @return The structures, without ids.
+     */
+    static List<StoredStructure> generate(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<StoredStructure> structures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && i % 50 == 0) {
+                StoredStructure earlier = structures.get(random.nextInt(i));
+                structures.add(new StoredStructure(0, earlier.getWorld(), earlier.getName(), earlier.getX(), earlier.getY(),
+                        earlier.getZ(), 1_600_000_000_000L + i, 0, null));
+                continue;
+            }
+            structures.add(new StoredStructure(0, WORLDS[random.nextInt(WORLDS.length)], NAMES[random.nextInt(NAMES.length)],
+                    random.nextInt(-RANGE, RANGE), random.nextInt(-64, 320), random.nextInt(-RANGE, RANGE),
+                    1_600_000_000_000L + i, 0, null));
+        }
+        return structures;
+    }
+
+    /**
+     * Get the placement of a structure.
+     *
+     * @param structure The structure.
+     * @param rotation  The rotation.
+     * @return The placement.
+     */
+    static StoredStructure placementOf(StoredStructure structure, int rotation) {
+        return new StoredStructure(0, structure.getWorld(), structure.getName(), structure.getX(), structure.getY(),
+                structure.getZ(), 0, rotation, new int[]{
+                structure.getX() - 8, structure.getY(), structure.getZ() - 8,
+                structure.getX() + 8, structure.getY() + 12, structure.getZ() + 8
+        });
+    }
+
+    private void run(int count) throws IOException {
+        Path directory = Files.createTempDirectory("structure-store-" + type);
+        try {
+            List<StoredStructure> spawns = generate(count, 42);
+            List<StoredStructure> expected = new ArrayList<>();
+            long sequence = 0;
+            try (StructureStore store = open(type, directory.toFile())) {
+                check(store.migrate(Logger.getLogger("StructureStore"), () -> false), "The migration of a new store did not finish.");
+                for (int from = 0; from < spawns.size(); from += BATCH_SIZE) {
+                    List<StoredStructure> batch = spawns.subList(from, Math.min(spawns.size(), from + BATCH_SIZE));
+                    // Place every 3rd structure of this batch, and every 7th structure of the previous batch.
+                    List<StoredStructure> placements = new ArrayList<>();
+                    for (int i = 0; i < batch.size(); i += 3)
+                        placements.add(placementOf(batch.get(i), 90));
+                    for (int i = Math.max(0, from - BATCH_SIZE); i < from; i += 7)
+                        placements.add(placementOf(spawns.get(i), 180));
+                    sequence += batch.size() + placements.size();
+                    store.save(batch, placements, sequence);
+
+                    for (StoredStructure spawn : batch)
+                        expected.add(spawn.withId(-1));
+                    for (StoredStructure placement : placements)
+                        placeLatest(expected, placement);
+                }
+                store.flush(true);
+                check(store.getCommittedSequence() == sequence, "The committed sequence is " + store.getCommittedSequence()
+                        + " instead of " + sequence + ".");
+
+                assignIds(store, expected);
+                checkQueries(store, expected);
+            }
+
+            try (StructureStore store = open(type, directory.toFile())) {
+                check(store.getCommittedSequence() == sequence, "The committed sequence is " + store.getCommittedSequence()
+                        + " instead of " + sequence + " after opening the store again.");
+                List<StoredStructure> exported = export(store);
+                check(exported.equals(expected), "The structures are different after opening the store again.");
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Migrate a database that still has the legacy Structures table, the way older versions of the plugin wrote it.
+     *
+     * <p>The migration is stopped after its first batch and resumed when the store is opened again. Every row of the
+     * legacy table has to be migrated with its id, and new structures have to be saved after them.</p>
+     */
+    private void runLegacyMigration() throws IOException, SQLException {
+        Path directory = Files.createTempDirectory("structure-store-migration");
+        File databaseFile = new File(directory.toFile(), "structures.db");
+        try {
+            List<StoredStructure> expected = createLegacyDatabase(databaseFile);
+            Logger logger = Logger.getLogger("StructureStore");
+
+            AtomicInteger batches = new AtomicInteger();
+            try (StructureStore store = open(type, directory.toFile())) {
+                check(!store.migrate(logger, () -> batches.getAndIncrement() > 0),
+                        "The migration finished even though it was stopped after the first batch.");
+            }
+            check(batches.get() == 2, "The migration was asked to stop " + batches.get() + " times instead of 2.");
+
+            List<StoredStructure> spawns = generate(BATCH_SIZE, 43);
+            try (StructureStore store = open(type, directory.toFile())) {
+                check(store.migrate(logger, () -> false), "The migration did not finish after it was resumed.");
+                check(export(store).equals(expected), "The migrated structures are different from the legacy rows.");
+
+                // Structures spawned after the migration get ids after the legacy ones.
+                store.save(spawns, List.of(), spawns.size());
+                store.flush(true);
+                for (StoredStructure spawn : spawns)
+                    expected.add(spawn.withId(-1));
+                assignIds(store, expected);
+                long lastLegacyId = expected.get(LEGACY_STRUCTURES - 1).getId();
+                check(expected.get(LEGACY_STRUCTURES).getId() > lastLegacyId,
+                        "A structure saved after the migration has the id " + expected.get(LEGACY_STRUCTURES).getId()
+                                + ", which is not after the legacy id " + lastLegacyId + ".");
+                checkQueries(store, expected);
+            }
+
+            try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getPath());
+                 Statement statement = connection.createStatement()) {
+                try (ResultSet resultSet = statement.executeQuery(
+                        "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = 'Structures'")) {
+                    check(resultSet.next() && resultSet.getInt(1) == 0, "The legacy Structures table was not dropped.");
+                }
+                try (ResultSet resultSet = statement.executeQuery("PRAGMA user_version")) {
+                    int version = resultSet.next() ? resultSet.getInt(1) : 0;
+                    check(version == StructureDatabaseSchema.VERSION, "The database is at version " + version
+                            + " instead of " + StructureDatabaseSchema.VERSION + " after the migration.");
+                }
+            }
+
+            try (StructureStore store = open(type, directory.toFile())) {
+                check(store.migrate(logger, () -> false), "The migrated database was migrated again.");
+                check(store.getCommittedSequence() == spawns.size(), "The committed sequence is " + store.getCommittedSequence()
+                        + " instead of " + spawns.size() + " after the migration.");
+                check(export(store).equals(expected), "The structures are different after opening the migrated store again.");
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Create a database with only the legacy Structures table.
+     *
+     * <p>Every 1000th id is skipped, like the ids of structures that were removed. The legacy table does not know when
+     * a structure spawned or where it was placed.</p>
+     *
+     * @param databaseFile The file of the database.
+     * @return The structures the migration should produce, in the order of their ids.
+     */
+    private static List<StoredStructure> createLegacyDatabase(File databaseFile) throws SQLException {
+        List<StoredStructure> expected = new ArrayList<>(LEGACY_STRUCTURES);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getPath())) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS Structures (id INTEGER PRIMARY KEY, name VARCHAR(100) NOT NULL, "
+                        + "x DOUBLE NOT NULL, y DOUBLE NOT NULL, z DOUBLE NOT NULL, world VARCHAR(300) NOT NULL)");
+            }
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO Structures (id, name, x, y, z, world) VALUES (?, ?, ?, ?, ?, ?)")) {
+                List<StoredStructure> structures = generate(LEGACY_STRUCTURES, 41);
+                for (int i = 0; i < structures.size(); i++) {
+                    StoredStructure structure = structures.get(i);
+                    long id = i + 1 + i / 1000;
+                    insert.setLong(1, id);
+                    insert.setString(2, structure.getName());
+                    insert.setDouble(3, structure.getX());
+                    insert.setDouble(4, structure.getY());
+                    insert.setDouble(5, structure.getZ());
+                    insert.setString(6, structure.getWorld());
+                    insert.addBatch();
+                    expected.add(new StoredStructure(id, structure.getWorld(), structure.getName(), structure.getX(),
+                            structure.getY(), structure.getZ(), 0, 0, null));
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+        }
+        return expected;
+    }
+
+    /**
+     * Apply a placement to the latest structure at its location, the way a store should.
+     */
+    private static void placeLatest(List<StoredStructure> structures, StoredStructure placement) {
+        for (int i = structures.size() - 1; i >= 0; i--) {
+            StoredStructure structure = structures.get(i);
+            if (structure.getWorld().equals(placement.getWorld()) && structure.getName().equals(placement.getName())
+                    && structure.isAt(placement.getX(), placement.getY(), placement.getZ())) {
+                structures.set(i, structure.withPlacement(placement));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Take the ids the store gave the structures, after checking that they increase in the order the structures were
+     * saved.
+     */
+    private void assignIds(StructureStore store, List<StoredStructure> expected) {
+        List<StoredStructure> exported = export(store);
+        if (exported.size() != expected.size()) {
+            check(false, "The store has " + exported.size() + " structures instead of " + expected.size() + ".");
+            return;
+        }
+        for (int i = 0; i < exported.size(); i++) {
+            StoredStructure withId = expected.get(i).withId(exported.get(i).getId());
+            check(withId.equals(exported.get(i)), "Expected " + withId + " (placed: " + withId.hasPlacement() + ") but found "
+                    + exported.get(i) + " (placed: " + exported.get(i).hasPlacement() + ").");
+            expected.set(i, withId);
+        }
+    }
+
+    private static List<StoredStructure> export(StructureStore store) {
+        List<StoredStructure> exported = new ArrayList<>();
+        store.export(exported::add);
+        exported.sort(Comparator.comparingLong(StoredStructure::getId));
+        return exported;
+    }
+
+    private void checkQueries(StructureStore store, List<StoredStructure> expected) {
+        SplittableRandom random = new SplittableRandom(7);
+        Set<StoredStructure> saved = new HashSet<>(expected);
+        for (int i = 0; i < QUERIES; i++) {
+            // Half of the lookups are at a structure, the other half most likely miss.
+            StoredStructure target = expected.get(random.nextInt(expected.size()));
+            String world = target.getWorld();
+            int x = i % 2 == 0 ? target.getX() : random.nextInt(-RANGE, RANGE);
+            int y = i % 2 == 0 ? target.getY() : random.nextInt(-64, 320);
+            int z = i % 2 == 0 ? target.getZ() : random.nextInt(-RANGE, RANGE);
+            StoredStructure latest = expected.stream()
+                    .filter(structure -> structure.getWorld().equals(world) && structure.isAt(x, y, z))
+                    .max(Comparator.comparingLong(StoredStructure::getId)).orElse(null);
+            check(Objects.equals(store.getStructureAt(world, x, y, z), latest),
+                    "getStructureAt(" + world + ", " + x + ", " + y + ", " + z + ") did not return " + latest + ".");
+
+            String name = i % 3 == 0 ? null : NAMES[random.nextInt(NAMES.length)];
+            int limit = new int[]{1, 5, 25}[i % 3];
+            checkNearest(store, expected, saved, world, name, x, y, z, limit);
+
+            String pageName = NAMES[random.nextInt(NAMES.length)];
+            List<StoredStructure> named = expected.stream().filter(structure -> structure.getName().equals(pageName)).toList();
+            List<StoredStructure> paged = new ArrayList<>();
+            long afterId = 0;
+            List<StoredStructure> page;
+            do {
+                page = store.findByName(pageName, afterId, 97);
+                paged.addAll(page);
+                if (!page.isEmpty())
+                    afterId = page.get(page.size() - 1).getId();
+            } while (page.size() == 97);
+            check(paged.equals(named), "The pages of " + pageName + " do not contain all of its structures in order.");
+
+            int size = random.nextInt(16, 2048);
+            int minX = x - size;
+            int minZ = z - size;
+            int maxX = x + size;
+            int maxZ = z + size;
+            int minY = random.nextInt(-64, 100);
+            int maxY = minY + random.nextInt(0, 256);
+            List<StoredStructure> inside = expected.stream()
+                    .filter(structure -> structure.getWorld().equals(world)
+                            && structure.getX() >= minX && structure.getX() <= maxX
+                            && structure.getY() >= minY && structure.getY() <= maxY
+                            && structure.getZ() >= minZ && structure.getZ() <= maxZ)
+                    .toList();
+            check(store.findInside(world, minX, minY, minZ, maxX, maxY, maxZ).equals(inside),
+                    "findInside(" + world + ", " + minX + ", " + minY + ", " + minZ + ", " + maxX + ", " + maxY + ", " + maxZ
+                            + ") did not return the " + inside.size() + " structures in the box.");
+        }
+        check(store.findNearest("missing_world", null, 0, 0, 0, 5).isEmpty(), "findNearest found structures in a missing world.");
+        check(store.findByName("missing_name", 0, 5).isEmpty(), "findByName found structures with a missing name.");
+    }
+
+    /**
+     * Check the closest structures.
+     *
+     * <p>The stores may compute the distance slightly differently, so structures at the same distance can be in a
+     * different order. The distances have to match, and every structure has to be one that matches the query.</p>
+     */
+    private void checkNearest(StructureStore store, List<StoredStructure> expected, Set<StoredStructure> saved, String world, String name,
+                              int x, int y, int z, int limit) {
+        List<StoredStructure> closest = expected.stream()
+                .filter(structure -> structure.getWorld().equals(world) && (name == null || structure.getName().equals(name)))
+                .sorted(Comparator.<StoredStructure>comparingDouble(structure -> structure.distance(x, y, z))
+                        .thenComparingLong(StoredStructure::getId))
+                .limit(limit)
+                .toList();
+        List<StoredStructure> found = store.findNearest(world, name, x, y, z, limit);
+        String query = "findNearest(" + world + ", " + name + ", " + x + ", " + y + ", " + z + ", " + limit + ")";
+        if (found.size() != closest.size()) {
+            check(false, query + " returned " + found.size() + " structures instead of " + closest.size() + ".");
+            return;
+        }
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < found.size(); i++) {
+            StoredStructure structure = found.get(i);
+            check(Math.abs(structure.distance(x, y, z) - closest.get(i).distance(x, y, z)) < 1e-6,
+                    query + " returned " + structure + " instead of " + closest.get(i) + ".");
+            check(saved.contains(structure) && structure.getWorld().equals(world) && (name == null || structure.getName().equals(name))
+                    && ids.add(structure.getId()), query + " returned " + structure + ", which does not match.");
+        }
+    }
+
+    private void check(boolean condition, String failure) {
+        if (!condition)
+            failures.add(failure);
+    }
+}
@@ -0,0 +1,399 @@
+package com.ryandw11.structure.benchmarks.storm;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.scheduler.BukkitSchedulerMock;
+import com.ryandw11.structure.CustomStructures;
+import com.ryandw11.structure.metrics.LatencyHistogram;
+import com.ryandw11.structure.metrics.SpawnCounter;
+import com.ryandw11.structure.metrics.SpawnStage;
+import com.ryandw11.structure.metrics.StructureMetrics;
+import org.bukkit.Chunk;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.logging.Filter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Fires a storm of {@link ChunkLoadEvent}s at the plugin on a mocked server and measures how the spawn pipeline
+ * keeps up.
+ *
+ * <p>The plugin is loaded into MockBukkit with a set of generated structures and a {@link SyntheticWorld}. The
+ * chunks are loaded evenly over the length of the storm, and the server keeps ticking afterwards until every
+ * chunk has finished picking a structure. The results are written as JSON.</p>
+ *
+ * <p>WorldEdit does not run on a mocked server, so the structures use a schematic that WorldEdit does not
+ * recognize. A spawn stops right where the schematic would be pasted, after the structure was accepted and
+ * added to the list of spawned structures.</p>
+ *
+ * <p>Usage: <code>java -cp benchmarks.jar com.ryandw11.structure.benchmarks.storm.ChunkStorm [options]</code></p>
+ * <ul>
+ *     <li><code>--chunks 1000</code> The number of chunks to load.</li>
+ *     <li><code>--seconds 10</code> The number of (simulated) seconds to load the chunks over.</li>
+ *     <li><code>--structures 8</code> The number of structures to generate.</li>
+ *     <li><code>--seed 42</code> The seed of the terrain.</li>
+ *     <li><code>--output chunk-storm.json</code> Where to write the results.</li>
+ *     <li><code>--max-tick-ms 0</code> Fail if the 99th percentile of the main thread time per tick is
+ *     higher than this. (0 to not check).</li>
+ * </ul>
+ *
+ * <p>The exit code is 1 if the plugin logged an error, did not finish every chunk or was too slow.</p>
+ */
+public class ChunkStorm {
+    private static final int TICKS_PER_SECOND = 20;
+    private static final long NANOS_PER_TICK = 1_000_000_000L / TICKS_PER_SECOND;
+    private static final int INITIALIZE_TICK_LIMIT = 100;
+    private static final int DRAIN_TICK_LIMIT = TICKS_PER_SECOND * 60 * 5;
+    private static final String SCHEMATIC_NAME = "storm.schem";
+    private static final String[][] BIOME_SETS = {
+            {}, {"plains", "forest", "birch_forest"}, {"desert", "savanna"}, {"taiga", "snowy_plains"}, {"ocean"}
+    };
+
+    private final int chunks;
+    private final int seconds;
+    private final int structures;
+    private final long seed;
+    private final File output;
+    private final double maxTickMillis;
+
+    private ChunkStorm(Map<String, String> options) {
+        this.chunks = Integer.parseInt(options.getOrDefault("chunks", "1000"));
+        this.seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+        this.structures = Integer.parseInt(options.getOrDefault("structures", "8"));
+        this.seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        this.output = new File(options.getOrDefault("output", "chunk-storm.json"));
+        this.maxTickMillis = Double.parseDouble(options.getOrDefault("max-tick-ms", "0"));
+        if (chunks < 1 || seconds < 1 || structures < 1)
+            throw new IllegalArgumentException("The number of chunks, seconds and structures must be at least 1.");
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                System.err.println("Invalid argument: " + args[i] + ". Options are passed as --name value.");
+                System.exit(2);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+
+        ChunkStorm storm;
+        try {
+            storm = new ChunkStorm(options);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.exit(storm.run());
+    }
+
+    private int run() throws IOException {
+        ServerMock server = MockBukkit.mock();
+        try {
+            SyntheticWorld world = new SyntheticWorld("world", seed);
+            server.addWorld(world);
+
+            CustomStructures plugin = MockBukkit.load(CustomStructures.class);
+            StormLogFilter logFilter = new StormLogFilter();
+            plugin.getLogger().setFilter(logFilter);
+            prepareStructures(plugin);
+
+            BukkitSchedulerMock scheduler = server.getScheduler();
+            for (int i = 0; i < INITIALIZE_TICK_LIMIT && plugin.getStructureHandler() == null; i++) {
+                scheduler.performOneTick();
+            }
+            if (plugin.getStructureHandler() == null) {
+                System.err.println("The plugin did not initialize.");
+                return 1;
+            }
+            plugin.getSpawnMetrics().reset();
+
+            StormResult result = runStorm(server, world, plugin, logFilter);
+            Files.writeString(output.toPath(), result.toJson(), StandardCharsets.UTF_8);
+            System.out.println(result.getSummary());
+            System.out.println("The results were written to " + output.getAbsolutePath() + ".");
+
+            if (result.severeErrors > 0) {
+                System.err.println("The plugin logged " + result.severeErrors + " error(s).");
+                return 1;
+            }
+            if (result.unfinishedChunks > 0) {
+                System.err.println(result.unfinishedChunks + " chunk(s) did not finish picking a structure.");
+                return 1;
+            }
+            if (maxTickMillis > 0 && result.tickTimes.getValueAtPercentile(99) / 1e6 > maxTickMillis) {
+                System.err.printf(Locale.ROOT, "The 99th percentile of the main thread time per tick is above %.2fms.%n", maxTickMillis);
+                return 1;
+            }
+            return 0;
+        } finally {
+            MockBukkit.unmock();
+        }
+    }
+
+    /**
+     * Write the generated structures to the data folder and add them to the config.
+     *
+     * <p>This has to happen before the plugin initializes (30 ticks after it is enabled).</p>
+     */
+    private void prepareStructures(CustomStructures plugin) throws IOException {
+        File schematics = new File(plugin.getDataFolder(), "schematics");
+        File structureFolder = new File(plugin.getDataFolder(), "structures");
+        if (!schematics.exists() && !schematics.mkdirs() || !structureFolder.exists() && !structureFolder.mkdirs())
+            throw new IOException("Unable to create the data folder of the plugin.");
+        // WorldEdit does not recognize this file, so nothing is pasted.
+        Files.writeString(new File(schematics, SCHEMATIC_NAME).toPath(), "Not a schematic.", StandardCharsets.UTF_8);
+
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < structures; i++) {
+            String name = "storm" + i;
+            createStructureConfig(i).save(new File(structureFolder, name + ".yml"));
+            names.add(name);
+        }
+
+        plugin.getConfig().set("Structures", names);
+        plugin.getConfig().set("logStructures", false);
+        plugin.getConfig().set("watchFiles", false);
+        plugin.getConfig().set("metricsDumpInterval", 0);
+        plugin.getSpawnMetrics().setEnabled(true);
+    }
+
+    /**
+     * Create the config of a generated structure. Every structure has different rules, so every check of the
+     * pipeline is used.
+     */
+    private YamlConfiguration createStructureConfig(int index) {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("Schematic", SCHEMATIC_NAME);
+        config.set("Probability.Numerator", 1);
+        config.set("Probability.Denominator", 2 + index * 6);
+        config.set("Priority", 100 + index);
+
+        config.set("StructureLocation.SpawnY", index % 3 == 2 ? "+[0;2]" : "top");
+        config.set("StructureLocation.SpawnYHeightMap", index % 4 == 3 ? "OCEAN_FLOOR" : "WORLD_SURFACE");
+        config.set("StructureLocation.Biome", Arrays.asList(BIOME_SETS[index % BIOME_SETS.length]));
+        config.set("StructureLocation.DistanceFromOthers", 32 + index * 8);
+        config.set("StructureLocation.DistanceFromSame", 128 + index * 16);
+
+        config.set("StructureProperties.PlaceAir", false);
+        config.set("StructureProperties.IgnorePlants", true);
+        config.set("StructureProperties.SpawnInWater", index % 2 == 0);
+        config.set("StructureProperties.SpawnInLavaLakes", false);
+        config.set("StructureProperties.SpawnInVoid", false);
+
+        config.set("StructureLimitations.WorldHeightRestriction", 10);
+        if (index % 2 == 0) {
+            config.set("StructureLimitations.WhitelistSpawnBlocks", Arrays.asList("GRASS_BLOCK", "SAND", "SNOW_BLOCK"));
+        } else {
+            config.set("StructureLimitations.BlacklistSpawnBlocks", Collections.singletonList("WATER"));
+        }
+        if (index % 3 == 1) {
+            config.set("StructureLimitations.BlockLevelLimit.Mode", index % 2 == 0 ? "flat" : "flat_error");
+            config.set("StructureLimitations.BlockLevelLimit.CornerOne.x", -4);
+            config.set("StructureLimitations.BlockLevelLimit.CornerOne.z", -4);
+            config.set("StructureLimitations.BlockLevelLimit.CornerTwo.x", 4);
+            config.set("StructureLimitations.BlockLevelLimit.CornerTwo.z", 4);
+            config.set("StructureLimitations.BlockLevelLimit.Error", 0.25);
+        }
+        return config;
+    }
+
+    private StormResult runStorm(ServerMock server, SyntheticWorld world, CustomStructures plugin, StormLogFilter logFilter) {
+        BukkitSchedulerMock scheduler = server.getScheduler();
+        int stormTicks = seconds * TICKS_PER_SECOND;
+        List<int[]> chunkCoordinates = getSpiral(chunks);
+
+        StormResult result = new StormResult();
+        // The id of the task that picks a structure for a chunk and the tick the chunk was loaded.
+        Map<Integer, Integer> queuedChunks = new HashMap<>();
+
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+
+        long wallStart = System.nanoTime();
+        int fired = 0;
+        int tick = 0;
+        while (tick < stormTicks || (!queuedChunks.isEmpty() && tick < stormTicks + DRAIN_TICK_LIMIT)) {
+            int due = tick < stormTicks ? (int) ((long) chunks * (tick + 1) / stormTicks) : fired;
+            int lastTaskId = getLastTaskId(scheduler, plugin);
+
+            long eventStart = System.nanoTime();
+            for (; fired < due; fired++) {
+                int[] coordinate = chunkCoordinates.get(fired);
+                Chunk chunk = world.getChunkAt(coordinate[0], coordinate[1]);
+                server.getPluginManager().callEvent(new ChunkLoadEvent(chunk, true));
+            }
+            long eventNanos = System.nanoTime() - eventStart;
+
+            for (BukkitTask task : scheduler.getPendingTasks()) {
+                if (task.getOwner() == plugin && task.getTaskId() > lastTaskId)
+                    queuedChunks.put(task.getTaskId(), tick);
+            }
+
+            long tickStart = System.nanoTime();
+            scheduler.performOneTick();
+            long tickNanos = System.nanoTime() - tickStart;
+            result.tickTimes.record(eventNanos + tickNanos);
+            result.eventTimes.record(eventNanos);
+
+            int currentTick = tick;
+            queuedChunks.entrySet().removeIf(entry -> {
+                if (scheduler.isQueued(entry.getKey())) return false;
+                result.queueLatency.record((currentTick - entry.getValue() + 1) * NANOS_PER_TICK);
+                return true;
+            });
+            result.maxQueueDepth = Math.max(result.maxQueueDepth, queuedChunks.size());
+            tick++;
+        }
+        // Let the last tasks (and the async tasks they started) finish before the heap is measured.
+        scheduler.performOneTick();
+        scheduler.waitAsyncTasksFinished();
+
+        result.wallNanos = System.nanoTime() - wallStart;
+        result.ticks = tick;
+        result.chunks = fired;
+        result.unfinishedChunks = queuedChunks.size();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) result.peakHeapBytes += pool.getPeakUsage().getUsed();
+        }
+        result.severeErrors = logFilter.severeErrors;
+        result.pasteHandOffs = logFilter.pasteHandOffs;
+        result.structureMetrics = plugin.getSpawnMetrics().getAllStructureMetrics();
+        return result;
+    }
+
+    private static int getLastTaskId(BukkitSchedulerMock scheduler, CustomStructures plugin) {
+        int last = -1;
+        for (BukkitTask task : scheduler.getPendingTasks()) {
+            if (task.getOwner() == plugin) last = Math.max(last, task.getTaskId());
+        }
+        return last;
+    }
+
+    /**
+     * Get the coordinates of chunks in a spiral around the origin, like a player exploring the world.
+     */
+    private static List<int[]> getSpiral(int count) {
+        List<int[]> coordinates = new ArrayList<>(count);
+        int x = 0;
+        int z = 0;
+        int dx = 0;
+        int dz = -1;
+        while (coordinates.size() < count) {
+            coordinates.add(new int[]{x, z});
+            if (x == z || (x < 0 && x == -z) || (x > 0 && x == 1 - z)) {
+                int previousDx = dx;
+                dx = -dz;
+                dz = previousDx;
+            }
+            x += dx;
+            z += dz;
+        }
+        return coordinates;
+    }
+
+    /**
+     * Counts the errors of the plugin and hides the warnings about the schematic that cannot be pasted.
+     */
+    private static class StormLogFilter implements Filter {
+        private int severeErrors;
+        private int pasteHandOffs;
+
+        @Override
+        public boolean isLoggable(LogRecord record) {
+            String message = record.getMessage();
+            if (message != null && message.startsWith("Invalid schematic format for schematic " + SCHEMATIC_NAME)) {
+                pasteHandOffs++;
+                return false;
+            }
+            if (message != null && message.startsWith("Please create a valid schematic"))
+                return false;
+            if (record.getLevel() == Level.SEVERE)
+                severeErrors++;
+            return true;
+        }
+    }
+
+    /**
+     * The measurements of a storm.
+     */
+    private static class StormResult {
+        private final LatencyHistogram tickTimes = new LatencyHistogram();
+        private final LatencyHistogram eventTimes = new LatencyHistogram();
+        private final LatencyHistogram queueLatency = new LatencyHistogram();
+        private long wallNanos;
+        private int ticks;
+        private int chunks;
+        private int unfinishedChunks;
+        private int maxQueueDepth;
+        private long peakHeapBytes;
+        private int severeErrors;
+        private int pasteHandOffs;
+        private List<StructureMetrics> structureMetrics = Collections.emptyList();
+
+        private long getTotal(SpawnCounter counter) {
+            return structureMetrics.stream().mapToLong(metrics -> metrics.getCount(counter)).sum();
+        }
+
+        private String getSummary() {
+            return String.format(Locale.ROOT, "Loaded %d chunks in %d ticks (%.2fs wall time, %.1f chunks/s). " +
+                            "Main thread per tick: p50 %.3fms, p99 %.3fms, max %.3fms. Queue latency: p50 %.0fms, p99 %.0fms. " +
+                            "Spawned %d structures. Peak heap %.1fMB.",
+                    chunks, ticks, wallNanos / 1e9, chunks / (wallNanos / 1e9),
+                    tickTimes.getValueAtPercentile(50) / 1e6, tickTimes.getValueAtPercentile(99) / 1e6, tickTimes.getMax() / 1e6,
+                    queueLatency.getValueAtPercentile(50) / 1e6, queueLatency.getValueAtPercentile(99) / 1e6,
+                    getTotal(SpawnCounter.SPAWNED), peakHeapBytes / (1024.0 * 1024.0));
+        }
+
+        private String toJson() {
+            StringBuilder json = new StringBuilder("{\n");
+            json.append(String.format(Locale.ROOT, "  \"chunks\": %d,\n  \"unfinishedChunks\": %d,\n  \"ticks\": %d,\n", chunks, unfinishedChunks, ticks));
+            json.append(String.format(Locale.ROOT, "  \"wallSeconds\": %.3f,\n  \"chunksPerSecond\": %.2f,\n", wallNanos / 1e9, chunks / (wallNanos / 1e9)));
+            json.append(String.format(Locale.ROOT, "  \"maxQueueDepth\": %d,\n  \"peakHeapBytes\": %d,\n", maxQueueDepth, peakHeapBytes));
+            json.append(String.format(Locale.ROOT, "  \"severeErrors\": %d,\n  \"pasteHandOffs\": %d,\n", severeErrors, pasteHandOffs));
+            appendHistogram(json, "mainThreadPerTick", tickTimes);
+            appendHistogram(json, "chunkEventsPerTick", eventTimes);
+            appendHistogram(json, "queueLatency", queueLatency);
+
+            json.append("  \"counters\": {");
+            SpawnCounter[] counters = SpawnCounter.values();
+            for (int i = 0; i < counters.length; i++) {
+                json.append(String.format(Locale.ROOT, "%s\"%s\": %d", i == 0 ? "" : ", ", counters[i].getMetricName(), getTotal(counters[i])));
+            }
+            json.append("},\n");
+
+            json.append("  \"stages\": {\n");
+            SpawnStage[] stages = SpawnStage.values();
+            for (int i = 0; i < stages.length; i++) {
+                SpawnStage stage = stages[i];
+                long count = structureMetrics.stream().mapToLong(metrics -> metrics.getHistogram(stage).getCount()).sum();
+                long sum = structureMetrics.stream().mapToLong(metrics -> metrics.getHistogram(stage).getSum()).sum();
+                json.append(String.format(Locale.ROOT, "    \"%s\": {\"count\": %d, \"totalMillis\": %.3f}%s\n",
+                        stage.getMetricName(), count, sum / 1e6, i + 1 < stages.length ? "," : ""));
+            }
+            json.append("  }\n}\n");
+            return json.toString();
+        }
+
+        private static void appendHistogram(StringBuilder json, String name, LatencyHistogram histogram) {
+            json.append(String.format(Locale.ROOT, "  \"%s\": {\"count\": %d, \"p50Millis\": %.3f, \"p99Millis\": %.3f, " +
+                            "\"maxMillis\": %.3f, \"totalMillis\": %.3f},\n",
+                    name, histogram.getCount(), histogram.getValueAtPercentile(50) / 1e6,
+                    histogram.getValueAtPercentile(99) / 1e6, histogram.getMax() / 1e6, histogram.getSum() / 1e6));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.ryandw11.structure.benchmarks.storm;
+
+import be.seeseemelk.mockbukkit.Coordinate;
+import be.seeseemelk.mockbukkit.WorldMock;
+import be.seeseemelk.mockbukkit.block.BlockMock;
+import org.bukkit.HeightMap;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+import org.bukkit.block.Block;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A mocked world with generated hills, oceans and biomes.
+ *
+ * <p>The terrain is computed from the coordinates every time a block is requested, so the world does not
+ * grow in memory as more chunks are loaded. (Changes to blocks are not kept).</p>
+ */
+public class SyntheticWorld extends WorldMock {
+    private static final int MIN_HEIGHT = -64;
+    private static final int MAX_HEIGHT = 320;
+    private static final int SEA_LEVEL = 62;
+    // The size of the area that has the same biome.
+    private static final int BIOME_CELL_SIZE = 96;
+    private static final Biome[] BIOMES = {
+            Biome.PLAINS, Biome.FOREST, Biome.DESERT, Biome.TAIGA,
+            Biome.SAVANNA, Biome.SNOWY_PLAINS, Biome.BIRCH_FOREST, Biome.JUNGLE
+    };
+
+    private final long seed;
+
+    /**
+     * Create a synthetic world.
+     *
+     * @param name The name of the world.
+     * @param seed The seed of the terrain.
+     */
+    public SyntheticWorld(String name, long seed) {
+        super(Material.STONE, Biome.PLAINS, MIN_HEIGHT, MAX_HEIGHT, SEA_LEVEL);
+        setName(name);
+        this.seed = seed;
+    }
+
+    /**
+     * Get the height of the surface block.
+     *
+     * @param x The x coordinate.
+     * @param z The z coordinate.
+     * @return The y coordinate of the surface block. (It can be below the sea level).
+     */
+    public int getTerrainHeight(int x, int z) {
+        double hills = getNoise(x, z, 64) * 24;
+        double detail = getNoise(x + 10_000, z - 10_000, 16) * 4;
+        return (int) Math.round(SEA_LEVEL + 4 + hills + detail);
+    }
+
+    @Override
+    public @NotNull BlockMock createBlock(@NotNull Coordinate coordinate) {
+        if (coordinate.y >= MAX_HEIGHT || coordinate.y < MIN_HEIGHT)
+            throw new ArrayIndexOutOfBoundsException("Y is outside of the world height.");
+        Location location = new Location(this, coordinate.x, coordinate.y, coordinate.z);
+        return new BlockMock(getMaterial(coordinate.x, coordinate.y, coordinate.z), location);
+    }
+
+    @Override
+    public int getHighestBlockYAt(int x, int z, @NotNull HeightMap heightMap) {
+        int height = getTerrainHeight(x, z);
+        if (heightMap == HeightMap.OCEAN_FLOOR || heightMap == HeightMap.OCEAN_FLOOR_WG)
+            return height;
+        return Math.max(height, SEA_LEVEL);
+    }
+
+    @Override
+    public int getHighestBlockYAt(@NotNull Location location, @NotNull HeightMap heightMap) {
+        return getHighestBlockYAt(location.getBlockX(), location.getBlockZ(), heightMap);
+    }
+
+    @Override
+    public @NotNull Block getHighestBlockAt(int x, int z, @NotNull HeightMap heightMap) {
+        return getBlockAt(x, getHighestBlockYAt(x, z, heightMap), z);
+    }
+
+    @Override
+    public @NotNull Block getHighestBlockAt(@NotNull Location location, @NotNull HeightMap heightMap) {
+        return getHighestBlockAt(location.getBlockX(), location.getBlockZ(), heightMap);
+    }
+
+    @Override
+    public int getHighestBlockYAt(int x, int z) {
+        return getHighestBlockYAt(x, z, HeightMap.MOTION_BLOCKING);
+    }
+
+    @Override
+    public @NotNull Block getHighestBlockAt(int x, int z) {
+        return getHighestBlockAt(x, z, HeightMap.MOTION_BLOCKING);
+    }
+
+    @Override
+    public @NotNull Biome getBiome(int x, int y, int z) {
+        if (getTerrainHeight(x, z) < SEA_LEVEL - 4) return Biome.OCEAN;
+        long cell = hash(Math.floorDiv(x, BIOME_CELL_SIZE), Math.floorDiv(z, BIOME_CELL_SIZE));
+        return BIOMES[(int) Math.floorMod(cell, (long) BIOMES.length)];
+    }
+
+    @Override
+    public @NotNull Biome getBiome(int x, int z) {
+        return getBiome(x, SEA_LEVEL, z);
+    }
+
+    @Override
+    public @NotNull Biome getBiome(@NotNull Location location) {
+        return getBiome(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    private Material getMaterial(int x, int y, int z) {
+        if (y == MIN_HEIGHT) return Material.BEDROCK;
+        int height = getTerrainHeight(x, z);
+        if (y < height - 3) return Material.STONE;
+        if (y < height) return Material.DIRT;
+        if (y == height) {
+            if (height <= SEA_LEVEL) return Material.SAND;
+            return switch (getBiome(x, y, z)) {
+                case DESERT -> Material.SAND;
+                case SNOWY_PLAINS -> Material.SNOW_BLOCK;
+                default -> Material.GRASS_BLOCK;
+            };
+        }
+        if (y <= SEA_LEVEL) return Material.WATER;
+        // Scatter some plants so the plant checks have something to skip.
+        if (y == height + 1 && Math.floorMod(hash(x, z), 7L) == 0) return Material.GRASS;
+        return Material.AIR;
+    }
+
+    /**
+     * Smooth value noise between -1 and 1.
+     */
+    private double getNoise(int x, int z, int scale) {
+        int cellX = Math.floorDiv(x, scale);
+        int cellZ = Math.floorDiv(z, scale);
+        double fractionX = smooth((double) Math.floorMod(x, scale) / scale);
+        double fractionZ = smooth((double) Math.floorMod(z, scale) / scale);
+
+        double top = lerp(getCorner(cellX, cellZ), getCorner(cellX + 1, cellZ), fractionX);
+        double bottom = lerp(getCorner(cellX, cellZ + 1), getCorner(cellX + 1, cellZ + 1), fractionX);
+        return lerp(top, bottom, fractionZ);
+    }
+
+    private double getCorner(int cellX, int cellZ) {
+        return (hash(cellX, cellZ) >>> 11) / (double) (1L << 53) * 2 - 1;
+    }
+
+    private long hash(int x, int z) {
+        long hash = seed ^ (x * 0x9E3779B97F4A7C15L) ^ (z * 0xC2B2AE3D27D4EB4FL);
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static double smooth(double value) {
+        return value * value * (3 - 2 * value);
+    }
+
+    private static double lerp(double from, double to, double fraction) {
+        return from + (to - from) * fraction;
+    }
+}
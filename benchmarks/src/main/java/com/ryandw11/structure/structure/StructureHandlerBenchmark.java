@@ -0,0 +1,54 @@
+package com.ryandw11.structure.structure;
+
+import com.ryandw11.structure.benchmarks.BenchmarkServer;
+import com.ryandw11.structure.utils.Pair;
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.SortedMap;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the distance check of {@link StructureHandler#validDistance(Structure, Location)} with a number of
+ * remembered structures.
+ *
+ * <p>Building a {@link StructureHandler} needs the plugin, so this measures the scan that the method runs while
+ * holding the lock. (This benchmark is in the same package to access it).</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StructureHandlerBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int spawnedStructures;
+
+    private SortedMap<Pair<Location, Long>, Structure> spawned;
+    private Location location;
+
+    @Setup
+    public void setup() {
+        // The same ordering as the map in StructureHandler.
+        spawned = new TreeMap<>(
+                Comparator.comparingDouble(o -> o.getLeft().distance(new Location(o.getLeft().getWorld(), 0, 0, 0)))
+        );
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < spawnedStructures; i++) {
+            Location spawnedLocation = new Location(BenchmarkServer.WORLD,
+                    random.nextInt(-20000, 20000), random.nextInt(0, 128), random.nextInt(-20000, 20000));
+            spawned.put(Pair.of(spawnedLocation, (long) i), null);
+        }
+        location = new Location(BenchmarkServer.WORLD, 1234, 64, -4321);
+    }
+
+    @Benchmark
+    public double validDistance() {
+        return StructureHandler.getClosestDistance(spawned, location, null);
+    }
+}
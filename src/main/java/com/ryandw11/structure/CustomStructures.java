@@ -7,15 +7,21 @@ import com.ryandw11.structure.citizens.CitizensNpcHook;
 import com.ryandw11.structure.commands.SCommand;
 import com.ryandw11.structure.commands.SCommandTab;
 import com.ryandw11.structure.ignoreblocks.*;
+import com.ryandw11.structure.io.ConfigCache;
 import com.ryandw11.structure.listener.ChunkLoad;
+import com.ryandw11.structure.listener.ContainerAccess;
 import com.ryandw11.structure.listener.PlayerJoin;
 import com.ryandw11.structure.loottables.LootTableHandler;
+import com.ryandw11.structure.metrics.MetricsDumpTask;
+import com.ryandw11.structure.metrics.SpawnMetrics;
 import com.ryandw11.structure.loottables.customitems.CustomItemManager;
 import com.ryandw11.structure.mythicalmobs.MMDisabled;
 import com.ryandw11.structure.mythicalmobs.MMEnabled;
 import com.ryandw11.structure.mythicalmobs.MythicalMobHook;
+import com.ryandw11.structure.schematic.ClipboardCache;
 import com.ryandw11.structure.schematic.StructureSignHandler;
 import com.ryandw11.structure.structure.StructureHandler;
+import com.ryandw11.structure.threading.TickBudgetController;
 import com.ryandw11.structure.utils.CSUtils;
 import me.clip.placeholderapi.PlaceholderAPI;
 import org.apache.commons.io.FileUtils;
@@ -65,10 +71,17 @@ public class CustomStructures extends JavaPlugin {
     private IgnoreBlocks blockIgnoreManager;
     private AddonHandler addonHandler;
     private StructureSignHandler structureSignHandler;
+    private ClipboardCache clipboardCache;
+    private ConfigCache configCache;
+    private SpawnMetrics spawnMetrics;
+    private MetricsDumpTask metricsDumpTask;
+    private TickBudgetController tickBudgetController;
 
     private Metrics metrics;
 
     private boolean debugMode;
+    private boolean lazyLootPopulation;
+    private boolean planSubSchematics;
 
     /**
      * Whether the plugin is enabled.
@@ -85,7 +98,7 @@ public class CustomStructures extends JavaPlugin {
     /**
      * The current version of the structure configuration format.
      */
-    public static final int CONFIG_VERSION = 9;
+    public static final int CONFIG_VERSION = 10;
 
     private static boolean papiEnabled = false;
 
@@ -124,6 +137,8 @@ public class CustomStructures extends JavaPlugin {
 
         loadFiles();
         debugMode = getConfig().getBoolean("debug");
+        lazyLootPopulation = getConfig().getBoolean("lazyLootPopulation");
+        planSubSchematics = getConfig().getBoolean("planSubSchematics", true);
 
         if (getConfig().getInt("configversion") < CONFIG_VERSION) {
             this.lootTableHandler = new LootTableHandler();
@@ -142,12 +157,17 @@ public class CustomStructures extends JavaPlugin {
         exportResource(getDataFolder(), "signcommands.yml", "");
 
         // Configure the handlers and managers.
+        this.configCache = new ConfigCache(this, getConfig().getBoolean("configCache", true));
+        this.spawnMetrics = new SpawnMetrics(getConfig().getBoolean("spawnMetrics", true));
+        this.tickBudgetController = new TickBudgetController(this);
+        this.tickBudgetController.runTaskTimer(this, 1, 1);
         this.customItemManager = new CustomItemManager(this, new File(getDataFolder() + File.separator + "items" + File.separator + "customitems.yml"), new File(getDataFolder() + File.separator + "items"));
         this.signCommandsHandler = new SignCommandsHandler(getDataFolder(), this);
         this.npcHandler = new NpcHandler(getDataFolder(), plugin);
         this.lootTableHandler = new LootTableHandler();
         this.addonHandler = new AddonHandler();
         this.structureSignHandler = new StructureSignHandler();
+        this.clipboardCache = new ClipboardCache(new File(getDataFolder(), "schematics"));
 
         // Run this after the loading of all plugins.
         Bukkit.getScheduler().scheduleSyncDelayedTask(this, this::initialize, 30);
@@ -177,6 +197,8 @@ public class CustomStructures extends JavaPlugin {
         }
 
         this.structureHandler = new StructureHandler(getConfig().getStringList("Structures"), this);
+        this.configCache.saveAsync();
+        startMetricsDump();
         getLogger().info("The plugin has been fully enabled with " + structureHandler.getStructures().size() + " structures.");
         getLogger().info(addonHandler.getCustomStructureAddons().size() + " addons were found.");
 
@@ -230,6 +252,8 @@ public class CustomStructures extends JavaPlugin {
             return;
         }
 
+        // Paste the structures that are still waiting, before the handlers they use are cleaned up.
+        tickBudgetController.shutdown();
         structureHandler.cleanup();
         npcHandler.cleanUp();
         signCommandsHandler.cleanUp();
@@ -294,16 +318,37 @@ public class CustomStructures extends JavaPlugin {
      * <p>This is for internal use only.</p>
      */
     public void reloadHandlers() {
+        this.lazyLootPopulation = getConfig().getBoolean("lazyLootPopulation");
+        this.planSubSchematics = getConfig().getBoolean("planSubSchematics", true);
+        this.clipboardCache.clear();
+        this.configCache.startReload();
         this.signCommandsHandler.cleanUp();
         this.signCommandsHandler = new SignCommandsHandler(getDataFolder(), this);
         this.npcHandler.cleanUp();
         this.npcHandler = new NpcHandler(getDataFolder(), plugin);
+        // The addons register their loot tables and items again before the structures load them.
+        this.lootTableHandler = new LootTableHandler();
+        this.addonHandler.handlePluginReload();
         this.structureHandler.cleanup();
         this.structureHandler = new StructureHandler(getConfig().getStringList("Structures"), this);
-        this.lootTableHandler = new LootTableHandler();
+        this.configCache.saveAsync();
+        this.spawnMetrics.setEnabled(getConfig().getBoolean("spawnMetrics", true));
+        this.tickBudgetController.reload();
+        startMetricsDump();
+    }
 
-        // Update the addons.
-        this.addonHandler.handlePluginReload();
+    /**
+     * Start writing the spawn metrics to a file (if enabled).
+     */
+    private void startMetricsDump() {
+        if (metricsDumpTask != null)
+            metricsDumpTask.cancel();
+        metricsDumpTask = null;
+
+        int interval = getConfig().getInt("metricsDumpInterval");
+        if (interval <= 0 || !spawnMetrics.isEnabled()) return;
+        metricsDumpTask = new MetricsDumpTask(this);
+        metricsDumpTask.runTaskTimerAsynchronously(this, interval * 20L, interval * 20L);
     }
 
     /**
@@ -321,6 +366,7 @@ public class CustomStructures extends JavaPlugin {
     private void loadManager() {
         Bukkit.getServer().getPluginManager().registerEvents(new ChunkLoad(), this);
         Bukkit.getServer().getPluginManager().registerEvents(new PlayerJoin(), this);
+        Bukkit.getServer().getPluginManager().registerEvents(new ContainerAccess(), this);
         Objects.requireNonNull(getCommand("customstructure")).setExecutor(new SCommand(this));
         Objects.requireNonNull(getCommand("customstructure")).setTabCompleter(new SCommandTab(this));
     }
@@ -717,6 +763,36 @@ public class CustomStructures extends JavaPlugin {
             getLogger().info("Please delete the backup folder that was created in the CustomStructures directory" +
                     " after you confirm everything was updated correctly.");
         }
+        // Convert to config version 10. (New options for the structure store, loot, config cache and spawning)
+        if (ver < 10) {
+            getLogger().info("Adding the new options to the config...");
+
+            Map<String, Object> newOptions = new LinkedHashMap<>();
+            newOptions.put("structureStore", "sqlite");
+            newOptions.put("memorySnapshotInterval", 300);
+            newOptions.put("lazyLootPopulation", false);
+            newOptions.put("planSubSchematics", true);
+            newOptions.put("configCache", true);
+            newOptions.put("watchFiles", false);
+            newOptions.put("spawnMetrics", true);
+            newOptions.put("metricsDumpInterval", 0);
+            newOptions.put("throttleSpawning", true);
+            newOptions.put("maxTickTime", 45);
+            newOptions.put("spawnTickBudget", 5);
+            newOptions.put("maxSpawnDelay", 30);
+
+            // Keep the options that were already set by hand.
+            for (Map.Entry<String, Object> option : newOptions.entrySet()) {
+                if (!getConfig().contains(option.getKey(), true))
+                    getConfig().set(option.getKey(), option.getValue());
+            }
+
+            getConfig().set("configversion", 10);
+            saveConfig();
+
+            getLogger().info("Successfully updated the config to the latest version (10).");
+            getLogger().info("See the config.yml in the plugin jar or on the wiki for a description of the new options.");
+        }
     }
 
     /**
@@ -752,6 +828,24 @@ public class CustomStructures extends JavaPlugin {
         return debugMode;
     }
 
+    /**
+     * If the loot of containers is only populated when the container is first accessed.
+     *
+     * @return If lazy loot population is enabled.
+     */
+    public boolean isLazyLootPopulation() {
+        return lazyLootPopulation;
+    }
+
+    /**
+     * If the sub-schematics of a structure are planned before the structure is pasted.
+     *
+     * @return If sub-schematic planning is enabled.
+     */
+    public boolean isPlanSubSchematics() {
+        return planSubSchematics;
+    }
+
     /**
      * Get the custom item manager.
      *
@@ -793,6 +887,42 @@ public class CustomStructures extends JavaPlugin {
         return structureSignHandler;
     }
 
+    /**
+     * Get the cache of schematic clipboards.
+     *
+     * @return The cache of schematic clipboards.
+     */
+    public ClipboardCache getClipboardCache() {
+        return clipboardCache;
+    }
+
+    /**
+     * Get the cache of parsed configuration files.
+     *
+     * @return The cache of parsed configuration files.
+     */
+    public ConfigCache getConfigCache() {
+        return configCache;
+    }
+
+    /**
+     * Get the metrics of the spawning of structures.
+     *
+     * @return The metrics of the spawning of structures.
+     */
+    public SpawnMetrics getSpawnMetrics() {
+        return spawnMetrics;
+    }
+
+    /**
+     * Get the controller that keeps the plugin within its budget of main thread time per tick.
+     *
+     * @return The tick budget controller.
+     */
+    public TickBudgetController getTickBudgetController() {
+        return tickBudgetController;
+    }
+
     /**
      * Get the hook for mythical mobs.
      *
@@ -31,7 +31,7 @@ public class NpcHandler {
         }
 
         try {
-            yamlConfiguration.load(new File(dataFolder, "npcs.yml"));
+            yamlConfiguration = plugin.getConfigCache().loadConfiguration(npcFile);
         } catch (Exception e) {
             plugin.getLogger().severe("There is a configuration error with: npcs.yml.");
             if (plugin.isDebug()) {
@@ -23,19 +23,20 @@ public class SignCommandsHandler {
      * @param plugin     The instance of the Custom Structures plugin.
      */
     public SignCommandsHandler(File dataFolder, CustomStructures plugin) {
-        YamlConfiguration yamlConfiguration = new YamlConfiguration();
         File signCommandsFile = new File(dataFolder, "signcommands.yml");
         if (!signCommandsFile.exists()) {
             plugin.getLogger().warning("Warning: Cannot find signcommands.yml. This might be a configuration error.");
             return;
         }
+        YamlConfiguration yamlConfiguration;
         try {
-            yamlConfiguration.load(signCommandsFile);
+            yamlConfiguration = plugin.getConfigCache().loadConfiguration(signCommandsFile);
         } catch (IOException | InvalidConfigurationException ex) {
             plugin.getLogger().severe("Error: Unable to load signcommands.yml file.");
             plugin.getLogger().severe("Please make sure signcommands.yml is configured correctly.");
             if (plugin.isDebug())
                 ex.printStackTrace();
+            return;
         }
 
         for (String sectionKey : yamlConfiguration.getKeys(false)) {
@@ -6,6 +6,7 @@ import com.ryandw11.structure.loottables.LootTable;
 import org.bukkit.plugin.Plugin;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * This class is responsible for extending CustomStructure functionality.
@@ -123,6 +124,21 @@ public final class CustomStructureAddon {
         return CustomStructures.getInstance().getStructureSignHandler().registerStructureSign(name, structureSign);
     }
 
+    /**
+     * Register a structure sign to be used, with a factory to create its instances.
+     * <p>This provides the same functionality as
+     * {@link com.ryandw11.structure.schematic.StructureSignHandler#registerStructureSign(String, Class, Supplier)}.</p>
+     *
+     * @param name          The name of the structure sign.
+     * @param structureSign The class of the structure sign.
+     * @param factory       The factory that creates a new instance of the structure sign.
+     * @param <T>           The type of the structure sign.
+     * @return If the registration was successful. (False if a sign with that name already exists).
+     */
+    public <T extends StructureSign> boolean registerStructureSign(String name, Class<T> structureSign, Supplier<T> factory) {
+        return CustomStructures.getInstance().getStructureSignHandler().registerStructureSign(name, structureSign, factory);
+    }
+
     /**
      * Register a custom LootTable for use.
      *
@@ -1,8 +1,8 @@
 package com.ryandw11.structure.api.structaddon;
 
 import com.ryandw11.structure.structure.Structure;
-import com.ryandw11.structure.utils.NumberStylizer;
 import com.ryandw11.structure.utils.Pair;
+import com.ryandw11.structure.utils.StylizedInt;
 import org.bukkit.Location;
 import org.jetbrains.annotations.NotNull;
 
@@ -29,7 +29,7 @@ import java.util.Objects;
  * <p>See {@link com.ryandw11.structure.schematic.structuresigns.MobSign} for an implementation example.</p>
  */
 public abstract class StructureSign {
-    private String[] arguments;
+    private StructureSignArgument[] arguments;
     private double signRotation;
     private double structureRotation;
     private Location structureMinimumLocation;
@@ -53,6 +53,25 @@ public abstract class StructureSign {
      * @param structureMaximumLocation The maximum location of the structure schematic.
      */
     public final void initialize(String[] arguments, double signRotation, double structureRotation, Location structureMinimumLocation, Location structureMaximumLocation) {
+        StructureSignArgument[] parsedArguments = new StructureSignArgument[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            parsedArguments[i] = StructureSignArgument.parse(arguments[i]);
+        }
+        initialize(parsedArguments, signRotation, structureRotation, structureMinimumLocation, structureMaximumLocation);
+    }
+
+    /**
+     * Initializes the structure signs with arguments that were already parsed.
+     *
+     * <p>Internal Use Only.</p>
+     *
+     * @param arguments                The array of parsed arguments.
+     * @param signRotation             The rotation of the sign.
+     * @param structureRotation        The rotation of the structure.
+     * @param structureMinimumLocation The minimum location of structure schematic.
+     * @param structureMaximumLocation The maximum location of the structure schematic.
+     */
+    public final void initialize(StructureSignArgument[] arguments, double signRotation, double structureRotation, Location structureMinimumLocation, Location structureMaximumLocation) {
         this.arguments = arguments;
         this.signRotation = signRotation;
         this.structureRotation = structureRotation;
@@ -119,6 +138,18 @@ public abstract class StructureSign {
         return !arguments[argNumber].isEmpty();
     }
 
+    /**
+     * Get the parsed form of an argument.
+     *
+     * @param argNumber The argument number. (0 - 2)
+     * @return The parsed argument.
+     * @throws IndexOutOfBoundsException If argNumber is not within the range of 0 to 2.
+     */
+    public final StructureSignArgument getArgument(int argNumber) {
+        Objects.checkIndex(argNumber, arguments.length);
+        return arguments[argNumber];
+    }
+
     /**
      * Get an argument as a String.
      *
@@ -128,7 +159,7 @@ public abstract class StructureSign {
      */
     public final String getStringArgument(int argNumber) {
         Objects.checkIndex(argNumber, arguments.length);
-        return arguments[argNumber];
+        return arguments[argNumber].getRaw();
     }
 
     /**
@@ -143,7 +174,7 @@ public abstract class StructureSign {
     public final int getIntArgument(int argNumber) {
         Objects.checkIndex(argNumber, arguments.length);
 
-        return Integer.parseInt(arguments[argNumber]);
+        return arguments[argNumber].getInt();
     }
 
     /**
@@ -173,7 +204,7 @@ public abstract class StructureSign {
      */
     public final double getDoubleArgument(int argNumber) {
         Objects.checkIndex(argNumber, arguments.length);
-        return Double.parseDouble(arguments[argNumber]);
+        return arguments[argNumber].getDouble();
     }
 
     /**
@@ -204,7 +235,7 @@ public abstract class StructureSign {
      */
     public final Pair<Integer, Integer> getRangedIntArgument(int argNumber) {
         Objects.checkIndex(argNumber, arguments.length);
-        return NumberStylizer.parseRangedInput(arguments[argNumber]);
+        return getRange(argNumber).toPair();
     }
 
     /**
@@ -237,7 +268,7 @@ public abstract class StructureSign {
      */
     public final int calculateRangedIntArgument(int argNumber) {
         Objects.checkIndex(argNumber, arguments.length);
-        return NumberStylizer.retrieveRangedInput(arguments[argNumber]);
+        return getRange(argNumber).sample();
     }
 
     /**
@@ -276,6 +307,24 @@ public abstract class StructureSign {
      */
     public final int getStylizedIntArgument(int argNumber) {
         Objects.checkIndex(argNumber, arguments.length);
-        return NumberStylizer.getStylizedInt(arguments[argNumber]);
+        StylizedInt stylizedInt = arguments[argNumber].getStylizedInt();
+        if (stylizedInt == null)
+            throw new NumberFormatException("Invalid Number Format: Number 1 is greater than Number 2!");
+        return stylizedInt.sample();
+    }
+
+    /**
+     * Get the range of an argument.
+     *
+     * @param argNumber The argument number. (0 - 2)
+     * @return The range.
+     * @throws NumberFormatException If the argument is not a valid integer range.
+     */
+    private StylizedInt getRange(int argNumber) {
+        Objects.checkIndex(argNumber, arguments.length);
+        StylizedInt range = arguments[argNumber].getRange();
+        if (range == null)
+            throw new NumberFormatException("Invalid Number Format: Input is not a range.");
+        return range;
     }
 }
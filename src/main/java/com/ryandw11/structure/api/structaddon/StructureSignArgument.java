@@ -0,0 +1,141 @@
+package com.ryandw11.structure.api.structaddon;
+
+import com.ryandw11.structure.utils.StylizedInt;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An argument of a {@link StructureSign} that has already been parsed into the types a structure sign can ask for.
+ *
+ * <p>The text on signs repeats every time a schematic is pasted, so the plugin parses each distinct line once
+ * and reuses the argument. This class is immutable.</p>
+ */
+public final class StructureSignArgument {
+    /**
+     * An empty argument.
+     */
+    public static final StructureSignArgument EMPTY = new StructureSignArgument("");
+
+    private final String raw;
+    private final boolean validInt;
+    private final int intValue;
+    private final boolean validDouble;
+    private final double doubleValue;
+    private final StylizedInt range;
+    private final StylizedInt stylizedInt;
+
+    private StructureSignArgument(String raw) {
+        this.raw = raw;
+
+        int parsedInt = 0;
+        boolean isInt = true;
+        try {
+            parsedInt = Integer.parseInt(raw);
+        } catch (NumberFormatException ex) {
+            isInt = false;
+        }
+        this.validInt = isInt;
+        this.intValue = parsedInt;
+
+        double parsedDouble = 0;
+        boolean isDouble = true;
+        try {
+            parsedDouble = Double.parseDouble(raw);
+        } catch (NumberFormatException ex) {
+            isDouble = false;
+        }
+        this.validDouble = isDouble;
+        this.doubleValue = parsedDouble;
+
+        StylizedInt parsedRange;
+        try {
+            parsedRange = StylizedInt.parseRange(raw);
+        } catch (NumberFormatException ex) {
+            parsedRange = null;
+        }
+        this.range = parsedRange;
+
+        StylizedInt parsedStylizedInt;
+        try {
+            parsedStylizedInt = StylizedInt.parse(raw);
+        } catch (NumberFormatException ex) {
+            parsedStylizedInt = null;
+        }
+        this.stylizedInt = parsedStylizedInt;
+    }
+
+    /**
+     * Parse an argument.
+     *
+     * @param raw The text of the argument.
+     * @return The parsed argument.
+     */
+    public static StructureSignArgument parse(@NotNull String raw) {
+        return raw.isEmpty() ? EMPTY : new StructureSignArgument(raw);
+    }
+
+    /**
+     * Get the text of the argument.
+     *
+     * @return The text of the argument.
+     */
+    public String getRaw() {
+        return raw;
+    }
+
+    /**
+     * Check if the argument is empty.
+     *
+     * @return If the argument is empty.
+     */
+    public boolean isEmpty() {
+        return raw.isEmpty();
+    }
+
+    /**
+     * Get the argument as an Integer.
+     *
+     * @return The argument as an Integer.
+     * @throws NumberFormatException If the argument is not a valid integer.
+     */
+    public int getInt() {
+        if (!validInt)
+            throw new NumberFormatException("For input string: \"" + raw + "\"");
+        return intValue;
+    }
+
+    /**
+     * Get the argument as a Double.
+     *
+     * @return The argument as a Double.
+     * @throws NumberFormatException If the argument is not a valid Double.
+     */
+    public double getDouble() {
+        if (!validDouble)
+            throw new NumberFormatException("For input string: \"" + raw + "\"");
+        return doubleValue;
+    }
+
+    /**
+     * Get the argument as an integer range.
+     *
+     * @return The argument as an integer range. (Null if it is not a valid range).
+     */
+    @Nullable
+    public StylizedInt getRange() {
+        return range;
+    }
+
+    /**
+     * Get the argument as a stylized integer.
+     *
+     * <p>Like {@link com.ryandw11.structure.utils.NumberStylizer#getStylizedInt(String)}, an argument
+     * that cannot be parsed is treated as 1.</p>
+     *
+     * @return The argument as a stylized integer. (Null if the first number of the range is greater than the second).
+     */
+    @Nullable
+    public StylizedInt getStylizedInt() {
+        return stylizedInt;
+    }
+}
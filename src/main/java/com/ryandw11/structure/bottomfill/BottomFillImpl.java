@@ -1,5 +1,6 @@
 package com.ryandw11.structure.bottomfill;
 
+import com.ryandw11.structure.schematic.SpawnContext;
 import com.ryandw11.structure.structure.Structure;
 import com.sk89q.worldedit.math.transform.AffineTransform;
 import org.bukkit.Location;
@@ -23,4 +24,17 @@ public interface BottomFillImpl {
      * @param transform     The affine transformation applied on this structure.
      */
     void performFill(Structure structure, Location spawnLocation, Location minLoc, Location maxLoc, AffineTransform transform);
+
+    /**
+     * Called by the plugin when a bottom fill should be performed for a paste.
+     *
+     * <p>This will only be called if the BottomFill option is enabled. By default, this calls
+     * {@link #performFill(Structure, Location, Location, Location, AffineTransform)} with the values of the context.</p>
+     *
+     * @param context The context of the paste. (The bounds of the paste are always known).
+     */
+    default void performFill(SpawnContext context) {
+        performFill(context.getStructure(), context.getOrigin(), context.getMinimumPoint(), context.getMaximumPoint(),
+                context.getTransform());
+    }
 }
\ No newline at end of file
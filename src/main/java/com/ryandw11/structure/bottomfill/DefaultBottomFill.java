@@ -1,42 +1,75 @@
 package com.ryandw11.structure.bottomfill;
 
 import com.ryandw11.structure.CustomStructures;
+import com.ryandw11.structure.metrics.SpawnStage;
+import com.ryandw11.structure.schematic.CachedSchematic;
+import com.ryandw11.structure.schematic.SpawnContext;
 import com.ryandw11.structure.structure.Structure;
-import com.sk89q.worldedit.extent.clipboard.Clipboard;
-import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
-import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormats;
-import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
-import com.sk89q.worldedit.math.BlockVector2;
-import com.sk89q.worldedit.math.BlockVector3;
-import com.sk89q.worldedit.math.Vector3;
+import com.ryandw11.structure.threading.TickBudgetController;
 import com.sk89q.worldedit.math.transform.AffineTransform;
-import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.scheduler.BukkitRunnable;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.Optional;
-import java.util.Queue;
+import java.util.*;
 
 /**
  * The default implementation for the bottom fill feature.
+ *
+ * <p>The fill is done in three steps:</p>
+ * <ol>
+ *     <li>The ground plane of the schematic is translated from the footprint cached by the
+ *     {@link CachedSchematic} off of the main thread.</li>
+ *     <li>The chunks under the ground plane are captured as {@link ChunkSnapshot}s and the depth of every
+ *     column is worked out from the snapshots off of the main thread.</li>
+ *     <li>The blocks are placed on the main thread, chunk by chunk and section by section. The number of blocks placed
+ *     each tick adapts to how long the previous tick took, and ticks where the plugin has used up its
+ *     {@link TickBudgetController budget} are skipped.</li>
+ * </ol>
  */
 public class DefaultBottomFill extends BukkitRunnable implements BottomFillImpl {
 
+    // The maximum number of blocks that are filled below a ground point.
+    private static final int MAX_DEPTH = 64;
+    // The block budget per tick.
+    private static final int INITIAL_BUDGET = 512;
+    private static final int MIN_BUDGET = 64;
+    private static final int MAX_BUDGET = 16384;
+    // The time the fill may take every tick. (2.5ms)
+    private static final long TARGET_NANOS_PER_TICK = 2_500_000;
+    // The number of ticks that can be skipped in a row when the plugin is out of budget.
+    private static final int MAX_SKIPPED_TICKS = 20;
+
     private Structure structure;
     private Location spawnLocation;
     private Material fillMaterial;
     private int minY;
-    private Queue<BlockVector2> groundPlane; // The 2D plane which the blocks will be ground placed on
+
+    // The chunks that are waiting to be filled.
+    private Queue<ChunkFill> chunkFills;
+    private ChunkFill currentChunk;
+    private int budget = INITIAL_BUDGET;
+    private int skippedTicks;
+    // The time spent on the main thread, recorded in the spawn metrics once the fill is done.
+    private long mainThreadNanos;
 
     @Override
     public void performFill(Structure structure, Location spawnLocation, Location minLoc, Location maxLoc, AffineTransform transform) {
+        performFill(structure, structure.getSchematic(), spawnLocation, minLoc, transform);
+    }
+
+    @Override
+    public void performFill(SpawnContext context) {
+        Structure structure = context.getStructure();
+        String schematic = context.getSchematic() == null ? structure.getSchematic() : context.getSchematic();
+        performFill(structure, schematic, context.getOrigin(), Objects.requireNonNull(context.getMinimumPoint()), context.getTransform());
+    }
+
+    private void performFill(Structure structure, String schematic, Location spawnLocation, Location minLoc, AffineTransform transform) {
 
         Optional<Material> fillMaterial = structure.getBottomSpaceFill().getFillMaterial(spawnLocation.getBlock().getBiome());
         if (fillMaterial.isPresent()) {
@@ -45,97 +78,263 @@ public class DefaultBottomFill extends BukkitRunnable implements BottomFillImpl
 
         this.structure = structure;
         this.spawnLocation = spawnLocation;
-        this.groundPlane = new LinkedList<>();
         this.minY = minLoc.getBlockY();
 
-        Bukkit.getScheduler().runTaskAsynchronously(CustomStructures.getInstance(), () -> {
+        CustomStructures plugin = CustomStructures.getInstance();
+        TickBudgetController controller = plugin.getTickBudgetController();
+        controller.runAsync(() -> {
 
             // ---- This part of code should be safe to run async ----
 
             // To get the ground plane, we need to read the schematic
-            File file = new File(CustomStructures.getInstance().getDataFolder() + "/schematics/" + structure.getSchematic());
-            ClipboardFormat format = ClipboardFormats.findByFile(file);
-            if (format == null) {
-                CustomStructures.getInstance().getLogger().warning("Invalid schematic format for schematic " + structure.getSchematic());
-                CustomStructures.getInstance().getLogger().warning("Please create a valid schematic using the in-game commands");
+            CachedSchematic cachedSchematic;
+            try {
+                cachedSchematic = plugin.getClipboardCache().getSchematic(schematic);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Some unknown error occurs while reading " + schematic);
+                plugin.getLogger().warning("Bottom fill will not be applied to structure " + structure.getName());
+                return;
+            }
+            if (cachedSchematic == null) {
+                plugin.getLogger().warning("Invalid schematic format for schematic " + schematic);
+                plugin.getLogger().warning("Please create a valid schematic using the in-game commands");
                 return;
             }
-            try (ClipboardReader reader = format.getReader(new FileInputStream(file))) {
-                Clipboard clipboard = reader.read();
 
-                // The new origin point which the structure is pasted onto
-                int oX = spawnLocation.getBlockX();
-                int oY = spawnLocation.getBlockY();
-                int oZ = spawnLocation.getBlockZ();
+            Map<Long, List<Long>> groundPlane = getGroundPlane(cachedSchematic, transform);
+            if (groundPlane.isEmpty()) return;
 
-                int clipboardMinY = clipboard.getMinimumPoint().getBlockY();
+            // ---- Snapshots of the chunks must be taken on the main thread ----
 
-                for (int x = clipboard.getMinimumPoint().getBlockX(); x <= clipboard.getMaximumPoint().getBlockX(); x++) {
-                    for (int z = clipboard.getMinimumPoint().getBlockZ(); z <= clipboard.getMaximumPoint().getBlockZ(); z++) {
-                        // Loop through bottom plane of the region
+            controller.submit(() -> {
+                long snapshotStart = System.nanoTime();
+                World world = spawnLocation.getWorld();
+                if (world == null) {
+                    logWorldNotLoaded();
+                    return;
+                }
 
-                        if (clipboard.getBlock(BlockVector3.at(x, clipboardMinY, z)).getBlockType().getMaterial().isMovementBlocker()) {
-                            // Find the certain point of the bottom plane which bottom fill should start at
+                Map<Long, ChunkSnapshot> snapshots = new LinkedHashMap<>();
+                for (long chunkKey : groundPlane.keySet()) {
+                    Chunk chunk = world.getChunkAt(unpackHigh(chunkKey), unpackLow(chunkKey));
+                    snapshots.put(chunkKey, chunk.getChunkSnapshot(false, false, false));
+                }
+                Set<Material> ignoreBlocks = getIgnoredMaterials();
+                int worldMinHeight = world.getMinHeight();
+                mainThreadNanos += System.nanoTime() - snapshotStart;
 
-                            BlockVector3 groundPoint = BlockVector3.at(x, clipboardMinY, z);
+                // ---- Work out the depth of every column from the snapshots ----
+
+                controller.runAsync(() -> {
+                    Queue<ChunkFill> fills = new ArrayDeque<>();
+                    for (Map.Entry<Long, ChunkSnapshot> entry : snapshots.entrySet()) {
+                        ChunkFill fill = computeChunkFill(entry.getValue(), groundPlane.get(entry.getKey()),
+                                ignoreBlocks, worldMinHeight);
+                        if (fill != null)
+                            fills.add(fill);
+                    }
+                    if (fills.isEmpty()) return;
 
-                            groundPoint = groundPoint.subtract(clipboard.getOrigin()); // Translate point back to origin (0,0)
-                            Vector3 transformed = transform.apply(groundPoint.toVector3()); // Apply transformation (rotation, etc.)
-                            groundPoint = transformed.add(oX, oY, oZ).toBlockPoint(); // Translate point back (to new origin)
+                    // ---- Then do the block placement on the main thread ----
 
-                            groundPlane.add(groundPoint.toBlockVector2());
+                    controller.submit(() -> {
+                        this.chunkFills = fills;
+                        // The scheduler does not accept tasks while the plugin is disabled, so place everything at once.
+                        if (controller.isShuttingDown()) {
+                            fillAll();
+                            return;
                         }
-                    }
-                }
-            } catch (FileNotFoundException e) {
-                CustomStructures.getInstance().getLogger().warning("Cannot find schematic file " + file.getPath());
-                CustomStructures.getInstance().getLogger().warning("Bottom fill will not be applied to structure " + structure.getName());
-                return;
-            } catch (IOException e) {
-                CustomStructures.getInstance().getLogger().warning("Some unknown error occurs while reading " + file.getPath());
-                CustomStructures.getInstance().getLogger().warning("Bottom fill will not be applied to structure " + structure.getName());
-                return;
+                        runTaskTimer(plugin, 0, 1);
+                    });
+                });
+            });
+        });
+    }
+
+    /**
+     * Find the ground plane of a schematic in the world, grouped by chunk.
+     *
+     * @param schematic The schematic.
+     * @param transform The transform of the paste.
+     * @return The x and z coordinates of the ground points (packed) by the chunk they are in (packed).
+     */
+    private Map<Long, List<Long>> getGroundPlane(CachedSchematic schematic, AffineTransform transform) {
+        // The new origin point which the structure is pasted onto
+        int oX = spawnLocation.getBlockX();
+        int oZ = spawnLocation.getBlockZ();
+
+        // The footprint is cached by the schematic, so it only has to be translated to the paste location.
+        Map<Long, List<Long>> groundPlane = new LinkedHashMap<>();
+        for (long column : schematic.getBottomFootprint(transform)) {
+            int x = oX + CachedSchematic.getFootprintX(column);
+            int z = oZ + CachedSchematic.getFootprintZ(column);
+            groundPlane.computeIfAbsent(pack(x >> 4, z >> 4), key -> new ArrayList<>()).add(pack(x, z));
+        }
+        return groundPlane;
+    }
+
+    /**
+     * Work out the blocks to fill in a chunk.
+     *
+     * @param snapshot       The snapshot of the chunk.
+     * @param columns        The ground points in the chunk.
+     * @param ignoreBlocks   The blocks that can be replaced by the fill.
+     * @param worldMinHeight The minimum height of the world.
+     * @return The blocks to fill in the chunk. (Null if there are none).
+     */
+    private ChunkFill computeChunkFill(ChunkSnapshot snapshot, List<Long> columns, Set<Material> ignoreBlocks, int worldMinHeight) {
+        boolean ignoreWater = structure.getStructureProperties().shouldIgnoreWater();
+        int lowestY = Math.max(worldMinHeight, minY - MAX_DEPTH);
+
+        int[] blocks = new int[columns.size() * MAX_DEPTH];
+        int size = 0;
+        for (long column : columns) {
+            int localX = unpackHigh(column) & 15;
+            int localZ = unpackLow(column) & 15;
+            for (int y = minY - 1; y >= lowestY; y--) { // Fill the bottom space of the ground point down to 64 blocks
+                Material type = snapshot.getBlockType(localX, y, localZ);
+                boolean shouldFill =
+                        // If the block is empty
+                        type.isAir() ||
+                                // Or if the block is in the list of ignore blocks.
+                                ignoreBlocks.contains(type) ||
+                                // Or if it is water (if it is set to be ignored)
+                                (ignoreWater && type == Material.WATER);
+                if (!shouldFill) break;
+                blocks[size++] = ChunkFill.packBlock(localX, y - worldMinHeight, localZ);
             }
+        }
+        if (size == 0) return null;
 
-            // ---- Then do the block placement on the main thread ----
+        // Sorting the packed blocks groups them by chunk section.
+        int[] sorted = Arrays.copyOf(blocks, size);
+        Arrays.sort(sorted);
+        return new ChunkFill(snapshot.getX(), snapshot.getZ(), worldMinHeight, sorted);
+    }
 
-            Bukkit.getScheduler().runTask(CustomStructures.getInstance(), () -> runTaskTimer(CustomStructures.getInstance(), 0, 2));
-        });
+    private Set<Material> getIgnoredMaterials() {
+        Set<Material> ignoreBlocks = EnumSet.noneOf(Material.class);
+        ignoreBlocks.addAll(CustomStructures.getInstance().getBlockIgnoreManager().getBlocks());
+        return ignoreBlocks;
     }
 
     @Override
     public void run() {
         World world = spawnLocation.getWorld();
         if (world == null) {
-            CustomStructures.getInstance().getLogger().warning("The world in which the structure " + structure.getName() + " spawns is not loaded");
-            CustomStructures.getInstance().getLogger().warning("Bottom fill will not be applied to structure " + structure.getName());
+            logWorldNotLoaded();
             cancel();
             return;
         }
 
-        for (int i = 0; i < 8; i++) { // Select 8 ground points in a single tick
-            BlockVector2 groundPoint = groundPlane.poll();
-            if (groundPoint == null) {
-                cancel();
-                return;
-            }
+        // Wait for a tick where the plugin has not used up its budget yet (but do not wait forever).
+        TickBudgetController controller = CustomStructures.getInstance().getTickBudgetController();
+        long remainingNanos = controller.getRemainingBudgetNanos();
+        if (remainingNanos == 0 && skippedTicks < MAX_SKIPPED_TICKS) {
+            skippedTicks++;
+            controller.recordSkippedRun();
+            return;
+        }
+        skippedTicks = 0;
+        long targetNanos = Math.max(1, Math.min(TARGET_NANOS_PER_TICK, remainingNanos));
 
-            int y = minY - 1;
-            int x = groundPoint.getBlockX();
-            int z = groundPoint.getBlockZ();
-            for (int j = 0; j < 64; j++) { // Fill the bottom space of the selected ground points down to 64 blocks
-                boolean shouldFill =
-                        // If the block is empty
-                        world.getBlockAt(x, y, z).isEmpty() ||
-                                // Or if the block is in the list of ignore blocks.
-                                CustomStructures.getInstance().getBlockIgnoreManager().getBlocks().contains(world.getBlockAt(x, y, z).getType()) ||
-                                // Or if it is water (if it is set to be ignored)
-                                (structure.getStructureProperties().shouldIgnoreWater() && world.getBlockAt(x, y, z).getType() == Material.WATER);
-                if (shouldFill) {
-                    world.getBlockAt(x, y--, z).setType(fillMaterial);
-                } else break;
+        long start = System.nanoTime();
+        int placed = 0;
+        while (placed < budget) {
+            if (currentChunk == null || !currentChunk.hasNext()) {
+                currentChunk = chunkFills.poll();
+                if (currentChunk == null) {
+                    long elapsed = System.nanoTime() - start;
+                    mainThreadNanos += elapsed;
+                    controller.recordWork(elapsed);
+                    CustomStructures.getInstance().getSpawnMetrics().record(structure.getName(), SpawnStage.BOTTOM_FILL, mainThreadNanos);
+                    cancel();
+                    return;
+                }
+                currentChunk.chunk = world.getChunkAt(currentChunk.chunkX, currentChunk.chunkZ);
             }
+            currentChunk.placeNext(fillMaterial);
+            placed++;
+        }
+
+        // Adapt the budget to how long this tick took.
+        long elapsed = System.nanoTime() - start;
+        mainThreadNanos += elapsed;
+        controller.recordWork(elapsed);
+        if (elapsed > targetNanos) {
+            budget = Math.max(MIN_BUDGET, budget / 2);
+        } else if (elapsed < targetNanos / 2) {
+            budget = Math.min(MAX_BUDGET, budget * 2);
+        }
+    }
+
+    /**
+     * Place all of the remaining blocks right away.
+     */
+    private void fillAll() {
+        World world = spawnLocation.getWorld();
+        if (world == null) {
+            logWorldNotLoaded();
+            return;
+        }
+        long start = System.nanoTime();
+        ChunkFill fill;
+        while ((fill = chunkFills.poll()) != null) {
+            fill.chunk = world.getChunkAt(fill.chunkX, fill.chunkZ);
+            while (fill.hasNext())
+                fill.placeNext(fillMaterial);
         }
+        mainThreadNanos += System.nanoTime() - start;
+        CustomStructures.getInstance().getSpawnMetrics().record(structure.getName(), SpawnStage.BOTTOM_FILL, mainThreadNanos);
     }
 
-}
\ No newline at end of file
+    private void logWorldNotLoaded() {
+        CustomStructures.getInstance().getLogger().warning("The world in which the structure " + structure.getName() + " spawns is not loaded");
+        CustomStructures.getInstance().getLogger().warning("Bottom fill will not be applied to structure " + structure.getName());
+    }
+
+    private static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    private static int unpackHigh(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    private static int unpackLow(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * The blocks to fill in a single chunk.
+     */
+    private static class ChunkFill {
+        private final int chunkX;
+        private final int chunkZ;
+        private final int worldMinHeight;
+        // The blocks packed as (y << 8 | x << 4 | z), sorted so that they are grouped by section.
+        private final int[] blocks;
+        private int index;
+        private Chunk chunk;
+
+        private ChunkFill(int chunkX, int chunkZ, int worldMinHeight, int[] blocks) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.worldMinHeight = worldMinHeight;
+            this.blocks = blocks;
+        }
+
+        private static int packBlock(int localX, int relativeY, int localZ) {
+            return relativeY << 8 | localX << 4 | localZ;
+        }
+
+        private boolean hasNext() {
+            return index < blocks.length;
+        }
+
+        private void placeNext(Material material) {
+            int block = blocks[index++];
+            chunk.getBlock((block >> 4) & 15, (block >> 8) + worldMinHeight, block & 15).setType(material);
+        }
+    }
+}
@@ -30,6 +30,7 @@ public class SCommand implements CommandExecutor {
         this.commandHandler.registerCommand(new AddonsCommand(plugin), "addon", "addons");
         this.commandHandler.registerCommand(new SetLoottableCommand(plugin), "setloottable", "setloot", "setlt");
         this.commandHandler.registerCommand(new TestLootTableCommand(plugin), "testloottable", "testloot", "testlt");
+        this.commandHandler.registerCommand("stats", new StatsCommand(plugin));
     }
 
     @Override
@@ -72,6 +73,8 @@ public class SCommand implements CommandExecutor {
                         "&3/cstructure setLootTable - &2Easily specify a loot table for a container."));
                 sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
                         "&3/cstructure testLootTable - &2Test a loot table on a container."));
+                sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
+                        "&3/cstructure stats [name] - &2See how long the structures take to spawn."));
             } else {
                 sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
                         "&3=============[&2CustomStructures&3]============="));
@@ -81,7 +84,7 @@ public class SCommand implements CommandExecutor {
                 sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
                         "&3Github wiki:&2 https://github.com/ryandw11/CustomStructures/wiki"));
                 sender.sendMessage(ChatColor.translateAlternateColorCodes('&', "&3Commands:"));
-                sender.sendMessage(ChatColor.translateAlternateColorCodes('&', "&3/cstructure reload - &2Reload the plugin."));
+                sender.sendMessage(ChatColor.translateAlternateColorCodes('&', "&3/cstructure reload [name] - &2Reload the plugin or a single structure."));
                 sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
                         "&3/cstructure test {name} - &2Paste the defined structure."));
                 sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
@@ -21,7 +21,8 @@ public class SCommandTab implements TabCompleter {
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command cmd, @NotNull String s, String[] args) {
         List<String> completions = new ArrayList<>();
-        if (args.length == 2 && (args[0].equalsIgnoreCase("test") || args[0].equalsIgnoreCase("testspawn") || args[0].equalsIgnoreCase("nearby"))) {
+        if (args.length == 2 && (args[0].equalsIgnoreCase("test") || args[0].equalsIgnoreCase("testspawn") || args[0].equalsIgnoreCase("nearby")
+                || args[0].equalsIgnoreCase("reload") || args[0].equalsIgnoreCase("stats"))) {
             completions = new ArrayList<>(plugin.getStructureHandler().getStructureNames());
             completions = getApplicableTabCompleter(args[1], completions);
         } else if (args.length == 2 && (
@@ -36,7 +37,7 @@ public class SCommandTab implements TabCompleter {
             completions = getApplicableTabCompleter(args[1], completions);
         } else if (args.length <= 1) {
             completions = new ArrayList<>(Arrays.asList("reload", "test", "list", "addItem", "checkKey", "getItem",
-                    "createSchem", "create", "nearby", "testspawn", "addons", "setLootTable", "testLootTable"));
+                    "createSchem", "create", "nearby", "testspawn", "addons", "setLootTable", "testLootTable", "stats"));
             completions = getApplicableTabCompleter(args.length == 1 ? args[0] : "", completions);
         }
         Collections.sort(completions);
@@ -79,7 +79,7 @@ public class NearbyCommand implements SubCommand {
         }
 
         NearbyStructuresRequest finalNearbyStructuresRequest = nearbyStructuresRequest;
-        plugin.getStructureHandler().getStructureDatabaseHandler().get().findNearby(nearbyStructuresRequest)
+        plugin.getStructureHandler().getStructureDatabaseHandler().get().findNearby(nearbyStructuresRequest, p.getUniqueId())
                 .thenAccept(response -> {
                     if (!response.hasEntries()) {
                         p.sendMessage(ChatColor.RED + "Could not find any nearby structures!");
@@ -10,8 +10,11 @@ import org.bukkit.command.CommandSender;
  * The reload command for the plugin.
  *
  * <code>
- * /cstruct reload
+ * /cstruct reload [structure]
  * </code>
+ *
+ * <p>If a structure is given, only that structure and its loot tables are reloaded (along with the
+ * structures that share those loot tables). The structures that spawned so far are kept.</p>
  */
 public class ReloadCommand implements SubCommand {
 
@@ -29,6 +32,23 @@ public class ReloadCommand implements SubCommand {
                 sender.sendMessage(ChatColor.RED + "Please check the console for errors during startup.");
                 return false;
             }
+            if (args.length == 1) {
+                // The files are parsed off of the main thread, the result comes back on the main thread.
+                plugin.getStructureHandler().reloadStructure(args[0]).whenComplete((reloaded, ex) -> {
+                    if (ex == null && reloaded) {
+                        sender.sendMessage(ChatColor.GREEN + "The structure " + args[0] + " has been reloaded!");
+                        plugin.getLogger().info("Structure " + args[0] + " reloaded!");
+                        return;
+                    }
+                    if (ex != null) {
+                        plugin.getLogger().severe("An error was encountered when reloading the structure " + args[0] + ".");
+                        if (plugin.isDebug())
+                            ex.printStackTrace();
+                    }
+                    sender.sendMessage(ChatColor.RED + "Unable to reload the structure " + args[0] + ". Make sure it is in the config and check the console for errors.");
+                });
+                return false;
+            }
             plugin.reloadConfig();
             sender.sendMessage(ChatColor.GREEN + "The plugin has been reloaded!");
             plugin.getLogger().info("Plugin reloaded!");
@@ -0,0 +1,107 @@
+package com.ryandw11.structure.commands.cstruct;
+
+import com.ryandw11.structure.CustomStructures;
+import com.ryandw11.structure.commands.SubCommand;
+import com.ryandw11.structure.metrics.LatencyHistogram;
+import com.ryandw11.structure.metrics.SpawnCounter;
+import com.ryandw11.structure.metrics.SpawnMetrics;
+import com.ryandw11.structure.metrics.SpawnStage;
+import com.ryandw11.structure.metrics.StructureMetrics;
+import com.ryandw11.structure.threading.TickBudgetController;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+
+import java.util.List;
+
+/**
+ * The stats command for the plugin.
+ *
+ * <p>Permission: customstructures.stats</p>
+ *
+ * <code>
+ * /cstruct stats [structure|reset]
+ * </code>
+ */
+public class StatsCommand implements SubCommand {
+
+    private static final int MAX_LISTED_STRUCTURES = 10;
+
+    private final CustomStructures plugin;
+
+    public StatsCommand(CustomStructures plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean subCommand(CommandSender sender, Command cmd, String s, String[] args) {
+        if (!sender.hasPermission("customstructures.stats")) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission for this command!");
+            return true;
+        }
+        if (args.length > 1) {
+            sender.sendMessage(ChatColor.RED + "Invalid arguments. /cstruct stats [structure|reset]");
+            return true;
+        }
+
+        SpawnMetrics metrics = plugin.getSpawnMetrics();
+        if (!metrics.isEnabled()) {
+            sender.sendMessage(ChatColor.RED + "Spawn metrics are disabled. Enable spawnMetrics in the config to use this command.");
+            return true;
+        }
+
+        if (args.length == 0) {
+            showSummary(sender, metrics);
+        } else if (args[0].equalsIgnoreCase("reset")) {
+            metrics.reset();
+            sender.sendMessage(ChatColor.GREEN + "The spawn metrics have been reset.");
+        } else {
+            StructureMetrics structureMetrics = metrics.getAllStructureMetrics().stream()
+                    .filter(m -> m.getStructureName().equals(args[0]))
+                    .findFirst().orElse(null);
+            if (structureMetrics == null) {
+                sender.sendMessage(ChatColor.RED + "The structure " + args[0] + " has not tried to spawn yet.");
+                return true;
+            }
+            showStructure(sender, structureMetrics);
+        }
+        return false;
+    }
+
+    private void showSummary(CommandSender sender, SpawnMetrics metrics) {
+        sender.sendMessage(ChatColor.translateAlternateColorCodes('&', "&3============[&2Spawn Metrics&3]============"));
+        TickBudgetController controller = plugin.getTickBudgetController();
+        sender.sendMessage(ChatColor.translateAlternateColorCodes('&', String.format("&aServer: &6%.1fms&a/tick, plugin: &6%.2fms&a/tick, &6%d &awaiting tasks%s",
+                controller.getAverageTickNanos() / 1e6, controller.getAveragePluginNanos() / 1e6, controller.getWaitingTasks(),
+                controller.isThrottled() ? " &c(slowed down)" : "")));
+        List<StructureMetrics> all = metrics.getAllStructureMetrics();
+        if (all.isEmpty()) {
+            sender.sendMessage(ChatColor.GREEN + "No structures have tried to spawn yet.");
+            return;
+        }
+        for (StructureMetrics structureMetrics : all.subList(0, Math.min(MAX_LISTED_STRUCTURES, all.size()))) {
+            long rejected = structureMetrics.getCount(SpawnCounter.PLACEMENT_REJECTED) + structureMetrics.getCount(SpawnCounter.ADDON_REJECTED);
+            sender.sendMessage(ChatColor.translateAlternateColorCodes('&', String.format("&a- &6%s&a: &6%.2fms &atotal, &6%d &aspawned, &6%d &arejected, &6%d/%d &acandidate",
+                    structureMetrics.getStructureName(), structureMetrics.getTotalNanos() / 1e6, structureMetrics.getCount(SpawnCounter.SPAWNED),
+                    rejected, structureMetrics.getCount(SpawnCounter.CANDIDATE_ACCEPTED),
+                    structureMetrics.getCount(SpawnCounter.CANDIDATE_ACCEPTED) + structureMetrics.getCount(SpawnCounter.CANDIDATE_REJECTED))));
+        }
+        sender.sendMessage(ChatColor.translateAlternateColorCodes('&', "&3Use &2/cstruct stats {name} &3to see the stages of a structure."));
+    }
+
+    private void showStructure(CommandSender sender, StructureMetrics structureMetrics) {
+        sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
+                "&3============[&2" + structureMetrics.getStructureName() + "&3]============"));
+        for (SpawnStage stage : SpawnStage.values()) {
+            LatencyHistogram histogram = structureMetrics.getHistogram(stage);
+            if (histogram.getCount() == 0) continue;
+            sender.sendMessage(ChatColor.translateAlternateColorCodes('&', String.format("&a%s: &6%d &atimes, p50 &6%.3fms&a, p99 &6%.3fms&a, max &6%.3fms&a, total &6%.2fms",
+                    stage.getMetricName(), histogram.getCount(), histogram.getValueAtPercentile(50) / 1e6,
+                    histogram.getValueAtPercentile(99) / 1e6, histogram.getMax() / 1e6, histogram.getSum() / 1e6)));
+        }
+        for (SpawnCounter counter : SpawnCounter.values()) {
+            sender.sendMessage(ChatColor.translateAlternateColorCodes('&', String.format("&a%s: &6%d",
+                    counter.getMetricName(), structureMetrics.getCount(counter))));
+        }
+    }
+}
@@ -7,4 +7,8 @@ public class StructureDatabaseException extends RuntimeException {
     public StructureDatabaseException(String message) {
         super(message);
     }
+
+    public StructureDatabaseException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
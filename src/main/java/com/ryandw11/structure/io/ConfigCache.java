@@ -0,0 +1,377 @@
+package com.ryandw11.structure.io;
+
+import com.ryandw11.structure.CustomStructures;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A binary cache of the parsed configuration files (structures, loot tables, npcs.yml and signcommands.yml).
+ *
+ * <p>Every file is keyed by the SHA-256 hash of its contents. If the contents of a file did not change since it
+ * was cached, the configuration is rebuilt from the cache instead of being parsed by SnakeYAML. Files that changed
+ * are parsed normally and the cache is rewritten in the background.</p>
+ *
+ * <p>Only the YAML tree is cached: the structures are still built and validated from the configuration every time.
+ * Files that contain values the cache cannot store are always parsed.</p>
+ *
+ * <p>This class is thread safe. Get the instance from {@link CustomStructures#getConfigCache()}.</p>
+ *
+ * <p>Note: This feature can be disabled by the user in the config.</p>
+ */
+public class ConfigCache {
+    private static final int MAGIC = 0x43534343;
+    private static final int VERSION = 1;
+
+    private static final byte TAG_SECTION = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_DOUBLE = 4;
+    private static final byte TAG_BOOLEAN = 5;
+    private static final byte TAG_LIST = 6;
+    private static final byte TAG_MAP = 7;
+    private static final byte TAG_NULL = 8;
+
+    private final CustomStructures plugin;
+    private final File cacheFile;
+    private final boolean enabled;
+    // The entries that were read from the cache file.
+    private final Map<String, Entry> cachedEntries = new ConcurrentHashMap<>();
+    // The entries of the files that were loaded since the cache was read. Only these are saved.
+    private final Map<String, Entry> usedEntries = new ConcurrentHashMap<>();
+    private final AtomicBoolean changed = new AtomicBoolean();
+
+    /**
+     * Construct the config cache and read the cache file.
+     *
+     * <p>Internal Use Only.</p>
+     *
+     * @param plugin  The instance of the plugin.
+     * @param enabled If the cache should be used.
+     */
+    public ConfigCache(CustomStructures plugin, boolean enabled) {
+        this.plugin = plugin;
+        this.cacheFile = new File(plugin.getDataFolder() + "/data/configcache.bin");
+        this.enabled = enabled;
+        if (enabled)
+            read();
+    }
+
+    /**
+     * Check if the cache is enabled.
+     *
+     * @return If the cache is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Load a YAML configuration file, using the cache if the file did not change.
+     *
+     * <p>This behaves like {@link YamlConfiguration#load(File)}. It can be called from any thread.</p>
+     *
+     * @param file The file to load.
+     * @return The loaded configuration.
+     * @throws IOException                   If the file cannot be read.
+     * @throws InvalidConfigurationException If the file is not valid YAML.
+     */
+    public YamlConfiguration loadConfiguration(File file) throws IOException, InvalidConfigurationException {
+        YamlConfiguration configuration = new YamlConfiguration();
+        if (!enabled) {
+            configuration.load(file);
+            return configuration;
+        }
+
+        byte[] contents = Files.readAllBytes(file.toPath());
+        byte[] hash = hash(contents);
+        String key = getKey(file);
+
+        Entry entry = usedEntries.get(key);
+        if (entry == null)
+            entry = cachedEntries.get(key);
+        if (entry != null && Arrays.equals(entry.hash, hash)) {
+            try {
+                readSection(new DataInputStream(new ByteArrayInputStream(entry.tree)), configuration);
+                usedEntries.put(key, entry);
+                return configuration;
+            } catch (IOException ex) {
+                // The entry is corrupted, so parse the file instead.
+                cachedEntries.remove(key);
+                configuration = new YamlConfiguration();
+            }
+        }
+
+        configuration.loadFromString(new String(contents, StandardCharsets.UTF_8));
+        try {
+            ByteArrayOutputStream tree = new ByteArrayOutputStream();
+            writeSection(new DataOutputStream(tree), configuration);
+            usedEntries.put(key, new Entry(hash, tree.toByteArray()));
+        } catch (UnsupportedValueException ex) {
+            // This file will not be cached.
+            usedEntries.remove(key);
+        }
+        changed.set(true);
+        return configuration;
+    }
+
+    /**
+     * Load a YAML configuration file, using the cache if the file did not change.
+     *
+     * <p>This behaves like {@link YamlConfiguration#loadConfiguration(File)}: errors are logged and an empty
+     * configuration is returned.</p>
+     *
+     * @param file The file to load.
+     * @return The loaded configuration. (Empty if it could not be loaded).
+     */
+    public YamlConfiguration loadConfigurationOrEmpty(File file) {
+        try {
+            return loadConfiguration(file);
+        } catch (IOException | InvalidConfigurationException ex) {
+            plugin.getLogger().severe("Cannot load " + file);
+            if (plugin.isDebug())
+                ex.printStackTrace();
+            return new YamlConfiguration();
+        }
+    }
+
+    /**
+     * Write the cache file in the background if any file was parsed since it was last written.
+     *
+     * <p>The cache only keeps the files that were loaded since the cache was read, so deleted files are dropped.</p>
+     */
+    public void saveAsync() {
+        if (!enabled || !changed.getAndSet(false)) return;
+        Map<String, Entry> entries = new HashMap<>(usedEntries);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> write(entries));
+    }
+
+    /**
+     * Forget the files that were loaded so far.
+     *
+     * <p>This is called before everything is reloaded so the entries of removed files are not saved.</p>
+     */
+    public void startReload() {
+        cachedEntries.putAll(usedEntries);
+        usedEntries.clear();
+    }
+
+    private void read() {
+        if (!cacheFile.exists()) return;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(cacheFile))))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) return;
+            int size = input.readInt();
+            for (int i = 0; i < size; i++) {
+                String key = input.readUTF();
+                byte[] hash = readBytes(input);
+                byte[] tree = readBytes(input);
+                cachedEntries.put(key, new Entry(hash, tree));
+            }
+        } catch (IOException ex) {
+            cachedEntries.clear();
+            plugin.getLogger().warning("The config cache could not be read, it will be rebuilt.");
+            if (plugin.isDebug())
+                ex.printStackTrace();
+        }
+    }
+
+    private synchronized void write(Map<String, Entry> entries) {
+        File dataDirectory = cacheFile.getParentFile();
+        if (!dataDirectory.exists() && !dataDirectory.mkdirs()) return;
+
+        File tempFile = new File(dataDirectory, cacheFile.getName() + ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile))))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(entries.size());
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    writeBytes(output, entry.getValue().hash);
+                    writeBytes(output, entry.getValue().tree);
+                }
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("The config cache could not be saved.");
+            if (plugin.isDebug())
+                ex.printStackTrace();
+        }
+    }
+
+    private String getKey(File file) {
+        File dataFolder = plugin.getDataFolder().getAbsoluteFile();
+        return dataFolder.toPath().relativize(file.getAbsoluteFile().toPath()).toString().replace('\\', '/');
+    }
+
+    private static byte[] hash(byte[] contents) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(contents);
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void writeSection(DataOutputStream output, ConfigurationSection section) throws UnsupportedValueException {
+        try {
+            Set<String> keys = section.getKeys(false);
+            output.writeInt(keys.size());
+            for (String key : keys) {
+                // The key would be split into a path when it is set again.
+                if (key.indexOf(section.getRoot().options().pathSeparator()) >= 0)
+                    throw new UnsupportedValueException();
+                writeString(output, key);
+                writeValue(output, section.get(key));
+            }
+        } catch (IOException ex) {
+            // Not possible with a ByteArrayOutputStream.
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void writeValue(DataOutputStream output, Object value) throws IOException, UnsupportedValueException {
+        if (value == null) {
+            output.writeByte(TAG_NULL);
+        } else if (value instanceof ConfigurationSection section) {
+            output.writeByte(TAG_SECTION);
+            writeSection(output, section);
+        } else if (value instanceof String string) {
+            output.writeByte(TAG_STRING);
+            writeString(output, string);
+        } else if (value instanceof Integer integer) {
+            output.writeByte(TAG_INT);
+            output.writeInt(integer);
+        } else if (value instanceof Long longValue) {
+            output.writeByte(TAG_LONG);
+            output.writeLong(longValue);
+        } else if (value instanceof Double doubleValue) {
+            output.writeByte(TAG_DOUBLE);
+            output.writeDouble(doubleValue);
+        } else if (value instanceof Boolean bool) {
+            output.writeByte(TAG_BOOLEAN);
+            output.writeBoolean(bool);
+        } else if (value instanceof List<?> list) {
+            output.writeByte(TAG_LIST);
+            output.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(output, element);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            output.writeByte(TAG_MAP);
+            output.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!(entry.getKey() instanceof String key))
+                    throw new UnsupportedValueException();
+                writeString(output, key);
+                writeValue(output, entry.getValue());
+            }
+        } else {
+            // Dates, serialized objects, etc.
+            throw new UnsupportedValueException();
+        }
+    }
+
+    private static void readSection(DataInputStream input, ConfigurationSection section) throws IOException {
+        int size = input.readInt();
+        for (int i = 0; i < size; i++) {
+            String key = readString(input);
+            byte tag = input.readByte();
+            if (tag == TAG_SECTION) {
+                readSection(input, section.createSection(key));
+            } else {
+                section.set(key, readValue(input, tag));
+            }
+        }
+    }
+
+    private static Object readValue(DataInputStream input, byte tag) throws IOException {
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(input);
+            case TAG_INT:
+                return input.readInt();
+            case TAG_LONG:
+                return input.readLong();
+            case TAG_DOUBLE:
+                return input.readDouble();
+            case TAG_BOOLEAN:
+                return input.readBoolean();
+            case TAG_LIST: {
+                int size = input.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(input, input.readByte()));
+                }
+                return list;
+            }
+            case TAG_MAP: {
+                int size = input.readInt();
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    String key = readString(input);
+                    map.put(key, readValue(input, input.readByte()));
+                }
+                return map;
+            }
+            default:
+                throw new IOException("Unknown value tag: " + tag);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        writeBytes(output, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        return new String(readBytes(input), StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) throw new IOException("Invalid length: " + length);
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * A cached file.
+     */
+    private static class Entry {
+        private final byte[] hash;
+        private final byte[] tree;
+
+        private Entry(byte[] hash, byte[] tree) {
+            this.hash = hash;
+            this.tree = tree;
+        }
+    }
+
+    /**
+     * Thrown when a configuration contains a value that cannot be cached.
+     */
+    private static class UnsupportedValueException extends Exception {
+    }
+}
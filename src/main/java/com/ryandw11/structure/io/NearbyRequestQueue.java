@@ -0,0 +1,316 @@
+package com.ryandw11.structure.io;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Schedules the queries of nearby structure requests.
+ *
+ * <ul>
+ *     <li>The location of a request is rounded to a cell of {@link #CELL_SIZE} blocks. Requests for the same world,
+ *     structure, limit and cell share a single query while it is running.</li>
+ *     <li>The result of a query is cached for {@link #CACHE_TIME_NANOS}.</li>
+ *     <li>Every requester has its own queue. The queues take turns, so a requester that sends many requests does not
+ *     hold up everyone else.</li>
+ * </ul>
+ *
+ * <p>A query finds the structures closest to the center of the cell, {@link #OVER_FETCH} more than the limit. The
+ * distances are then measured again from the location of each request and the result is cut to the limit. This is only
+ * exact if no structure that was left out can be closer to the request than the last one kept, which is checked using
+ * the distance from the request to the center of the cell. When the check fails, the request is queried on its own
+ * from its exact location, so the response is always the true closest structures.</p>
+ */
+class NearbyRequestQueue {
+    // The size of the cells that the location of a request is rounded to.
+    static final int CELL_SIZE = 16;
+    // How many more structures than the limit a shared query finds.
+    static final int OVER_FETCH = 8;
+    // How long the result of a query is reused for.
+    private static final long CACHE_TIME_NANOS = TimeUnit.SECONDS.toNanos(5);
+    // Expired results are removed once there are more than this many.
+    private static final int MAX_CACHED_RESULTS = 256;
+    // The requester of requests that did not specify one.
+    private static final Object DEFAULT_REQUESTER = new Object();
+
+    private final Function<NearbyStructuresRequest, CompletableFuture<NearbyStructuresResponse>> query;
+    private final int maxQueuedPerRequester;
+    private final int maxRunning;
+
+    private final Map<Key, CachedResult> cache = new ConcurrentHashMap<>();
+    // The fields below are guarded by this.
+    private final Map<Key, CompletableFuture<NearbyStructuresResponse>> inFlight = new HashMap<>();
+    private final Map<Object, Deque<PendingQuery>> queues = new HashMap<>();
+    // The requesters with queued queries, in the order of their turns.
+    private final Deque<Object> turns = new ArrayDeque<>();
+    private int running;
+
+    /**
+     * Create the queue.
+     *
+     * @param query                 Runs the query of a request.
+     * @param maxQueuedPerRequester The maximum number of queries that a requester can have waiting.
+     * @param maxRunning            The maximum number of queries that run at once.
+     */
+    NearbyRequestQueue(Function<NearbyStructuresRequest, CompletableFuture<NearbyStructuresResponse>> query,
+                       int maxQueuedPerRequester, int maxRunning) {
+        this.query = query;
+        this.maxQueuedPerRequester = maxQueuedPerRequester;
+        this.maxRunning = maxRunning;
+    }
+
+    /**
+     * Submit a request.
+     *
+     * @param request   The request.
+     * @param requester Who sent the request. (Null if it is not known).
+     * @return The response to the request. (Null if the requester has too many queries waiting).
+     */
+    @Nullable
+    CompletableFuture<NearbyStructuresResponse> submit(NearbyStructuresRequest request, @Nullable Object requester) {
+        Key key = new Key(request);
+        CachedResult cached = cache.get(key);
+        if (cached != null && !cached.isExpired(System.nanoTime()))
+            return resolve(cached.response, key, request);
+
+        CompletableFuture<NearbyStructuresResponse> shared;
+        synchronized (this) {
+            shared = inFlight.get(key);
+            if (shared == null) {
+                Object turn = requester == null ? DEFAULT_REQUESTER : requester;
+                Deque<PendingQuery> queue = queues.get(turn);
+                if (queue == null) {
+                    queue = new ArrayDeque<>();
+                    queues.put(turn, queue);
+                    turns.add(turn);
+                } else if (queue.size() >= maxQueuedPerRequester) {
+                    return null;
+                }
+                shared = new CompletableFuture<>();
+                inFlight.put(key, shared);
+                queue.add(new PendingQuery(key, shared));
+            }
+        }
+        dispatch();
+        return shared.thenCompose(response -> resolve(response, key, request));
+    }
+
+    /**
+     * Get the response of a request from the response of the query it shared.
+     *
+     * @param response The response of the shared query.
+     * @param key      The key of the shared query.
+     * @param request  The request.
+     * @return The closest structures to the request. (A query of its own if the shared query cannot tell).
+     */
+    private CompletableFuture<NearbyStructuresResponse> resolve(NearbyStructuresResponse response, Key key,
+                                                                 NearbyStructuresRequest request) {
+        List<NearbyStructuresResponse.NearbyStructureContainer> measured = measureFrom(response, request.getLocation());
+        int limit = request.getLimit();
+        if (measured.size() <= limit)
+            return CompletableFuture.completedFuture(new NearbyStructuresResponse(measured));
+        if (!isExact(measured, key, request))
+            return query.apply(request).thenApply(exact ->
+                    new NearbyStructuresResponse(measureFrom(exact, request.getLocation())));
+        return CompletableFuture.completedFuture(new NearbyStructuresResponse(new ArrayList<>(measured.subList(0, Math.max(0, limit)))));
+    }
+
+    /**
+     * Check if the closest structures to a request are all in the response of the shared query.
+     *
+     * @param measured The structures of the shared query, measured from the request. (Closest first).
+     * @param key      The key of the shared query.
+     * @param request  The request.
+     * @return If no structure that the shared query left out can be closer than the last one that is kept.
+     */
+    private static boolean isExact(List<NearbyStructuresResponse.NearbyStructureContainer> measured, Key key,
+                                   NearbyStructuresRequest request) {
+        // The query found fewer structures than it asked for, so there are no others.
+        if (measured.size() < key.getQueryLimit()) return true;
+        if (request.getLimit() <= 0) return true;
+
+        Location center = key.getCenter();
+        double furthestFromCenter = 0;
+        for (NearbyStructuresResponse.NearbyStructureContainer container : measured)
+            furthestFromCenter = Math.max(furthestFromCenter, distance(center, container.getLocation()));
+        // Every structure that was left out is at least this far away from the request.
+        double leftOutDistance = furthestFromCenter - distance(center, request.getLocation());
+        return measured.get(request.getLimit() - 1).getDistance() <= leftOutDistance;
+    }
+
+    private static double distance(Location from, Location to) {
+        double dx = from.getBlockX() - to.getX();
+        double dy = from.getBlockY() - to.getY();
+        double dz = from.getBlockZ() - to.getZ();
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Start queries until the maximum number are running, taking one from each requester in turn.
+     */
+    private void dispatch() {
+        List<PendingQuery> toRun = new ArrayList<>();
+        synchronized (this) {
+            while (running < maxRunning && !turns.isEmpty()) {
+                Object requester = turns.poll();
+                Deque<PendingQuery> queue = queues.get(requester);
+                toRun.add(queue.poll());
+                if (queue.isEmpty())
+                    queues.remove(requester);
+                else
+                    turns.add(requester);
+                running++;
+            }
+        }
+
+        for (PendingQuery pending : toRun) {
+            query.apply(pending.key.toRequest()).whenComplete((response, exception) -> {
+                // The result is cached before the query stops being in flight, so no duplicate query can start in between.
+                if (exception == null)
+                    cacheResult(pending.key, response);
+                synchronized (this) {
+                    inFlight.remove(pending.key);
+                    running--;
+                }
+                if (exception == null)
+                    pending.future.complete(response);
+                else
+                    pending.future.completeExceptionally(exception);
+                dispatch();
+            });
+        }
+    }
+
+    private void cacheResult(Key key, NearbyStructuresResponse response) {
+        long now = System.nanoTime();
+        if (cache.size() >= MAX_CACHED_RESULTS) {
+            cache.values().removeIf(cachedResult -> cachedResult.isExpired(now));
+            // Everything is still fresh, so there are a lot of different requests. Start over instead of growing.
+            if (cache.size() >= MAX_CACHED_RESULTS)
+                cache.clear();
+        }
+        cache.put(key, new CachedResult(now, response));
+    }
+
+    /**
+     * Measure the distances of a response from a location.
+     *
+     * @param response The response of the query.
+     * @param location The location to measure from.
+     * @return The structures of the response, closest structure first.
+     */
+    private static List<NearbyStructuresResponse.NearbyStructureContainer> measureFrom(NearbyStructuresResponse response,
+                                                                                      Location location) {
+        List<NearbyStructuresResponse.NearbyStructureContainer> result = new ArrayList<>(response.getResponse().size());
+        for (NearbyStructuresResponse.NearbyStructureContainer container : response.getResponse()) {
+            Location structureLocation = container.getLocation();
+            result.add(new NearbyStructuresResponse.NearbyStructureContainer(structureLocation.clone(),
+                    container.getStructure(), distance(location, structureLocation)));
+        }
+        result.sort(Comparator.comparingDouble(NearbyStructuresResponse.NearbyStructureContainer::getDistance));
+        return result;
+    }
+
+    /**
+     * The requests that share a query.
+     */
+    private static final class Key {
+        // Only the name of the world is compared.
+        private final World bukkitWorld;
+        private final String world;
+        private final String name;
+        private final int limit;
+        private final int cellX;
+        private final int cellY;
+        private final int cellZ;
+
+        private Key(NearbyStructuresRequest request) {
+            Location location = request.getLocation();
+            this.bukkitWorld = Objects.requireNonNull(location.getWorld());
+            this.world = bukkitWorld.getName();
+            this.name = request.hasName() ? request.getName() : "";
+            this.limit = request.getLimit();
+            this.cellX = Math.floorDiv(location.getBlockX(), CELL_SIZE);
+            this.cellY = Math.floorDiv(location.getBlockY(), CELL_SIZE);
+            this.cellZ = Math.floorDiv(location.getBlockZ(), CELL_SIZE);
+        }
+
+        /**
+         * Get the center of the cell.
+         *
+         * @return The center of the cell.
+         */
+        private Location getCenter() {
+            return new Location(bukkitWorld, cellX * CELL_SIZE + CELL_SIZE / 2,
+                    cellY * CELL_SIZE + CELL_SIZE / 2, cellZ * CELL_SIZE + CELL_SIZE / 2);
+        }
+
+        /**
+         * Get the number of structures that the shared query finds.
+         *
+         * @return The limit of the shared query.
+         */
+        private int getQueryLimit() {
+            return limit <= 0 ? limit : limit + OVER_FETCH;
+        }
+
+        /**
+         * Create the request that is queried, at the center of the cell.
+         *
+         * @return The request.
+         */
+        private NearbyStructuresRequest toRequest() {
+            return new NearbyStructuresRequest(getCenter(), name, getQueryLimit());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return limit == key.limit && cellX == key.cellX && cellY == key.cellY && cellZ == key.cellZ
+                    && world.equals(key.world) && name.equals(key.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(world, name, limit, cellX, cellY, cellZ);
+        }
+    }
+
+    private static class PendingQuery {
+        private final Key key;
+        private final CompletableFuture<NearbyStructuresResponse> future;
+
+        private PendingQuery(Key key, CompletableFuture<NearbyStructuresResponse> future) {
+            this.key = key;
+            this.future = future;
+        }
+    }
+
+    private static class CachedResult {
+        private final long time;
+        private final NearbyStructuresResponse response;
+
+        private CachedResult(long time, NearbyStructuresResponse response) {
+            this.time = time;
+            this.response = response;
+        }
+
+        private boolean isExpired(long now) {
+            return now - time > CACHE_TIME_NANOS;
+        }
+    }
+}
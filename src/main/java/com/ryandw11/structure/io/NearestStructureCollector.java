@@ -0,0 +1,127 @@
+package com.ryandw11.structure.io;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Collects the structures closest to a location for a {@link StructureStore} that keeps its structures in a grid
+ * of square cells.
+ *
+ * <p>The cells are searched in rings around the cell of the location. The search stops once every block of the next
+ * ring is further away than the furthest of the closest structures found so far. Ties are broken by the id of the
+ * structure, so every store returns the same structures in the same order.</p>
+ *
+ * <p>For internal use only.</p>
+ */
+public final class NearestStructureCollector {
+
+    private static final Comparator<Candidate> CLOSEST_FIRST = Comparator.<Candidate>comparingDouble(candidate -> candidate.distance)
+            .thenComparingLong(candidate -> candidate.structure.getId());
+
+    private final int x;
+    private final int y;
+    private final int z;
+    @Nullable
+    private final String name;
+    private final int limit;
+    // The furthest of the closest structures so far is at the head.
+    private final PriorityQueue<Candidate> closest;
+
+    /**
+     * Construct a collector for the structures closest to a location.
+     *
+     * @param x     The x coordinate.
+     * @param y     The y coordinate.
+     * @param z     The z coordinate.
+     * @param name  The name of the structures to collect. (Null for any structure).
+     * @param limit The maximum number of structures to collect.
+     */
+    public NearestStructureCollector(int x, int y, int z, @Nullable String name, int limit) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.name = name;
+        this.limit = limit;
+        this.closest = new PriorityQueue<>(Math.max(1, limit + 1), CLOSEST_FIRST.reversed());
+    }
+
+    /**
+     * Search the rings of cells around a cell.
+     *
+     * @param cellX    The x coordinate of the cell of the location.
+     * @param cellZ    The z coordinate of the cell of the location.
+     * @param minCellX The lowest x coordinate of a cell that has structures.
+     * @param minCellZ The lowest z coordinate of a cell that has structures.
+     * @param maxCellX The highest x coordinate of a cell that has structures.
+     * @param maxCellZ The highest z coordinate of a cell that has structures.
+     * @param cellSize The size of a cell in blocks.
+     * @param rings    Visits the structures in a ring of cells.
+     * @return The closest structures, closest first.
+     */
+    public List<StoredStructure> search(int cellX, int cellZ, int minCellX, int minCellZ, int maxCellX, int maxCellZ,
+                                        int cellSize, RingVisitor rings) {
+        if (limit <= 0) return new ArrayList<>();
+        // Skip the rings that are entirely outside of the cells that have structures.
+        int firstRing = Math.max(0, Math.max(Math.max(minCellX - cellX, cellX - maxCellX),
+                Math.max(minCellZ - cellZ, cellZ - maxCellZ)));
+        for (int ring = firstRing; ; ring++) {
+            // Every block in the ring is at least this far away.
+            double ringDistance = Math.max(0, ring - 1) * (double) cellSize;
+            if (closest.size() == limit && ringDistance > closest.peek().distance) break;
+            if (cellX - ring < minCellX && cellX + ring > maxCellX
+                    && cellZ - ring < minCellZ && cellZ + ring > maxCellZ) break;
+
+            rings.visit(ring, this::accept);
+        }
+        return getResult();
+    }
+
+    private void accept(StoredStructure structure) {
+        if (name != null && !name.equals(structure.getName())) return;
+        Candidate candidate = new Candidate(structure, structure.distance(x, y, z));
+        if (closest.size() < limit) {
+            closest.add(candidate);
+        } else if (CLOSEST_FIRST.compare(candidate, closest.peek()) < 0) {
+            closest.poll();
+            closest.add(candidate);
+        }
+    }
+
+    private List<StoredStructure> getResult() {
+        List<Candidate> sorted = new ArrayList<>(closest);
+        sorted.sort(CLOSEST_FIRST);
+        List<StoredStructure> result = new ArrayList<>(sorted.size());
+        for (Candidate candidate : sorted)
+            result.add(candidate.structure);
+        return result;
+    }
+
+    /**
+     * Visits the structures in a ring of cells.
+     */
+    @FunctionalInterface
+    public interface RingVisitor {
+        /**
+         * Visit the structures in the cells that are exactly this many cells away from the cell of the location.
+         *
+         * @param ring    The distance of the ring in cells. (0 is the cell of the location).
+         * @param visitor Accepts each structure in the ring.
+         */
+        void visit(int ring, Consumer<StoredStructure> visitor);
+    }
+
+    private static class Candidate {
+        private final StoredStructure structure;
+        private final double distance;
+
+        private Candidate(StoredStructure structure, double distance) {
+            this.structure = structure;
+            this.distance = distance;
+        }
+    }
+}
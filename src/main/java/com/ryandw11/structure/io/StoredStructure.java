@@ -0,0 +1,239 @@
+package com.ryandw11.structure.io;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A structure that is saved in a {@link StructureStore}.
+ *
+ * <p>This class is immutable.</p>
+ */
+public final class StoredStructure {
+    private final long id;
+    private final String world;
+    private final String name;
+    private final int x;
+    private final int y;
+    private final int z;
+    private final long spawnTime;
+    private final int rotation;
+    @Nullable
+    private final int[] bounds;
+
+    /**
+     * Construct a stored structure.
+     * <p>For internal use only.</p>
+     *
+     * @param id        The id of the structure in the store. (0 if it is not saved yet).
+     * @param world     The name of the world.
+     * @param name      The name of the structure.
+     * @param x         The x coordinate.
+     * @param y         The y coordinate.
+     * @param z         The z coordinate.
+     * @param spawnTime The time the structure spawned at in milliseconds. (0 if it is not known).
+     * @param rotation  The rotation of the structure in degrees.
+     * @param bounds    The bounds of the structure (minX, minY, minZ, maxX, maxY, maxZ). (Null if they are not known).
+     */
+    public StoredStructure(long id, @NotNull String world, @NotNull String name, int x, int y, int z, long spawnTime,
+                           int rotation, @Nullable int[] bounds) {
+        if (bounds != null && bounds.length != 6)
+            throw new IllegalArgumentException("The bounds must have 6 coordinates.");
+        this.id = id;
+        this.world = world;
+        this.name = name;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.spawnTime = spawnTime;
+        this.rotation = rotation;
+        this.bounds = bounds == null ? null : bounds.clone();
+    }
+
+    /**
+     * Get a copy of this structure with a different id.
+     * <p>For internal use only.</p>
+     *
+     * @param id The id.
+     * @return The copy.
+     */
+    public StoredStructure withId(long id) {
+        return new StoredStructure(id, world, name, x, y, z, spawnTime, rotation, bounds);
+    }
+
+    /**
+     * Get a copy of this structure with the rotation and bounds of another.
+     * <p>For internal use only.</p>
+     *
+     * @param placement The structure with the rotation and bounds.
+     * @return The copy.
+     */
+    public StoredStructure withPlacement(StoredStructure placement) {
+        return new StoredStructure(id, world, name, x, y, z, spawnTime, placement.rotation, placement.bounds);
+    }
+
+    /**
+     * Get the id of the structure in the store.
+     *
+     * <p>Ids increase in the order the structures were saved.</p>
+     *
+     * @return The id. (0 if it is not saved yet).
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Get the name of the world the structure is in.
+     *
+     * @return The name of the world.
+     */
+    public String getWorld() {
+        return world;
+    }
+
+    /**
+     * Get the name of the structure.
+     *
+     * @return The name of the structure.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the x coordinate of the structure.
+     *
+     * @return The x coordinate.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Get the y coordinate of the structure.
+     *
+     * @return The y coordinate.
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Get the z coordinate of the structure.
+     *
+     * @return The z coordinate.
+     */
+    public int getZ() {
+        return z;
+    }
+
+    /**
+     * Get the location of the structure.
+     *
+     * <p>The world of the location is null if the world is not loaded.</p>
+     *
+     * @return The location.
+     */
+    public Location getLocation() {
+        return new Location(Bukkit.getWorld(world), x, y, z);
+    }
+
+    /**
+     * Get the time the structure spawned at.
+     *
+     * @return The time in milliseconds. (0 if it is not known).
+     */
+    public long getSpawnTime() {
+        return spawnTime;
+    }
+
+    /**
+     * Get the rotation of the structure.
+     *
+     * @return The rotation in degrees. (0 if it is not known).
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Check if the rotation and bounds of the structure are known.
+     *
+     * @return If the rotation and bounds are known.
+     */
+    public boolean hasPlacement() {
+        return bounds != null;
+    }
+
+    /**
+     * Get the bounds of the structure.
+     *
+     * @return The bounds, from the lowest to the highest corner block. (Null if they are not known).
+     */
+    @Nullable
+    public BoundingBox getBounds() {
+        return bounds == null ? null : new BoundingBox(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+    }
+
+    /**
+     * Get the raw bounds of the structure.
+     * <p>For internal use only.</p>
+     *
+     * @return A copy of the bounds (minX, minY, minZ, maxX, maxY, maxZ). (Null if they are not known).
+     */
+    @Nullable
+    public int[] getRawBounds() {
+        return bounds == null ? null : bounds.clone();
+    }
+
+    /**
+     * Check if the structure is at a block.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return If the structure is at the block.
+     */
+    public boolean isAt(int x, int y, int z) {
+        return this.x == x && this.y == y && this.z == z;
+    }
+
+    /**
+     * Get the distance from the structure to a block.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return The distance.
+     */
+    public double distance(int x, int y, int z) {
+        double dx = this.x - x;
+        double dy = this.y - y;
+        double dz = this.z - z;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StoredStructure that)) return false;
+        return id == that.id && x == that.x && y == that.y && z == that.z && spawnTime == that.spawnTime
+                && rotation == that.rotation && world.equals(that.world) && name.equals(that.name)
+                && Arrays.equals(bounds, that.bounds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id) * 31 + Arrays.hashCode(new int[]{x, y, z});
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s #%d at %s %d, %d, %d", name, id, world, x, y, z);
+    }
+}
@@ -4,24 +4,40 @@ import com.ryandw11.structure.CustomStructures;
 import com.ryandw11.structure.exceptions.RateLimitException;
 import com.ryandw11.structure.exceptions.StructureDatabaseException;
 import com.ryandw11.structure.exceptions.StructureNotFoundException;
-import com.ryandw11.structure.io.sql.DistanceFunction;
+import com.ryandw11.structure.io.memory.MemoryStructureStore;
+import com.ryandw11.structure.io.region.RegionStructureStore;
+import com.ryandw11.structure.io.sql.SqliteStructureStore;
+import com.ryandw11.structure.io.sql.StructureDatabaseSchema;
+import com.ryandw11.structure.metrics.SpawnStage;
 import com.ryandw11.structure.structure.Structure;
 import com.ryandw11.structure.structure.StructureHandler;
-import com.ryandw11.structure.utils.Pair;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.sqlite.Function;
+import org.bukkit.World;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.sql.*;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Handles the saving and reading of structures from the spawned structure database.
@@ -32,15 +48,50 @@ import java.util.concurrent.CopyOnWriteArrayList;
  *
  * <p>Access this class from {@link StructureHandler#getStructureDatabaseHandler()}</p>
  *
+ * <p>Structures that are added are written to a journal (<code>data/structures.journal</code>) right away, and saved to the
+ * {@link StructureStore} in batches by a dedicated writer thread. Structures that were in the journal when the server
+ * stopped are saved when the handler starts.</p>
+ *
+ * <p>The store is picked with the <code>structureStore</code> option in the config. The default is a SQLite database
+ * (<code>data/structures.db</code>), which is read on a small pool of read-only connections that do not wait for a save
+ * to finish. The <code>memory</code> store keeps the structures in memory and writes a snapshot of them to
+ * <code>data/structures.snapshot</code> every <code>memorySnapshotInterval</code> seconds. The <code>region</code> store
+ * keeps them in memory-mapped region files (<code>data/regions/</code>), so a lookup only reads the regions around it.</p>
+ *
+ * <p>A database in an older format is migrated by the writer thread when the handler starts (see
+ * {@link StructureDatabaseSchema}). Requests are answered once the migration is done.</p>
+ *
  * <p>Note: This feature needs to be enabled by the user in the config.</p>
  */
-public class StructureDatabaseHandler extends BukkitRunnable {
-    private final Map<Location, Structure> structuresToSave = new ConcurrentHashMap<>();
-    private final List<Pair<Location, CompletableFuture<Structure>>> structuresToGet = new CopyOnWriteArrayList<>();
-    private final List<Pair<Structure, CompletableFuture<List<Location>>>> locationsToGet = new CopyOnWriteArrayList<>();
-    private final List<Pair<NearbyStructuresRequest, CompletableFuture<NearbyStructuresResponse>>> findNearby = new CopyOnWriteArrayList<>();
-
-    private final Connection connection;
+public class StructureDatabaseHandler {
+    // The maximum number of structures that are saved in one transaction.
+    private static final int SAVE_BATCH_SIZE = 500;
+    // The longest time a structure waits to be saved if the batch does not fill up.
+    private static final long SAVE_DELAY_NANOS = TimeUnit.SECONDS.toNanos(5);
+    // The maximum number of locations on a page.
+    private static final int MAX_PAGE_SIZE = 1000;
+    // The number of reader threads, and so the number of requests that are read at once.
+    private static final int READ_CONNECTIONS = 2;
+    // The maximum number of nearby requests that a single requester can have waiting.
+    private static final int MAX_NEARBY_REQUESTS = 6;
+
+    private final Deque<StructureJournal.Entry> structuresToSave = new ConcurrentLinkedDeque<>();
+    // The size of structuresToSave. (The size of the deque itself is not constant time).
+    private final AtomicInteger pendingSaves = new AtomicInteger();
+    // At most one nearby query runs at a time, so the other reader is free for the cheaper requests.
+    private final NearbyRequestQueue nearbyRequests = new NearbyRequestQueue(request -> read(
+            "An error was encountered when attempting to retrieve structures from the structure database!",
+            " (Nearby)", () -> readNearby(request)), MAX_NEARBY_REQUESTS, 1);
+
+    private final StructureStore store;
+    private final StructureJournal journal;
+    private final Thread writer;
+    private final ExecutorService readers;
+    // Released once the database is in the current format.
+    private final CountDownLatch migration = new CountDownLatch(1);
+    private volatile boolean stopping;
+    // The sequence number the journal was last emptied up to. (Only used by the writer thread).
+    private long checkpointedSequence;
 
     private final CustomStructures plugin;
 
@@ -49,7 +100,7 @@ public class StructureDatabaseHandler extends BukkitRunnable {
      *
      * <p>For internal use only. Access through {@link StructureHandler#getStructureDatabaseHandler()}.</p>
      *
-     * <p>Throws {@link StructureDatabaseException} if it cannot connect to the SQLite database successfully.</p>
+     * <p>Throws {@link StructureDatabaseException} if the structure store cannot be opened successfully.</p>
      *
      * @param plugin The instance of the plugin.
      */
@@ -62,31 +113,162 @@ public class StructureDatabaseHandler extends BukkitRunnable {
                 throw new StructureDatabaseException("Unable to create 'data' folder. Does the plugin have the correct permissions?");
 
         try {
-            connection = DriverManager.getConnection(String.format("jdbc:sqlite:%s", plugin.getDataFolder() + "/data/structures.db"));
-
-            // Create custom SQLite functions.
-            Function.create(connection, "DIST", new DistanceFunction());
-
-            Statement statement = connection.createStatement();
-            statement.setQueryTimeout(30);
-            statement.executeUpdate("""
-                    CREATE TABLE IF NOT EXISTS Structures (
-                        id INTEGER PRIMARY KEY,
-                        name VARCHAR(100) NOT NULL,
-                        x DOUBLE NOT NULL,
-                        y DOUBLE NOT NULL,
-                        z DOUBLE NOT NULL,
-                        world VARCHAR(300) NOT NULL
-                    )
-                    """);
-            statement.close();
-
-
-        } catch (SQLException exception) {
+            store = openStore(dataDirectory);
+        } catch (StructureDatabaseException exception) {
+            if (plugin.isDebug() && exception.getCause() != null) {
+                exception.getCause().printStackTrace();
+            }
+            throw exception;
+        }
+
+        journal = new StructureJournal(new File(dataDirectory, "structures.journal"));
+        try {
+            replayJournal();
+        } catch (StructureDatabaseException exception) {
+            store.close();
+            throw exception;
+        }
+
+        writer = new Thread(this::writeLoop, "CustomStructures Database Writer");
+        writer.setDaemon(true);
+        AtomicInteger readerCount = new AtomicInteger();
+        readers = Executors.newFixedThreadPool(READ_CONNECTIONS, runnable -> {
+            Thread thread = new Thread(runnable, "CustomStructures Database Reader #" + readerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Open the store that is set in the config.
+     *
+     * @param dataDirectory The data directory of the plugin.
+     * @return The store.
+     */
+    private StructureStore openStore(File dataDirectory) {
+        String type = plugin.getConfig().getString("structureStore", "sqlite");
+        if ("memory".equalsIgnoreCase(type)) {
+            long interval = Math.max(1, plugin.getConfig().getLong("memorySnapshotInterval", 300));
+            return new MemoryStructureStore(new File(dataDirectory, "structures.snapshot"),
+                    TimeUnit.SECONDS.toMillis(interval), plugin.getLogger());
+        }
+        if ("region".equalsIgnoreCase(type))
+            return new RegionStructureStore(new File(dataDirectory, "regions"), plugin.getLogger());
+        if (!"sqlite".equalsIgnoreCase(type))
+            plugin.getLogger().warning("Unknown structure store '" + type + "'. Using the sqlite store instead.");
+        return new SqliteStructureStore(new File(dataDirectory, "structures.db"), READ_CONNECTIONS);
+    }
+
+    /**
+     * Start the writer thread, which migrates the database if needed and then saves the structures that are added.
+     *
+     * <p>Internal Use Only.</p>
+     */
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Queue the structures that were left in the journal the last time the server stopped, so they are saved with the
+     * next batch.
+     *
+     * <p>Throws {@link StructureDatabaseException} if the journal cannot be opened.</p>
+     */
+    private void replayJournal() {
+        try {
+            long committedSequence = store.getCommittedSequence();
+            checkpointedSequence = committedSequence;
+            int replayed = 0;
+            for (StructureJournal.Entry entry : journal.open(committedSequence)) {
+                if (entry.sequence <= committedSequence) continue;
+                structuresToSave.add(entry);
+                replayed++;
+            }
+            pendingSaves.addAndGet(replayed);
+            if (replayed > 0)
+                plugin.getLogger().info(replayed + " structures that were left in the structure journal will be saved.");
+        } catch (IOException exception) {
+            if (plugin.isDebug()) {
+                exception.printStackTrace();
+            }
+            throw new StructureDatabaseException("Unable to read the structure journal.");
+        }
+    }
+
+    /**
+     * The loop of the writer thread.
+     *
+     * <p>A batch is saved as soon as it is full, or once the first structure in it has waited for
+     * {@link #SAVE_DELAY_NANOS}. While there is nothing to save, the thread only wakes up to let the store flush.</p>
+     */
+    private void writeLoop() {
+        boolean migrated = migrate();
+        long saveDeadline = 0;
+        while (!stopping) {
+            if (!migrated) {
+                // The structures stay in the journal until the database can be written to.
+                LockSupport.park(this);
+                continue;
+            }
+            if (structuresToSave.isEmpty()) {
+                saveDeadline = 0;
+                LockSupport.parkNanos(this, SAVE_DELAY_NANOS);
+                flush(false);
+                continue;
+            }
+            long now = System.nanoTime();
+            if (saveDeadline == 0)
+                saveDeadline = now + SAVE_DELAY_NANOS;
+            if (pendingSaves.get() >= SAVE_BATCH_SIZE || now - saveDeadline >= 0) {
+                // If the save fails, it is tried again after the delay.
+                saveDeadline = saveStructures() ? 0 : now + SAVE_DELAY_NANOS;
+            } else {
+                LockSupport.parkNanos(this, saveDeadline - now);
+            }
+        }
+
+        if (migrated) {
+            saveStructures();
+            flush(true);
+        }
+        try {
+            journal.close();
+        } catch (IOException ex) {
+            if (plugin.isDebug()) {
+                plugin.getLogger().warning("An error was encountered when attempting to close the structure journal!");
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Migrate the database to the current format if it is in an older one.
+     *
+     * @return If the database is in the current format.
+     */
+    private boolean migrate() {
+        try {
+            if (store.migrate(plugin.getLogger(), () -> stopping)) return true;
+            plugin.getLogger().info("The migration of the structure database was stopped. It will continue the next time the server starts.");
+        } catch (StructureDatabaseException exception) {
+            plugin.getLogger().severe("Unable to migrate the structure database. It will be tried again the next time the server starts.");
             if (plugin.isDebug()) {
                 exception.printStackTrace();
             }
-            throw new StructureDatabaseException("Unable to connect to SQLite database.");
+        } finally {
+            migration.countDown();
+        }
+        return false;
+    }
+
+    /**
+     * Wait for the database to be in the current format.
+     */
+    private void awaitMigration() {
+        try {
+            migration.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -100,7 +282,61 @@ public class StructureDatabaseHandler extends BukkitRunnable {
      * @param structure The structure.
      */
     public void addStructure(Location loc, Structure structure) {
-        structuresToSave.put(loc, structure);
+        long spawnTime = System.currentTimeMillis();
+        queueEntry(StructureJournal.EntryType.SPAWN, loc, structure, entry -> entry.spawnTime = spawnTime);
+    }
+
+    /**
+     * Save the rotation and bounds of a structure that was added with {@link #addStructure(Location, Structure)}.
+     *
+     * <p>Internal Use Only. This is called once the structure is pasted.</p>
+     *
+     * @param loc          The location of the structure.
+     * @param structure    The structure.
+     * @param rotation     The rotation of the structure in degrees.
+     * @param minimumPoint The minimum point of the structure.
+     * @param maximumPoint The maximum point of the structure.
+     */
+    public void updateStructurePlacement(Location loc, Structure structure, double rotation, Location minimumPoint, Location maximumPoint) {
+        queueEntry(StructureJournal.EntryType.PLACEMENT, loc, structure, entry -> {
+            entry.rotation = (int) Math.round(rotation);
+            entry.bounds = new int[]{
+                    minimumPoint.getBlockX(), minimumPoint.getBlockY(), minimumPoint.getBlockZ(),
+                    maximumPoint.getBlockX(), maximumPoint.getBlockY(), maximumPoint.getBlockZ()
+            };
+        });
+    }
+
+    /**
+     * Write an entry to the journal and queue it to be saved.
+     *
+     * @param type      The type of the entry.
+     * @param loc       The location of the structure.
+     * @param structure The structure.
+     * @param details   Sets the fields that depend on the type of the entry.
+     */
+    private void queueEntry(StructureJournal.EntryType type, Location loc, Structure structure, Consumer<StructureJournal.Entry> details) {
+        StructureJournal.Entry entry;
+        // Entries are queued in the order of their sequence numbers.
+        synchronized (structuresToSave) {
+            entry = journal.createEntry(type, Objects.requireNonNull(loc.getWorld()).getName(), loc.getBlockX(), loc.getBlockY(),
+                    loc.getBlockZ(), structure.getName());
+            details.accept(entry);
+            structuresToSave.add(entry);
+        }
+        try {
+            journal.append(entry);
+        } catch (IOException exception) {
+            // The structure is still saved to the database, it is only lost if the server stops before then.
+            plugin.getLogger().warning("Unable to write the structure " + structure.getName() + " to the structure journal.");
+            if (plugin.isDebug())
+                exception.printStackTrace();
+        }
+
+        // Wake up the writer for the first structure of a batch (to start the delay) and for a full batch.
+        int pending = pendingSaves.incrementAndGet();
+        if (pending == 1 || pending == SAVE_BATCH_SIZE)
+            LockSupport.unpark(writer);
     }
 
     /**
@@ -108,7 +344,7 @@ public class StructureDatabaseHandler extends BukkitRunnable {
      *
      * <p>The completed future completes exceptionally with {@link StructureNotFoundException} if a structure
      * at the specified location cannot be found.</p>
-     * <p>It also completes exceptionally with {@link StructureDatabaseException} if a SQL error occurs
+     * <p>It also completes exceptionally with {@link StructureDatabaseException} if the structure store fails
      * when attempting to retrieve the structure.</p>
      * <p></p>
      * Usage
@@ -127,10 +363,8 @@ public class StructureDatabaseHandler extends BukkitRunnable {
      * @return The completable future that this will return.
      */
     public CompletableFuture<Structure> getStructure(Location location) {
-        CompletableFuture<Structure> completableFuture = new CompletableFuture<>();
-        structuresToGet.add(Pair.of(location, completableFuture));
-
-        return completableFuture;
+        return read("An error was encountered when attempting to retrieve a structure from the structure database!",
+                "", () -> readStructure(location));
     }
 
     /**
@@ -140,178 +374,354 @@ public class StructureDatabaseHandler extends BukkitRunnable {
      *
      * <p>The completed future could be completed exceptionally. ({@link RateLimitException} or {@link StructureDatabaseException}).</p>
      *
+     * <p>Requests that are made without a requester share a queue. Use {@link #findNearby(NearbyStructuresRequest, UUID)}
+     * for requests that are made on behalf of a player.</p>
+     *
      * @param request The nearby structures request to be made.
      * @return A completable future containing the NearbyStructuresResponse.
      */
     public CompletableFuture<NearbyStructuresResponse> findNearby(NearbyStructuresRequest request) {
-        CompletableFuture<NearbyStructuresResponse> completableFuture = new CompletableFuture<>();
-        if (findNearby.size() <= 5)
-            findNearby.add(Pair.of(request, completableFuture));
-        else
-            Bukkit.getScheduler().runTaskLater(plugin,
-                    () -> completableFuture.completeExceptionally(new RateLimitException("The maximum amount of requests has been hit.")),
-                    5);
+        return findNearby(request, null);
+    }
 
+    /**
+     * Find structures closest to a certain location on behalf of a requester. Customize the request using
+     * {@link NearbyStructuresRequest}.
+     *
+     * <p>Every requester has its own queue of up to 6 requests, and the queues take turns. Identical requests from
+     * close by share a query, and the result is reused for a few seconds. The shared query finds a few more
+     * structures than the limit from the center of the 16 block cell the location is in. If that cannot tell which
+     * structures are the closest to the location itself, the request is queried on its own, so the response is always
+     * the closest structures to the location.</p>
+     *
+     * <p>The completed future could be completed exceptionally. ({@link RateLimitException} if the queue of the
+     * requester is full, or {@link StructureDatabaseException}).</p>
+     *
+     * @param request   The nearby structures request to be made.
+     * @param requester The UUID of the player that made the request. (Null if the request is not made for a player).
+     * @return A completable future containing the NearbyStructuresResponse.
+     */
+    public CompletableFuture<NearbyStructuresResponse> findNearby(NearbyStructuresRequest request, @Nullable UUID requester) {
+        CompletableFuture<NearbyStructuresResponse> response = nearbyRequests.submit(request, requester);
+        if (response != null)
+            return response;
+
+        CompletableFuture<NearbyStructuresResponse> completableFuture = new CompletableFuture<>();
+        Bukkit.getScheduler().runTaskLater(plugin,
+                () -> completableFuture.completeExceptionally(new RateLimitException("The maximum amount of requests has been hit.")),
+                5);
         return completableFuture;
     }
 
     /**
      * Get all the locations of a structure.
      *
+     * <p>All of the locations are loaded at once. For structures that have spawned many times, use
+     * {@link #getStructureLocations(Structure, String, int)} or {@link #streamStructureLocations(Structure, int)} instead.</p>
+     *
      * @param structure The structure to find the locations for.
      * @return A completable future containing the list of locations.
      */
     public CompletableFuture<List<Location>> getStructureLocations(Structure structure) {
-        CompletableFuture<List<Location>> completableFuture = new CompletableFuture<>();
-        locationsToGet.add(Pair.of(structure, completableFuture));
+        return read("An error was encountered when attempting to retrieve structures from the structure database!",
+                "", () -> readLocations(structure.getName()));
+    }
 
-        return completableFuture;
+    /**
+     * Get a page of the locations of a structure, in the order the structures were saved.
+     *
+     * <p>The completed future completes exceptionally with {@link IllegalArgumentException} if the continuation token is
+     * invalid, or with {@link StructureDatabaseException} if the structure store fails.</p>
+     * <p></p>
+     * Usage
+     * <code>
+     * databaseHandler.getStructureLocations(structure, null, 100)<br>
+     * .thenAccept(page -&#62; {<br>
+     * page.getLocations().forEach(System.out::println);<br>
+     * // Request page.getContinuationToken() next if page.hasNextPage().<br>
+     * });<br>
+     * </code>
+     *
+     * @param structure         The structure to find the locations for.
+     * @param continuationToken The continuation token of the previous page. (Null for the first page).
+     * @param pageSize          The maximum number of locations on the page. (Up to 1000).
+     * @return A completable future containing the page.
+     */
+    public CompletableFuture<StructureLocationPage> getStructureLocations(Structure structure, @Nullable String continuationToken, int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("The page size must be positive.");
+
+        long afterId;
+        try {
+            afterId = continuationToken == null ? 0 : Long.parseLong(continuationToken);
+        } catch (NumberFormatException ex) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid continuation token: " + continuationToken));
+        }
+
+        int limit = Math.min(pageSize, MAX_PAGE_SIZE);
+        return read("An error was encountered when attempting to retrieve structures from the structure database!",
+                " (Page)", () -> readLocationPage(structure.getName(), afterId, limit));
     }
 
-    @Override
-    public void run() {
-        // Handle save requests.
-        for (Map.Entry<Location, Structure> entry : structuresToSave.entrySet()) {
-            String worldName = Objects.requireNonNull(entry.getKey().getWorld()).getName();
-            try {
-                PreparedStatement statement = connection.prepareStatement("INSERT INTO Structures (name, x, y, z, world) VALUES (?, ?, ?, ?, ?)");
-                statement.setString(1, entry.getValue().getName());
-                statement.setDouble(2, entry.getKey().getBlockX());
-                statement.setDouble(3, entry.getKey().getBlockY());
-                statement.setDouble(4, entry.getKey().getBlockZ());
-                statement.setString(5, worldName);
-
-                statement.executeUpdate();
-                statement.close();
-            } catch (SQLException exception) {
-                if (plugin.isDebug()) {
-                    plugin.getLogger().warning("An error was encountered when attempting to save a structure to the structure database!");
-                    exception.printStackTrace();
+    /**
+     * Stream all the locations of a structure, in the order the structures were saved.
+     *
+     * <p>The locations are read from the database one page at a time as the subscriber requests them. The subscriber is
+     * <b>not</b> called on the main thread.</p>
+     *
+     * @param structure The structure to find the locations for.
+     * @param pageSize  The number of locations that are read from the database at a time. (Up to 1000).
+     * @return A publisher of the locations.
+     */
+    public Flow.Publisher<Location> streamStructureLocations(Structure structure, int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("The page size must be positive.");
+        return new StructureLocationPublisher(this, structure, pageSize);
+    }
+
+    /**
+     * Get the structures whose location is inside a box, in the order the structures were saved.
+     *
+     * <p>The rotation and bounds of the structures are included if they are known (see {@link StoredStructure#getBounds()}).</p>
+     *
+     * @param world The world to look in.
+     * @param box   The box, in block coordinates.
+     * @return A completable future containing the structures.
+     */
+    public CompletableFuture<List<StoredStructure>> getStructuresInside(World world, BoundingBox box) {
+        return read("An error was encountered when attempting to retrieve structures from the structure database!",
+                " (Inside)", () -> store.findInside(world.getName(),
+                        (int) Math.floor(box.getMinX()), (int) Math.floor(box.getMinY()), (int) Math.floor(box.getMinZ()),
+                        (int) Math.floor(box.getMaxX()), (int) Math.floor(box.getMaxY()), (int) Math.floor(box.getMaxZ())));
+    }
+
+    /**
+     * Read from the store on one of the reader threads.
+     *
+     * @param errorMessage The message of the {@link StructureDatabaseException} if the store fails.
+     * @param debugSuffix  Added to the message that is logged in debug mode.
+     * @param query        The query to run.
+     * @param <T>          The type of the result.
+     * @return A completable future containing the result of the query.
+     */
+    private <T> CompletableFuture<T> read(String errorMessage, String debugSuffix, Supplier<T> query) {
+        CompletableFuture<T> completableFuture = new CompletableFuture<>();
+        try {
+            readers.execute(() -> {
+                awaitMigration();
+                try {
+                    completableFuture.complete(query.get());
+                } catch (StructureDatabaseException exception) {
+                    completableFuture.completeExceptionally(new StructureDatabaseException(errorMessage));
+                    if (plugin.isDebug()) {
+                        plugin.getLogger().warning(errorMessage + debugSuffix);
+                        (exception.getCause() == null ? exception : exception.getCause()).printStackTrace();
+                    }
+                } catch (RuntimeException exception) {
+                    completableFuture.completeExceptionally(exception);
                 }
+            });
+        } catch (RejectedExecutionException exception) {
+            completableFuture.completeExceptionally(new StructureDatabaseException("The structure database is shutting down."));
+        }
+        return completableFuture;
+    }
+
+    private Structure readStructure(Location location) {
+        StoredStructure stored = store.getStructureAt(Objects.requireNonNull(location.getWorld()).getName(),
+                location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        if (stored == null)
+            throw new StructureNotFoundException("Cannot find structure with the provided location.");
+        Structure structure = plugin.getStructureHandler().getStructure(stored.getName());
+        if (structure == null)
+            throw new StructureNotFoundException("Retrieved structure is not loaded!");
+        return structure;
+    }
+
+    private List<Location> readLocations(String name) {
+        List<Location> result = new ArrayList<>();
+        Map<String, World> worlds = new HashMap<>();
+        long afterId = 0;
+        List<StoredStructure> page;
+        do {
+            page = store.findByName(name, afterId, MAX_PAGE_SIZE);
+            for (StoredStructure stored : page) {
+                result.add(toLocation(stored, worlds));
+                afterId = stored.getId();
             }
+        } while (page.size() == MAX_PAGE_SIZE);
+        return result;
+    }
+
+    private NearbyStructuresResponse readNearby(NearbyStructuresRequest request) {
+        List<NearbyStructuresResponse.NearbyStructureContainer> result = new ArrayList<>();
+        Map<String, World> worlds = new HashMap<>();
+        Location location = request.getLocation();
+        int x = location.getBlockX();
+        int y = location.getBlockY();
+        int z = location.getBlockZ();
+        for (StoredStructure stored : store.findNearest(Objects.requireNonNull(location.getWorld()).getName(),
+                request.hasName() ? request.getName() : null, x, y, z, request.getLimit())) {
+            result.add(new NearbyStructuresResponse.NearbyStructureContainer(
+                    toLocation(stored, worlds),
+                    plugin.getStructureHandler().getStructure(stored.getName()),
+                    stored.distance(x, y, z)
+            ));
         }
-        structuresToSave.clear();
+        return new NearbyStructuresResponse(result);
+    }
 
-        // Handle structures at a specific location requests.
-        for (Pair<Location, CompletableFuture<Structure>> pair : structuresToGet) {
+    /**
+     * Read a page of locations.
+     *
+     * @param name    The name of the structure.
+     * @param afterId The id of the last structure on the previous page.
+     * @param limit   The maximum number of locations on the page.
+     * @return The page.
+     */
+    private StructureLocationPage readLocationPage(String name, long afterId, int limit) {
+        // One extra structure is read to know if there is another page.
+        List<StoredStructure> structures = store.findByName(name, afterId, limit + 1);
+        boolean hasNextPage = structures.size() > limit;
+        if (hasNextPage)
+            structures = structures.subList(0, limit);
+
+        List<Location> locations = new ArrayList<>(structures.size());
+        Map<String, World> worlds = new HashMap<>();
+        for (StoredStructure stored : structures)
+            locations.add(toLocation(stored, worlds));
+        long lastId = structures.isEmpty() ? afterId : structures.get(structures.size() - 1).getId();
+        return new StructureLocationPage(locations, hasNextPage ? Long.toString(lastId) : null);
+    }
+
+    /**
+     * Get the location of a stored structure.
+     *
+     * @param stored The stored structure.
+     * @param worlds The worlds that were already looked up.
+     * @return The location.
+     */
+    private static Location toLocation(StoredStructure stored, Map<String, World> worlds) {
+        return new Location(worlds.computeIfAbsent(stored.getWorld(), Bukkit::getWorld), stored.getX(), stored.getY(), stored.getZ());
+    }
+
+    /**
+     * Move the structures in the journal to the store.
+     *
+     * <p>Only called by the writer thread.</p>
+     *
+     * @return If all of the structures were saved.
+     */
+    private boolean saveStructures() {
+        if (structuresToSave.isEmpty()) return true;
+
+        while (!structuresToSave.isEmpty()) {
+            List<StructureJournal.Entry> batch = new ArrayList<>();
+            StructureJournal.Entry entry;
+            while (batch.size() < SAVE_BATCH_SIZE && (entry = structuresToSave.poll()) != null)
+                batch.add(entry);
+            pendingSaves.addAndGet(-batch.size());
+
+            List<StoredStructure> spawns = new ArrayList<>(batch.size());
+            List<StoredStructure> placements = new ArrayList<>();
+            for (StructureJournal.Entry saving : batch) {
+                StoredStructure stored = new StoredStructure(0, saving.world, saving.structure, saving.x, saving.y, saving.z,
+                        saving.spawnTime, saving.rotation, saving.bounds);
+                if (saving.type == StructureJournal.EntryType.SPAWN)
+                    spawns.add(stored);
+                else if (saving.bounds != null)
+                    placements.add(stored);
+            }
+
+            long saveStart = System.nanoTime();
             try {
-                PreparedStatement statement = connection.prepareStatement("SELECT name FROM Structures WHERE x = ? AND y = ? AND z = ? AND world = ?");
-                statement.setDouble(1, pair.getLeft().getBlockX());
-                statement.setDouble(2, pair.getLeft().getBlockY());
-                statement.setDouble(3, pair.getLeft().getBlockZ());
-                statement.setString(4, Objects.requireNonNull(pair.getLeft().getWorld()).getName());
-
-                ResultSet resultSet = statement.executeQuery();
-
-                if (resultSet.next()) {
-                    Structure structure = plugin.getStructureHandler().getStructure(resultSet.getString("name"));
-                    if (structure != null) {
-                        pair.getRight().complete(structure);
-                    } else {
-                        pair.getRight().completeExceptionally(new StructureNotFoundException("Retrieved structure is not loaded!"));
-                    }
-                } else {
-                    pair.getRight().completeExceptionally(new StructureNotFoundException("Cannot find structure with the provided location."));
-                }
-            } catch (SQLException exception) {
-                pair.getRight().completeExceptionally(new StructureDatabaseException("An error was encountered when attempting to retrieve a structure from the structure database!"));
+                store.save(spawns, placements, batch.get(batch.size() - 1).sequence);
+            } catch (StructureDatabaseException exception) {
+                // Put the batch back in front, so it is saved in order the next time.
+                for (int i = batch.size() - 1; i >= 0; i--)
+                    structuresToSave.addFirst(batch.get(i));
+                pendingSaves.addAndGet(batch.size());
                 if (plugin.isDebug()) {
-                    plugin.getLogger().warning("An error was encountered when attempting to retrieve a structure from the structure database!");
+                    plugin.getLogger().warning("An error was encountered when attempting to save structures to the structure database!");
                     exception.printStackTrace();
                 }
+                return false;
+            }
+            long nanosPerStructure = (System.nanoTime() - saveStart) / batch.size();
+            for (StructureJournal.Entry saved : batch) {
+                if (saved.type == StructureJournal.EntryType.SPAWN)
+                    plugin.getSpawnMetrics().record(saved.structure, SpawnStage.DB_LOGGING, nanosPerStructure);
             }
         }
-        structuresToGet.clear();
 
-        // Handle locations of a specific structure requests.
-        for (Pair<Structure, CompletableFuture<List<Location>>> pair : locationsToGet) {
-            List<Location> result = new ArrayList<>();
-            try {
-                PreparedStatement statement = connection.prepareStatement("SELECT * FROM Structures WHERE name = ?");
-                statement.setString(1, pair.getLeft().getName());
-
-                ResultSet resultSet = statement.executeQuery();
-
-                while (resultSet.next()) {
-                    result.add(new Location(
-                            Bukkit.getWorld(resultSet.getString("world")),
-                            resultSet.getDouble("x"),
-                            resultSet.getDouble("y"),
-                            resultSet.getDouble("z")
-                    ));
-                }
+        flush(false);
+        return true;
+    }
 
-                pair.getRight().complete(result);
-            } catch (SQLException exception) {
-                pair.getRight().completeExceptionally(new StructureDatabaseException("An error was encountered when attempting to retrieve structures from the structure database!"));
-                if (plugin.isDebug()) {
-                    plugin.getLogger().warning("An error was encountered when attempting to retrieve structures from the structure database!");
-                    exception.printStackTrace();
-                }
+    /**
+     * Let the store flush what it saved, and empty the journal up to what can no longer be lost.
+     *
+     * <p>Only called by the writer thread.</p>
+     *
+     * @param force If the store has to flush everything now.
+     */
+    private void flush(boolean force) {
+        try {
+            store.flush(force);
+        } catch (StructureDatabaseException exception) {
+            if (plugin.isDebug()) {
+                plugin.getLogger().warning("An error was encountered when attempting to flush the structure store!");
+                exception.printStackTrace();
             }
         }
-        locationsToGet.clear();
-
-        // Handle nearby requests.
-        for (Pair<NearbyStructuresRequest, CompletableFuture<NearbyStructuresResponse>> pair : findNearby) {
-            try {
-                List<NearbyStructuresResponse.NearbyStructureContainer> result = new ArrayList<>();
-                // So this does not clog up the IO Operations.
-                NearbyStructuresRequest nearbyStructuresRequest = pair.getLeft();
-                PreparedStatement statement = null;
-
-                if (nearbyStructuresRequest.hasName()) {
-                    statement = connection.prepareStatement("SELECT *, DIST(?, ?, ?, x, y, z) AS dist FROM Structures WHERE name = ? AND world = ? ORDER BY dist ASC LIMIT ?");
-                    statement.setInt(1, nearbyStructuresRequest.getLocation().getBlockX());
-                    statement.setInt(2, nearbyStructuresRequest.getLocation().getBlockY());
-                    statement.setInt(3, nearbyStructuresRequest.getLocation().getBlockZ());
-                    statement.setString(4, nearbyStructuresRequest.getName());
-                    statement.setString(5, Objects.requireNonNull(nearbyStructuresRequest.getLocation().getWorld()).getName());
-                    statement.setInt(6, nearbyStructuresRequest.getLimit());
-                } else {
-                    statement = connection.prepareStatement("SELECT *, DIST(?, ?, ?, x, y, z) AS dist FROM Structures WHERE world = ? ORDER BY dist ASC LIMIT ?");
-                    statement.setInt(1, nearbyStructuresRequest.getLocation().getBlockX());
-                    statement.setInt(2, nearbyStructuresRequest.getLocation().getBlockY());
-                    statement.setInt(3, nearbyStructuresRequest.getLocation().getBlockZ());
-                    statement.setString(4, Objects.requireNonNull(nearbyStructuresRequest.getLocation().getWorld()).getName());
-                    statement.setInt(5, nearbyStructuresRequest.getLimit());
-                }
-                ResultSet resultSet = statement.executeQuery();
-
-                while (resultSet.next()) {
-                    result.add(new NearbyStructuresResponse.NearbyStructureContainer(
-                            new Location(
-                                    Bukkit.getWorld(resultSet.getString("world")),
-                                    resultSet.getDouble("x"),
-                                    resultSet.getDouble("y"),
-                                    resultSet.getDouble("z")
-                            ),
-                            plugin.getStructureHandler().getStructure(resultSet.getString("name")),
-                            resultSet.getDouble("dist")
-                    ));
-                }
 
-                pair.getRight().complete(new NearbyStructuresResponse(result));
-            } catch (SQLException ex) {
-                pair.getRight().completeExceptionally(new StructureDatabaseException("An error was encountered when attempting to retrieve structures from the structure database!"));
-                if (plugin.isDebug()) {
-                    plugin.getLogger().warning("An error was encountered when attempting to retrieve structures from the structure database! (Nearby)");
-                    ex.printStackTrace();
-                }
+        long committedSequence = store.getCommittedSequence();
+        if (committedSequence == checkpointedSequence) return;
+        try {
+            journal.checkpoint(committedSequence);
+            checkpointedSequence = committedSequence;
+        } catch (IOException exception) {
+            if (plugin.isDebug()) {
+                plugin.getLogger().warning("An error was encountered when attempting to empty the structure journal!");
+                exception.printStackTrace();
             }
         }
-        findNearby.clear();
     }
 
-    @Override
-    public synchronized void cancel() throws IllegalStateException {
-        run();
-        super.cancel();
+    /**
+     * Save the remaining structures and close the database.
+     *
+     * <p>Internal Use Only.</p>
+     */
+    public void cancel() {
+        // A migration that is still running stops at the next batch, it continues the next time the server starts.
+        stopping = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+            if (writer.isAlive())
+                plugin.getLogger().warning("The structure database did not stop in time.");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Requests that are already queued are still answered.
+        readers.shutdown();
+        try {
+            if (!readers.awaitTermination(5, TimeUnit.SECONDS))
+                readers.shutdownNow();
+        } catch (InterruptedException ex) {
+            readers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        // The structures that were not saved in time are still in the journal.
+        if (writer.isAlive()) return;
         try {
-            connection.close();
-        } catch (SQLException ex) {
+            store.close();
+        } catch (StructureDatabaseException ex) {
             if (plugin.isDebug()) {
-                plugin.getLogger().warning("An error was encountered when attempting to close the database connection!");
+                plugin.getLogger().warning("An error was encountered when attempting to close the structure store!");
                 ex.printStackTrace();
             }
         }
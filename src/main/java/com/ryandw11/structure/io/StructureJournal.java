@@ -0,0 +1,283 @@
+package com.ryandw11.structure.io;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the structures that are waiting to be saved to the structure database.
+ *
+ * <p>Every structure is written to the journal when it is logged, and the journal is emptied once the structures are
+ * in the database. If the server stops before that happens, the structures are read back from the journal on the
+ * next start.</p>
+ *
+ * <p>The file starts with a header, followed by records of the form <code>[length][entry][crc32]</code>. A record that
+ * was only partly written when the server stopped fails its checksum, so it and everything after it are cut off.</p>
+ *
+ * <p>Appends are only handed to the operating system, they are not forced to the disk. This survives the server
+ * crashing, but not the machine losing power.</p>
+ */
+class StructureJournal implements Closeable {
+    // "CSJ" followed by the version of the format.
+    private static final int HEADER_V1 = 0x43534A01;
+    // Version 2 added the type of the entry, the spawn time, and the rotation and bounds of a structure.
+    private static final int HEADER = 0x43534A02;
+    private static final int HEADER_SIZE = 4;
+    // Anything larger than this is not a record that was written by this class.
+    private static final int MAX_RECORD_SIZE = 4096;
+
+    private final File file;
+    private FileOutputStream fileOutput;
+    private DataOutputStream output;
+    private long nextSequence;
+    private long lastAppended;
+
+    /**
+     * Create a journal. The file is not touched until {@link #open(long)} is called.
+     *
+     * @param file The journal file.
+     */
+    StructureJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Read the entries that are in the journal and open it for appending.
+     *
+     * <p>A journal with an invalid header is moved to <code>[name].corrupt</code> and a new one is started. A journal
+     * in an older format is rewritten in the current format.</p>
+     *
+     * @param committedSequence The last sequence number that is in the database.
+     * @return All of the valid entries in the journal, in the order they were appended.
+     * @throws IOException If the journal cannot be read or written.
+     */
+    synchronized List<Entry> open(long committedSequence) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long validLength = HEADER_SIZE;
+        boolean outdated = false;
+        if (file.exists() && file.length() > 0) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                int header = file.length() < HEADER_SIZE ? 0 : input.readInt();
+                if (header != HEADER && header != HEADER_V1) {
+                    input.close();
+                    File corruptFile = new File(file.getParentFile(), file.getName() + ".corrupt");
+                    if (!file.renameTo(corruptFile))
+                        throw new IOException("Unable to move the invalid journal out of the way.");
+                } else {
+                    outdated = header == HEADER_V1;
+                    Entry entry;
+                    while ((entry = readRecord(input, header)) != null) {
+                        entries.add(entry);
+                        validLength += 8L + entry.recordSize;
+                    }
+                }
+            }
+        }
+
+        if (outdated) {
+            rewrite(entries);
+        } else if (file.exists() && file.length() > 0 && file.length() != validLength) {
+            // Cut off a record that was only partly written.
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+
+        if (file.exists() && file.length() > 0) {
+            fileOutput = new FileOutputStream(file, true);
+        } else {
+            fileOutput = new FileOutputStream(file, false);
+            new DataOutputStream(fileOutput).writeInt(HEADER);
+        }
+        output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+
+        long lastSequence = committedSequence;
+        for (Entry entry : entries)
+            lastSequence = Math.max(lastSequence, entry.sequence);
+        nextSequence = lastSequence + 1;
+        lastAppended = lastSequence;
+        return entries;
+    }
+
+    /**
+     * Replace the journal with one in the current format.
+     *
+     * @param entries The entries of the journal.
+     * @throws IOException If the journal cannot be written.
+     */
+    private void rewrite(List<Entry> entries) throws IOException {
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream tempOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            tempOutput.writeInt(HEADER);
+            for (Entry entry : entries)
+                writeRecord(tempOutput, entry);
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a single record.
+     *
+     * @param input  The input to read from.
+     * @param header The header of the journal.
+     * @return The entry. (Null if there are no more complete records).
+     * @throws IOException If the journal cannot be read.
+     */
+    private Entry readRecord(DataInputStream input, int header) throws IOException {
+        try {
+            int length = input.readInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE) return null;
+            byte[] payload = new byte[length];
+            input.readFully(payload);
+            int checksum = input.readInt();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) return null;
+
+            DataInputStream payloadInput = new DataInputStream(new ByteArrayInputStream(payload));
+            Entry entry;
+            if (header == HEADER_V1) {
+                // Version 1 only had spawns, without the time they spawned at.
+                entry = new Entry(payloadInput.readLong(), EntryType.SPAWN, payloadInput.readUTF(), payloadInput.readInt(),
+                        payloadInput.readInt(), payloadInput.readInt(), payloadInput.readUTF());
+            } else {
+                entry = new Entry(payloadInput.readLong(), EntryType.values()[payloadInput.readByte()], payloadInput.readUTF(),
+                        payloadInput.readInt(), payloadInput.readInt(), payloadInput.readInt(), payloadInput.readUTF());
+                if (entry.type == EntryType.SPAWN) {
+                    entry.spawnTime = payloadInput.readLong();
+                } else {
+                    entry.rotation = payloadInput.readShort();
+                    entry.bounds = new int[6];
+                    for (int i = 0; i < entry.bounds.length; i++)
+                        entry.bounds[i] = payloadInput.readInt();
+                }
+            }
+            entry.recordSize = length;
+            return entry;
+        } catch (EOFException | ArrayIndexOutOfBoundsException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Create the next entry of the journal. (It is not written until {@link #append(Entry)} is called).
+     *
+     * @param type      The type of the entry.
+     * @param world     The name of the world.
+     * @param x         The x coordinate.
+     * @param y         The y coordinate.
+     * @param z         The z coordinate.
+     * @param structure The name of the structure.
+     * @return The entry.
+     */
+    synchronized Entry createEntry(EntryType type, String world, int x, int y, int z, String structure) {
+        Entry entry = new Entry(nextSequence++, type, world, x, y, z, structure);
+        lastAppended = entry.sequence;
+        return entry;
+    }
+
+    /**
+     * Write an entry to the end of the journal.
+     *
+     * @param entry The entry to write.
+     * @throws IOException If the entry cannot be written.
+     */
+    synchronized void append(Entry entry) throws IOException {
+        writeRecord(output, entry);
+        output.flush();
+    }
+
+    private static void writeRecord(DataOutputStream output, Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeLong(entry.sequence);
+        payload.writeByte(entry.type.ordinal());
+        payload.writeUTF(entry.world);
+        payload.writeInt(entry.x);
+        payload.writeInt(entry.y);
+        payload.writeInt(entry.z);
+        payload.writeUTF(entry.structure);
+        if (entry.type == EntryType.SPAWN) {
+            payload.writeLong(entry.spawnTime);
+        } else {
+            payload.writeShort(entry.rotation);
+            for (int bound : entry.bounds)
+                payload.writeInt(bound);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        output.writeInt(bytes.size());
+        bytes.writeTo(output);
+        output.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Empty the journal if every entry in it is in the database.
+     *
+     * @param committedSequence The last sequence number that is in the database.
+     * @throws IOException If the journal cannot be truncated.
+     */
+    synchronized void checkpoint(long committedSequence) throws IOException {
+        if (committedSequence < lastAppended) return;
+        output.flush();
+        fileOutput.getChannel().truncate(HEADER_SIZE);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (output != null)
+            output.close();
+    }
+
+    /**
+     * The types of entries in the journal.
+     */
+    enum EntryType {
+        /**
+         * A structure spawned.
+         */
+        SPAWN,
+        /**
+         * The rotation and bounds of a structure that spawned, known once it is pasted.
+         */
+        PLACEMENT
+    }
+
+    /**
+     * An entry in the journal.
+     */
+    static class Entry {
+        final long sequence;
+        final EntryType type;
+        final String world;
+        final int x;
+        final int y;
+        final int z;
+        final String structure;
+        // The time the structure spawned at in milliseconds. (0 if it is not known).
+        long spawnTime;
+        // The rotation in degrees and the bounds (minX, minY, minZ, maxX, maxY, maxZ) of a placement.
+        int rotation;
+        @Nullable
+        int[] bounds;
+        private int recordSize;
+
+        Entry(long sequence, EntryType type, String world, int x, int y, int z, String structure) {
+            this.sequence = sequence;
+            this.type = type;
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.structure = structure;
+        }
+    }
+}
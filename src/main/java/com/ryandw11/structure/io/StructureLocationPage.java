@@ -0,0 +1,61 @@
+package com.ryandw11.structure.io;
+
+import org.bukkit.Location;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * A page of the locations of a structure.
+ *
+ * <p>Returned in the CompletableFuture provided by
+ * {@link StructureDatabaseHandler#getStructureLocations(com.ryandw11.structure.structure.Structure, String, int)}.
+ * Pass the continuation token of a page to get the next page.</p>
+ */
+public class StructureLocationPage {
+    private final List<Location> locations;
+    private final String continuationToken;
+
+    /**
+     * Construct a page of structure locations.
+     * <p>For internal use only.</p>
+     *
+     * @param locations         The locations on the page.
+     * @param continuationToken The token of the next page. (Null if this is the last page).
+     */
+    public StructureLocationPage(@NotNull List<Location> locations, @Nullable String continuationToken) {
+        this.locations = locations;
+        this.continuationToken = continuationToken;
+    }
+
+    /**
+     * Get the locations on this page, in the order the structures were saved.
+     *
+     * <p>The world of a location is null if the world is not loaded.</p>
+     *
+     * @return The locations on this page.
+     */
+    public List<Location> getLocations() {
+        return locations;
+    }
+
+    /**
+     * Get the token that is used to request the next page.
+     *
+     * @return The token of the next page. (Null if this is the last page).
+     */
+    @Nullable
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * Check if there is a page after this one.
+     *
+     * @return If there is a page after this one.
+     */
+    public boolean hasNextPage() {
+        return continuationToken != null;
+    }
+}
@@ -0,0 +1,120 @@
+package com.ryandw11.structure.io;
+
+import com.ryandw11.structure.structure.Structure;
+import org.bukkit.Location;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the locations of a structure one page at a time.
+ *
+ * <p>A page is only requested from the database once the subscriber has asked for more locations than are left over
+ * from the previous page, so at most one page is held in memory per subscriber.</p>
+ *
+ * <p>The subscriber is <b>not</b> called on the main thread.</p>
+ */
+class StructureLocationPublisher implements Flow.Publisher<Location> {
+    private final StructureDatabaseHandler handler;
+    private final Structure structure;
+    private final int pageSize;
+
+    StructureLocationPublisher(StructureDatabaseHandler handler, Structure structure, int pageSize) {
+        this.handler = handler;
+        this.structure = structure;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Location> subscriber) {
+        Objects.requireNonNull(subscriber);
+        LocationSubscription subscription = new LocationSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    private class LocationSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super Location> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // Makes sure that only one thread signals the subscriber at a time.
+        private final AtomicInteger work = new AtomicInteger();
+        private final Queue<Location> buffer = new ArrayDeque<>();
+
+        private volatile boolean cancelled;
+        private volatile boolean fetching;
+        // Set by the page request and taken by the drain loop.
+        private volatile StructureLocationPage fetchedPage;
+        private volatile Throwable error;
+        private String continuationToken;
+        private boolean lastPage;
+
+        private LocationSubscription(Flow.Subscriber<? super Location> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("The number of requested locations must be positive.");
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void drain() {
+            if (work.getAndIncrement() != 0) return;
+            int missed = 1;
+            do {
+                if (cancelled) return;
+                if (error != null) {
+                    cancelled = true;
+                    subscriber.onError(error);
+                    return;
+                }
+                StructureLocationPage page = fetchedPage;
+                if (page != null) {
+                    fetchedPage = null;
+                    buffer.addAll(page.getLocations());
+                    continuationToken = page.getContinuationToken();
+                    lastPage = !page.hasNextPage();
+                    fetching = false;
+                }
+
+                while (demand.get() > 0 && !buffer.isEmpty() && !cancelled) {
+                    subscriber.onNext(buffer.poll());
+                    demand.decrementAndGet();
+                }
+
+                if (buffer.isEmpty() && !fetching && !cancelled) {
+                    if (lastPage) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    if (demand.get() > 0) {
+                        fetching = true;
+                        handler.getStructureLocations(structure, continuationToken, pageSize).whenComplete((result, exception) -> {
+                            if (exception != null) {
+                                error = exception;
+                            } else {
+                                fetchedPage = result;
+                            }
+                            drain();
+                        });
+                    }
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
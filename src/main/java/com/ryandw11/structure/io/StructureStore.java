@@ -0,0 +1,127 @@
+package com.ryandw11.structure.io;
+
+import com.ryandw11.structure.exceptions.StructureDatabaseException;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Where the {@link StructureDatabaseHandler} keeps the structures that spawned.
+ *
+ * <p>The handler saves from a single writer thread, and reads from any number of other threads at the same time. A
+ * store must allow reads while it is saving. The methods throw {@link StructureDatabaseException} if the store fails.</p>
+ *
+ * <p>Results that contain more than one structure are in the order of their ids, unless stated otherwise.</p>
+ *
+ * <p>Internal Use Only.</p>
+ */
+public interface StructureStore extends AutoCloseable {
+
+    /**
+     * Bring the data of the store up to date. This is called by the writer thread before anything is saved.
+     *
+     * @param logger   The logger to report the progress to.
+     * @param stopping If the migration should stop early.
+     * @return If the store is up to date. (False if the migration was stopped).
+     */
+    default boolean migrate(Logger logger, BooleanSupplier stopping) {
+        return true;
+    }
+
+    /**
+     * Get the sequence number of the last journal entry that can no longer be lost.
+     *
+     * <p>Journal entries up to this number are removed from the journal.</p>
+     *
+     * @return The sequence number. (0 if nothing is saved yet).
+     */
+    long getCommittedSequence();
+
+    /**
+     * Save a batch of structures at once. Nothing in the batch is saved if this fails.
+     *
+     * @param spawns       The structures that spawned. (Their ids are ignored).
+     * @param placements   The rotations and bounds of structures. Each updates the latest structure with the same world,
+     *                     name and location, after the spawns are saved.
+     * @param lastSequence The sequence number of the last journal entry in the batch.
+     */
+    void save(List<StoredStructure> spawns, List<StoredStructure> placements, long lastSequence);
+
+    /**
+     * Make sure that everything that is saved can no longer be lost.
+     *
+     * <p>The writer thread calls this every so often. A store that writes everything right away does not need to do
+     * anything.</p>
+     *
+     * @param force If everything has to be written now, instead of when the store would next do so.
+     */
+    default void flush(boolean force) {
+    }
+
+    /**
+     * Get the structure at a block.
+     *
+     * @param world The name of the world.
+     * @param x     The x coordinate.
+     * @param y     The y coordinate.
+     * @param z     The z coordinate.
+     * @return The latest structure at the block. (Null if there is none).
+     */
+    @Nullable
+    StoredStructure getStructureAt(String world, int x, int y, int z);
+
+    /**
+     * Find the structures closest to a block.
+     *
+     * @param world The name of the world.
+     * @param name  The name of the structure. (Null for any structure).
+     * @param x     The x coordinate.
+     * @param y     The y coordinate.
+     * @param z     The z coordinate.
+     * @param limit The maximum number of structures.
+     * @return The structures, closest first. (Ties are in the order of their ids).
+     */
+    List<StoredStructure> findNearest(String world, @Nullable String name, int x, int y, int z, int limit);
+
+    /**
+     * Find the structures with a name.
+     *
+     * @param name    The name of the structure.
+     * @param afterId Only structures with a larger id are returned.
+     * @param limit   The maximum number of structures.
+     * @return The structures.
+     */
+    List<StoredStructure> findByName(String name, long afterId, int limit);
+
+    /**
+     * Find the structures whose location is inside a box.
+     *
+     * @param world The name of the world.
+     * @param minX  The lowest x coordinate.
+     * @param minY  The lowest y coordinate.
+     * @param minZ  The lowest z coordinate.
+     * @param maxX  The highest x coordinate.
+     * @param maxY  The highest y coordinate.
+     * @param maxZ  The highest z coordinate.
+     * @return The structures.
+     */
+    List<StoredStructure> findInside(String world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ);
+
+    /**
+     * Pass every structure in the store to a consumer, without loading all of them at once.
+     *
+     * <p>The order is up to the store.</p>
+     *
+     * @param consumer The consumer.
+     */
+    void export(Consumer<StoredStructure> consumer);
+
+    /**
+     * Close the store. Everything that is saved is flushed first.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,400 @@
+package com.ryandw11.structure.io.memory;
+
+import com.ryandw11.structure.exceptions.StructureDatabaseException;
+import com.ryandw11.structure.io.NearestStructureCollector;
+import com.ryandw11.structure.io.StoredStructure;
+import com.ryandw11.structure.io.StructureStore;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the structures in memory, and writes a snapshot of them to a file every so often.
+ *
+ * <p>Every world has a grid of {@link #CELL_SIZE} by {@link #CELL_SIZE} block cells. Lookups only visit the cells
+ * that can contain a match, so they do not slow down as more structures spawn elsewhere. The closest structures are
+ * found by visiting rings of cells around the location until no closer structure can be in the next ring.</p>
+ *
+ * <p>The snapshot is written to a temporary file and then moved over the old one, so a crash while writing it leaves
+ * the previous snapshot in place. Structures that spawned after the last snapshot are kept in the structure journal
+ * until the next one.</p>
+ *
+ * <p>Internal Use Only.</p>
+ */
+public class MemoryStructureStore implements StructureStore {
+    // "CSS" followed by the version of the format.
+    private static final int SNAPSHOT_HEADER = 0x43535301;
+    // The size of the cells of the grid in blocks.
+    static final int CELL_SIZE = 64;
+
+    private final File snapshotFile;
+    private final long snapshotIntervalNanos;
+    private final Logger logger;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // The fields below are guarded by the lock.
+    private final Map<String, WorldGrid> worlds = new HashMap<>();
+    // The structures of every name, in the order of their ids.
+    private final Map<String, List<StoredStructure>> byName = new HashMap<>();
+    private long nextId = 1;
+
+    // The fields below are only used by the writer thread.
+    private long savedSequence;
+    private boolean dirty;
+    private long lastSnapshot = System.nanoTime();
+    private volatile long committedSequence;
+
+    /**
+     * Create the store and load the last snapshot.
+     *
+     * <p>A snapshot that cannot be read is moved to <code>[name].corrupt</code>, and the store starts out empty.</p>
+     *
+     * @param snapshotFile           The snapshot file.
+     * @param snapshotIntervalMillis How often a snapshot is written if something changed.
+     * @param logger                 The logger to report problems with the snapshot to.
+     */
+    public MemoryStructureStore(File snapshotFile, long snapshotIntervalMillis, Logger logger) {
+        this.snapshotFile = snapshotFile;
+        this.snapshotIntervalNanos = snapshotIntervalMillis * 1_000_000L;
+        this.logger = logger;
+        if (snapshotFile.exists()) {
+            try {
+                loadSnapshot();
+            } catch (IOException exception) {
+                worlds.clear();
+                byName.clear();
+                nextId = 1;
+                committedSequence = 0;
+                File corruptFile = new File(snapshotFile.getParentFile(), snapshotFile.getName() + ".corrupt");
+                logger.severe("Unable to read the structure snapshot. It has been moved to " + corruptFile.getName()
+                        + " and the structures in it will not be listed.");
+                if (!snapshotFile.renameTo(corruptFile))
+                    throw new StructureDatabaseException("Unable to move the invalid structure snapshot out of the way.", exception);
+            }
+        }
+        savedSequence = committedSequence;
+    }
+
+    private void loadSnapshot() throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            if (input.readInt() != SNAPSHOT_HEADER)
+                throw new IOException("Invalid snapshot header.");
+            long sequence = input.readLong();
+            nextId = input.readLong();
+            long count = input.readLong();
+            for (long i = 0; i < count; i++) {
+                long id = input.readLong();
+                String world = input.readUTF();
+                String name = input.readUTF();
+                int x = input.readInt();
+                int y = input.readInt();
+                int z = input.readInt();
+                long spawnTime = input.readLong();
+                int rotation = input.readShort();
+                int[] bounds = null;
+                if (input.readBoolean()) {
+                    bounds = new int[6];
+                    for (int j = 0; j < bounds.length; j++)
+                        bounds[j] = input.readInt();
+                }
+                add(new StoredStructure(id, world, name, x, y, z, spawnTime, rotation, bounds));
+            }
+            committedSequence = sequence;
+        }
+    }
+
+    @Override
+    public long getCommittedSequence() {
+        return committedSequence;
+    }
+
+    @Override
+    public void save(List<StoredStructure> spawns, List<StoredStructure> placements, long lastSequence) {
+        lock.writeLock().lock();
+        try {
+            for (StoredStructure spawn : spawns)
+                add(spawn.withId(nextId++));
+            for (StoredStructure placement : placements) {
+                if (placement.hasPlacement())
+                    place(placement);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        savedSequence = lastSequence;
+        dirty = true;
+    }
+
+    private void add(StoredStructure structure) {
+        worlds.computeIfAbsent(structure.getWorld(), world -> new WorldGrid()).add(structure);
+        // Ids only increase, so the list stays in order.
+        byName.computeIfAbsent(structure.getName(), name -> new ArrayList<>()).add(structure);
+        nextId = Math.max(nextId, structure.getId() + 1);
+    }
+
+    private void place(StoredStructure placement) {
+        WorldGrid grid = worlds.get(placement.getWorld());
+        if (grid == null) return;
+        List<StoredStructure> cell = grid.cells.get(getCellKey(toCell(placement.getX()), toCell(placement.getZ())));
+        if (cell == null) return;
+
+        int latest = -1;
+        for (int i = 0; i < cell.size(); i++) {
+            StoredStructure structure = cell.get(i);
+            if (structure.isAt(placement.getX(), placement.getY(), placement.getZ()) && structure.getName().equals(placement.getName())
+                    && (latest == -1 || structure.getId() > cell.get(latest).getId()))
+                latest = i;
+        }
+        if (latest == -1) return;
+
+        StoredStructure placed = cell.get(latest).withPlacement(placement);
+        cell.set(latest, placed);
+        List<StoredStructure> named = byName.get(placed.getName());
+        named.set(indexAfter(named, placed.getId() - 1), placed);
+    }
+
+    @Override
+    public void flush(boolean force) {
+        if (!dirty) return;
+        long now = System.nanoTime();
+        if (!force && now - lastSnapshot < snapshotIntervalNanos) return;
+        try {
+            writeSnapshot();
+        } catch (IOException exception) {
+            throw new StructureDatabaseException("Unable to write the structure snapshot.", exception);
+        }
+        lastSnapshot = now;
+        dirty = false;
+        committedSequence = savedSequence;
+    }
+
+    private void writeSnapshot() throws IOException {
+        File tempFile = new File(snapshotFile.getParentFile(), snapshotFile.getName() + ".tmp");
+        // Only the writer thread changes the structures, so nothing changes while the snapshot is written.
+        lock.readLock().lock();
+        try (FileOutputStream fileOutput = new FileOutputStream(tempFile);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput))) {
+            output.writeInt(SNAPSHOT_HEADER);
+            output.writeLong(savedSequence);
+            output.writeLong(nextId);
+            long count = 0;
+            for (List<StoredStructure> named : byName.values())
+                count += named.size();
+            output.writeLong(count);
+            for (List<StoredStructure> named : byName.values()) {
+                for (StoredStructure structure : named) {
+                    output.writeLong(structure.getId());
+                    output.writeUTF(structure.getWorld());
+                    output.writeUTF(structure.getName());
+                    output.writeInt(structure.getX());
+                    output.writeInt(structure.getY());
+                    output.writeInt(structure.getZ());
+                    output.writeLong(structure.getSpawnTime());
+                    output.writeShort(structure.getRotation());
+                    int[] bounds = structure.getRawBounds();
+                    output.writeBoolean(bounds != null);
+                    if (bounds != null) {
+                        for (int bound : bounds)
+                            output.writeInt(bound);
+                    }
+                }
+            }
+            output.flush();
+            // The journal is emptied once the snapshot is written, so it has to be on the disk by then.
+            fileOutput.getFD().sync();
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    @Nullable
+    public StoredStructure getStructureAt(String world, int x, int y, int z) {
+        lock.readLock().lock();
+        try {
+            WorldGrid grid = worlds.get(world);
+            if (grid == null) return null;
+            List<StoredStructure> cell = grid.cells.get(getCellKey(toCell(x), toCell(z)));
+            if (cell == null) return null;
+            StoredStructure latest = null;
+            for (StoredStructure structure : cell) {
+                if (structure.isAt(x, y, z) && (latest == null || structure.getId() > latest.getId()))
+                    latest = structure;
+            }
+            return latest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<StoredStructure> findNearest(String world, @Nullable String name, int x, int y, int z, int limit) {
+        if (limit <= 0) return new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            WorldGrid grid = worlds.get(world);
+            if (grid == null) return new ArrayList<>();
+
+            int cellX = toCell(x);
+            int cellZ = toCell(z);
+            return new NearestStructureCollector(x, y, z, name, limit).search(cellX, cellZ, grid.minCellX, grid.minCellZ,
+                    grid.maxCellX, grid.maxCellZ, CELL_SIZE, (ring, visitor) -> grid.forEachInRing(cellX, cellZ, ring, visitor));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<StoredStructure> findByName(String name, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            List<StoredStructure> named = byName.get(name);
+            if (named == null) return new ArrayList<>();
+            int from = indexAfter(named, afterId);
+            return new ArrayList<>(named.subList(from, Math.min(named.size(), from + Math.max(0, limit))));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<StoredStructure> findInside(String world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        lock.readLock().lock();
+        try {
+            List<StoredStructure> result = new ArrayList<>();
+            WorldGrid grid = worlds.get(world);
+            if (grid == null) return result;
+            int fromCellX = Math.max(toCell(minX), grid.minCellX);
+            int toCellX = Math.min(toCell(maxX), grid.maxCellX);
+            int fromCellZ = Math.max(toCell(minZ), grid.minCellZ);
+            int toCellZ = Math.min(toCell(maxZ), grid.maxCellZ);
+            for (int cellX = fromCellX; cellX <= toCellX; cellX++) {
+                for (int cellZ = fromCellZ; cellZ <= toCellZ; cellZ++) {
+                    List<StoredStructure> cell = grid.cells.get(getCellKey(cellX, cellZ));
+                    if (cell == null) continue;
+                    for (StoredStructure structure : cell) {
+                        if (structure.getX() >= minX && structure.getX() <= maxX && structure.getY() >= minY
+                                && structure.getY() <= maxY && structure.getZ() >= minZ && structure.getZ() <= maxZ)
+                            result.add(structure);
+                    }
+                }
+            }
+            result.sort(Comparator.comparingLong(StoredStructure::getId));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void export(Consumer<StoredStructure> consumer) {
+        List<List<StoredStructure>> named;
+        lock.readLock().lock();
+        try {
+            named = new ArrayList<>(byName.size());
+            for (List<StoredStructure> structures : byName.values())
+                named.add(new ArrayList<>(structures));
+        } finally {
+            lock.readLock().unlock();
+        }
+        // The consumer is called without holding the lock, so a slow consumer does not hold up saves.
+        for (List<StoredStructure> structures : named)
+            structures.forEach(consumer);
+    }
+
+    @Override
+    public void close() {
+        flush(true);
+    }
+
+    /**
+     * Find the index of the first structure with a larger id.
+     *
+     * @param structures The structures, in the order of their ids.
+     * @param id         The id.
+     * @return The index. (The size of the list if there is none).
+     */
+    private static int indexAfter(List<StoredStructure> structures, long id) {
+        int low = 0;
+        int high = structures.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (structures.get(middle).getId() <= id)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    private static int toCell(int block) {
+        return Math.floorDiv(block, CELL_SIZE);
+    }
+
+    private static long getCellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The grid of a world.
+     */
+    private static class WorldGrid {
+        private final Map<Long, List<StoredStructure>> cells = new HashMap<>();
+        // The cells that have structures are within these bounds.
+        private int minCellX = Integer.MAX_VALUE;
+        private int minCellZ = Integer.MAX_VALUE;
+        private int maxCellX = Integer.MIN_VALUE;
+        private int maxCellZ = Integer.MIN_VALUE;
+
+        private void add(StoredStructure structure) {
+            int cellX = toCell(structure.getX());
+            int cellZ = toCell(structure.getZ());
+            cells.computeIfAbsent(getCellKey(cellX, cellZ), key -> new ArrayList<>()).add(structure);
+            minCellX = Math.min(minCellX, cellX);
+            minCellZ = Math.min(minCellZ, cellZ);
+            maxCellX = Math.max(maxCellX, cellX);
+            maxCellZ = Math.max(maxCellZ, cellZ);
+        }
+
+        /**
+         * Visit the structures in the cells that are exactly a number of cells away from a cell.
+         *
+         * @param centerX The x coordinate of the center cell.
+         * @param centerZ The z coordinate of the center cell.
+         * @param ring    The distance of the ring in cells.
+         * @param visitor The visitor.
+         */
+        private void forEachInRing(int centerX, int centerZ, int ring, Consumer<StoredStructure> visitor) {
+            int fromX = Math.max(centerX - ring, minCellX);
+            int toX = Math.min(centerX + ring, maxCellX);
+            int fromZ = Math.max(centerZ - ring, minCellZ);
+            int toZ = Math.min(centerZ + ring, maxCellZ);
+            for (int cellX = fromX; cellX <= toX; cellX++) {
+                // The top and bottom rows of the ring, and only the two sides in between.
+                boolean edgeColumn = cellX == centerX - ring || cellX == centerX + ring;
+                for (int cellZ = fromZ; cellZ <= toZ; cellZ++) {
+                    if (!edgeColumn && cellZ != centerZ - ring && cellZ != centerZ + ring) {
+                        if (cellZ < centerZ + ring)
+                            cellZ = centerZ + ring - 1;
+                        continue;
+                    }
+                    List<StoredStructure> cell = cells.get(getCellKey(cellX, cellZ));
+                    if (cell != null)
+                        cell.forEach(visitor);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,927 @@
+package com.ryandw11.structure.io.region;
+
+import com.ryandw11.structure.exceptions.StructureDatabaseException;
+import com.ryandw11.structure.io.NearestStructureCollector;
+import com.ryandw11.structure.io.StoredStructure;
+import com.ryandw11.structure.io.StructureStore;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the structures in region files, the same way Minecraft stores chunks.
+ *
+ * <p>Every world has a folder with a file for each region of 32 by 32 chunks (<code>r.[x].[z].csr</code>). A file
+ * starts with an index of where the structures of each chunk are in the file, followed by the structures as records of
+ * {@link #RECORD_SIZE} bytes. The files are read through a {@link MappedByteBuffer}, so looking up a location only
+ * reads the index entry and records of its chunk, and a nearby query only reads the regions around it. Every name also
+ * has a file in <code>names/</code> with the id and location of each of its structures, in the order of their ids, so a
+ * page of structures by name only reads the chunks on the page. Exporting the structures reads every region.</p>
+ *
+ * <p>When a chunk changes, its records are written again at the end of the region file, and the index is pointed at
+ * them once the whole batch is written. The index changes of a batch are first written to <code>regions.state</code>
+ * together with the names of the structures and the journal sequence number, so a batch that is cut off by a crash is
+ * either finished when the store opens, or left to the structure journal. The space of the old records is reclaimed
+ * when the store opens.</p>
+ *
+ * <p>Internal Use Only.</p>
+ */
+public class RegionStructureStore implements StructureStore {
+    // "CSR" followed by the version of the format.
+    private static final int REGION_HEADER = 0x43535201;
+    // "CST" followed by the version of the format.
+    private static final int STATE_HEADER = 0x43535401;
+    private static final int CHUNKS_PER_REGION = 32 * 32;
+    // The header, and the offset and number of records of every chunk.
+    private static final int INDEX_START = 4;
+    private static final int HEADER_SIZE = INDEX_START + CHUNKS_PER_REGION * 8;
+    /**
+     * The size of a structure in a region file.
+     *
+     * <p>id (8), x, y, z (12), spawn time (8), name id (4), rotation (4), flags (4) and bounds (24).</p>
+     */
+    static final int RECORD_SIZE = 64;
+    private static final int FLAG_PLACED = 1;
+    // The size of an entry in a name index: id (8), world id (4) and x, y, z (12).
+    private static final int NAME_ENTRY_SIZE = 24;
+    // The size of a region in blocks.
+    private static final int REGION_SIZE = 512;
+    // Region files with more unused space than this (and than used space) are compacted when the store opens.
+    private static final long COMPACT_THRESHOLD = 256 * 1024;
+    private static final Pattern REGION_FILE = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.csr");
+
+    private final File directory;
+    private final File stateFile;
+    private final Logger logger;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // The fields below are changed while holding the write lock.
+    private final Map<String, WorldRegions> worlds = new HashMap<>();
+    private final Map<String, NameIndex> nameIndexes = new HashMap<>();
+    private volatile List<String> names = List.of();
+    // The worlds, in the order of their ids in the name indexes.
+    private volatile List<String> worldNames = List.of();
+
+    // The fields below are only used by the writer thread.
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final Map<String, Integer> worldIds = new HashMap<>();
+    private long nextId = 1;
+    // Index changes that are in the state file, but could not be written to the region files yet.
+    private List<IndexUpdate> pendingUpdates = new ArrayList<>();
+    private volatile long committedSequence;
+
+    /**
+     * Open the store, finish the last batch if it was cut off and compact the region files.
+     *
+     * @param directory The directory to keep the region files in.
+     * @param logger    The logger to report problems with the region files to.
+     */
+    public RegionStructureStore(File directory, Logger logger) {
+        this.directory = directory;
+        this.stateFile = new File(directory, "regions.state");
+        this.logger = logger;
+        if (!directory.exists() && !directory.mkdirs())
+            throw new StructureDatabaseException("Unable to create the '" + directory.getName() + "' folder.");
+
+        try {
+            if (stateFile.exists())
+                loadState();
+            // The last batch may have been cut off after its state was written.
+            List<IndexUpdate> updates = new ArrayList<>();
+            for (IndexUpdate update : pendingUpdates) {
+                if (update.file.exists())
+                    updates.add(update);
+                else
+                    logger.warning("The structure region file " + update.file.getName() + " is missing. The structures in it are lost.");
+            }
+            writeIndex(updates);
+            pendingUpdates = new ArrayList<>();
+            findRegions();
+            List<File> wasted = findWastedRegions();
+            if (!wasted.isEmpty()) {
+                // The offsets in the state would be wrong once the files are compacted.
+                writeState(committedSequence, nextId, names, getIndexLengths(), worldNames, List.of());
+                for (File regionFile : wasted)
+                    compact(regionFile);
+            }
+        } catch (IOException exception) {
+            throw new StructureDatabaseException("Unable to open the structure region files.", exception);
+        }
+    }
+
+    private void loadState() throws IOException {
+        byte[] bytes = Files.readAllBytes(stateFile.toPath());
+        if (bytes.length < 8)
+            throw new IOException("The region state is too short.");
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        if ((int) crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt())
+            throw new IOException("The region state is damaged.");
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+        if (input.readInt() != STATE_HEADER)
+            throw new IOException("Invalid region state header.");
+        committedSequence = input.readLong();
+        nextId = input.readLong();
+        int nameCount = input.readInt();
+        List<String> loadedNames = new ArrayList<>(nameCount);
+        for (int i = 0; i < nameCount; i++) {
+            String name = input.readUTF();
+            nameIds.put(name, i);
+            loadedNames.add(name);
+            // Entries past the length are from a batch that was cut off, they are written over by the next one.
+            nameIndexes.put(name, new NameIndex(getNameIndexFile(i), input.readLong()));
+        }
+        names = List.copyOf(loadedNames);
+        int worldCount = input.readInt();
+        List<String> loadedWorlds = new ArrayList<>(worldCount);
+        for (int i = 0; i < worldCount; i++) {
+            String world = input.readUTF();
+            worldIds.put(world, i);
+            loadedWorlds.add(world);
+        }
+        worldNames = List.copyOf(loadedWorlds);
+        int updateCount = input.readInt();
+        for (int i = 0; i < updateCount; i++)
+            pendingUpdates.add(new IndexUpdate(new File(directory, input.readUTF()), input.readShort(), input.readInt(), input.readInt()));
+    }
+
+    private File getNameIndexFile(int nameId) {
+        return new File(new File(directory, "names"), nameId + ".idx");
+    }
+
+    private Map<String, Long> getIndexLengths() {
+        Map<String, Long> lengths = new HashMap<>();
+        for (Map.Entry<String, NameIndex> index : nameIndexes.entrySet())
+            lengths.put(index.getKey(), index.getValue().length);
+        return lengths;
+    }
+
+    /**
+     * Write the state atomically.
+     *
+     * @param sequence     The journal sequence number of the last batch.
+     * @param freeId       The id of the next structure.
+     * @param allNames     All of the names, in the order of their ids.
+     * @param indexLengths The length of the index of every name.
+     * @param allWorlds    All of the worlds, in the order of their ids.
+     * @param updates      The index changes of the last batch.
+     * @throws IOException If the state cannot be written.
+     */
+    private void writeState(long sequence, long freeId, List<String> allNames, Map<String, Long> indexLengths,
+                            List<String> allWorlds, List<IndexUpdate> updates) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(STATE_HEADER);
+        output.writeLong(sequence);
+        output.writeLong(freeId);
+        output.writeInt(allNames.size());
+        for (String name : allNames) {
+            output.writeUTF(name);
+            output.writeLong(indexLengths.getOrDefault(name, 0L));
+        }
+        output.writeInt(allWorlds.size());
+        for (String world : allWorlds)
+            output.writeUTF(world);
+        output.writeInt(updates.size());
+        for (IndexUpdate update : updates) {
+            // The path of the region file relative to the store, so the folder can be moved.
+            output.writeUTF(update.file.getParentFile().getName() + "/" + update.file.getName());
+            output.writeShort(update.chunk);
+            output.writeInt(update.offset);
+            output.writeInt(update.count);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        output.writeInt((int) crc.getValue());
+
+        File tempFile = new File(directory, stateFile.getName() + ".tmp");
+        try (FileOutputStream fileOutput = new FileOutputStream(tempFile)) {
+            bytes.writeTo(fileOutput);
+            fileOutput.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void findRegions() {
+        File[] worldDirectories = directory.listFiles(File::isDirectory);
+        if (worldDirectories == null) return;
+        for (File worldDirectory : worldDirectories) {
+            File[] regionFiles = worldDirectory.listFiles();
+            if (regionFiles == null) continue;
+            for (File regionFile : regionFiles) {
+                Matcher matcher = REGION_FILE.matcher(regionFile.getName());
+                if (!matcher.matches()) continue;
+                worlds.computeIfAbsent(worldDirectory.getName(), world -> new WorldRegions())
+                        .add(new Region(regionFile, Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+            }
+        }
+    }
+
+    /**
+     * Find the region files that have more unused space than used space. They are only compacted when the store
+     * opens, as a file cannot be replaced while it is mapped on some systems.
+     *
+     * @return The region files.
+     * @throws IOException If a region file cannot be read.
+     */
+    private List<File> findWastedRegions() throws IOException {
+        List<File> wasted = new ArrayList<>();
+        for (WorldRegions regions : worlds.values()) {
+            for (Region region : regions.regions.values()) {
+                long size = region.file.length();
+                if (size - HEADER_SIZE < COMPACT_THRESHOLD) continue;
+                long used = 0;
+                try (FileChannel channel = FileChannel.open(region.file.toPath(), StandardOpenOption.READ)) {
+                    ByteBuffer index = readFully(channel, 0, HEADER_SIZE);
+                    for (int chunk = 0; chunk < CHUNKS_PER_REGION; chunk++)
+                        used += (long) index.getInt(INDEX_START + chunk * 8 + 4) * RECORD_SIZE;
+                }
+                if (size - HEADER_SIZE - used < Math.max(used, COMPACT_THRESHOLD)) continue;
+                wasted.add(region.file);
+            }
+        }
+        return wasted;
+    }
+
+    private void compact(File regionFile) throws IOException {
+        File tempFile = new File(regionFile.getParentFile(), regionFile.getName() + ".tmp");
+        try (FileChannel source = FileChannel.open(regionFile.toPath(), StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer index = readFully(source, 0, HEADER_SIZE);
+            ByteBuffer newIndex = ByteBuffer.allocate(HEADER_SIZE);
+            newIndex.putInt(REGION_HEADER);
+            long position = HEADER_SIZE;
+            for (int chunk = 0; chunk < CHUNKS_PER_REGION; chunk++) {
+                int offset = index.getInt(INDEX_START + chunk * 8);
+                int count = index.getInt(INDEX_START + chunk * 8 + 4);
+                newIndex.putInt(count == 0 ? 0 : (int) position);
+                newIndex.putInt(count);
+                if (count == 0) continue;
+                writeFully(target, readFully(source, offset, count * RECORD_SIZE), position);
+                position += (long) count * RECORD_SIZE;
+            }
+            writeFully(target, newIndex.flip(), 0);
+            target.force(true);
+        }
+        Files.move(tempFile.toPath(), regionFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public long getCommittedSequence() {
+        return committedSequence;
+    }
+
+    @Override
+    public void save(List<StoredStructure> spawns, List<StoredStructure> placements, long lastSequence) {
+        // The index of the previous batch has to be written first, its records are the base of this one.
+        flush(true);
+        if (!pendingUpdates.isEmpty())
+            throw new StructureDatabaseException("Unable to update the index of the structure region files.");
+
+        // The chunks that change, with all of their structures.
+        Map<File, ChangedRegion> changed = new LinkedHashMap<>();
+        List<String> newNames = new ArrayList<>(names);
+        Map<String, Integer> addedNameIds = new HashMap<>();
+        List<String> newWorlds = new ArrayList<>(worldNames);
+        Map<String, Integer> addedWorldIds = new HashMap<>();
+        // The spawns of every name, in the order of their ids.
+        Map<String, List<StoredStructure>> byName = new LinkedHashMap<>();
+        long id = nextId;
+        try {
+            for (StoredStructure spawn : spawns) {
+                if (!nameIds.containsKey(spawn.getName()) && !addedNameIds.containsKey(spawn.getName())) {
+                    addedNameIds.put(spawn.getName(), newNames.size());
+                    newNames.add(spawn.getName());
+                }
+                if (!worldIds.containsKey(spawn.getWorld()) && !addedWorldIds.containsKey(spawn.getWorld())) {
+                    addedWorldIds.put(spawn.getWorld(), newWorlds.size());
+                    newWorlds.add(spawn.getWorld());
+                }
+                StoredStructure saved = spawn.withId(id++);
+                getChunk(changed, saved).add(saved);
+                byName.computeIfAbsent(saved.getName(), name -> new ArrayList<>()).add(saved);
+            }
+            for (StoredStructure placement : placements) {
+                if (!placement.hasPlacement()) continue;
+                List<StoredStructure> chunk = getChunk(changed, placement);
+                int latest = -1;
+                for (int i = 0; i < chunk.size(); i++) {
+                    StoredStructure structure = chunk.get(i);
+                    if (structure.isAt(placement.getX(), placement.getY(), placement.getZ()) && structure.getName().equals(placement.getName())
+                            && (latest == -1 || structure.getId() > chunk.get(latest).getId()))
+                        latest = i;
+                }
+                if (latest != -1)
+                    chunk.set(latest, chunk.get(latest).withPlacement(placement));
+            }
+
+            List<IndexUpdate> updates = new ArrayList<>();
+            for (ChangedRegion region : changed.values())
+                appendRecords(region, addedNameIds, updates);
+            Map<String, Long> indexLengths = getIndexLengths();
+            for (Map.Entry<String, List<StoredStructure>> named : byName.entrySet()) {
+                Integer nameId = nameIds.get(named.getKey());
+                File file = getNameIndexFile(nameId != null ? nameId : addedNameIds.get(named.getKey()));
+                long length = indexLengths.getOrDefault(named.getKey(), 0L);
+                indexLengths.put(named.getKey(), appendNameEntries(file, length, named.getValue(), addedWorldIds));
+            }
+            // The batch is saved once the state is written, the index is only brought up to date after.
+            writeState(lastSequence, id, newNames, indexLengths, newWorlds, updates);
+            pendingUpdates = updates;
+        } catch (IOException exception) {
+            throw new StructureDatabaseException("Unable to save structures to the structure region files.", exception);
+        }
+
+        nameIds.putAll(addedNameIds);
+        worldIds.putAll(addedWorldIds);
+        nextId = id;
+        lock.writeLock().lock();
+        try {
+            for (ChangedRegion region : changed.values()) {
+                if (region.isNew)
+                    worlds.computeIfAbsent(region.world, world -> new WorldRegions()).add(region.region);
+            }
+            names = List.copyOf(newNames);
+            worldNames = List.copyOf(newWorlds);
+            for (Map.Entry<String, List<StoredStructure>> named : byName.entrySet()) {
+                NameIndex index = nameIndexes.computeIfAbsent(named.getKey(),
+                        name -> new NameIndex(getNameIndexFile(nameIds.get(name)), 0));
+                index.resize(index.length + (long) named.getValue().size() * NAME_ENTRY_SIZE);
+            }
+            applyPendingUpdates();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        committedSequence = lastSequence;
+    }
+
+    /**
+     * Get the structures of the chunk of a structure, reading them from the region file the first time.
+     */
+    private List<StoredStructure> getChunk(Map<File, ChangedRegion> changed, StoredStructure structure) throws IOException {
+        int regionX = toRegion(structure.getX());
+        int regionZ = toRegion(structure.getZ());
+        WorldRegions regions = worlds.get(structure.getWorld());
+        Region existing = regions == null ? null : regions.regions.get(getRegionKey(regionX, regionZ));
+        File file = existing != null ? existing.file : new File(new File(directory, structure.getWorld()), String.format("r.%d.%d.csr", regionX, regionZ));
+        ChangedRegion region = changed.computeIfAbsent(file, key -> new ChangedRegion(structure.getWorld(),
+                existing != null ? existing : new Region(file, regionX, regionZ), existing == null));
+        int chunk = getChunkIndex(structure.getX(), structure.getZ());
+        List<StoredStructure> structures = region.chunks.get(chunk);
+        if (structures == null) {
+            structures = region.isNew ? new ArrayList<>() : region.region.readChunk(structure.getWorld(), chunk, names);
+            region.chunks.put(chunk, structures);
+        }
+        return structures;
+    }
+
+    /**
+     * Write the structures of the chunks that changed to the end of a region file.
+     */
+    private void appendRecords(ChangedRegion region, Map<String, Integer> addedNameIds, List<IndexUpdate> updates) throws IOException {
+        File file = region.region.file;
+        if (!file.getParentFile().exists() && !file.getParentFile().mkdirs())
+            throw new IOException("Unable to create the folder of " + file.getName() + ".");
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long position = channel.size();
+            if (position < HEADER_SIZE) {
+                // A new region file, or one that was cut off before its header was written.
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(REGION_HEADER);
+                writeFully(channel, header.position(0), 0);
+                position = HEADER_SIZE;
+            }
+            long recordCount = 0;
+            for (List<StoredStructure> structures : region.chunks.values())
+                recordCount += structures.size();
+            if (position + recordCount * RECORD_SIZE > Integer.MAX_VALUE)
+                throw new IOException(file.getName() + " is too large.");
+
+            for (Map.Entry<Integer, List<StoredStructure>> chunk : region.chunks.entrySet()) {
+                List<StoredStructure> structures = chunk.getValue();
+                ByteBuffer records = ByteBuffer.allocate(structures.size() * RECORD_SIZE);
+                for (StoredStructure structure : structures) {
+                    Integer nameId = nameIds.get(structure.getName());
+                    writeRecord(records, structure, nameId != null ? nameId : addedNameIds.get(structure.getName()));
+                }
+                writeFully(channel, records.flip(), position);
+                updates.add(new IndexUpdate(file, chunk.getKey(), (int) position, structures.size()));
+                position += records.limit();
+            }
+            // The metadata too, so the new length of the file is not lost.
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Write the ids and locations of the structures of a name after the last batch in its index.
+     *
+     * @return The new length of the index.
+     */
+    private long appendNameEntries(File file, long length, List<StoredStructure> structures, Map<String, Integer> addedWorldIds) throws IOException {
+        if (!file.getParentFile().exists() && !file.getParentFile().mkdirs())
+            throw new IOException("Unable to create the folder of " + file.getName() + ".");
+        ByteBuffer entries = ByteBuffer.allocate(structures.size() * NAME_ENTRY_SIZE);
+        for (StoredStructure structure : structures) {
+            Integer worldId = worldIds.get(structure.getWorld());
+            entries.putLong(structure.getId());
+            entries.putInt(worldId != null ? worldId : addedWorldIds.get(structure.getWorld()));
+            entries.putInt(structure.getX());
+            entries.putInt(structure.getY());
+            entries.putInt(structure.getZ());
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            writeFully(channel, entries.flip(), length);
+            channel.force(true);
+        }
+        return length + entries.limit();
+    }
+
+    /**
+     * Point the index of the region files at the records of the last batch.
+     *
+     * <p>Only called by the writer thread while holding the write lock.</p>
+     */
+    private void applyPendingUpdates() {
+        if (pendingUpdates.isEmpty()) return;
+        try {
+            writeIndex(pendingUpdates);
+        } catch (IOException exception) {
+            // Reads see the previous batch until the index is written.
+            logger.warning("Unable to update the index of the structure region files. It will be tried again.");
+            return;
+        }
+        // The regions are mapped again with their new length the next time they are read.
+        Set<File> updatedFiles = new HashSet<>();
+        for (IndexUpdate update : pendingUpdates)
+            updatedFiles.add(update.file);
+        for (WorldRegions regions : worlds.values()) {
+            for (Region region : regions.regions.values()) {
+                if (updatedFiles.contains(region.file))
+                    region.unmap();
+            }
+        }
+        pendingUpdates = new ArrayList<>();
+    }
+
+    private static void writeIndex(List<IndexUpdate> updates) throws IOException {
+        Map<File, List<IndexUpdate>> byFile = new LinkedHashMap<>();
+        for (IndexUpdate update : updates)
+            byFile.computeIfAbsent(update.file, file -> new ArrayList<>()).add(update);
+        for (Map.Entry<File, List<IndexUpdate>> entry : byFile.entrySet()) {
+            try (FileChannel channel = FileChannel.open(entry.getKey().toPath(), StandardOpenOption.WRITE)) {
+                ByteBuffer indexEntry = ByteBuffer.allocate(8);
+                for (IndexUpdate update : entry.getValue()) {
+                    indexEntry.clear();
+                    indexEntry.putInt(update.offset).putInt(update.count).flip();
+                    writeFully(channel, indexEntry, INDEX_START + update.chunk * 8L);
+                }
+                channel.force(false);
+            }
+        }
+    }
+
+    @Override
+    public void flush(boolean force) {
+        if (pendingUpdates.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            applyPendingUpdates();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    @Nullable
+    public StoredStructure getStructureAt(String world, int x, int y, int z) {
+        lock.readLock().lock();
+        try {
+            Region region = getRegion(world, toRegion(x), toRegion(z));
+            if (region == null) return null;
+            StoredStructure latest = null;
+            for (StoredStructure structure : region.readChunk(world, getChunkIndex(x, z), names)) {
+                if (structure.isAt(x, y, z) && (latest == null || structure.getId() > latest.getId()))
+                    latest = structure;
+            }
+            return latest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<StoredStructure> findNearest(String world, @Nullable String name, int x, int y, int z, int limit) {
+        if (limit <= 0) return new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            WorldRegions regions = worlds.get(world);
+            if (regions == null) return new ArrayList<>();
+
+            List<String> currentNames = names;
+            int regionX = toRegion(x);
+            int regionZ = toRegion(z);
+            return new NearestStructureCollector(x, y, z, name, limit).search(regionX, regionZ, regions.minX, regions.minZ,
+                    regions.maxX, regions.maxZ, REGION_SIZE, (ring, visitor) -> {
+                        for (Region region : regions.getRing(regionX, regionZ, ring))
+                            region.forEach(world, currentNames, visitor);
+                    });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<StoredStructure> findByName(String name, long afterId, int limit) {
+        List<StoredStructure> result = new ArrayList<>();
+        if (limit <= 0) return result;
+        lock.readLock().lock();
+        try {
+            NameIndex index = nameIndexes.get(name);
+            ByteBuffer entries = index == null ? null : index.getBuffer();
+            if (entries == null) return result;
+            List<String> currentNames = names;
+            List<String> currentWorlds = worldNames;
+
+            // The first entry with a larger id.
+            int low = 0;
+            int high = entries.capacity() / NAME_ENTRY_SIZE;
+            int count = high;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (entries.getLong(middle * NAME_ENTRY_SIZE) <= afterId)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+
+            for (int i = low; i < count && result.size() < limit; i++) {
+                int position = i * NAME_ENTRY_SIZE;
+                long id = entries.getLong(position);
+                String world = currentWorlds.get(entries.getInt(position + 8));
+                int x = entries.getInt(position + 12);
+                int z = entries.getInt(position + 20);
+                Region region = getRegion(world, toRegion(x), toRegion(z));
+                if (region == null) continue;
+                for (StoredStructure structure : region.readChunk(world, getChunkIndex(x, z), currentNames)) {
+                    if (structure.getId() == id) {
+                        result.add(structure);
+                        break;
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<StoredStructure> findInside(String world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        List<StoredStructure> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            WorldRegions regions = worlds.get(world);
+            if (regions == null) return result;
+            List<String> currentNames = names;
+            int fromChunkX = Math.max(minX >> 4, regions.minX << 5);
+            int toChunkX = Math.min(maxX >> 4, (regions.maxX << 5) + 31);
+            int fromChunkZ = Math.max(minZ >> 4, regions.minZ << 5);
+            int toChunkZ = Math.min(maxZ >> 4, (regions.maxZ << 5) + 31);
+            for (int chunkX = fromChunkX; chunkX <= toChunkX; chunkX++) {
+                for (int chunkZ = fromChunkZ; chunkZ <= toChunkZ; chunkZ++) {
+                    Region region = regions.regions.get(getRegionKey(chunkX >> 5, chunkZ >> 5));
+                    if (region == null) {
+                        // Skip the rest of the column of the region.
+                        chunkZ |= 31;
+                        continue;
+                    }
+                    for (StoredStructure structure : region.readChunk(world, ((chunkZ & 31) << 5) | (chunkX & 31), currentNames)) {
+                        if (structure.getX() >= minX && structure.getX() <= maxX && structure.getY() >= minY
+                                && structure.getY() <= maxY && structure.getZ() >= minZ && structure.getZ() <= maxZ)
+                            result.add(structure);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(Comparator.comparingLong(StoredStructure::getId));
+        return result;
+    }
+
+    @Override
+    public void export(Consumer<StoredStructure> consumer) {
+        List<Map.Entry<String, Region>> regions = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, WorldRegions> world : worlds.entrySet()) {
+                for (Region region : world.getValue().regions.values())
+                    regions.add(Map.entry(world.getKey(), region));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // One region at a time, so a slow consumer only holds up saves for as long as a region takes to read.
+        for (Map.Entry<String, Region> region : regions) {
+            List<StoredStructure> structures = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                region.getValue().forEach(region.getKey(), names, structures::add);
+            } finally {
+                lock.readLock().unlock();
+            }
+            structures.forEach(consumer);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush(true);
+        lock.writeLock().lock();
+        try {
+            for (WorldRegions regions : worlds.values())
+                regions.regions.values().forEach(Region::unmap);
+            for (NameIndex index : nameIndexes.values())
+                index.resize(index.length);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Nullable
+    private Region getRegion(String world, int regionX, int regionZ) {
+        WorldRegions regions = worlds.get(world);
+        return regions == null ? null : regions.regions.get(getRegionKey(regionX, regionZ));
+    }
+
+    private static void writeRecord(ByteBuffer buffer, StoredStructure structure, int nameId) {
+        int[] bounds = structure.getRawBounds();
+        buffer.putLong(structure.getId());
+        buffer.putInt(structure.getX());
+        buffer.putInt(structure.getY());
+        buffer.putInt(structure.getZ());
+        buffer.putLong(structure.getSpawnTime());
+        buffer.putInt(nameId);
+        buffer.putInt(structure.getRotation());
+        buffer.putInt(bounds != null ? FLAG_PLACED : 0);
+        for (int i = 0; i < 6; i++)
+            buffer.putInt(bounds != null ? bounds[i] : 0);
+    }
+
+    private static StoredStructure readRecord(ByteBuffer buffer, int position, String world, List<String> names) {
+        int nameId = buffer.getInt(position + 28);
+        if (nameId < 0 || nameId >= names.size())
+            throw new StructureDatabaseException("A structure region file of " + world + " refers to an unknown structure name.");
+        int[] bounds = null;
+        if ((buffer.getInt(position + 36) & FLAG_PLACED) != 0) {
+            bounds = new int[6];
+            for (int i = 0; i < bounds.length; i++)
+                bounds[i] = buffer.getInt(position + 40 + i * 4);
+        }
+        return new StoredStructure(
+                buffer.getLong(position),
+                world,
+                names.get(nameId),
+                buffer.getInt(position + 8),
+                buffer.getInt(position + 12),
+                buffer.getInt(position + 16),
+                buffer.getLong(position + 20),
+                buffer.getInt(position + 32),
+                bounds
+        );
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("The region file is cut off.");
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining())
+            channel.write(buffer, start + buffer.position());
+    }
+
+    private static int toRegion(int block) {
+        return block >> 9;
+    }
+
+    private static int getChunkIndex(int x, int z) {
+        return (((z >> 4) & 31) << 5) | ((x >> 4) & 31);
+    }
+
+    private static long getRegionKey(int regionX, int regionZ) {
+        return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A region file.
+     */
+    private static class Region {
+        private final File file;
+        private final int regionX;
+        private final int regionZ;
+        // Mapped the first time the region is read, and again after its index changes.
+        private MappedByteBuffer buffer;
+
+        private Region(File file, int regionX, int regionZ) {
+            this.file = file;
+            this.regionX = regionX;
+            this.regionZ = regionZ;
+        }
+
+        /**
+         * Get the mapped region file. Readers share the buffer, so only the absolute get methods are used.
+         *
+         * @return The buffer. (Null if the file does not exist).
+         */
+        @Nullable
+        private synchronized ByteBuffer getBuffer() {
+            if (buffer == null) {
+                if (!file.exists()) return null;
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    if (channel.size() < HEADER_SIZE)
+                        return null;
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } catch (IOException exception) {
+                    throw new StructureDatabaseException("Unable to read the structure region file " + file.getName() + ".", exception);
+                }
+                if (buffer.getInt(0) != REGION_HEADER)
+                    throw new StructureDatabaseException("The structure region file " + file.getName() + " is invalid.");
+            }
+            return buffer;
+        }
+
+        private synchronized void unmap() {
+            buffer = null;
+        }
+
+        /**
+         * Read the structures of a chunk.
+         *
+         * @param world The name of the world of the region.
+         * @param chunk The index of the chunk in the region.
+         * @param names The names of the structures.
+         * @return The structures, in the order they were saved.
+         */
+        private List<StoredStructure> readChunk(String world, int chunk, List<String> names) {
+            List<StoredStructure> structures = new ArrayList<>();
+            ByteBuffer mapped = getBuffer();
+            if (mapped == null) return structures;
+            int offset = mapped.getInt(INDEX_START + chunk * 8);
+            int count = mapped.getInt(INDEX_START + chunk * 8 + 4);
+            if (count < 0 || (long) offset + (long) count * RECORD_SIZE > mapped.capacity())
+                throw new StructureDatabaseException("The index of the structure region file " + file.getName() + " is invalid.");
+            for (int i = 0; i < count; i++)
+                structures.add(readRecord(mapped, offset + i * RECORD_SIZE, world, names));
+            return structures;
+        }
+
+        private void forEach(String world, List<String> names, Consumer<StoredStructure> consumer) {
+            ByteBuffer mapped = getBuffer();
+            if (mapped == null) return;
+            for (int chunk = 0; chunk < CHUNKS_PER_REGION; chunk++) {
+                if (mapped.getInt(INDEX_START + chunk * 8 + 4) != 0)
+                    readChunk(world, chunk, names).forEach(consumer);
+            }
+        }
+    }
+
+    /**
+     * The index of the structures of a name.
+     */
+    private static class NameIndex {
+        private final File file;
+        // The length of the entries that were saved. (Changed while holding the write lock).
+        private long length;
+        private MappedByteBuffer buffer;
+
+        private NameIndex(File file, long length) {
+            this.file = file;
+            this.length = length;
+        }
+
+        private synchronized void resize(long length) {
+            this.length = length;
+            buffer = null;
+        }
+
+        /**
+         * Get the mapped entries of the index.
+         *
+         * @return The buffer. (Null if the index is empty).
+         */
+        @Nullable
+        private synchronized ByteBuffer getBuffer() {
+            if (buffer == null) {
+                if (length == 0) return null;
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    if (channel.size() < length)
+                        throw new StructureDatabaseException("The structure name index " + file.getName() + " is cut off.");
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                } catch (IOException exception) {
+                    throw new StructureDatabaseException("Unable to read the structure name index " + file.getName() + ".", exception);
+                }
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * The region files of a world.
+     */
+    private static class WorldRegions {
+        private final Map<Long, Region> regions = new HashMap<>();
+        // The regions that have files are within these bounds.
+        private int minX = Integer.MAX_VALUE;
+        private int minZ = Integer.MAX_VALUE;
+        private int maxX = Integer.MIN_VALUE;
+        private int maxZ = Integer.MIN_VALUE;
+
+        private void add(Region region) {
+            regions.put(getRegionKey(region.regionX, region.regionZ), region);
+            minX = Math.min(minX, region.regionX);
+            minZ = Math.min(minZ, region.regionZ);
+            maxX = Math.max(maxX, region.regionX);
+            maxZ = Math.max(maxZ, region.regionZ);
+        }
+
+        /**
+         * Get the regions that are exactly a number of regions away from a region.
+         */
+        private List<Region> getRing(int centerX, int centerZ, int ring) {
+            List<Region> result = new ArrayList<>();
+            for (int x = Math.max(centerX - ring, minX); x <= Math.min(centerX + ring, maxX); x++) {
+                for (int z = Math.max(centerZ - ring, minZ); z <= Math.min(centerZ + ring, maxZ); z++) {
+                    if (Math.max(Math.abs(x - centerX), Math.abs(z - centerZ)) != ring) continue;
+                    Region region = regions.get(getRegionKey(x, z));
+                    if (region != null)
+                        result.add(region);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A region with chunks that change in a batch.
+     */
+    private static class ChangedRegion {
+        private final String world;
+        private final Region region;
+        private final boolean isNew;
+        private final TreeMap<Integer, List<StoredStructure>> chunks = new TreeMap<>();
+
+        private ChangedRegion(String world, Region region, boolean isNew) {
+            this.world = world;
+            this.region = region;
+            this.isNew = isNew;
+        }
+    }
+
+    /**
+     * A change to the index of a region file.
+     */
+    private static class IndexUpdate {
+        private final File file;
+        private final int chunk;
+        private final int offset;
+        private final int count;
+
+        private IndexUpdate(File file, int chunk, int offset, int count) {
+            this.file = file;
+            this.chunk = chunk;
+            this.offset = offset;
+            this.count = count;
+        }
+    }
+}
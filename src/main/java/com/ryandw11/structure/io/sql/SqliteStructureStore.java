@@ -0,0 +1,379 @@
+package com.ryandw11.structure.io.sql;
+
+import com.ryandw11.structure.exceptions.StructureDatabaseException;
+import com.ryandw11.structure.io.StoredStructure;
+import com.ryandw11.structure.io.StructureStore;
+import org.jetbrains.annotations.Nullable;
+import org.sqlite.Function;
+import org.sqlite.SQLiteConfig;
+
+import java.io.File;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Stores the structures in a SQLite database. (See {@link StructureDatabaseSchema} for the tables).
+ *
+ * <p>Saves go through a single read-write connection, and reads borrow one of a few read-only connections. The
+ * database is in WAL mode, so reads do not wait for a save to finish.</p>
+ *
+ * <p>Internal Use Only.</p>
+ */
+public class SqliteStructureStore implements StructureStore {
+    private static final String SELECT_STRUCTURES = """
+            SELECT s.id, s.x, s.y, s.z, s.spawned_at, s.rotation, s.min_x, s.min_y, s.min_z, s.max_x, s.max_y, s.max_z,
+                   w.name AS world, n.name AS name
+            FROM SpawnedStructures s
+            JOIN Worlds w ON w.id = s.world_id
+            JOIN StructureNames n ON n.id = s.structure_id
+            """;
+
+    private final String url;
+    // Only used by the writer thread.
+    private final Connection connection;
+    private final BlockingQueue<Connection> readConnections;
+    // The ids of the names in the Worlds and StructureNames tables. (Only used while saving).
+    private final Map<String, Long> worldIds = new HashMap<>();
+    private final Map<String, Long> structureIds = new HashMap<>();
+    private volatile long committedSequence;
+
+    /**
+     * Open the database, and create its tables if they do not exist yet.
+     *
+     * @param databaseFile    The database file.
+     * @param readConnections The number of read-only connections, and so the number of reads that can run at once.
+     */
+    public SqliteStructureStore(File databaseFile, int readConnections) {
+        this.url = String.format("jdbc:sqlite:%s", databaseFile.getPath());
+        this.readConnections = new ArrayBlockingQueue<>(readConnections);
+        try {
+            connection = DriverManager.getConnection(url);
+        } catch (SQLException exception) {
+            throw new StructureDatabaseException("Unable to connect to SQLite database.", exception);
+        }
+
+        try {
+            try (Statement statement = connection.createStatement()) {
+                // Readers see the last committed state while the writer saves, instead of waiting for it.
+                statement.execute("PRAGMA journal_mode = WAL");
+                // A commit that is lost in a power loss is still in the structure journal.
+                statement.executeUpdate("PRAGMA synchronous = NORMAL");
+                statement.executeUpdate("PRAGMA foreign_keys = ON");
+            }
+            StructureDatabaseSchema.create(connection);
+            committedSequence = readCommittedSequence();
+
+            for (int i = 0; i < readConnections; i++)
+                this.readConnections.add(openReadConnection());
+        } catch (SQLException exception) {
+            close();
+            throw new StructureDatabaseException("Unable to connect to SQLite database.", exception);
+        }
+    }
+
+    /**
+     * Open a read-only connection to the database.
+     *
+     * @return The connection.
+     * @throws SQLException If the connection cannot be opened.
+     */
+    private Connection openReadConnection() throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        // Only a checkpoint of the write-ahead log can briefly lock out a reader.
+        config.setBusyTimeout(5000);
+        Connection readConnection = DriverManager.getConnection(url, config.toProperties());
+        // Create custom SQLite functions.
+        Function.create(readConnection, "DIST", new DistanceFunction());
+        return readConnection;
+    }
+
+    private long readCommittedSequence() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT last_sequence FROM JournalState WHERE id = 0")) {
+            return resultSet.next() ? resultSet.getLong("last_sequence") : 0;
+        }
+    }
+
+    @Override
+    public boolean migrate(Logger logger, BooleanSupplier stopping) {
+        try {
+            if (!StructureDatabaseSchema.needsMigration(connection)) return true;
+            return StructureDatabaseSchema.migrate(connection, logger, stopping);
+        } catch (SQLException exception) {
+            throw new StructureDatabaseException("Unable to migrate the structure database.", exception);
+        }
+    }
+
+    @Override
+    public long getCommittedSequence() {
+        return committedSequence;
+    }
+
+    @Override
+    public void save(List<StoredStructure> spawns, List<StoredStructure> placements, long lastSequence) {
+        try {
+            saveBatch(spawns, placements, lastSequence);
+        } catch (SQLException exception) {
+            throw new StructureDatabaseException("Unable to save structures to the structure database.", exception);
+        }
+        committedSequence = lastSequence;
+    }
+
+    private void saveBatch(List<StoredStructure> spawns, List<StoredStructure> placements, long lastSequence) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("""
+                INSERT INTO SpawnedStructures (structure_id, world_id, x, y, z, chunk_key, spawned_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?)
+                """);
+             PreparedStatement update = connection.prepareStatement("""
+                     UPDATE SpawnedStructures SET rotation = ?, min_x = ?, min_y = ?, min_z = ?, max_x = ?, max_y = ?, max_z = ?
+                     WHERE id = (SELECT MAX(id) FROM SpawnedStructures
+                                 WHERE world_id = ? AND chunk_key = ? AND x = ? AND y = ? AND z = ? AND structure_id = ?)
+                     """);
+             PreparedStatement state = connection.prepareStatement("INSERT OR REPLACE INTO JournalState (id, last_sequence) VALUES (0, ?)")) {
+            for (StoredStructure spawn : spawns) {
+                insert.setLong(1, getNameId("StructureNames", structureIds, spawn.getName()));
+                insert.setLong(2, getNameId("Worlds", worldIds, spawn.getWorld()));
+                insert.setInt(3, spawn.getX());
+                insert.setInt(4, spawn.getY());
+                insert.setInt(5, spawn.getZ());
+                insert.setLong(6, StructureDatabaseSchema.getChunkKey(spawn.getX(), spawn.getZ()));
+                if (spawn.getSpawnTime() == 0)
+                    insert.setNull(7, Types.INTEGER);
+                else
+                    insert.setLong(7, spawn.getSpawnTime());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+
+            for (StoredStructure placement : placements) {
+                int[] bounds = placement.getRawBounds();
+                if (bounds == null) continue;
+                update.setInt(1, placement.getRotation());
+                for (int i = 0; i < bounds.length; i++)
+                    update.setInt(2 + i, bounds[i]);
+                update.setLong(8, getNameId("Worlds", worldIds, placement.getWorld()));
+                update.setLong(9, StructureDatabaseSchema.getChunkKey(placement.getX(), placement.getZ()));
+                update.setInt(10, placement.getX());
+                update.setInt(11, placement.getY());
+                update.setInt(12, placement.getZ());
+                update.setLong(13, getNameId("StructureNames", structureIds, placement.getName()));
+                update.addBatch();
+            }
+            update.executeBatch();
+
+            state.setLong(1, lastSequence);
+            state.executeUpdate();
+            connection.commit();
+        } catch (SQLException exception) {
+            connection.rollback();
+            // Ids that were added in the transaction are gone.
+            worldIds.clear();
+            structureIds.clear();
+            throw exception;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Get the id of a name in the Worlds or StructureNames table, adding the name if it is not in there yet.
+     *
+     * @param table The name of the table.
+     * @param cache The ids that are already known.
+     * @param name  The name.
+     * @return The id of the name.
+     * @throws SQLException If the id could not be read.
+     */
+    private long getNameId(String table, Map<String, Long> cache, String name) throws SQLException {
+        Long id = cache.get(name);
+        if (id != null) return id;
+        try (PreparedStatement insert = connection.prepareStatement("INSERT OR IGNORE INTO " + table + " (name) VALUES (?)");
+             PreparedStatement select = connection.prepareStatement("SELECT id FROM " + table + " WHERE name = ?")) {
+            insert.setString(1, name);
+            insert.executeUpdate();
+            select.setString(1, name);
+            try (ResultSet resultSet = select.executeQuery()) {
+                if (!resultSet.next())
+                    throw new SQLException("Unable to add " + name + " to " + table + ".");
+                id = resultSet.getLong(1);
+            }
+        }
+        cache.put(name, id);
+        return id;
+    }
+
+    @Override
+    @Nullable
+    public StoredStructure getStructureAt(String world, int x, int y, int z) {
+        List<StoredStructure> result = query(SELECT_STRUCTURES + """
+                WHERE s.world_id = (SELECT id FROM Worlds WHERE name = ?) AND s.chunk_key = ? AND s.x = ? AND s.y = ? AND s.z = ?
+                ORDER BY s.id DESC LIMIT 1
+                """, statement -> {
+            statement.setString(1, world);
+            statement.setLong(2, StructureDatabaseSchema.getChunkKey(x, z));
+            statement.setInt(3, x);
+            statement.setInt(4, y);
+            statement.setInt(5, z);
+        });
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    @Override
+    public List<StoredStructure> findNearest(String world, @Nullable String name, int x, int y, int z, int limit) {
+        String filter = name == null ? "WHERE w.name = ?" : "WHERE w.name = ? AND n.name = ?";
+        return query(SELECT_STRUCTURES + filter + " ORDER BY DIST(?, ?, ?, s.x, s.y, s.z) ASC, s.id ASC LIMIT ?", statement -> {
+            int parameter = 1;
+            statement.setString(parameter++, world);
+            if (name != null)
+                statement.setString(parameter++, name);
+            statement.setInt(parameter++, x);
+            statement.setInt(parameter++, y);
+            statement.setInt(parameter++, z);
+            statement.setInt(parameter, limit);
+        });
+    }
+
+    @Override
+    public List<StoredStructure> findByName(String name, long afterId, int limit) {
+        return query(SELECT_STRUCTURES + """
+                WHERE s.structure_id = (SELECT id FROM StructureNames WHERE name = ?) AND s.id > ?
+                ORDER BY s.id LIMIT ?
+                """, statement -> {
+            statement.setString(1, name);
+            statement.setLong(2, afterId);
+            statement.setInt(3, limit);
+        });
+    }
+
+    @Override
+    public List<StoredStructure> findInside(String world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return query(SELECT_STRUCTURES + """
+                WHERE s.world_id = (SELECT id FROM Worlds WHERE name = ?)
+                  AND s.x BETWEEN ? AND ? AND s.y BETWEEN ? AND ? AND s.z BETWEEN ? AND ?
+                ORDER BY s.id
+                """, statement -> {
+            statement.setString(1, world);
+            statement.setInt(2, minX);
+            statement.setInt(3, maxX);
+            statement.setInt(4, minY);
+            statement.setInt(5, maxY);
+            statement.setInt(6, minZ);
+            statement.setInt(7, maxZ);
+        });
+    }
+
+    @Override
+    public void export(Consumer<StoredStructure> consumer) {
+        read(readConnection -> {
+            try (Statement statement = readConnection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(SELECT_STRUCTURES + " ORDER BY s.id")) {
+                while (resultSet.next())
+                    consumer.accept(readStructure(resultSet));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Run a query on a read-only connection.
+     *
+     * @param sql        The query.
+     * @param parameters Sets the parameters of the query.
+     * @return The structures that were found.
+     */
+    private List<StoredStructure> query(String sql, Parameters parameters) {
+        return read(readConnection -> {
+            List<StoredStructure> result = new ArrayList<>();
+            try (PreparedStatement statement = readConnection.prepareStatement(sql)) {
+                parameters.set(statement);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next())
+                        result.add(readStructure(resultSet));
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Borrow a read-only connection.
+     *
+     * @param reader Reads from the connection.
+     * @param <T>    The type of the result.
+     * @return The result of the reader.
+     */
+    private <T> T read(Reader<T> reader) {
+        Connection readConnection;
+        try {
+            readConnection = readConnections.take();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new StructureDatabaseException("Interrupted while waiting for a database connection.", exception);
+        }
+        try {
+            return reader.read(readConnection);
+        } catch (SQLException exception) {
+            throw new StructureDatabaseException("Unable to read from the structure database.", exception);
+        } finally {
+            readConnections.add(readConnection);
+        }
+    }
+
+    private static StoredStructure readStructure(ResultSet resultSet) throws SQLException {
+        int rotation = resultSet.getInt("rotation");
+        int[] bounds = new int[]{
+                resultSet.getInt("min_x"), resultSet.getInt("min_y"), resultSet.getInt("min_z"),
+                resultSet.getInt("max_x"), resultSet.getInt("max_y"), resultSet.getInt("max_z")
+        };
+        // The bounds are all set at once, so the last one tells if they are known.
+        boolean hasPlacement = !resultSet.wasNull();
+        return new StoredStructure(
+                resultSet.getLong("id"),
+                resultSet.getString("world"),
+                resultSet.getString("name"),
+                resultSet.getInt("x"),
+                resultSet.getInt("y"),
+                resultSet.getInt("z"),
+                resultSet.getLong("spawned_at"),
+                rotation,
+                hasPlacement ? bounds : null
+        );
+    }
+
+    @Override
+    public void close() {
+        Connection readConnection;
+        while ((readConnection = readConnections.poll()) != null) {
+            try {
+                readConnection.close();
+            } catch (SQLException ignored) {
+                // The connection is read-only, so nothing is lost.
+            }
+        }
+        try {
+            connection.close();
+        } catch (SQLException exception) {
+            throw new StructureDatabaseException("Unable to close the structure database.", exception);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        T read(Connection readConnection) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface Parameters {
+        void set(PreparedStatement statement) throws SQLException;
+    }
+}
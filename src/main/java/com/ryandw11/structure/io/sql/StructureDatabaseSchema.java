@@ -0,0 +1,230 @@
+package com.ryandw11.structure.io.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Creates the tables of the structure database and migrates them to the latest version.
+ *
+ * <p>The version of the schema is stored in <code>PRAGMA user_version</code>:</p>
+ * <ul>
+ *     <li>1: The original <code>Structures</code> table, which stored the coordinates as doubles and the names of the
+ *     structure and the world on every row. (The user version of these databases is 0).</li>
+ *     <li>2: The <code>SpawnedStructures</code> table, which stores integer coordinates, a packed chunk key, the time
+ *     the structure spawned at, its rotation and bounds, and the ids of the structure and the world in the
+ *     <code>StructureNames</code> and <code>Worlds</code> tables.</li>
+ * </ul>
+ *
+ * <p>Internal Use Only.</p>
+ */
+public final class StructureDatabaseSchema {
+    /**
+     * The current version of the schema.
+     */
+    public static final int VERSION = 2;
+    private static final int LEGACY_VERSION = 1;
+    // The number of rows that are migrated in one transaction.
+    private static final int MIGRATION_BATCH_SIZE = 10_000;
+
+    private StructureDatabaseSchema() {
+    }
+
+    /**
+     * Create the tables of the current version if they do not exist yet.
+     *
+     * <p>A new database is marked as the current version right away. An old database keeps its version until it is
+     * migrated with {@link #migrate(Connection, Logger, BooleanSupplier)}.</p>
+     *
+     * @param connection The connection to the database.
+     * @throws SQLException If the tables cannot be created.
+     */
+    public static void create(Connection connection) throws SQLException {
+        int version = getVersion(connection);
+        try (Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(30);
+            statement.executeUpdate("""
+                    CREATE TABLE IF NOT EXISTS Worlds (
+                        id INTEGER PRIMARY KEY,
+                        name TEXT NOT NULL UNIQUE
+                    )
+                    """);
+            statement.executeUpdate("""
+                    CREATE TABLE IF NOT EXISTS StructureNames (
+                        id INTEGER PRIMARY KEY,
+                        name TEXT NOT NULL UNIQUE
+                    )
+                    """);
+            statement.executeUpdate("""
+                    CREATE TABLE IF NOT EXISTS SpawnedStructures (
+                        id INTEGER PRIMARY KEY,
+                        structure_id INTEGER NOT NULL REFERENCES StructureNames (id),
+                        world_id INTEGER NOT NULL REFERENCES Worlds (id),
+                        x INTEGER NOT NULL,
+                        y INTEGER NOT NULL,
+                        z INTEGER NOT NULL,
+                        chunk_key INTEGER NOT NULL,
+                        spawned_at INTEGER,
+                        rotation INTEGER,
+                        min_x INTEGER,
+                        min_y INTEGER,
+                        min_z INTEGER,
+                        max_x INTEGER,
+                        max_y INTEGER,
+                        max_z INTEGER
+                    )
+                    """);
+            // The index on the structure also covers the id, so the locations of a structure can be read page by page.
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS SpawnedStructuresByStructure ON SpawnedStructures (structure_id)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS SpawnedStructuresByChunk ON SpawnedStructures (world_id, chunk_key)");
+            // The last entry of the journal that was saved.
+            statement.executeUpdate("""
+                    CREATE TABLE IF NOT EXISTS JournalState (
+                        id INTEGER PRIMARY KEY CHECK (id = 0),
+                        last_sequence INTEGER NOT NULL
+                    )
+                    """);
+            if (version == 0)
+                statement.executeUpdate("PRAGMA user_version = " + VERSION);
+        }
+    }
+
+    /**
+     * Get the version of the schema.
+     *
+     * @param connection The connection to the database.
+     * @return The version of the schema. (0 if the database is new).
+     * @throws SQLException If the version cannot be read.
+     */
+    public static int getVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            int version;
+            try (ResultSet resultSet = statement.executeQuery("PRAGMA user_version")) {
+                version = resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+            if (version != 0) return version;
+            try (ResultSet resultSet = statement.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'Structures'")) {
+                return resultSet.next() ? LEGACY_VERSION : 0;
+            }
+        }
+    }
+
+    /**
+     * Check if the database has to be migrated.
+     *
+     * @param connection The connection to the database.
+     * @return If the database is older than the current version.
+     * @throws SQLException If the version cannot be read.
+     */
+    public static boolean needsMigration(Connection connection) throws SQLException {
+        int version = getVersion(connection);
+        return version != 0 && version < VERSION;
+    }
+
+    /**
+     * Migrate the database to the current version.
+     *
+     * <p>The rows are copied in batches, each in its own transaction, so a migration that is stopped continues where it
+     * left off the next time. The file is compacted once the old table is dropped.</p>
+     *
+     * @param connection The connection to the database. (It must be in auto-commit mode).
+     * @param logger     The logger to report the progress to.
+     * @param stopping   If the migration should stop before the next batch.
+     * @return If the migration finished. (False if it was stopped).
+     * @throws SQLException If the migration fails.
+     */
+    public static boolean migrate(Connection connection, Logger logger, BooleanSupplier stopping) throws SQLException {
+        if (getVersion(connection) == LEGACY_VERSION) {
+            if (!migrateFromLegacy(connection, logger, stopping)) return false;
+        }
+        return true;
+    }
+
+    private static boolean migrateFromLegacy(Connection connection, Logger logger, BooleanSupplier stopping) throws SQLException {
+        long maxId;
+        long migratedId;
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM Structures")) {
+                maxId = resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+            // Nothing else is written to the new table until the migration is done, so this is where it stopped.
+            try (ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM SpawnedStructures")) {
+                migratedId = resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        }
+        logger.info("Migrating the structure database to the new format. Structures can still spawn, but the database cannot be searched until this is done.");
+
+        try (PreparedStatement worlds = connection.prepareStatement(
+                "INSERT OR IGNORE INTO Worlds (name) SELECT DISTINCT world FROM Structures WHERE id > ? AND id <= ?");
+             PreparedStatement names = connection.prepareStatement(
+                     "INSERT OR IGNORE INTO StructureNames (name) SELECT DISTINCT name FROM Structures WHERE id > ? AND id <= ?");
+             // The chunk key is (chunkX << 32 | chunkZ), see getChunkKey(int, int).
+             PreparedStatement rows = connection.prepareStatement("""
+                     INSERT INTO SpawnedStructures (id, structure_id, world_id, x, y, z, chunk_key)
+                     SELECT s.id, n.id, w.id, s.x, s.y, s.z, ((s.x >> 4) << 32) | ((s.z >> 4) & 4294967295)
+                     FROM (SELECT id, name, world, CAST(x AS INTEGER) AS x, CAST(y AS INTEGER) AS y, CAST(z AS INTEGER) AS z
+                           FROM Structures WHERE id > ? AND id <= ?) s
+                     JOIN StructureNames n ON n.name = s.name
+                     JOIN Worlds w ON w.name = s.world
+                     """)) {
+            long lastReport = System.currentTimeMillis();
+            while (migratedId < maxId) {
+                if (stopping.getAsBoolean()) return false;
+                long to = Math.min(maxId, migratedId + MIGRATION_BATCH_SIZE);
+                connection.setAutoCommit(false);
+                try {
+                    for (PreparedStatement statement : new PreparedStatement[]{worlds, names, rows}) {
+                        statement.setLong(1, migratedId);
+                        statement.setLong(2, to);
+                        statement.executeUpdate();
+                    }
+                    connection.commit();
+                } catch (SQLException ex) {
+                    connection.rollback();
+                    throw ex;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                migratedId = to;
+
+                if (System.currentTimeMillis() - lastReport > 10_000) {
+                    lastReport = System.currentTimeMillis();
+                    logger.info(String.format("Migrating the structure database: %d%% done.", migratedId * 100 / maxId));
+                }
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            try {
+                statement.executeUpdate("DROP TABLE Structures");
+                statement.executeUpdate("PRAGMA user_version = " + VERSION);
+                connection.commit();
+            } catch (SQLException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            // Give the space of the old table back to the file system.
+            statement.executeUpdate("VACUUM");
+        }
+        logger.info("The structure database has been migrated to the new format.");
+        return true;
+    }
+
+    /**
+     * Pack the coordinates of a chunk into a single key.
+     *
+     * @param blockX The x coordinate of a block in the chunk.
+     * @param blockZ The z coordinate of a block in the chunk.
+     * @return The chunk key.
+     */
+    public static long getChunkKey(int blockX, int blockZ) {
+        return ((long) (blockX >> 4) << 32) | ((blockZ >> 4) & 0xFFFFFFFFL);
+    }
+}
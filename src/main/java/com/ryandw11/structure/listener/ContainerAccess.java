@@ -0,0 +1,116 @@
+package com.ryandw11.structure.listener;
+
+import com.ryandw11.structure.CustomStructures;
+import com.ryandw11.structure.loottables.LootTableType;
+import com.ryandw11.structure.schematic.LootTableReplacer;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.DoubleChest;
+import org.bukkit.block.data.Directional;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+
+import java.util.List;
+
+/**
+ * Populates the loot of containers that were tagged for lazy loot population.
+ *
+ * <p>A container is populated the first time it is opened or broken, or when a hopper is placed
+ * next to it or moves items out of it.</p>
+ */
+public class ContainerAccess implements Listener {
+
+    private final CustomStructures plugin;
+
+    public ContainerAccess() {
+        this.plugin = CustomStructures.getInstance();
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onInventoryOpen(InventoryOpenEvent e) {
+        populate(e.getInventory());
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent e) {
+        populate(e.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent e) {
+        populate(e.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent e) {
+        populate(e.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onHopperPlace(BlockPlaceEvent e) {
+        Block hopper = e.getBlockPlaced();
+        if (hopper.getType() != Material.HOPPER) return;
+        // Hoppers pull from the container above and push into the container they face.
+        populate(hopper.getRelative(BlockFace.UP));
+        if (hopper.getBlockData() instanceof Directional)
+            populate(hopper.getRelative(((Directional) hopper.getBlockData()).getFacing()));
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onInventoryMove(InventoryMoveItemEvent e) {
+        // This event is called very often, so only check it while lazy population is enabled.
+        if (!plugin.isLazyLootPopulation()) return;
+        populate(e.getSource());
+    }
+
+    /**
+     * Populate the containers of an inventory. (Both halves of a double chest share one inventory).
+     *
+     * @param inventory The inventory.
+     */
+    private void populate(Inventory inventory) {
+        InventoryHolder holder = inventory.getHolder();
+        if (holder instanceof DoubleChest) {
+            DoubleChest doubleChest = (DoubleChest) holder;
+            if (doubleChest.getLeftSide() instanceof BlockState)
+                populate(((BlockState) doubleChest.getLeftSide()).getBlock());
+            if (doubleChest.getRightSide() instanceof BlockState)
+                populate(((BlockState) doubleChest.getRightSide()).getBlock());
+        } else if (holder instanceof BlockState) {
+            populate(((BlockState) holder).getBlock());
+        }
+    }
+
+    /**
+     * Populate the containers in a list of blocks.
+     *
+     * @param blocks The list of blocks.
+     */
+    private void populate(List<Block> blocks) {
+        for (Block block : blocks) {
+            populate(block);
+        }
+    }
+
+    /**
+     * Populate a block if it is a tagged container.
+     *
+     * @param block The block.
+     */
+    private void populate(Block block) {
+        // Checking the type first avoids creating a block state for every block.
+        if (LootTableType.valueOf(block.getType()) == null) return;
+        LootTableReplacer.populateTaggedContainer(block);
+    }
+}
@@ -1,6 +1,8 @@
 package com.ryandw11.structure.loottables;
 
+import com.ryandw11.structure.exceptions.LootTableException;
 import com.ryandw11.structure.utils.NumberStylizer;
+import com.ryandw11.structure.utils.StylizedInt;
 import org.bukkit.configuration.ConfigurationSection;
 
 /**
@@ -17,6 +19,7 @@ public abstract class ConfigLootItem implements LootItem {
     private final String itemID;
     private final int weight;
     private final String amount;
+    private final StylizedInt compiledAmount;
 
     /**
      * The default constructor. There must exist a constructor in all child classes that
@@ -26,12 +29,18 @@ public abstract class ConfigLootItem implements LootItem {
      * @param itemID    The itemID.
      * @param weight    The weight.
      * @param amount    The raw amount.
+     * @throws LootTableException If the amount is an invalid range.
      */
     public ConfigLootItem(LootTable lootTable, String itemID, int weight, String amount) {
         this.lootTable = lootTable;
         this.itemID = itemID;
         this.weight = weight;
         this.amount = amount;
+        try {
+            this.compiledAmount = StylizedInt.parse(amount);
+        } catch (NumberFormatException ex) {
+            throw new LootTableException("Invalid range " + amount + ": the first number is greater than the second!");
+        }
     }
 
     /**
@@ -75,7 +84,16 @@ public abstract class ConfigLootItem implements LootItem {
      * @return The amount of the item.
      */
     public final int getAmount() {
-        return NumberStylizer.getStylizedInt(amount);
+        return compiledAmount.sample();
+    }
+
+    /**
+     * The compiled amount of the item.
+     *
+     * @return The compiled amount of the item.
+     */
+    public final StylizedInt getCompiledAmount() {
+        return compiledAmount;
     }
 
     /**
@@ -6,7 +6,6 @@ import com.ryandw11.structure.loottables.customitems.CustomLootItem;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
 import java.io.IOException;
@@ -24,6 +23,8 @@ public class ConfigLootTable extends LootTable {
 
     private final String name;
     private int rolls;
+    // If the loot table contains custom items (which might need the main thread).
+    private boolean customItems;
 
     public FileConfiguration lootTablesFC;
 
@@ -73,6 +74,17 @@ public class ConfigLootTable extends LootTable {
         this.rolls = rolls;
     }
 
+    /**
+     * Standard items are plain item stacks, so a loot table with only standard items can be rolled
+     * off of the main thread.
+     *
+     * @return If the loot table only contains standard items.
+     */
+    @Override
+    public boolean supportsOffThreadGeneration() {
+        return !customItems && getClass() == ConfigLootTable.class;
+    }
+
     /**
      * Load the items of the Loot Table.
      */
@@ -116,9 +128,15 @@ public class ConfigLootTable extends LootTable {
 
                     itemInst.constructItem(itemSection);
                     this.randomCollection.add(weight, itemInst);
+                    this.customItems = true;
                 } catch (NoSuchMethodException ex) {
                     throw new LootTableException(String.format("Unable to construct custom loot item type %s! Does the required constructor exist?", type));
-                } catch (IllegalArgumentException | InvocationTargetException | IllegalAccessException | InstantiationException ex) {
+                } catch (InvocationTargetException ex) {
+                    // The configuration of the item itself is invalid (ex: the amount).
+                    if (ex.getCause() instanceof LootTableException)
+                        throw (LootTableException) ex.getCause();
+                    throw new LootTableException(String.format("Unable to construct custom loot item type %s! Does the constructor have the correct access level?", type));
+                } catch (IllegalArgumentException | IllegalAccessException | InstantiationException ex) {
                     throw new LootTableException(String.format("Unable to construct custom loot item type %s! Does the constructor have the correct access level?", type));
                 }
             }
@@ -177,10 +195,8 @@ public class ConfigLootTable extends LootTable {
         File lootTablesfile = new File(CustomStructures.plugin.getDataFolder() + "/lootTables/" + name + ".yml");
         if (!lootTablesfile.exists())
             throw new LootTableException("Cannot find the following loot table file: " + name);
-        this.lootTablesFC = YamlConfiguration.loadConfiguration(lootTablesfile);
-
         try {
-            lootTablesFC.load(lootTablesfile);
+            this.lootTablesFC = CustomStructures.getInstance().getConfigCache().loadConfiguration(lootTablesfile);
         } catch (IOException | InvalidConfigurationException e) {
             throw new LootTableException("Invalid LootTable Configuration! Please view the guide on the wiki for more information.");
         }
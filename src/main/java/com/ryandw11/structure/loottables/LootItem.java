@@ -2,6 +2,8 @@ package com.ryandw11.structure.loottables;
 
 import org.bukkit.inventory.ItemStack;
 
+import java.util.Random;
+
 /**
  * A LootItem is an item which can be placed in a LootTable.
  *
@@ -14,4 +16,16 @@ public interface LootItem {
      * @return The ItemStack representation.
      */
     ItemStack getItemStack();
+
+    /**
+     * The ItemStack representation of the LootItem, using a specific randomizer for any random values.
+     *
+     * <p>By default this ignores the randomizer and calls {@link #getItemStack()}.</p>
+     *
+     * @param random The randomizer.
+     * @return The ItemStack representation.
+     */
+    default ItemStack getItemStack(Random random) {
+        return getItemStack();
+    }
 }
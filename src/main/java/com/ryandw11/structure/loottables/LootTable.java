@@ -103,6 +103,33 @@ public abstract class LootTable {
         LootTableReplacer.replaceBrewerContent(this, brewerInventory);
     }
 
+    /**
+     * Check if the contents of a container can be generated off of the main thread using
+     * {@link #generateContainerContents(ItemStack[], Random)}.
+     *
+     * <p>Only return true if {@link #fillContainerInventory(Inventory, Random, Location)} is not overridden and
+     * {@link #getRandomWeightedItem(Random)} does not use the Bukkit API in a way that requires the main thread.</p>
+     *
+     * @return If the contents of a container can be generated off of the main thread. (False by default).
+     */
+    public boolean supportsOffThreadGeneration() {
+        return false;
+    }
+
+    /**
+     * Generate the contents of a container without touching the world.
+     *
+     * <p>This is the equivalent of {@link #fillContainerInventory(Inventory, Random, Location)} on a copy of
+     * the container's contents. It is only called off of the main thread if {@link #supportsOffThreadGeneration()}
+     * is true.</p>
+     *
+     * @param contents The contents of the container to add the loot to. (This array is modified).
+     * @param random   The randomizer.
+     */
+    public void generateContainerContents(ItemStack[] contents, Random random) {
+        LootTableReplacer.replaceChestContent(this, random, contents);
+    }
+
     /**
      * Get a random item from the loot table.
      *
@@ -114,6 +141,18 @@ public abstract class LootTable {
         return this.randomCollection.next().getItemStack();
     }
 
+    /**
+     * Get a random item from the loot table using a specific randomizer.
+     *
+     * <p>Override this method if you don't use the default RandomCollection.</p>
+     *
+     * @param random The randomizer.
+     * @return A random item from the loot table.
+     */
+    public ItemStack getRandomWeightedItem(Random random) {
+        return this.randomCollection.next(random).getItemStack(random);
+    }
+
     /**
      * Get the list of items from the loot table.
      *
@@ -4,21 +4,32 @@ import com.ryandw11.structure.CustomStructures;
 import com.ryandw11.structure.api.CustomStructuresAPI;
 import com.ryandw11.structure.exceptions.LootTableException;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This handles the loot tables.
  *
  * <p>Get this handler via {@link CustomStructuresAPI#getLootTableHandler()}.</p>
+ *
+ * <p>This handler is thread-safe. All of the loot tables in the lootTables folder, and the loot tables used by the
+ * structures, are loaded in parallel when the structures are loaded. A loot table that fails to load is remembered,
+ * so it is not loaded again every time it is used.</p>
  */
 public class LootTableHandler {
 
     private final Map<String, LootTable> lootTables;
     private final Map<String, Class<? extends ConfigLootItem>> lootItems;
+    // The reason the loot tables that failed to load failed.
+    private final Map<String, String> lootTableErrors;
 
     public LootTableHandler() {
-        this.lootTables = new HashMap<>();
-        this.lootItems = new HashMap<>();
+        this.lootTables = new ConcurrentHashMap<>();
+        this.lootItems = new ConcurrentHashMap<>();
+        this.lootTableErrors = new ConcurrentHashMap<>();
     }
 
     /**
@@ -32,11 +43,8 @@ public class LootTableHandler {
      * @return If the loot table was added successfully.
      */
     public boolean addLootTable(LootTable lootTable) {
-        if (lootTables.containsKey(lootTable.getName()))
-            return false;
-
-        this.lootTables.put(lootTable.getName(), lootTable);
-        return true;
+        this.lootTableErrors.remove(lootTable.getName());
+        return this.lootTables.putIfAbsent(lootTable.getName(), lootTable) == null;
     }
 
     /**
@@ -50,37 +58,103 @@ public class LootTableHandler {
      * @return If the loot item was added successfully.
      */
     public boolean addLootItem(String typeName, Class<? extends ConfigLootItem> lootItemClass) {
-        if (lootItems.containsKey(typeName.toUpperCase()))
-            return false;
-
-        this.lootItems.put(typeName.toUpperCase(), lootItemClass);
-        return true;
+        return this.lootItems.putIfAbsent(typeName.toUpperCase(), lootItemClass) == null;
     }
 
     /**
      * Get the loot table by the name.
      * <p>This will automatically load a loot table</p>
      * <p>If the name starts with <code>minecraft:</code>, it will try to load a minecraft loot table.</p>
+     * <p>A loot table is only loaded once, even if multiple threads ask for it at the same time. If the loot table
+     * failed to load before, it is not loaded again.</p>
      *
      * @param lootTableName The name of the loot table.
      * @return The loot table. This will return null if the loot table does not exist or loads with an error.
      */
     public LootTable getLootTableByName(String lootTableName) {
-        if (!this.lootTables.containsKey(lootTableName)) {
-            try {
-                // Support minecraft loot tables.
-                if (lootTableName.contains(":")) {
-                    this.lootTables.put(lootTableName, new MinecraftLootTable(lootTableName));
-                } else {
-                    this.lootTables.put(lootTableName, new ConfigLootTable(lootTableName));
-                }
-            } catch (LootTableException ex) {
-                CustomStructures.getInstance().getLogger().severe("There seems to be a problem with the '" +
-                        lootTableName + "' loot table:");
-                CustomStructures.getInstance().getLogger().severe(ex.getMessage());
+        LootTable lootTable = this.lootTables.get(lootTableName);
+        if (lootTable != null || this.lootTableErrors.containsKey(lootTableName))
+            return lootTable;
+        return this.lootTables.computeIfAbsent(lootTableName, this::loadLootTable);
+    }
+
+    /**
+     * Load loot tables in parallel, along with all of the loot tables in the lootTables folder.
+     *
+     * <p>Internal Use Only. This is called when the structures are loaded, so loot tables are never read from the
+     * disk while a structure is spawning.</p>
+     *
+     * @param lootTableNames The names of the loot tables used by the structures.
+     * @param pool           The pool to load the loot tables with.
+     * @return The time it took to load each loot table (in nanoseconds).
+     * @throws ExecutionException   If an error occurs while loading.
+     * @throws InterruptedException If the thread is interrupted while waiting for the loot tables.
+     */
+    public Map<String, Long> preloadLootTables(Collection<String> lootTableNames, ForkJoinPool pool) throws ExecutionException, InterruptedException {
+        Set<String> names = new LinkedHashSet<>(lootTableNames);
+        File[] files = new File(CustomStructures.getInstance().getDataFolder(), "lootTables").listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && file.getName().endsWith(".yml"))
+                    names.add(file.getName().substring(0, file.getName().length() - ".yml".length()));
+            }
+        }
+
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+        pool.submit(() -> names.parallelStream().forEach(lootTableName -> {
+            long start = System.nanoTime();
+            getLootTableByName(lootTableName);
+            timings.put(lootTableName, System.nanoTime() - start);
+        })).get();
+        return timings;
+    }
+
+    /**
+     * Get the reason a loot table failed to load.
+     *
+     * @param lootTableName The name of the loot table.
+     * @return The reason the loot table failed to load. (Null if it did not fail to load).
+     */
+    public String getLootTableError(String lootTableName) {
+        return this.lootTableErrors.get(lootTableName);
+    }
+
+    /**
+     * Load a loot table from its file again.
+     *
+     * <p>Loot tables that were added by addons are not affected. If the loot table fails to load, the old
+     * version is kept.</p>
+     *
+     * @param lootTableName The name of the loot table.
+     * @return The loot table. This will return null if the loot table does not exist or loads with an error.
+     */
+    public LootTable reloadLootTable(String lootTableName) {
+        LootTable current = this.lootTables.get(lootTableName);
+        if (current != null && !(current instanceof ConfigLootTable))
+            return current;
+        this.lootTableErrors.remove(lootTableName);
+        LootTable lootTable = loadLootTable(lootTableName);
+        if (lootTable == null)
+            return current;
+        this.lootTables.put(lootTableName, lootTable);
+        return lootTable;
+    }
+
+    private LootTable loadLootTable(String lootTableName) {
+        try {
+            // Support minecraft loot tables.
+            if (lootTableName.contains(":")) {
+                return new MinecraftLootTable(lootTableName);
+            } else {
+                return new ConfigLootTable(lootTableName);
             }
+        } catch (LootTableException ex) {
+            this.lootTableErrors.put(lootTableName, Objects.toString(ex.getMessage(), "Unknown error."));
+            CustomStructures.getInstance().getLogger().severe("There seems to be a problem with the '" +
+                    lootTableName + "' loot table:");
+            CustomStructures.getInstance().getLogger().severe(ex.getMessage());
+            return null;
         }
-        return this.lootTables.get(lootTableName);
     }
 
     /**
@@ -1,7 +1,7 @@
 package com.ryandw11.structure.loottables;
 
 import com.ryandw11.structure.exceptions.LootTableException;
-import com.ryandw11.structure.utils.NumberStylizer;
+import com.ryandw11.structure.utils.StylizedInt;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
@@ -14,10 +14,15 @@ import org.bukkit.inventory.meta.ItemMeta;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 /**
  * Represents a Standard Item within a {@link ConfigLootTable}.
+ *
+ * <p>The amount and enchantments are compiled when the item is constructed so an invalid enchantment is
+ * reported when the loot table loads, and {@link #getItemStack()} only needs to clone the template.</p>
  */
 public class StandardLootItem implements LootItem {
 
@@ -26,6 +31,12 @@ public class StandardLootItem implements LootItem {
     private final Map<String, String> enchants;
     private ItemStack item;
 
+    // The compiled form of the amount and enchantments.
+    private StylizedInt compiledAmount;
+    private Enchantment[] enchantments;
+    private StylizedInt[] levels;
+    private boolean storesEnchantments;
+
     /**
      * This is for normal loot table items.
      *
@@ -58,6 +69,7 @@ public class StandardLootItem implements LootItem {
         }
 
         this.enchants = enchants;
+        compile();
     }
 
     /**
@@ -78,7 +90,6 @@ public class StandardLootItem implements LootItem {
             throw new LootTableException("Unknown Material Type: " + material);
         }
         this.amount = amount;
-        this.item.setAmount(NumberStylizer.getStylizedInt(amount));
         ItemMeta meta = Objects.requireNonNull(this.item.getItemMeta());
         if (customName != null) { //Catch for people who do not want different names
             meta.setDisplayName(ChatColor.translateAlternateColorCodes('&', customName));
@@ -92,26 +103,51 @@ public class StandardLootItem implements LootItem {
 
         this.item.setItemMeta(meta);
         this.enchants = enchants;
+        compile();
+        this.item.setAmount(compiledAmount.getLower());
     }
 
     /**
-     * Apply the stylized enchantments and amount to the itemstack.
+     * Resolve the enchantments and parse the stylized amount and levels.
      *
-     * @param item The item stack to apply the stats to.
+     * @throws LootTableException If an enchantment does not exist or a range is invalid.
      */
-    private void applyStats(ItemStack item) {
-        item.setAmount(NumberStylizer.getStylizedInt(amount));
-        for (String enchantName : enchants.keySet()) {
-            int level = NumberStylizer.getStylizedInt(enchants.get(enchantName));
-            Enchantment enchantment = EnchantmentWrapper.getByKey(NamespacedKey.minecraft(enchantName.toLowerCase()));
-            if (enchantment == null)
-                throw new LootTableException("Invalid Enchantment: " + enchantName);
-            if (item.getItemMeta() instanceof EnchantmentStorageMeta enchantmentStorageMeta) {
-                enchantmentStorageMeta.addStoredEnchant(enchantment, level, true);
-                item.setItemMeta(enchantmentStorageMeta);
-            } else {
-                item.addUnsafeEnchantment(enchantment, level);
+    private void compile() {
+        this.compiledAmount = compileStylizedInt(amount);
+
+        this.enchantments = new Enchantment[enchants.size()];
+        this.levels = new StylizedInt[enchants.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : enchants.entrySet()) {
+            Enchantment enchantment;
+            try {
+                enchantment = EnchantmentWrapper.getByKey(NamespacedKey.minecraft(entry.getKey().toLowerCase()));
+            } catch (IllegalArgumentException ex) {
+                enchantment = null;
             }
+            if (enchantment == null)
+                throw new LootTableException("Invalid Enchantment: " + entry.getKey());
+
+            this.enchantments[i] = enchantment;
+            this.levels[i] = compileStylizedInt(entry.getValue());
+            i++;
+        }
+
+        this.storesEnchantments = item.getItemMeta() instanceof EnchantmentStorageMeta;
+    }
+
+    /**
+     * Parse a stylized integer, reporting an invalid range as a loot table error.
+     *
+     * @param input The stylized integer.
+     * @return The compiled stylized integer.
+     * @throws LootTableException If the lower bound of a range is greater than the upper bound.
+     */
+    private static StylizedInt compileStylizedInt(String input) {
+        try {
+            return StylizedInt.parse(input);
+        } catch (NumberFormatException ex) {
+            throw new LootTableException("Invalid range " + input + ": the first number is greater than the second!");
         }
     }
 
@@ -140,8 +176,33 @@ public class StandardLootItem implements LootItem {
      */
     @Override
     public ItemStack getItemStack() {
+        return getItemStack(ThreadLocalRandom.current());
+    }
+
+    /**
+     * Get the item stack using a specific randomizer for the amount and enchantment levels.
+     *
+     * @param random The randomizer.
+     * @return The clone of the item stack with the applied stats.
+     */
+    @Override
+    public ItemStack getItemStack(Random random) {
         ItemStack cloneStack = item.clone();
-        applyStats(cloneStack);
+        cloneStack.setAmount(compiledAmount.sample(random));
+        if (enchantments.length == 0)
+            return cloneStack;
+
+        if (storesEnchantments) {
+            EnchantmentStorageMeta meta = (EnchantmentStorageMeta) Objects.requireNonNull(cloneStack.getItemMeta());
+            for (int i = 0; i < enchantments.length; i++) {
+                meta.addStoredEnchant(enchantments[i], levels[i].sample(random), true);
+            }
+            cloneStack.setItemMeta(meta);
+        } else {
+            for (int i = 0; i < enchantments.length; i++) {
+                cloneStack.addUnsafeEnchantment(enchantments[i], levels[i].sample(random));
+            }
+        }
         return cloneStack;
     }
 
@@ -152,6 +213,7 @@ public class StandardLootItem implements LootItem {
      */
     public void setItem(ItemStack item) {
         this.item = item;
+        this.storesEnchantments = item.getItemMeta() instanceof EnchantmentStorageMeta;
     }
 
 }
@@ -0,0 +1,144 @@
+package com.ryandw11.structure.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in nanoseconds.
+ *
+ * <p>Values below 16 have their own bucket. Above that, every power of two is split into 8 buckets, so a value
+ * is known to within 12.5% without having to store every value (similar to an HDR histogram).</p>
+ *
+ * <p>This class is thread safe. Recording a value never blocks.</p>
+ */
+public class LatencyHistogram {
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (63 - 4) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos The duration in nanoseconds. (Negative values are recorded as 0).
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(getBucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Get the number of recorded durations.
+     *
+     * @return The number of recorded durations.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Get the sum of the recorded durations.
+     *
+     * @return The sum of the recorded durations in nanoseconds.
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Get the longest recorded duration.
+     *
+     * @return The longest recorded duration in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the duration that a percentage of the recorded durations are at or below.
+     *
+     * @param percentile The percentile. (0 - 100)
+     * @return The duration in nanoseconds. (The highest value of its bucket, 0 if nothing was recorded).
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        if (total == 0) return 0;
+
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target)
+                return Math.min(getBucketUpperBound(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Get the number of recorded durations that are at or below a duration.
+     *
+     * <p>Durations are only known to within their bucket, so this counts the buckets that end at or below
+     * the duration.</p>
+     *
+     * @param nanos The duration in nanoseconds.
+     * @return The number of recorded durations.
+     */
+    public long getCountAtOrBelow(long nanos) {
+        long result = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (getBucketUpperBound(i) > nanos) break;
+            result += buckets.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Remove all of the recorded durations.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    private long[] getBucketCounts() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    private static int getBucket(long value) {
+        if (value < LINEAR_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long getBucketUpperBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) return bucket;
+        int exponent = 4 + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lowerBound = (long) (SUB_BUCKETS + subBucket) * width;
+        // The last bucket would overflow.
+        if (lowerBound > Long.MAX_VALUE - width) return Long.MAX_VALUE;
+        return lowerBound + width - 1;
+    }
+}
@@ -0,0 +1,48 @@
+package com.ryandw11.structure.metrics;
+
+import com.ryandw11.structure.CustomStructures;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes the spawn metrics and the state of the tick budget to <code>data/metrics.prom</code> in the Prometheus text format.
+ *
+ * <p>This task runs asynchronously. The file is replaced as a whole, so a collector never reads half of a file.</p>
+ *
+ * <p>Note: This feature needs to be enabled by the user in the config.</p>
+ */
+public class MetricsDumpTask extends BukkitRunnable {
+
+    private final CustomStructures plugin;
+    private final File metricsFile;
+
+    public MetricsDumpTask(CustomStructures plugin) {
+        this.plugin = plugin;
+        this.metricsFile = new File(plugin.getDataFolder() + "/data/metrics.prom");
+    }
+
+    @Override
+    public void run() {
+        File dataDirectory = metricsFile.getParentFile();
+        if (!dataDirectory.exists() && !dataDirectory.mkdirs()) return;
+
+        File tempFile = new File(dataDirectory, metricsFile.getName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                plugin.getSpawnMetrics().writePrometheus(writer);
+                plugin.getTickBudgetController().writePrometheus(writer);
+            }
+            Files.move(tempFile.toPath(), metricsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Unable to write the spawn metrics to " + metricsFile.getName() + ".");
+            if (plugin.isDebug())
+                ex.printStackTrace();
+        }
+    }
+}
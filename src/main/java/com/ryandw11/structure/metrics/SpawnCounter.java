@@ -0,0 +1,42 @@
+package com.ryandw11.structure.metrics;
+
+/**
+ * The outcomes of a spawn attempt that are counted by {@link SpawnMetrics}.
+ */
+public enum SpawnCounter {
+    /**
+     * The structure passed its spawn conditions and was added to the candidates of a chunk.
+     */
+    CANDIDATE_ACCEPTED("candidate_accepted"),
+    /**
+     * The structure did not pass its spawn conditions for a chunk.
+     */
+    CANDIDATE_REJECTED("candidate_rejected"),
+    /**
+     * The structure was picked, but the placement checks failed.
+     */
+    PLACEMENT_REJECTED("placement_rejected"),
+    /**
+     * The structure was picked, but an addon structure section did not allow it to spawn.
+     */
+    ADDON_REJECTED("addon_rejected"),
+    /**
+     * The structure was spawned.
+     */
+    SPAWNED("spawned");
+
+    private final String metricName;
+
+    SpawnCounter(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * Get the name of the counter used in the metrics output.
+     *
+     * @return The name of the counter.
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+}
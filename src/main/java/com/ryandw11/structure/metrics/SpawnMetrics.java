@@ -0,0 +1,168 @@
+package com.ryandw11.structure.metrics;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how long each stage of spawning takes for every structure, and how often structures are accepted
+ * or rejected.
+ *
+ * <p>Get the instance from {@link com.ryandw11.structure.CustomStructures#getSpawnMetrics()}. The metrics are
+ * shown by <code>/cstruct stats</code> and can be written to a file in the Prometheus text format.</p>
+ *
+ * <p>This class is thread safe.</p>
+ */
+public class SpawnMetrics {
+    // The upper bounds of the buckets in the Prometheus output (in seconds).
+    private static final double[] PROMETHEUS_BUCKETS = {
+            0.00001, 0.00005, 0.0001, 0.0005, 0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 5
+    };
+
+    private final Map<String, StructureMetrics> structures = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    /**
+     * Construct the spawn metrics.
+     *
+     * <p>Internal Use Only.</p>
+     *
+     * @param enabled If metrics should be recorded.
+     */
+    public SpawnMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Check if metrics are recorded.
+     *
+     * @return If metrics are recorded.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set if metrics are recorded.
+     *
+     * @param enabled If metrics are recorded.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Record the time a stage took for a structure.
+     *
+     * @param structureName The name of the structure.
+     * @param stage         The stage.
+     * @param nanos         The time the stage took in nanoseconds.
+     */
+    public void record(String structureName, SpawnStage stage, long nanos) {
+        if (!enabled) return;
+        getStructureMetrics(structureName).getHistogram(stage).record(nanos);
+    }
+
+    /**
+     * Record the time a stage took for a structure, from the start time of the stage until now.
+     *
+     * @param structureName The name of the structure.
+     * @param stage         The stage.
+     * @param startNanos    The value of {@link System#nanoTime()} when the stage started.
+     */
+    public void recordSince(String structureName, SpawnStage stage, long startNanos) {
+        record(structureName, stage, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Increment a counter of a structure.
+     *
+     * @param structureName The name of the structure.
+     * @param counter       The counter.
+     */
+    public void increment(String structureName, SpawnCounter counter) {
+        if (!enabled) return;
+        getStructureMetrics(structureName).increment(counter);
+    }
+
+    /**
+     * Get the metrics of a structure.
+     *
+     * @param structureName The name of the structure.
+     * @return The metrics of the structure.
+     */
+    public StructureMetrics getStructureMetrics(String structureName) {
+        StructureMetrics metrics = structures.get(structureName);
+        if (metrics != null) return metrics;
+        return structures.computeIfAbsent(structureName, StructureMetrics::new);
+    }
+
+    /**
+     * Get the metrics of all structures that have recorded anything, the most expensive first.
+     *
+     * @return The metrics of the structures.
+     */
+    public List<StructureMetrics> getAllStructureMetrics() {
+        List<StructureMetrics> result = new ArrayList<>(structures.values());
+        result.sort(Comparator.comparingLong(StructureMetrics::getTotalNanos).reversed());
+        return result;
+    }
+
+    /**
+     * Remove all of the recorded metrics.
+     */
+    public void reset() {
+        for (StructureMetrics metrics : structures.values()) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * Write the metrics in the Prometheus text format.
+     *
+     * @param output Where to write the metrics.
+     * @throws IOException If an error occurs while writing.
+     */
+    public void writePrometheus(Appendable output) throws IOException {
+        List<StructureMetrics> all = getAllStructureMetrics();
+        all.sort(Comparator.comparing(StructureMetrics::getStructureName));
+
+        output.append("# HELP customstructures_stage_duration_seconds The time spent in each stage of spawning a structure.\n");
+        output.append("# TYPE customstructures_stage_duration_seconds histogram\n");
+        for (StructureMetrics metrics : all) {
+            for (SpawnStage stage : SpawnStage.values()) {
+                LatencyHistogram histogram = metrics.getHistogram(stage);
+                if (histogram.getCount() == 0) continue;
+                String labels = String.format("structure=\"%s\",stage=\"%s\"", escape(metrics.getStructureName()), stage.getMetricName());
+                for (double bucket : PROMETHEUS_BUCKETS) {
+                    output.append(String.format(Locale.ROOT, "customstructures_stage_duration_seconds_bucket{%s,le=\"%s\"} %d\n",
+                            labels, BigDecimal.valueOf(bucket).toPlainString(), histogram.getCountAtOrBelow(Math.round(bucket * 1e9))));
+                }
+                output.append(String.format(Locale.ROOT, "customstructures_stage_duration_seconds_bucket{%s,le=\"+Inf\"} %d\n",
+                        labels, histogram.getCount()));
+                output.append(String.format(Locale.ROOT, "customstructures_stage_duration_seconds_sum{%s} %.9f\n",
+                        labels, histogram.getSum() / 1e9));
+                output.append(String.format(Locale.ROOT, "customstructures_stage_duration_seconds_count{%s} %d\n",
+                        labels, histogram.getCount()));
+            }
+        }
+
+        output.append("# HELP customstructures_spawn_attempts_total The number of times a structure was accepted or rejected.\n");
+        output.append("# TYPE customstructures_spawn_attempts_total counter\n");
+        for (StructureMetrics metrics : all) {
+            for (SpawnCounter counter : SpawnCounter.values()) {
+                output.append(String.format(Locale.ROOT, "customstructures_spawn_attempts_total{structure=\"%s\",outcome=\"%s\"} %d\n",
+                        escape(metrics.getStructureName()), counter.getMetricName(), metrics.getCount(counter)));
+            }
+        }
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
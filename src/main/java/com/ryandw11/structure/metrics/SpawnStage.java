@@ -0,0 +1,63 @@
+package com.ryandw11.structure.metrics;
+
+/**
+ * The stages of spawning a structure that are timed by {@link SpawnMetrics}.
+ */
+public enum SpawnStage {
+    /**
+     * Checking if the structure can spawn in a chunk when the candidates are picked.
+     * ({@link com.ryandw11.structure.structure.PriorityStructureQueue})
+     */
+    CANDIDATE_SELECTION("candidate_selection"),
+    /**
+     * Checking the spawn block, the block limitations and the block level limit.
+     */
+    PLACEMENT_CHECKS("placement_checks"),
+    /**
+     * Checking the conditions of the addon structure sections.
+     */
+    ADDON_CHECKS("addon_checks"),
+    /**
+     * Getting the clipboard of a schematic.
+     */
+    CLIPBOARD_LOAD("clipboard_load"),
+    /**
+     * Planning the sub-schematics of a structure.
+     */
+    PLANNING("planning"),
+    /**
+     * Pasting the schematics.
+     */
+    PASTE("paste"),
+    /**
+     * Filling the space below the structure. (Only the time spent on the main thread).
+     */
+    BOTTOM_FILL("bottom_fill"),
+    /**
+     * Processing the signs of the structure.
+     */
+    SIGN_PROCESSING("sign_processing"),
+    /**
+     * Filling the containers of the structure. (Only the time spent on the main thread).
+     */
+    LOOT_FILL("loot_fill"),
+    /**
+     * Saving the structure to the structure database.
+     */
+    DB_LOGGING("db_logging");
+
+    private final String metricName;
+
+    SpawnStage(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * Get the name of the stage used in the metrics output.
+     *
+     * @return The name of the stage.
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+}
@@ -0,0 +1,87 @@
+package com.ryandw11.structure.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The spawn metrics of a single structure.
+ *
+ * <p>This class is thread safe.</p>
+ */
+public class StructureMetrics {
+    private final String structureName;
+    private final Map<SpawnStage, LatencyHistogram> stages;
+    private final AtomicLongArray counters = new AtomicLongArray(SpawnCounter.values().length);
+
+    /**
+     * Construct the metrics of a structure.
+     *
+     * @param structureName The name of the structure.
+     */
+    protected StructureMetrics(String structureName) {
+        this.structureName = structureName;
+        Map<SpawnStage, LatencyHistogram> stages = new EnumMap<>(SpawnStage.class);
+        for (SpawnStage stage : SpawnStage.values()) {
+            stages.put(stage, new LatencyHistogram());
+        }
+        // The map is never modified after this, so it can be read from any thread.
+        this.stages = Collections.unmodifiableMap(stages);
+    }
+
+    /**
+     * Get the name of the structure.
+     *
+     * @return The name of the structure.
+     */
+    public String getStructureName() {
+        return structureName;
+    }
+
+    /**
+     * Get the histogram of a stage.
+     *
+     * @param stage The stage.
+     * @return The histogram of the stage.
+     */
+    public LatencyHistogram getHistogram(SpawnStage stage) {
+        return stages.get(stage);
+    }
+
+    /**
+     * Get the value of a counter.
+     *
+     * @param counter The counter.
+     * @return The value of the counter.
+     */
+    public long getCount(SpawnCounter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    /**
+     * Get the total time spent on the structure in all stages.
+     *
+     * @return The total time in nanoseconds.
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (LatencyHistogram histogram : stages.values()) {
+            total += histogram.getSum();
+        }
+        return total;
+    }
+
+    void increment(SpawnCounter counter) {
+        counters.incrementAndGet(counter.ordinal());
+    }
+
+    void reset() {
+        for (LatencyHistogram histogram : stages.values()) {
+            histogram.reset();
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.ryandw11.structure.schematic;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.chat.ComponentSerializer;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A schematic file that has been read into a clipboard.
+ *
+ * <p>Get instances from {@link ClipboardCache}. The clipboard is shared between spawns, so it must not be modified.</p>
+ */
+public class CachedSchematic {
+    private final String fileName;
+    private final Clipboard clipboard;
+    private final long lastModified;
+    private volatile List<SignTemplate> signs;
+    private final Map<String, long[]> bottomFootprints = new ConcurrentHashMap<>();
+
+    /**
+     * Construct a cached schematic.
+     *
+     * @param fileName     The name of the schematic file.
+     * @param clipboard    The clipboard that was read from the file.
+     * @param lastModified The time the file was last modified.
+     */
+    protected CachedSchematic(String fileName, Clipboard clipboard, long lastModified) {
+        this.fileName = fileName;
+        this.clipboard = clipboard;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Get the name of the schematic file.
+     *
+     * @return The name of the schematic file.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Get the clipboard of the schematic.
+     *
+     * <p>Do not modify the clipboard.</p>
+     *
+     * @return The clipboard of the schematic.
+     */
+    public Clipboard getClipboard() {
+        return clipboard;
+    }
+
+    /**
+     * Get the time the schematic file was last modified when it was read.
+     *
+     * @return The time the schematic file was last modified.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Get the signs in the schematic.
+     *
+     * <p>The clipboard is only scanned for signs the first time this is called.</p>
+     *
+     * @return The unmodifiable list of signs in the schematic.
+     */
+    public List<SignTemplate> getSigns() {
+        List<SignTemplate> result = signs;
+        if (result == null) {
+            result = Collections.unmodifiableList(findSigns());
+            signs = result;
+        }
+        return result;
+    }
+
+    /**
+     * Get the bottom footprint of the schematic: the columns of the bottom layer that block movement.
+     *
+     * <p>The footprint only depends on the schematic and the transform of the paste, so it is computed once
+     * per transform. Use {@link #getFootprintX(long)} and {@link #getFootprintZ(long)} to read the columns.</p>
+     *
+     * @param transform The transform of the paste.
+     * @return The columns relative to the paste location. (Do not modify the array).
+     */
+    public long[] getBottomFootprint(AffineTransform transform) {
+        return bottomFootprints.computeIfAbsent(getTransformKey(transform), key -> findBottomFootprint(transform));
+    }
+
+    /**
+     * Get the x offset of a footprint column.
+     *
+     * @param column The packed column.
+     * @return The x offset from the paste location.
+     */
+    public static int getFootprintX(long column) {
+        return (int) (column >> 32);
+    }
+
+    /**
+     * Get the z offset of a footprint column.
+     *
+     * @param column The packed column.
+     * @return The z offset from the paste location.
+     */
+    public static int getFootprintZ(long column) {
+        return (int) column;
+    }
+
+    private long[] findBottomFootprint(AffineTransform transform) {
+        BlockVector3 min = clipboard.getMinimumPoint();
+        BlockVector3 max = clipboard.getMaximumPoint();
+        BlockVector3 origin = clipboard.getOrigin();
+
+        long[] columns = new long[(max.getBlockX() - min.getBlockX() + 1) * (max.getBlockZ() - min.getBlockZ() + 1)];
+        int size = 0;
+        for (int x = min.getBlockX(); x <= max.getBlockX(); x++) {
+            for (int z = min.getBlockZ(); z <= max.getBlockZ(); z++) {
+                BlockVector3 groundPoint = BlockVector3.at(x, min.getBlockY(), z);
+                if (!clipboard.getBlock(groundPoint).getBlockType().getMaterial().isMovementBlocker()) continue;
+
+                // Translate the point to the origin and apply the transformation (rotation, etc.)
+                BlockVector3 offset = transform.apply(groundPoint.subtract(origin).toVector3()).toBlockPoint();
+                columns[size++] = ((long) offset.getBlockX() << 32) | (offset.getBlockZ() & 0xFFFFFFFFL);
+            }
+        }
+        return Arrays.stream(columns, 0, size).sorted().distinct().toArray();
+    }
+
+    /**
+     * Get a key for a transform based on where it moves the unit vectors.
+     */
+    private static String getTransformKey(AffineTransform transform) {
+        Vector3 x = transform.apply(Vector3.UNIT_X);
+        Vector3 y = transform.apply(Vector3.UNIT_Y);
+        Vector3 z = transform.apply(Vector3.UNIT_Z);
+        Vector3 translation = transform.apply(Vector3.ZERO);
+        return Arrays.toString(new long[]{
+                round(x.getX()), round(x.getY()), round(x.getZ()),
+                round(y.getX()), round(y.getY()), round(y.getZ()),
+                round(z.getX()), round(z.getY()), round(z.getZ()),
+                round(translation.getX()), round(translation.getY()), round(translation.getZ())
+        });
+    }
+
+    private static long round(double value) {
+        return Math.round(value * 1000);
+    }
+
+    private List<SignTemplate> findSigns() {
+        List<SignTemplate> result = new ArrayList<>();
+        for (BlockVector3 position : clipboard.getRegion()) {
+            BaseBlock block = clipboard.getFullBlock(position);
+            Material material = BukkitAdapter.adapt(block.getBlockType());
+            if (material == null || !org.bukkit.Tag.SIGNS.isTagged(material)) continue;
+            result.add(new SignTemplate(position, block, readLines(block)));
+        }
+        return result;
+    }
+
+    /**
+     * Read the lines of a sign from its NBT data.
+     *
+     * @param block The sign block.
+     * @return The four lines of the sign in plain text (trimmed).
+     */
+    private static String[] readLines(BaseBlock block) {
+        String[] lines = {"", "", "", ""};
+        CompoundTag nbt = block.getNbtData();
+        if (nbt == null) return lines;
+
+        Map<String, Tag> values = nbt.getValue();
+        if (values.containsKey("Text1")) {
+            // Before 1.20 each line is stored separately.
+            for (int i = 0; i < 4; i++) {
+                lines[i] = toPlainText(nbt.getString("Text" + (i + 1))).trim();
+            }
+        } else if (values.get("front_text") instanceof CompoundTag frontText) {
+            List<StringTag> messages = frontText.getList("messages", StringTag.class);
+            for (int i = 0; i < Math.min(4, messages.size()); i++) {
+                lines[i] = toPlainText(messages.get(i).getValue()).trim();
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Convert a JSON text component into plain text.
+     *
+     * <p>The component is read with the serializer of the server, so translated, score and keybind components
+     * are supported. Legacy color codes are removed.</p>
+     *
+     * @param json The JSON text component.
+     * @return The plain text. (The input without color codes if it is not JSON).
+     */
+    private static String toPlainText(String json) {
+        if (json == null || json.isEmpty()) return "";
+        // Plain text such as "[schematic]" would otherwise be read as a JSON array.
+        if (!json.startsWith("{") && !json.startsWith("\"") && !json.startsWith("[{") && !json.startsWith("[\""))
+            return ChatColor.stripColor(json);
+        try {
+            return ChatColor.stripColor(BaseComponent.toPlainText(ComponentSerializer.parse(json)));
+        } catch (RuntimeException ex) {
+            return ChatColor.stripColor(json);
+        }
+    }
+
+    /**
+     * A sign inside of a schematic.
+     */
+    public static class SignTemplate {
+        private final BlockVector3 position;
+        private final BaseBlock block;
+        private final String[] lines;
+
+        private SignTemplate(BlockVector3 position, BaseBlock block, String[] lines) {
+            this.position = position;
+            this.block = block;
+            this.lines = lines;
+        }
+
+        /**
+         * Get the position of the sign in the clipboard.
+         *
+         * @return The position of the sign in the clipboard.
+         */
+        public BlockVector3 getPosition() {
+            return position;
+        }
+
+        /**
+         * Get the sign block.
+         *
+         * @return The sign block.
+         */
+        public BaseBlock getBlock() {
+            return block;
+        }
+
+        /**
+         * Get a line of the sign in plain text.
+         *
+         * @param line The line number. (0 - 3)
+         * @return The line of the sign.
+         */
+        public String getLine(int line) {
+            return lines[line];
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.ryandw11.structure.schematic;
+
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormats;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the clipboards of schematic files so a schematic is only read from the disk once instead of every
+ * time it is pasted.
+ *
+ * <p>A schematic is read again if its file was modified. The clipboards are softly referenced so they can be
+ * collected if the server runs low on memory.</p>
+ *
+ * <p>Get the instance of this cache from {@link com.ryandw11.structure.CustomStructures#getClipboardCache()}.</p>
+ */
+public class ClipboardCache {
+    private final File schematicsFolder;
+    private final Map<String, SoftReference<CachedSchematic>> schematics;
+
+    /**
+     * Construct the clipboard cache.
+     *
+     * <p>Internal Use Only.</p>
+     *
+     * @param schematicsFolder The folder that contains the schematics.
+     */
+    public ClipboardCache(File schematicsFolder) {
+        this.schematicsFolder = schematicsFolder;
+        this.schematics = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get a schematic, reading it from the disk if it is not cached.
+     *
+     * <p>This method can be called from any thread.</p>
+     *
+     * @param fileName The name of the schematic file. Ex: demo.schem
+     * @return The schematic. (Null if the file does not exist or is not a valid schematic format).
+     * @throws IOException If an error occurs during file reading.
+     */
+    @Nullable
+    public CachedSchematic getSchematic(String fileName) throws IOException {
+        File file = new File(schematicsFolder, fileName);
+        if (!file.exists()) return null;
+
+        SoftReference<CachedSchematic> reference = schematics.get(fileName);
+        CachedSchematic schematic = reference == null ? null : reference.get();
+        if (schematic != null && schematic.getLastModified() == file.lastModified())
+            return schematic;
+
+        ClipboardFormat format = ClipboardFormats.findByFile(file);
+        if (format == null) return null;
+
+        long lastModified = file.lastModified();
+        Clipboard clipboard;
+        try (ClipboardReader reader = format.getReader(new FileInputStream(file))) {
+            clipboard = reader.read();
+        }
+
+        schematic = new CachedSchematic(fileName, clipboard, lastModified);
+        schematics.put(fileName, new SoftReference<>(schematic));
+        return schematic;
+    }
+
+    /**
+     * Remove all of the schematics from the cache.
+     */
+    public void clear() {
+        schematics.clear();
+    }
+}
@@ -9,21 +9,31 @@ import com.ryandw11.structure.utils.RandomCollection;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.Container;
+import org.bukkit.entity.minecart.HopperMinecart;
 import org.bukkit.inventory.BrewerInventory;
 import org.bukkit.inventory.FurnaceInventory;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.util.BoundingBox;
 
-import java.util.Random;
+import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * Handle loot table replacement in schematics.
  */
 public class LootTableReplacer {
+    // The faces of a container that a hopper can be attached to.
+    private static final BlockFace[] HOPPER_FACES = {BlockFace.DOWN, BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST};
+
     private LootTableReplacer() {
     }
 
@@ -34,12 +44,68 @@ public class LootTableReplacer {
      * @param location  The location of the container.
      */
     protected static void replaceContainerContent(Structure structure, Location location) {
+        replaceContainerContents(SpawnContext.create(structure, location), Collections.singletonList(location));
+    }
 
-        BlockState blockState = location.getBlock().getState();
-        Container container = (Container) blockState;
+    /**
+     * Replace the contents of the containers of a structure with the loot tables from the structure.
+     *
+     * <p>The loot table for each container is picked (and the {@link LootPopulateEvent} is called) on the main thread.
+     * If the loot table {@link LootTable#supportsOffThreadGeneration() supports it}, the loot is then rolled on a
+     * worker thread from a per-container seed and the final contents of all containers are applied in a
+     * single main thread task. Other loot tables fill the container right away.</p>
+     *
+     * <p>The loot tables and seeds are picked using the randomizer of the spawn.</p>
+     *
+     * <p>This method is to be called on the main Server thread.</p>
+     *
+     * @param context   The context of the spawn.
+     * @param locations The locations of the containers. (Locations that are not containers are ignored).
+     */
+    protected static void replaceContainerContents(SpawnContext context, List<Location> locations) {
+        // Both halves of a double chest share one inventory, so they share the pending contents.
+        Map<Location, PendingContainer> pendingContainers = new LinkedHashMap<>();
+        for (Location location : locations) {
+            BlockState blockState = location.getBlock().getState();
+            if (!(blockState instanceof Container)) continue;
+            prepareContainerContent(context, location, (Container) blockState, pendingContainers);
+        }
+
+        if (pendingContainers.isEmpty()) return;
+
+        CustomStructures plugin = CustomStructures.getInstance();
+        Collection<PendingContainer> pending = pendingContainers.values();
+        for (PendingContainer container : pending) {
+            container.capturePlaceholder();
+        }
+        plugin.getTickBudgetController().runAsync(() -> {
+            for (PendingContainer container : pending) {
+                container.generate();
+            }
+            plugin.getTickBudgetController().submit(() -> {
+                for (PendingContainer container : pending) {
+                    container.apply();
+                }
+            });
+        });
+    }
+
+    /**
+     * Pick the loot table of a container and either fill it right away or add it to the pending containers.
+     *
+     * @param context           The context of the spawn.
+     * @param location          The location of the container.
+     * @param container         The container.
+     * @param pendingContainers The containers that are waiting to be generated off of the main thread.
+     */
+    private static void prepareContainerContent(SpawnContext context, Location location, Container container,
+                                                Map<Location, PendingContainer> pendingContainers) {
+        Structure structure = context.getStructure();
+        Random random = context.getRandom();
         Inventory containerInventory = container.getInventory();
-        Block block = location.getBlock();
-        LootTableType blockType = LootTableType.valueOf(block.getType());
+        LootTableType blockType = LootTableType.valueOf(container.getType());
+        Location inventoryLocation = containerInventory.getLocation() == null ? location : containerInventory.getLocation();
+        PendingContainer pendingContainer = pendingContainers.get(inventoryLocation);
 
         boolean explictLoottableDefined = false;
         LootTable lootTable = null;
@@ -56,6 +122,8 @@ public class LootTableReplacer {
                         .replace("}$%", "");
                 lootTable = CustomStructures.getInstance().getLootTableHandler().getLootTableByName(name);
                 containerInventory.clear();
+                if (pendingContainer != null)
+                    Arrays.fill(pendingContainer.contents, null);
                 explictLoottableDefined = true;
             }
         }
@@ -66,10 +134,16 @@ public class LootTableReplacer {
             RandomCollection<LootTable> tables = structure.getLootTables(blockType);
             if (tables == null) return;
 
-            lootTable = tables.next();
+            lootTable = tables.next(random);
         }
 
-        Random random = new Random();
+        // Only store the loot table and a seed, the loot is populated when the container is first accessed.
+        // Containers next to a hopper are filled right away, the hopper would start moving items before they are accessed.
+        if (CustomStructures.getInstance().isLazyLootPopulation() && !isNextToHopper(location.getBlock())) {
+            if (lootTable.getTypes().contains(blockType) || explictLoottableDefined)
+                tagContainer(location, structure, lootTable, random.nextLong());
+            return;
+        }
 
         // Trigger the loot populate event.
         LootPopulateEvent event = new LootPopulateEvent(structure, location, lootTable);
@@ -78,13 +152,147 @@ public class LootTableReplacer {
         if (event.isCanceled()) return;
 
         // TODO: This is not a good method, should try to pick another loot table if failed.
-        if ((lootTable.getTypes().contains(blockType) || explictLoottableDefined) && containerInventory instanceof FurnaceInventory) {
+        if (!lootTable.getTypes().contains(blockType) && !explictLoottableDefined) return;
+
+        if (containerInventory instanceof FurnaceInventory) {
             lootTable.fillFurnaceInventory((FurnaceInventory) containerInventory, random, container.getLocation());
-        } else if ((lootTable.getTypes().contains(blockType) || explictLoottableDefined) && containerInventory instanceof BrewerInventory) {
+        } else if (containerInventory instanceof BrewerInventory) {
             lootTable.fillBrewerInventory((BrewerInventory) containerInventory, random, container.getLocation());
-        } else if (lootTable.getTypes().contains(blockType) || explictLoottableDefined) {
+        } else if (lootTable.supportsOffThreadGeneration()) {
+            if (pendingContainer == null) {
+                pendingContainer = new PendingContainer(location, container.getType(), copyContents(containerInventory));
+                pendingContainers.put(inventoryLocation, pendingContainer);
+            }
+            pendingContainer.addRoll(lootTable, random.nextLong());
+        } else {
             lootTable.fillContainerInventory(containerInventory, random, container.getLocation());
+            // The contents changed, so the pending contents need to include the new items.
+            if (pendingContainer != null)
+                pendingContainer.contents = copyContents(containerInventory);
+        }
+    }
+
+    /**
+     * Check if a hopper or a hopper minecart is below or beside a block.
+     *
+     * @param block The block of the container.
+     * @return If the container is next to a hopper.
+     */
+    private static boolean isNextToHopper(Block block) {
+        for (BlockFace face : HOPPER_FACES) {
+            if (block.getRelative(face).getType() == Material.HOPPER)
+                return true;
         }
+        // Hopper minecarts pull from the block above them, and can be pushed against the side of the container.
+        BoundingBox around = new BoundingBox(block.getX() - 1, block.getY() - 1, block.getZ() - 1,
+                block.getX() + 2, block.getY() + 1, block.getZ() + 2);
+        return !block.getWorld().getNearbyEntities(around, entity -> entity instanceof HopperMinecart).isEmpty();
+    }
+
+    /**
+     * Tag a container with the loot table and seed to use when it is first accessed.
+     *
+     * @param location  The location of the container.
+     * @param structure The structure that is being spawned.
+     * @param lootTable The loot table of the container.
+     * @param seed      The seed to populate the container with.
+     */
+    private static void tagContainer(Location location, Structure structure, LootTable lootTable, long seed) {
+        // Grab a new state so an outdated copy of the inventory is not saved with the tags.
+        BlockState blockState = location.getBlock().getState();
+        if (!(blockState instanceof Container)) return;
+        PersistentDataContainer data = ((Container) blockState).getPersistentDataContainer();
+        data.set(LootKeys.LOOT_TABLE_KEY, PersistentDataType.STRING, lootTable.getName());
+        data.set(LootKeys.SEED_KEY, PersistentDataType.LONG, seed);
+        data.set(LootKeys.STRUCTURE_KEY, PersistentDataType.STRING, structure.getName());
+        blockState.update();
+    }
+
+    /**
+     * Populate a container that was tagged for lazy loot population.
+     *
+     * <p>The container is populated using the seed that was stored when the structure spawned and the
+     * {@link LootPopulateEvent} is called. (The event is not called if the structure no longer exists).
+     * Nothing happens if the container is not tagged.</p>
+     *
+     * <p>This method is to be called on the main Server thread.</p>
+     *
+     * @param block The block of the container.
+     * @return If the container was populated.
+     */
+    public static boolean populateTaggedContainer(Block block) {
+        BlockState blockState = block.getState();
+        if (!(blockState instanceof Container)) return false;
+        PersistentDataContainer data = ((Container) blockState).getPersistentDataContainer();
+        String lootTableName = data.get(LootKeys.LOOT_TABLE_KEY, PersistentDataType.STRING);
+        if (lootTableName == null) return false;
+        long seed = data.getOrDefault(LootKeys.SEED_KEY, PersistentDataType.LONG, 0L);
+        String structureName = data.get(LootKeys.STRUCTURE_KEY, PersistentDataType.STRING);
+
+        // Remove the tags first so the container is only ever populated once.
+        data.remove(LootKeys.LOOT_TABLE_KEY);
+        data.remove(LootKeys.SEED_KEY);
+        data.remove(LootKeys.STRUCTURE_KEY);
+        blockState.update();
+
+        CustomStructures plugin = CustomStructures.getInstance();
+        LootTable lootTable = plugin.getLootTableHandler().getLootTableByName(lootTableName);
+        if (lootTable == null) {
+            plugin.getLogger().warning(String.format("Unable to populate the container at %d, %d, %d. The loot table %s does not exist!",
+                    block.getX(), block.getY(), block.getZ(), lootTableName));
+            return false;
+        }
+
+        Structure structure = null;
+        if (structureName != null && plugin.getStructureHandler() != null)
+            structure = plugin.getStructureHandler().getStructure(structureName);
+        if (structure != null) {
+            LootPopulateEvent event = new LootPopulateEvent(structure, block.getLocation(), lootTable);
+            Bukkit.getServer().getPluginManager().callEvent(event);
+            if (event.isCanceled()) return false;
+        }
+
+        // The state was updated, so grab the inventory again.
+        Inventory containerInventory = ((Container) block.getState()).getInventory();
+        Random random = new Random(seed);
+        if (containerInventory instanceof FurnaceInventory) {
+            lootTable.fillFurnaceInventory((FurnaceInventory) containerInventory, random, block.getLocation());
+        } else if (containerInventory instanceof BrewerInventory) {
+            lootTable.fillBrewerInventory((BrewerInventory) containerInventory, random, block.getLocation());
+        } else if (lootTable.supportsOffThreadGeneration()) {
+            // The generated contents only depend on the seed.
+            ItemStack[] contents = containerInventory.getContents();
+            lootTable.generateContainerContents(contents, random);
+            containerInventory.setContents(contents);
+        } else {
+            lootTable.fillContainerInventory(containerInventory, random, block.getLocation());
+        }
+        return true;
+    }
+
+    /**
+     * Copy the contents of an inventory so they can be safely modified off of the main thread.
+     *
+     * @param inventory The inventory.
+     * @return The copy of the contents.
+     */
+    private static ItemStack[] copyContents(Inventory inventory) {
+        return copyContents(inventory.getContents());
+    }
+
+    /**
+     * Copy items so they can be safely modified off of the main thread.
+     *
+     * @param items The items.
+     * @return The copy of the items.
+     */
+    private static ItemStack[] copyContents(ItemStack[] items) {
+        ItemStack[] contents = items.clone();
+        for (int i = 0; i < contents.length; i++) {
+            if (contents[i] != null)
+                contents[i] = contents[i].clone();
+        }
+        return contents;
     }
 
     /**
@@ -95,18 +303,44 @@ public class LootTableReplacer {
      * @param containerInventory The container inventory
      */
     public static void replaceChestContent(LootTable lootTable, Random random, Inventory containerInventory) {
-        for(int roll = 0; roll < lootTable.getRolls(); roll++){
-            ItemStack[] containerContent = containerInventory.getContents();
+        ItemStack[] containerContent = containerInventory.getContents();
+        addLootItems(lootTable.getRolls(), random, containerContent, lootTable::getRandomWeightedItem);
+        containerInventory.setContents(containerContent);
+    }
+
+    /**
+     * Replace the chest content without touching the world.
+     *
+     * <p>Unlike {@link #replaceChestContent(LootTable, Random, Inventory)}, the items are rolled using the
+     * provided randomizer so the same seed always produces the same contents.</p>
+     *
+     * @param lootTable        The loot table.
+     * @param random           The value of random.
+     * @param containerContent The contents of the container. (This array is modified).
+     */
+    public static void replaceChestContent(LootTable lootTable, Random random, ItemStack[] containerContent) {
+        addLootItems(lootTable.getRolls(), random, containerContent, () -> lootTable.getRandomWeightedItem(random));
+    }
 
-            ItemStack randomItem = lootTable.getRandomWeightedItem();
+    /**
+     * Spread the rolled items over random slots of the container contents.
+     *
+     * @param rolls            The number of items to roll.
+     * @param random           The value of random.
+     * @param containerContent The contents of the container.
+     * @param items            The supplier of the rolled items.
+     */
+    private static void addLootItems(int rolls, Random random, ItemStack[] containerContent, Supplier<ItemStack> items) {
+        for (int roll = 0; roll < rolls; roll++) {
+            ItemStack randomItem = items.get();
 
             for (int j = 0; j < randomItem.getAmount(); j++) {
                 boolean done = false;
                 int attemps = 0;
                 while (!done) {
                     int randomPos = random.nextInt(containerContent.length);
-                    ItemStack randomPosItem = containerInventory.getItem(randomPos);
-                    if (randomPosItem != null) {
+                    ItemStack randomPosItem = containerContent[randomPos];
+                    if (randomPosItem != null && randomPosItem.getType() != Material.AIR) {
 
                         if (isSameItem(randomPosItem, randomItem)) {
                             if (randomPosItem.getAmount() < randomItem.getMaxStackSize()) {
@@ -114,7 +348,6 @@ public class LootTableReplacer {
                                 int newAmount = randomPosItem.getAmount() + 1;
                                 randomItemCopy.setAmount(newAmount);
                                 containerContent[randomPos] = randomItemCopy;
-                                containerInventory.setContents(containerContent);
                                 done = true;
                             }
                         }
@@ -122,7 +355,6 @@ public class LootTableReplacer {
                         ItemStack randomItemCopy = randomItem.clone();
                         randomItemCopy.setAmount(1);
                         containerContent[randomPos] = randomItemCopy;
-                        containerInventory.setContents(containerContent);
                         done = true;
 
                     }
@@ -191,4 +423,116 @@ public class LootTableReplacer {
 
         return randomPosItem.getType().equals(randomItem.getType()) && randomPosItemMeta.equals(randomItemMeta);
     }
+
+    /**
+     * The tags of a container that is waiting for lazy loot population.
+     *
+     * <p>The keys need the plugin instance, so they are only created when lazy loot is first used. This keeps
+     * the rest of this class usable without a running plugin.</p>
+     */
+    private static class LootKeys {
+        private static final NamespacedKey LOOT_TABLE_KEY = new NamespacedKey(CustomStructures.getInstance(), "loot_table");
+        private static final NamespacedKey SEED_KEY = new NamespacedKey(CustomStructures.getInstance(), "loot_seed");
+        private static final NamespacedKey STRUCTURE_KEY = new NamespacedKey(CustomStructures.getInstance(), "loot_structure");
+    }
+
+    /**
+     * A container whose loot is waiting to be rolled off of the main thread.
+     */
+    private static class PendingContainer {
+        private final Location location;
+        private final Material material;
+        private final List<LootTable> lootTables = new ArrayList<>(1);
+        private final List<Long> seeds = new ArrayList<>(1);
+        // Written on the main thread before the worker thread starts, then only touched by the worker thread
+        // until it is applied on the main thread.
+        private ItemStack[] contents;
+        // The contents before the loot was rolled, and the inventory of the container at that time.
+        private ItemStack[] base;
+        private ItemStack[] placeholder;
+        private boolean failed;
+
+        private PendingContainer(Location location, Material material, ItemStack[] contents) {
+            this.location = location;
+            this.material = material;
+            this.contents = contents;
+        }
+
+        private void addRoll(LootTable lootTable, long seed) {
+            lootTables.add(lootTable);
+            seeds.add(seed);
+        }
+
+        /**
+         * Remember the contents of the container before the loot is rolled. (Called on the main thread).
+         */
+        private void capturePlaceholder() {
+            base = copyContents(contents);
+            BlockState state = location.getBlock().getState();
+            placeholder = state instanceof Container ? copyContents(((Container) state).getInventory()) : null;
+        }
+
+        /**
+         * Roll the loot. (Called off of the main thread).
+         */
+        private void generate() {
+            try {
+                for (int i = 0; i < lootTables.size(); i++) {
+                    lootTables.get(i).generateContainerContents(contents, new Random(seeds.get(i)));
+                }
+            } catch (Exception ex) {
+                failed = true;
+                CustomStructures plugin = CustomStructures.getInstance();
+                plugin.getLogger().warning("Unable to generate the loot for the container at " + location.getBlockX()
+                        + ", " + location.getBlockY() + ", " + location.getBlockZ() + "!");
+                if (plugin.isDebug())
+                    ex.printStackTrace();
+            }
+        }
+
+        /**
+         * Apply the rolled loot to the container. (Called on the main thread).
+         */
+        private void apply() {
+            if (failed) return;
+            Block block = location.getBlock();
+            // The container could have been removed since the loot was picked.
+            if (block.getType() != material) return;
+            BlockState state = block.getState();
+            if (!(state instanceof Container)) return;
+            Inventory inventory = ((Container) state).getInventory();
+            if (inventory.getSize() != contents.length) return;
+            if (placeholder != null && Arrays.equals(inventory.getContents(), placeholder)) {
+                inventory.setContents(contents);
+                return;
+            }
+
+            // A player or hopper changed the container while the loot was rolled, so only add the loot to empty slots.
+            for (int i = 0; i < contents.length; i++) {
+                ItemStack loot = getRolledItem(i);
+                if (loot == null) continue;
+                ItemStack current = inventory.getItem(i);
+                int slot = current == null || current.getType().isAir() ? i : inventory.firstEmpty();
+                if (slot < 0) return;
+                inventory.setItem(slot, loot);
+            }
+        }
+
+        /**
+         * Get the items that the loot tables added to a slot.
+         *
+         * @param slot The slot.
+         * @return The added items. (Null if nothing was added).
+         */
+        private ItemStack getRolledItem(int slot) {
+            ItemStack rolled = contents[slot];
+            ItemStack before = base[slot];
+            if (rolled == null || rolled.equals(before)) return null;
+            if (before == null || !rolled.isSimilar(before)) return rolled;
+            if (rolled.getAmount() <= before.getAmount()) return null;
+            ItemStack added = rolled.clone();
+            added.setAmount(rolled.getAmount() - before.getAmount());
+            return added;
+        }
+    }
 }
@@ -5,6 +5,8 @@ import com.ryandw11.structure.api.StructureSpawnEvent;
 import com.ryandw11.structure.api.holder.StructureSpawnHolder;
 import com.ryandw11.structure.bottomfill.BottomFillProvider;
 import com.ryandw11.structure.io.BlockTag;
+import com.ryandw11.structure.metrics.SpawnMetrics;
+import com.ryandw11.structure.metrics.SpawnStage;
 import com.ryandw11.structure.structure.Structure;
 import com.ryandw11.structure.structure.properties.MaskProperty;
 import com.sk89q.worldedit.EditSession;
@@ -27,6 +29,7 @@ import com.sk89q.worldedit.math.transform.AffineTransform;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.session.ClipboardHolder;
+import com.sk89q.worldedit.world.block.BlockTypes;
 import me.ryandw11.ods.ObjectDataStructure;
 import me.ryandw11.ods.tags.IntTag;
 import me.ryandw11.ods.tags.ListTag;
@@ -37,7 +40,6 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.InventoryHolder;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.*;
@@ -54,18 +56,19 @@ public class SchematicHandler {
      * Handles the actual pasting of the structure.
      * <p>This method is to be called on the main Server thread.</p>
      *
-     * @param loc       - The location
-     * @param filename  - The file name. Ex: demo.schematic
-     * @param useAir    - if air is to be used in the schematic
-     * @param structure - The structure that is getting spawned.
-     * @param iteration - The number of iterations in a structure.
+     * @param filename - The file name. Ex: demo.schematic
+     * @param useAir   - if air is to be used in the schematic
+     * @param context  - The context of the paste. (Use {@link SpawnContext#create(Structure, Location)} for a new spawn).
      * @throws WorldEditException If world edit has a problem pasting the schematic.
      * @throws IOException        If an error occurs during file reading.
      */
-    public static void placeSchematic(Location loc, String filename, boolean useAir, Structure structure, int iteration)
+    public static void placeSchematic(String filename, boolean useAir, SpawnContext context)
             throws IOException, WorldEditException {
 
         CustomStructures plugin = CustomStructures.getInstance();
+        Structure structure = context.getStructure();
+        Location loc = context.getOrigin();
+        int iteration = context.getIteration();
 
         if (iteration > structure.getStructureLimitations().getIterationLimit()) {
             plugin.getLogger().severe("Critical Error: StackOverflow detected. Automatically terminating the spawning of the structure.");
@@ -92,19 +95,18 @@ public class SchematicHandler {
             throw new RuntimeException("Cannot find schematic file!");
         }
 
-        ClipboardFormat format = ClipboardFormats.findByFile(schematicFile);
-        Clipboard clipboard;
+        SpawnMetrics metrics = plugin.getSpawnMetrics();
+        long clipboardStart = System.nanoTime();
+        CachedSchematic schematic = plugin.getClipboardCache().getSchematic(filename);
+        metrics.recordSince(structure.getName(), SpawnStage.CLIPBOARD_LOAD, clipboardStart);
 
-        if (format == null) {
+        if (schematic == null) {
             plugin.getLogger().warning("Invalid schematic format for schematic " + filename + "!");
             plugin.getLogger().warning("Please create a valid schematic using the in-game commands!");
             return;
         }
 
-        try (ClipboardReader reader = format.getReader(new FileInputStream(schematicFile))) {
-            clipboard = reader.read();
-        }
-
+        Clipboard clipboard = schematic.getClipboard();
         ClipboardHolder ch = new ClipboardHolder(clipboard);
         AffineTransform transform = new AffineTransform();
 
@@ -113,38 +115,46 @@ public class SchematicHandler {
 
         // If random rotation is enabled, rotate the clipboard
         if (structure.getStructureProperties().isRandomRotation() && iteration == 0) {
-            rotY = new Random().nextInt(4) * 90;
+            rotY = context.getRandom().nextInt(4) * 90;
             transform = transform.rotateY(rotY);
             ch.setTransform(ch.getTransform().combine(transform));
         } else if (iteration != 0) {
-            rotY = Math.toDegrees(structure.getSubSchemRotation());
-            transform = transform.rotateY(rotY);
+            rotY = context.getRotation();
+            transform = context.getTransform();
             ch.setTransform(ch.getTransform().combine(transform));
         }
 
-        // Paste the schematic
-        try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory()
-                .getEditSession(BukkitAdapter.adapt(Objects.requireNonNull(loc.getWorld())), -1)) {
-             /*
-                Handle the masks of the structure.
-             */
-            Mask sourceMask = null;
-            if (structure.getSourceMaskProperties().getUnionType() == MaskProperty.MaskUnion.AND) {
-                sourceMask = new MaskIntersection(structure.getSourceMaskProperties().getMasks(clipboard));
-            } else if (structure.getSourceMaskProperties().getUnionType() == MaskProperty.MaskUnion.OR) {
-                sourceMask = new MaskUnion(structure.getSourceMaskProperties().getMasks(clipboard));
+        SpawnContext pasteContext = context.withPaste(filename, clipboard, rotY, transform);
+
+        // Plan all of the sub-schematics up front so the whole structure is pasted at once.
+        if (iteration == 0 && plugin.isPlanSubSchematics()) {
+            List<SubSchematicPlanner.PlannedPaste> pastes = null;
+            long planningStart = System.nanoTime();
+            try {
+                pastes = new SubSchematicPlanner(pasteContext).plan(schematic, useAir);
+                metrics.recordSince(structure.getName(), SpawnStage.PLANNING, planningStart);
+            } catch (RuntimeException ex) {
+                plugin.getLogger().warning(String.format("Unable to plan the sub-schematics of the structure %s. " +
+                        "They will be pasted one at a time instead.", structure.getName()));
+                if (plugin.isDebug()) {
+                    ex.printStackTrace();
+                }
             }
 
-            Mask targetMask = null;
-            if (structure.getTargetMaskProperties().getUnionType() == MaskProperty.MaskUnion.AND) {
-                targetMask = new MaskIntersection(structure.getTargetMaskProperties().getMasks(editSession));
-            } else if (structure.getSourceMaskProperties().getUnionType() == MaskProperty.MaskUnion.OR) {
-                targetMask = new MaskUnion(structure.getTargetMaskProperties().getMasks(editSession));
+            if (pastes != null) {
+                placePlannedSchematics(pasteContext, pastes);
+                return;
             }
-            editSession.setMask(targetMask);
+        }
+
+        // Paste the schematic
+        long pasteStart = System.nanoTime();
+        try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory()
+                .getEditSession(BukkitAdapter.adapt(Objects.requireNonNull(loc.getWorld())), -1)) {
+            editSession.setMask(getTargetMask(structure, editSession));
 
             Operation operation = ch.createPaste(editSession)
-                    .to(BlockVector3.at(loc.getX(), loc.getY(), loc.getZ())).maskSource(sourceMask).ignoreAirBlocks(!useAir).build();
+                    .to(BlockVector3.at(loc.getX(), loc.getY(), loc.getZ())).maskSource(getSourceMask(structure, clipboard)).ignoreAirBlocks(!useAir).build();
 
             Operations.complete(operation);
 
@@ -152,80 +162,72 @@ public class SchematicHandler {
                 plugin.getLogger().info(String.format("(%s) Created an instance of %s at %s, %s, %s with rotation %s", loc.getWorld().getName(), filename, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), rotY));
             }
         }
+        metrics.recordSince(structure.getName(), SpawnStage.PASTE, pasteStart);
+        if (iteration == 0) {
+            logPlacement(pasteContext, Objects.requireNonNull(pasteContext.getMinimumPoint()),
+                    Objects.requireNonNull(pasteContext.getMaximumPoint()));
+        }
 
         // If enabled, perform a bottom space fill.
-        if (structure.getBottomSpaceFill().isEnabled()) {
-            Location minLoc = SchematicLocationUtils.getMinimumLocation(clipboard, loc, rotY);
-            Location maxLoc = SchematicLocationUtils.getMaximumLocation(clipboard, loc, rotY);
-            int lowX = Math.min(minLoc.getBlockX(), maxLoc.getBlockX());
-            int lowY = Math.min(minLoc.getBlockY(), maxLoc.getBlockY());
-            int lowZ = Math.min(minLoc.getBlockZ(), maxLoc.getBlockZ());
-            int highX = Math.max(minLoc.getBlockX(), maxLoc.getBlockX());
-            int highY = Math.max(minLoc.getBlockY(), maxLoc.getBlockY());
-            int highZ = Math.max(minLoc.getBlockZ(), maxLoc.getBlockZ());
-            BottomFillProvider.provide().performFill(structure, loc, new Location(minLoc.getWorld(), lowX, lowY, lowZ), new Location(minLoc.getWorld(), highX, highY, highZ), transform);
-        }
+        performBottomFill(pasteContext);
 
-        // Schedule the signs & containers replacement task
-        double finalRotY = rotY;
         // Run a task later. This is done so async plugins have time to paste as needed.
-        Bukkit.getScheduler().runTaskLater(plugin, () -> {
-            List<Location> containersAndSignsLocations = new ArrayList<>();
-            // If the structure is compiled, then grab the data from the cschem file.
-            if (structure.isCompiled()) {
-                ObjectDataStructure ods = new ObjectDataStructure(new File(plugin.getDataFolder() + "/schematics/" + structure.getCompiledSchematic()));
-                ListTag<ObjectTag> containers = ods.get("containers");
-                ListTag<ObjectTag> signs = ods.get("signs");
-                // Get both the max and minimum points.
-                Location minimumPoint = SchematicLocationUtils.getMinimumLocation(clipboard, loc, 0);
-                Location maximumPoint = SchematicLocationUtils.getMaximumLocation(clipboard, loc, 0);
-
-                // Find the minimum of all three axises.
-                int minX = Math.min(minimumPoint.getBlockX(), maximumPoint.getBlockX());
-                int minY = Math.min(minimumPoint.getBlockY(), maximumPoint.getBlockY());
-                int minZ = Math.min(minimumPoint.getBlockZ(), maximumPoint.getBlockZ());
-
-                for (ObjectTag con : containers.getValue()) {
-                    // Rotate con around the point and add the rotated min values.
-                    containersAndSignsLocations.add(SchematicLocationUtils.rotateAround(new BlockTag(con).getLocation(loc.getWorld()).add(minX, minY, minZ), loc, finalRotY));
-                }
-                for (ObjectTag sign : signs.getValue()) {
-                    containersAndSignsLocations.add(SchematicLocationUtils.rotateAround(new BlockTag(sign).getLocation(loc.getWorld()).add(minX, minY, minZ), loc, finalRotY));
-                }
-            } else {
-                // else find the data from the paste.
-                containersAndSignsLocations = getContainersAndSignsLocations(ch.getClipboard(), loc, finalRotY, structure);
-            }
+        // The post-processing then waits until the plugin has the budget for it.
+        plugin.getTickBudgetController().submitLater(() -> {
+            List<Location> containersAndSignsLocations = findContainersAndSigns(pasteContext, clipboard, structure.isCompiled());
+
+            // Containers are handled as one batch so the loot can be rolled off of the main thread.
+            long lootStart = System.nanoTime();
+            LootTableReplacer.replaceContainerContents(pasteContext, containersAndSignsLocations);
+            metrics.recordSince(structure.getName(), SpawnStage.LOOT_FILL, lootStart);
 
+            long signStart = System.nanoTime();
             for (Location location : containersAndSignsLocations) {
-                if (location.getBlock().getState() instanceof Container) {
-                    LootTableReplacer.replaceContainerContent(structure, location);
-                }
                 if (location.getBlock().getState() instanceof Sign) {
-                    Location minLoc = SchematicLocationUtils.getMinimumLocation(clipboard, loc, finalRotY);
-                    Location maxLoc = SchematicLocationUtils.getMaximumLocation(clipboard, loc, finalRotY);
-                    SchematicSignReplacer.processAndReplaceSign(location, minLoc, maxLoc, structure, finalRotY);
+                    SchematicSignReplacer.processAndReplaceSign(location, pasteContext);
                 }
                 // If the sign still exists, it could be a sub-schematic sign.
                 if (location.getBlock().getState() instanceof Sign) {
-                    SchematicSignReplacer.replaceSignWithSchematic(location, structure, iteration);
+                    SchematicSignReplacer.replaceSignWithSchematic(location, pasteContext);
                 }
             }
+            metrics.recordSince(structure.getName(), SpawnStage.SIGN_PROCESSING, signStart);
 
             // Replace the blocks of the structure (if enabled).
-            replaceBlocks(clipboard, loc, finalRotY, structure);
+            replaceBlocks(pasteContext);
 
             // Call the event for use by other plugins (only if it is the first iteration though.)
             if (iteration < 1) {
-                StructureSpawnHolder structureSpawnHolder = new StructureSpawnHolder(SchematicLocationUtils.getMinimumLocation(clipboard, loc, 0),
-                        SchematicLocationUtils.getMaximumLocation(clipboard, loc, 0), containersAndSignsLocations);
-                StructureSpawnEvent structureSpawnEvent = new StructureSpawnEvent(structure, loc, finalRotY, structureSpawnHolder);
-                Bukkit.getServer().getPluginManager().callEvent(structureSpawnEvent);
+                callSpawnEvent(pasteContext, clipboard, containersAndSignsLocations);
             }
 
         }, Math.round(structure.getStructureLimitations().getReplacementBlocksDelay() * 20));
     }
 
+    /**
+     * Handles the actual pasting of the structure.
+     * <p>This method is to be called on the main Server thread.</p>
+     *
+     * @param loc       - The location
+     * @param filename  - The file name. Ex: demo.schematic
+     * @param useAir    - if air is to be used in the schematic
+     * @param structure - The structure that is getting spawned.
+     * @param iteration - The number of iterations in a structure.
+     * @throws WorldEditException If world edit has a problem pasting the schematic.
+     * @throws IOException        If an error occurs during file reading.
+     * @deprecated Sub-schematics are pasted with a {@link SpawnContext}. Use {@link #placeSchematic(String, boolean, SpawnContext)} instead.
+     */
+    @Deprecated
+    public static void placeSchematic(Location loc, String filename, boolean useAir, Structure structure, int iteration)
+            throws IOException, WorldEditException {
+        SpawnContext context = SpawnContext.create(structure, loc);
+        // Sub-schematics used to read their rotation from the structure.
+        for (int i = 0; i < iteration; i++) {
+            context = context.child(loc, Math.toDegrees(structure.getSubSchemRotation()));
+        }
+        placeSchematic(filename, useAir, context);
+    }
+
     /**
      * Handles the schematic.
      * <p>This method is to be called on the main Server thread.</p>
@@ -239,7 +241,222 @@ public class SchematicHandler {
      */
     public static void placeSchematic(Location loc, String filename, boolean useAir, Structure structure)
             throws IOException, WorldEditException {
-        placeSchematic(loc, filename, useAir, structure, 0);
+        placeSchematic(filename, useAir, SpawnContext.create(structure, loc));
+    }
+
+    /**
+     * Paste a structure whose sub-schematics were planned by the {@link SubSchematicPlanner}.
+     * <p>All of the schematics are pasted in one edit session.</p>
+     *
+     * @param context The context of the main schematic.
+     * @param pastes  The planned pastes. (The main schematic is first).
+     * @throws WorldEditException If world edit has a problem pasting the schematics.
+     */
+    private static void placePlannedSchematics(SpawnContext context, List<SubSchematicPlanner.PlannedPaste> pastes)
+            throws WorldEditException {
+        CustomStructures plugin = CustomStructures.getInstance();
+        Structure structure = context.getStructure();
+        World world = Objects.requireNonNull(context.getOrigin().getWorld());
+        SpawnMetrics metrics = plugin.getSpawnMetrics();
+
+        long pasteStart = System.nanoTime();
+        try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory()
+                .getEditSession(BukkitAdapter.adapt(world), -1)) {
+            Mask targetMask = getTargetMask(structure, editSession);
+
+            for (SubSchematicPlanner.PlannedPaste paste : pastes) {
+                Clipboard clipboard = paste.getSchematic().getClipboard();
+                ClipboardHolder ch = new ClipboardHolder(clipboard);
+                ch.setTransform(paste.getContext().getTransform());
+
+                editSession.setMask(targetMask);
+                Operation operation = ch.createPaste(editSession)
+                        .to(paste.getLocation()).maskSource(getSourceMask(structure, clipboard)).ignoreAirBlocks(!paste.isPlacingAir()).build();
+                Operations.complete(operation);
+
+                // Remove the sub-schematic signs. (Their sub-schematics are pasted later in the session).
+                editSession.setMask(null);
+                for (BlockVector3 sign : paste.getClearedSigns()) {
+                    editSession.setBlock(sign, Objects.requireNonNull(BlockTypes.AIR).getDefaultState());
+                }
+
+                if (plugin.isDebug()) {
+                    plugin.getLogger().info(String.format("(%s) Created an instance of %s at %s, %s, %s with rotation %s",
+                            world.getName(), paste.getSchematic().getFileName(), paste.getLocation().getX(),
+                            paste.getLocation().getY(), paste.getLocation().getZ(), paste.getContext().getRotation()));
+                }
+            }
+        }
+        metrics.recordSince(structure.getName(), SpawnStage.PASTE, pasteStart);
+
+        // The bounds of the structure cover all of its sub-schematics.
+        Location minimumPoint = Objects.requireNonNull(pastes.get(0).getContext().getMinimumPoint());
+        Location maximumPoint = Objects.requireNonNull(pastes.get(0).getContext().getMaximumPoint());
+        for (SubSchematicPlanner.PlannedPaste paste : pastes) {
+            Location pasteMinimum = Objects.requireNonNull(paste.getContext().getMinimumPoint());
+            Location pasteMaximum = Objects.requireNonNull(paste.getContext().getMaximumPoint());
+            minimumPoint.setX(Math.min(minimumPoint.getX(), pasteMinimum.getX()));
+            minimumPoint.setY(Math.min(minimumPoint.getY(), pasteMinimum.getY()));
+            minimumPoint.setZ(Math.min(minimumPoint.getZ(), pasteMinimum.getZ()));
+            maximumPoint.setX(Math.max(maximumPoint.getX(), pasteMaximum.getX()));
+            maximumPoint.setY(Math.max(maximumPoint.getY(), pasteMaximum.getY()));
+            maximumPoint.setZ(Math.max(maximumPoint.getZ(), pasteMaximum.getZ()));
+        }
+        logPlacement(context, minimumPoint, maximumPoint);
+
+        // If enabled, perform a bottom space fill.
+        for (SubSchematicPlanner.PlannedPaste paste : pastes) {
+            performBottomFill(paste.getContext());
+        }
+
+        // Run a task later. This is done so async plugins have time to paste as needed.
+        // The post-processing then waits until the plugin has the budget for it.
+        plugin.getTickBudgetController().submitLater(() -> {
+            List<List<Location>> locationsPerPaste = new ArrayList<>();
+            List<Location> allLocations = new ArrayList<>();
+            for (SubSchematicPlanner.PlannedPaste paste : pastes) {
+                // Compiled schematic data only exists for the main schematic.
+                List<Location> locations = findContainersAndSigns(paste.getContext(), paste.getSchematic().getClipboard(),
+                        paste.getContext().getIteration() == 0 && structure.isCompiled());
+                locationsPerPaste.add(locations);
+                allLocations.addAll(locations);
+            }
+
+            // Containers are handled as one batch so the loot can be rolled off of the main thread.
+            long lootStart = System.nanoTime();
+            LootTableReplacer.replaceContainerContents(context, allLocations);
+            metrics.recordSince(structure.getName(), SpawnStage.LOOT_FILL, lootStart);
+
+            long signNanos = 0;
+            for (int i = 0; i < pastes.size(); i++) {
+                SpawnContext pasteContext = pastes.get(i).getContext();
+                long signStart = System.nanoTime();
+                for (Location location : locationsPerPaste.get(i)) {
+                    if (location.getBlock().getState() instanceof Sign) {
+                        SchematicSignReplacer.processAndReplaceSign(location, pasteContext);
+                    }
+                }
+                signNanos += System.nanoTime() - signStart;
+
+                // Replace the blocks of the schematic (if enabled).
+                replaceBlocks(pasteContext);
+            }
+            metrics.record(structure.getName(), SpawnStage.SIGN_PROCESSING, signNanos);
+
+            // Call the event for use by other plugins.
+            callSpawnEvent(context, pastes.get(0).getSchematic().getClipboard(), locationsPerPaste.get(0));
+
+        }, Math.round(structure.getStructureLimitations().getReplacementBlocksDelay() * 20));
+    }
+
+    /**
+     * Save the rotation and bounds of a structure to the structure database (if it is enabled).
+     *
+     * @param context      The context of the main schematic.
+     * @param minimumPoint The lowest corner of the structure.
+     * @param maximumPoint The highest corner of the structure.
+     */
+    private static void logPlacement(SpawnContext context, Location minimumPoint, Location maximumPoint) {
+        CustomStructures.getInstance().getStructureHandler().getStructureDatabaseHandler().ifPresent(handler ->
+                handler.updateStructurePlacement(context.getOrigin(), context.getStructure(), context.getRotation(),
+                        minimumPoint, maximumPoint));
+    }
+
+    /**
+     * Call the {@link StructureSpawnEvent} for a structure.
+     *
+     * @param context                     The context of the main schematic.
+     * @param clipboard                   The clipboard of the main schematic.
+     * @param containersAndSignsLocations The locations of the containers and signs.
+     */
+    private static void callSpawnEvent(SpawnContext context, Clipboard clipboard, List<Location> containersAndSignsLocations) {
+        Location loc = context.getOrigin();
+        StructureSpawnHolder structureSpawnHolder = new StructureSpawnHolder(SchematicLocationUtils.getMinimumLocation(clipboard, loc, 0),
+                SchematicLocationUtils.getMaximumLocation(clipboard, loc, 0), containersAndSignsLocations);
+        StructureSpawnEvent structureSpawnEvent = new StructureSpawnEvent(context.getStructure(), loc, context.getRotation(), structureSpawnHolder);
+        Bukkit.getServer().getPluginManager().callEvent(structureSpawnEvent);
+    }
+
+    /**
+     * Get the source mask of a structure.
+     *
+     * @param structure The structure.
+     * @param clipboard The clipboard that is getting pasted.
+     * @return The source mask. (Null if there is no mask).
+     */
+    static Mask getSourceMask(Structure structure, Clipboard clipboard) {
+        if (structure.getSourceMaskProperties().getUnionType() == MaskProperty.MaskUnion.AND) {
+            return new MaskIntersection(structure.getSourceMaskProperties().getMasks(clipboard));
+        } else if (structure.getSourceMaskProperties().getUnionType() == MaskProperty.MaskUnion.OR) {
+            return new MaskUnion(structure.getSourceMaskProperties().getMasks(clipboard));
+        }
+        return null;
+    }
+
+    /**
+     * Get the target mask of a structure.
+     *
+     * @param structure   The structure.
+     * @param editSession The edit session that is pasting the structure.
+     * @return The target mask. (Null if there is no mask).
+     */
+    static Mask getTargetMask(Structure structure, EditSession editSession) {
+        if (structure.getTargetMaskProperties().getUnionType() == MaskProperty.MaskUnion.AND) {
+            return new MaskIntersection(structure.getTargetMaskProperties().getMasks(editSession));
+        } else if (structure.getSourceMaskProperties().getUnionType() == MaskProperty.MaskUnion.OR) {
+            return new MaskUnion(structure.getTargetMaskProperties().getMasks(editSession));
+        }
+        return null;
+    }
+
+    /**
+     * Perform the bottom space fill of a paste (if enabled).
+     *
+     * @param context The context of the paste.
+     */
+    private static void performBottomFill(SpawnContext context) {
+        if (!context.getStructure().getBottomSpaceFill().isEnabled()) return;
+        BottomFillProvider.provide().performFill(context);
+    }
+
+    /**
+     * Find the containers and signs of a paste.
+     *
+     * @param context   The context of the paste.
+     * @param clipboard The clipboard of the paste.
+     * @param compiled  If the data should be read from the compiled schematic of the structure.
+     * @return The list of locations.
+     */
+    private static List<Location> findContainersAndSigns(SpawnContext context, Clipboard clipboard, boolean compiled) {
+        Location loc = context.getOrigin();
+        // If the structure is compiled, then grab the data from the cschem file.
+        if (!compiled) {
+            // else find the data from the paste.
+            return getContainersAndSignsLocations(context);
+        }
+
+        CustomStructures plugin = CustomStructures.getInstance();
+        List<Location> containersAndSignsLocations = new ArrayList<>();
+        ObjectDataStructure ods = new ObjectDataStructure(new File(plugin.getDataFolder() + "/schematics/" + context.getStructure().getCompiledSchematic()));
+        ListTag<ObjectTag> containers = ods.get("containers");
+        ListTag<ObjectTag> signs = ods.get("signs");
+        // Get both the max and minimum points.
+        Location minimumPoint = SchematicLocationUtils.getMinimumLocation(clipboard, loc, 0);
+        Location maximumPoint = SchematicLocationUtils.getMaximumLocation(clipboard, loc, 0);
+
+        // Find the minimum of all three axises.
+        int minX = Math.min(minimumPoint.getBlockX(), maximumPoint.getBlockX());
+        int minY = Math.min(minimumPoint.getBlockY(), maximumPoint.getBlockY());
+        int minZ = Math.min(minimumPoint.getBlockZ(), maximumPoint.getBlockZ());
+
+        for (ObjectTag con : containers.getValue()) {
+            // Rotate con around the point and add the rotated min values.
+            containersAndSignsLocations.add(SchematicLocationUtils.rotateAround(new BlockTag(con).getLocation(loc.getWorld()).add(minX, minY, minZ), loc, context.getRotation()));
+        }
+        for (ObjectTag sign : signs.getValue()) {
+            containersAndSignsLocations.add(SchematicLocationUtils.rotateAround(new BlockTag(sign).getLocation(loc.getWorld()).add(minX, minY, minZ), loc, context.getRotation()));
+        }
+        return containersAndSignsLocations;
     }
 
     /**
@@ -386,18 +603,17 @@ public class SchematicHandler {
     /**
      * Replace the blocks according to the 'replacement_blocks' section.
      * <p>Note: This is to be used by compiled schematics. Non compiled schematics are replaced in
-     * the {@link #getContainersAndSignsLocations(Clipboard, Location, double, Structure)} method to save time.</p>
+     * the {@link #getContainersAndSignsLocations(SpawnContext)} method to save time.</p>
      *
-     * @param clipboard     The clipboard of the paste.
-     * @param pasteLocation The paste location.
-     * @param rotation      The rotation of the structure.
-     * @param structure     The structure itself.
+     * @param context The context of the paste.
      */
-    private static void replaceBlocks(Clipboard clipboard, Location pasteLocation, double rotation, Structure structure) {
+    private static void replaceBlocks(SpawnContext context) {
+        Structure structure = context.getStructure();
         if (structure.getStructureLimitations().getBlockReplacement().isEmpty()) return;
 
-        Location minLoc = SchematicLocationUtils.getMinimumLocation(clipboard, pasteLocation, rotation);
-        Location maxLoc = SchematicLocationUtils.getMaximumLocation(clipboard, pasteLocation, rotation);
+        Location pasteLocation = context.getOrigin();
+        Location minLoc = Objects.requireNonNull(context.getMinimumPoint());
+        Location maxLoc = Objects.requireNonNull(context.getMaximumPoint());
 
         int lowX = Math.min(minLoc.getBlockX(), maxLoc.getBlockX());
         int lowY = Math.min(minLoc.getBlockY(), maxLoc.getBlockY());
@@ -420,14 +636,14 @@ public class SchematicHandler {
      * Get the location of containers and signs.
      * <p>This will also replace blocks from the replacement_blocks section.</p>
      *
-     * @param clipboard     The worldedit clipboard
-     * @param pasteLocation The location of the paste
-     * @param rotation      The rotate value (in degrees).
+     * @param context The context of the paste.
      * @return The list of locations
      */
-    private static List<Location> getContainersAndSignsLocations(Clipboard clipboard, Location pasteLocation, double rotation, Structure structure) {
-        Location minLoc = SchematicLocationUtils.getMinimumLocation(clipboard, pasteLocation, rotation);
-        Location maxLoc = SchematicLocationUtils.getMaximumLocation(clipboard, pasteLocation, rotation);
+    private static List<Location> getContainersAndSignsLocations(SpawnContext context) {
+        Structure structure = context.getStructure();
+        Location pasteLocation = context.getOrigin();
+        Location minLoc = Objects.requireNonNull(context.getMinimumPoint());
+        Location maxLoc = Objects.requireNonNull(context.getMaximumPoint());
         List<Location> locations = new ArrayList<>();
 
         int lowX = Math.min(minLoc.getBlockX(), maxLoc.getBlockX());
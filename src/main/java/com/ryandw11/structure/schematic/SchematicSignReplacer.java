@@ -2,20 +2,23 @@ package com.ryandw11.structure.schematic;
 
 import com.ryandw11.structure.CustomStructures;
 import com.ryandw11.structure.api.structaddon.StructureSign;
+import com.ryandw11.structure.api.structaddon.StructureSignArgument;
 import com.ryandw11.structure.structure.Structure;
 import com.ryandw11.structure.structure.properties.AdvancedSubSchematics;
 import com.ryandw11.structure.structure.properties.SubSchematics;
 import com.ryandw11.structure.structure.properties.schematics.SubSchematic;
 import com.ryandw11.structure.structure.properties.schematics.VerticalRepositioning;
 import com.ryandw11.structure.utils.CSUtils;
-import com.ryandw11.structure.utils.NumberStylizer;
+import com.ryandw11.structure.utils.StylizedInt;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.block.Block;
 import org.bukkit.block.Sign;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.block.data.type.WallSign;
 import org.bukkit.util.Vector;
 
-import java.lang.reflect.InvocationTargetException;
+import java.util.function.Supplier;
 
 /**
  * Handle the replacement of signs in schematics.
@@ -27,82 +30,106 @@ public class SchematicSignReplacer {
     /**
      * Process a structure sign.
      *
-     * @param location          The location of the sign.
-     * @param minLoc            The minimum location of the structure schematic.
-     * @param maxLoc            The maximum location of the structure schematic.
-     * @param structure         The structure that was spawned.
-     * @param structureRotation The rotation of the structure.
+     * @param location The location of the sign.
+     * @param context  The context of the paste that contains the sign.
      */
-    protected static void processAndReplaceSign(Location location, Location minLoc, Location maxLoc, Structure structure, double structureRotation) {
+    protected static void processAndReplaceSign(Location location, SpawnContext context) {
         CustomStructures plugin = CustomStructures.getInstance();
+        Structure structure = context.getStructure();
+        StructureSignHandler signHandler = plugin.getStructureSignHandler();
 
-        if (!(location.getBlock().getState() instanceof Sign || location.getBlock().getState() instanceof WallSign)) {
+        Block block = location.getBlock();
+        if (!(block.getState() instanceof Sign sign)) {
             return;
         }
 
-        Sign sign = (Sign) location.getBlock().getState();
         String firstLine = sign.getLine(0).trim();
-        String secondLine = sign.getLine(1).trim();
-        String thirdLine = sign.getLine(2).trim();
-        String fourthLine = sign.getLine(3).trim();
 
         if (!firstLine.startsWith("["))
             return;
 
-        String signName = firstLine.replaceAll("\\[", "").replaceAll("]", "");
+        String signName = getSignName(firstLine);
 
-        if (!plugin.getStructureSignHandler().structureSignExists(signName))
+        Supplier<? extends StructureSign> structureSignFactory = signHandler.getStructureSignFactory(signName);
+        if (structureSignFactory == null)
             return;
 
-        double signRotation;
-        // Allow this to work with both wall signs and normal signs.
-        if (location.getBlock().getBlockData() instanceof org.bukkit.block.data.type.Sign signData) {
-
-            Vector direction = signData.getRotation().getDirection();
-            signRotation = Math.atan2(direction.getZ(), direction.getX());
-            if (direction.getX() != 0) {
-                signRotation -= (Math.PI / 2);
-            } else {
-                signRotation += (Math.PI / 2);
-            }
-        } else if (location.getBlock().getBlockData() instanceof WallSign signData) {
-            Vector direction = signData.getFacing().getDirection();
-            signRotation = Math.atan2(direction.getZ(), direction.getX());
-            if (direction.getX() != 0) {
-                signRotation -= (Math.PI / 2);
-            } else {
-                signRotation += (Math.PI / 2);
-            }
-        } else {
-            signRotation = 0;
-        }
+        double signRotation = getSignRotation(block.getBlockData());
 
-        Class<? extends StructureSign> structureSignClass = plugin.getStructureSignHandler().getStructureSign(signName);
+        // Signs are added by addons, so an error in one sign must not stop the rest of the structure from processing.
         try {
-            StructureSign structureSign = structureSignClass.getConstructor().newInstance();
+            StructureSign structureSign = structureSignFactory.get();
 
-            String[] args = {secondLine, thirdLine, fourthLine};
-            structureSign.initialize(args, signRotation, structureRotation, minLoc, maxLoc);
+            StructureSignArgument[] args = {
+                    signHandler.getArgument(sign.getLine(1).trim()),
+                    signHandler.getArgument(sign.getLine(2).trim()),
+                    signHandler.getArgument(sign.getLine(3).trim())
+            };
+            structureSign.initialize(args, signRotation, context.getRotation(), context.getMinimumPoint(), context.getMaximumPoint());
 
             // Replace the sign with air if desired.
             if (structureSign.onStructureSpawn(location, structure)) {
-                location.getBlock().setType(Material.AIR);
+                block.setType(Material.AIR);
             }
-        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException exception) {
-            plugin.getLogger().severe(String.format("Unable to process structure sign %s in structure %s!", signName, structure.getName()));
-            plugin.getLogger().severe("Does that structure sign class have a default constructor?");
+        } catch (RuntimeException exception) {
+            plugin.getLogger().severe(String.format("Unable to process structure sign %s at %d, %d, %d in structure %s!", signName,
+                    location.getBlockX(), location.getBlockY(), location.getBlockZ(), structure.getName()));
+            plugin.getLogger().severe(String.valueOf(exception.getMessage()));
+            if (plugin.isDebug())
+                exception.printStackTrace();
         }
     }
 
+    /**
+     * Get the name of a structure sign from the first line of the sign.
+     *
+     * @param firstLine The first line of the sign. (Ex: [mob]).
+     * @return The name of the structure sign. (Ex: mob).
+     */
+    private static String getSignName(String firstLine) {
+        int start = 0;
+        int end = firstLine.length();
+        while (start < end && firstLine.charAt(start) == '[') start++;
+        while (end > start && firstLine.charAt(end - 1) == ']') end--;
+        return firstLine.substring(start, end);
+    }
+
+    /**
+     * Get the rotation of a sign (in radians).
+     *
+     * <p>This works with both wall signs and normal signs.</p>
+     *
+     * @param blockData The block data of the sign.
+     * @return The rotation of the sign. (0 if the block is not a sign).
+     */
+    static double getSignRotation(BlockData blockData) {
+        Vector direction;
+        if (blockData instanceof org.bukkit.block.data.type.Sign signData) {
+            direction = signData.getRotation().getDirection();
+        } else if (blockData instanceof WallSign signData) {
+            direction = signData.getFacing().getDirection();
+        } else {
+            return 0;
+        }
+
+        double rotation = Math.atan2(direction.getZ(), direction.getX());
+        if (direction.getX() != 0) {
+            rotation -= (Math.PI / 2);
+        } else {
+            rotation += (Math.PI / 2);
+        }
+        return rotation;
+    }
+
     /**
      * Replace a sign with a schematic.
      *
-     * @param location        The location of the sign.
-     * @param parentStructure The parent structure.
-     * @param iteration       The iteration of schematic pasting.
+     * @param location The location of the sign.
+     * @param context  The context of the paste that contains the sign.
      */
-    protected static void replaceSignWithSchematic(Location location, Structure parentStructure, int iteration) {
+    protected static void replaceSignWithSchematic(Location location, SpawnContext context) {
         CustomStructures plugin = CustomStructures.getInstance();
+        Structure parentStructure = context.getStructure();
 
         SubSchematics subSchematics = parentStructure.getSubSchematics();
         AdvancedSubSchematics advancedSubSchematics = parentStructure.getAdvancedSubSchematics();
@@ -111,34 +138,15 @@ public class SchematicSignReplacer {
         String firstLine = sign.getLine(0).trim();
         String secondLine = sign.getLine(1).trim();
 
-        // Allow this to work with both wall signs and normal signs.
-        if (location.getBlock().getBlockData() instanceof org.bukkit.block.data.type.Sign signData) {
-
-            Vector direction = signData.getRotation().getDirection();
-            double rotation = Math.atan2(direction.getZ(), direction.getX());
-            if (direction.getX() != 0) {
-                rotation -= (Math.PI / 2);
-            } else {
-                rotation += (Math.PI / 2);
-            }
-            parentStructure.setSubSchemRotation(rotation);
-        } else if (location.getBlock().getBlockData() instanceof WallSign signData) {
-            Vector direction = signData.getFacing().getDirection();
-            double rotation = Math.atan2(direction.getZ(), direction.getX());
-            if (direction.getX() != 0) {
-                rotation -= (Math.PI / 2);
-            } else {
-                rotation += (Math.PI / 2);
-            }
-            parentStructure.setSubSchemRotation(rotation);
-        }
+        // Allow this to work with both wall signs and normal signs. (0 for any other block).
+        double signRotation = Math.toDegrees(getSignRotation(location.getBlock().getBlockData()));
 
         // Normal Sub-Schematic
         if (firstLine.equalsIgnoreCase("[schematic]") || firstLine.equalsIgnoreCase("[schem]")) {
             int number;
             if (secondLine.startsWith("[")) {
                 try {
-                    number = NumberStylizer.retrieveRangedInput(secondLine);
+                    number = StylizedInt.parseRange(secondLine).sample(context.getRandom());
                 } catch (NumberFormatException ex) {
                     plugin.getLogger().warning("Invalid schematic sign on structure. Cannot parse ranged number.");
                     return;
@@ -163,8 +171,7 @@ public class SchematicSignReplacer {
             SubSchematic subSchem = subSchematics.getSchematics().get(number);
 
             // Disable rotation if the structure is not using it.
-            if (!subSchem.isUsingRotation())
-                parentStructure.setSubSchemRotation(0);
+            double rotation = subSchem.isUsingRotation() ? signRotation : 0;
             try {
                 if (subSchem.getVerticalRepositioning() != null) {
                     VerticalRepositioning vertRep = subSchem.getVerticalRepositioning();
@@ -180,12 +187,12 @@ public class SchematicSignReplacer {
                         } else if (vertRep.getNoPointSolution().equalsIgnoreCase("PREVENT_SPAWN")) {
                             return;
                         } else {
-                            newSpawnY = NumberStylizer.getStylizedSpawnY(vertRep.getNoPointSolution(), location);
+                            newSpawnY = vertRep.getNoPointSolutionSpawnY(location);
                             location = new Location(location.getWorld(), location.getBlockX(), newSpawnY, location.getBlockZ());
                         }
                     }
                 }
-                SchematicHandler.placeSchematic(location, subSchem.getFile(), subSchem.isPlacingAir(), parentStructure, iteration + 1);
+                SchematicHandler.placeSchematic(subSchem.getFile(), subSchem.isPlacingAir(), context.child(location, rotation));
             } catch (Exception ex) {
                 plugin.getLogger().warning("An error has occurred when attempting to paste a sub schematic.");
                 if (plugin.isDebug()) {
@@ -204,11 +211,10 @@ public class SchematicSignReplacer {
             // Remove the sign after placing the schematic.
             location.getBlock().setType(Material.AIR);
 
-            SubSchematic subSchem = advancedSubSchematics.getCategory(secondLine).next();
+            SubSchematic subSchem = advancedSubSchematics.getCategory(secondLine).next(context.getRandom());
 
             // Disable rotation if the structure is not using it.
-            if (!subSchem.isUsingRotation())
-                parentStructure.setSubSchemRotation(0);
+            double rotation = subSchem.isUsingRotation() ? signRotation : 0;
             try {
                 if (subSchem.getVerticalRepositioning() != null) {
                     VerticalRepositioning vertRep = subSchem.getVerticalRepositioning();
@@ -225,13 +231,13 @@ public class SchematicSignReplacer {
                         } else if (vertRep.getNoPointSolution().equalsIgnoreCase("PREVENT_SPAWN")) {
                             return;
                         } else {
-                            newSpawnY = NumberStylizer.getStylizedSpawnY(vertRep.getNoPointSolution(), location);
+                            newSpawnY = vertRep.getNoPointSolutionSpawnY(location);
                             location = new Location(location.getWorld(), location.getBlockX(), newSpawnY, location.getBlockZ());
                         }
                     }
                 }
 
-                SchematicHandler.placeSchematic(location, subSchem.getFile(), subSchem.isPlacingAir(), parentStructure, iteration + 1);
+                SchematicHandler.placeSchematic(subSchem.getFile(), subSchem.isPlacingAir(), context.child(location, rotation));
             } catch (Exception ex) {
                 plugin.getLogger().warning("An error has occurred when attempting to paste a sub schematic.");
                 if (plugin.isDebug()) {
@@ -0,0 +1,187 @@
+package com.ryandw11.structure.schematic;
+
+import com.ryandw11.structure.structure.Structure;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import org.bukkit.Location;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The state of a single paste of a structure (or one of its sub-schematics).
+ *
+ * <p>A new context is created every time a structure spawns, and every sub-schematic gets a child context.
+ * Nothing about a spawn is stored on the {@link Structure} itself, so the same structure can spawn
+ * multiple times at once.</p>
+ *
+ * <p>This class is immutable. The randomizer is shared by the contexts of one spawn.</p>
+ */
+public final class SpawnContext {
+    private final Structure structure;
+    private final String schematic;
+    private final Location origin;
+    private final double rotation;
+    private final AffineTransform transform;
+    private final int iteration;
+    private final Random random;
+    private final Location minimumPoint;
+    private final Location maximumPoint;
+
+    private SpawnContext(Structure structure, String schematic, Location origin, double rotation, AffineTransform transform,
+                         int iteration, Random random, Location minimumPoint, Location maximumPoint) {
+        this.structure = structure;
+        this.schematic = schematic;
+        this.origin = origin.clone();
+        this.rotation = rotation;
+        this.transform = transform;
+        this.iteration = iteration;
+        this.random = random;
+        this.minimumPoint = minimumPoint;
+        this.maximumPoint = maximumPoint;
+    }
+
+    /**
+     * Create the context for the spawning of a structure.
+     *
+     * @param structure The structure that is getting spawned.
+     * @param origin    The spawn location of the structure.
+     * @return The context of the spawn.
+     */
+    public static SpawnContext create(@NotNull Structure structure, @NotNull Location origin) {
+        return create(structure, origin, new Random(ThreadLocalRandom.current().nextLong()));
+    }
+
+    /**
+     * Create the context for the spawning of a structure.
+     *
+     * @param structure The structure that is getting spawned.
+     * @param origin    The spawn location of the structure.
+     * @param random    The randomizer to use for the spawn.
+     * @return The context of the spawn.
+     */
+    public static SpawnContext create(@NotNull Structure structure, @NotNull Location origin, @NotNull Random random) {
+        return new SpawnContext(structure, null, origin, 0, new AffineTransform(), 0, random, null, null);
+    }
+
+    /**
+     * Create the context of a sub-schematic.
+     *
+     * @param origin   The paste location of the sub-schematic.
+     * @param rotation The rotation of the sub-schematic (in degrees).
+     * @return The context of the sub-schematic.
+     */
+    public SpawnContext child(@NotNull Location origin, double rotation) {
+        return new SpawnContext(structure, null, origin, rotation, new AffineTransform().rotateY(rotation),
+                iteration + 1, random, null, null);
+    }
+
+    /**
+     * Create a copy of this context for the paste of a schematic.
+     *
+     * @param schematic The file name of the schematic. Ex: demo.schem
+     * @param clipboard The clipboard of the schematic. (Used to find the bounds of the paste).
+     * @param rotation  The rotation of the paste (in degrees).
+     * @param transform The transform of the paste.
+     * @return The context of the paste.
+     */
+    public SpawnContext withPaste(@NotNull String schematic, @NotNull Clipboard clipboard, double rotation, @NotNull AffineTransform transform) {
+        Location first = SchematicLocationUtils.getMinimumLocation(clipboard, origin, rotation);
+        Location second = SchematicLocationUtils.getMaximumLocation(clipboard, origin, rotation);
+        Location minimum = new Location(origin.getWorld(),
+                Math.min(first.getBlockX(), second.getBlockX()),
+                Math.min(first.getBlockY(), second.getBlockY()),
+                Math.min(first.getBlockZ(), second.getBlockZ()));
+        Location maximum = new Location(origin.getWorld(),
+                Math.max(first.getBlockX(), second.getBlockX()),
+                Math.max(first.getBlockY(), second.getBlockY()),
+                Math.max(first.getBlockZ(), second.getBlockZ()));
+        return new SpawnContext(structure, schematic, origin, rotation, transform, iteration, random, minimum, maximum);
+    }
+
+    /**
+     * Get the structure that is getting spawned.
+     *
+     * @return The structure that is getting spawned.
+     */
+    public Structure getStructure() {
+        return structure;
+    }
+
+    /**
+     * Get the file name of the schematic that is pasted.
+     *
+     * @return The file name of the schematic. (Null if it is not known yet).
+     */
+    @Nullable
+    public String getSchematic() {
+        return schematic;
+    }
+
+    /**
+     * Get the paste location.
+     *
+     * @return A copy of the paste location.
+     */
+    public Location getOrigin() {
+        return origin.clone();
+    }
+
+    /**
+     * Get the rotation of the paste.
+     *
+     * @return The rotation of the paste (in degrees).
+     */
+    public double getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the transform of the paste.
+     *
+     * @return The transform of the paste.
+     */
+    public AffineTransform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Get the iteration of the paste. (0 for the main schematic, 1 for its sub-schematics, etc).
+     *
+     * @return The iteration of the paste.
+     */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * Get the randomizer of the spawn.
+     *
+     * @return The randomizer of the spawn.
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * Get the lowest corner of the paste.
+     *
+     * @return A copy of the lowest corner. (Null if it is not known yet).
+     */
+    @Nullable
+    public Location getMinimumPoint() {
+        return minimumPoint == null ? null : minimumPoint.clone();
+    }
+
+    /**
+     * Get the highest corner of the paste.
+     *
+     * @return A copy of the highest corner. (Null if it is not known yet).
+     */
+    @Nullable
+    public Location getMaximumPoint() {
+        return maximumPoint == null ? null : maximumPoint.clone();
+    }
+}
@@ -2,14 +2,21 @@ package com.ryandw11.structure.schematic;
 
 import com.ryandw11.structure.CustomStructures;
 import com.ryandw11.structure.api.structaddon.StructureSign;
+import com.ryandw11.structure.api.structaddon.StructureSignArgument;
 import com.ryandw11.structure.schematic.structuresigns.CommandSign;
 import com.ryandw11.structure.schematic.structuresigns.MobSign;
 import com.ryandw11.structure.schematic.structuresigns.MythicMobSign;
 import com.ryandw11.structure.schematic.structuresigns.NPCSign;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * This handles the registration of structure signs.
@@ -17,7 +24,12 @@ import java.util.Map;
  * <p>Get the instance of this handler from {@link CustomStructures#getStructureSignHandler()}.</p>
  */
 public class StructureSignHandler {
+    // The arguments cache is cleared once it gets this large.
+    private static final int MAX_CACHED_ARGUMENTS = 4096;
+
     private final Map<String, Class<? extends StructureSign>> structureSigns;
+    private final Map<String, Supplier<? extends StructureSign>> structureSignFactories;
+    private final Map<String, StructureSignArgument> argumentCache;
 
     /**
      * Construct the structure sign handler.
@@ -28,25 +40,71 @@ public class StructureSignHandler {
      */
     public StructureSignHandler() {
         this.structureSigns = new HashMap<>();
+        this.structureSignFactories = new HashMap<>();
+        this.argumentCache = new ConcurrentHashMap<>();
 
         // Register signs that come default with the plugin.
-        registerStructureSign("mob", MobSign.class);
-        registerStructureSign("npc", NPCSign.class);
-        registerStructureSign("command", CommandSign.class);
-        registerStructureSign("commands", CommandSign.class);
-        registerStructureSign("mythicmob", MythicMobSign.class);
-        registerStructureSign("mythicalmob", MythicMobSign.class);
+        registerStructureSign("mob", MobSign.class, MobSign::new);
+        registerStructureSign("npc", NPCSign.class, NPCSign::new);
+        registerStructureSign("command", CommandSign.class, CommandSign::new);
+        registerStructureSign("commands", CommandSign.class, CommandSign::new);
+        registerStructureSign("mythicmob", MythicMobSign.class, MythicMobSign::new);
+        registerStructureSign("mythicalmob", MythicMobSign.class, MythicMobSign::new);
     }
 
     /**
      * Register a structure sign with the plugin.
      *
+     * <p>The structure sign class must have a public default constructor. Use
+     * {@link #registerStructureSign(String, Class, Supplier)} to provide the instances yourself.</p>
+     *
      * @param name               The name of the sign (Not including the brackets []). This is what the user
      *                           will reference it as on the first line of the sign.
      * @param structureSignClass The class of the structure sign to register.
-     * @return If the sign was successfully registered. If false is returned, then a sign with that name already exists.
+     * @return If the sign was successfully registered. If false is returned, then a sign with that name already exists
+     * or the class does not have a public default constructor.
      */
     public boolean registerStructureSign(@NotNull String name, @NotNull Class<? extends StructureSign> structureSignClass) {
+        MethodHandle constructor;
+        try {
+            constructor = MethodHandles.publicLookup()
+                    .findConstructor(structureSignClass, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(StructureSign.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            CustomStructures.getInstance().getLogger().severe(String.format("Unable to register structure sign %s!", name));
+            CustomStructures.getInstance().getLogger().severe("Does that structure sign class have a public default constructor?");
+            return false;
+        }
+
+        return register(name, structureSignClass, () -> {
+            try {
+                return (StructureSign) constructor.invokeExact();
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new IllegalStateException("Unable to construct structure sign " + structureSignClass.getName(), ex);
+            }
+        });
+    }
+
+    /**
+     * Register a structure sign with the plugin using a factory.
+     *
+     * <p>The factory is called once for every sign that is processed, so it must return a new instance each time.</p>
+     *
+     * @param name               The name of the sign (Not including the brackets []). This is what the user
+     *                           will reference it as on the first line of the sign.
+     * @param structureSignClass The class of the structure sign to register.
+     * @param factory            The factory that creates the structure sign.
+     * @param <T>                The type of the structure sign.
+     * @return If the sign was successfully registered. If false is returned, then a sign with that name already exists.
+     */
+    public <T extends StructureSign> boolean registerStructureSign(@NotNull String name, @NotNull Class<T> structureSignClass,
+                                                                  @NotNull Supplier<T> factory) {
+        return register(name, structureSignClass, factory);
+    }
+
+    private boolean register(String name, Class<? extends StructureSign> structureSignClass, Supplier<? extends StructureSign> factory) {
         if (structureSigns.containsKey(name.toUpperCase())) return false;
 
         // Discourage a plugin from overriding the sub-schematic functionality.
@@ -57,6 +115,7 @@ public class StructureSignHandler {
         }
 
         structureSigns.put(name.toUpperCase(), structureSignClass);
+        structureSignFactories.put(name.toUpperCase(), factory);
         return true;
     }
 
@@ -79,6 +138,17 @@ public class StructureSignHandler {
         return this.structureSigns.get(name.toUpperCase());
     }
 
+    /**
+     * Get the factory of a structure sign using its name.
+     *
+     * @param name The name of the structure sign.
+     * @return The factory of the structure sign. (Null if it does not exist).
+     */
+    @Nullable
+    public Supplier<? extends StructureSign> getStructureSignFactory(@NotNull String name) {
+        return this.structureSignFactories.get(name.toUpperCase());
+    }
+
     /**
      * Check if a structure sign exists.
      *
@@ -88,4 +158,24 @@ public class StructureSignHandler {
     public boolean structureSignExists(@NotNull String name) {
         return this.structureSigns.containsKey(name.toUpperCase());
     }
+
+    /**
+     * Get the parsed form of a line on a structure sign.
+     *
+     * <p>The same lines are used every time a schematic is pasted, so the parsed arguments are cached.</p>
+     *
+     * @param line The line on the sign.
+     * @return The parsed argument.
+     */
+    public StructureSignArgument getArgument(@NotNull String line) {
+        if (line.isEmpty()) return StructureSignArgument.EMPTY;
+        StructureSignArgument argument = argumentCache.get(line);
+        if (argument == null) {
+            if (argumentCache.size() >= MAX_CACHED_ARGUMENTS)
+                argumentCache.clear();
+            argument = StructureSignArgument.parse(line);
+            argumentCache.put(line, argument);
+        }
+        return argument;
+    }
 }
@@ -0,0 +1,356 @@
+package com.ryandw11.structure.schematic;
+
+import com.ryandw11.structure.CustomStructures;
+import com.ryandw11.structure.structure.Structure;
+import com.ryandw11.structure.structure.properties.AdvancedSubSchematics;
+import com.ryandw11.structure.structure.properties.SubSchematics;
+import com.ryandw11.structure.structure.properties.schematics.SubSchematic;
+import com.ryandw11.structure.structure.properties.schematics.VerticalRepositioning;
+import com.ryandw11.structure.utils.CSUtils;
+import com.ryandw11.structure.utils.StylizedInt;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.transform.BlockTransformExtent;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import org.bukkit.HeightMap;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Works out the whole sub-schematic tree of a structure before anything is pasted.
+ *
+ * <p>The sub-schematic signs are read from the cached clipboards instead of the world, so the weights, rotation and
+ * vertical repositioning of every sub-schematic can be resolved up front. The result is a list of pastes that
+ * {@link SchematicHandler} applies in a single edit session.</p>
+ *
+ * <p>The source and target masks of the structure decide which signs are pasted. They are tested when the plan is
+ * built, against the world as it is before anything is pasted. A target mask that depends on blocks placed by an
+ * earlier paste of the same structure is not re-checked when the paste happens.</p>
+ *
+ * <p>This is to be used on the main Server thread. (Vertical repositioning reads the height maps of the world).</p>
+ */
+public class SubSchematicPlanner {
+
+    private final CustomStructures plugin;
+    private final SpawnContext context;
+    private final Structure structure;
+    private final World world;
+
+    /**
+     * Construct a planner for a structure.
+     *
+     * @param context The context of the main schematic of the structure.
+     */
+    public SubSchematicPlanner(SpawnContext context) {
+        this.plugin = CustomStructures.getInstance();
+        this.context = context;
+        this.structure = context.getStructure();
+        this.world = Objects.requireNonNull(context.getOrigin().getWorld());
+    }
+
+    /**
+     * Plan the pastes of a structure.
+     *
+     * @param schematic The main schematic of the structure.
+     * @param useAir    If air is to be used in the main schematic.
+     * @return The pastes, in the order they are to be pasted. (The main schematic is first).
+     */
+    public List<PlannedPaste> plan(CachedSchematic schematic, boolean useAir) {
+        List<PlannedPaste> pastes = new ArrayList<>();
+        Deque<PlannedPaste> queue = new ArrayDeque<>();
+
+        PlannedPaste root = new PlannedPaste(schematic, context, useAir);
+        pastes.add(root);
+        queue.add(root);
+
+        // The masks decide which signs are actually pasted. (The session is only used to test the target mask).
+        try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory()
+                .getEditSession(BukkitAdapter.adapt(world), -1)) {
+            Mask targetMask = SchematicHandler.getTargetMask(structure, editSession);
+            while (!queue.isEmpty()) {
+                PlannedPaste parent = queue.poll();
+                Mask sourceMask = SchematicHandler.getSourceMask(structure, parent.getSchematic().getClipboard());
+                for (CachedSchematic.SignTemplate sign : parent.getSchematic().getSigns()) {
+                    PlannedPaste child = planSign(parent, sign, sourceMask, targetMask, pastes);
+                    if (child != null) {
+                        pastes.add(child);
+                        queue.add(child);
+                    }
+                }
+            }
+        }
+
+        return pastes;
+    }
+
+    /**
+     * Plan the sub-schematic of a sign. This mirrors {@link SchematicSignReplacer#replaceSignWithSchematic(Location, SpawnContext)}.
+     *
+     * @param parent     The paste that contains the sign.
+     * @param sign       The sign.
+     * @param sourceMask The source mask of the paste that contains the sign. (Null if there is no mask).
+     * @param targetMask The target mask of the structure. (Null if there is no mask).
+     * @param planned    The pastes that have been planned so far.
+     * @return The planned sub-schematic. (Null if nothing is to be pasted).
+     */
+    private PlannedPaste planSign(PlannedPaste parent, CachedSchematic.SignTemplate sign, @Nullable Mask sourceMask,
+                                  @Nullable Mask targetMask, List<PlannedPaste> planned) {
+        BlockVector3 position = parent.toWorld(sign.getPosition());
+        // A sign that is masked out is never pasted, so it does not have a sub-schematic.
+        if (sourceMask != null && !sourceMask.test(sign.getPosition())) return null;
+        if (targetMask != null && !targetMask.test(position)) return null;
+
+        SubSchematic subSchem = getSubSchematic(sign.getLine(0), sign.getLine(1), parent.getContext().getRandom());
+        if (subSchem == null) return null;
+
+        // Remove the sign when placing the schematic.
+        parent.clearedSigns.add(position);
+
+        int iteration = parent.getContext().getIteration() + 1;
+        if (iteration > structure.getStructureLimitations().getIterationLimit()) {
+            plugin.getLogger().severe("Critical Error: StackOverflow detected. Automatically terminating the spawning of the structure.");
+            plugin.getLogger().severe("The structure '" + structure.getName() + "' has spawned too many sub structure via recursion.");
+            return null;
+        }
+
+        // The sign is rotated with the schematic that contains it.
+        BaseBlock rotatedSign = BlockTransformExtent.transform(sign.getBlock(), parent.getContext().getTransform());
+        double rotation = subSchem.isUsingRotation()
+                ? Math.toDegrees(SchematicSignReplacer.getSignRotation(BukkitAdapter.adapt(rotatedSign)))
+                : 0;
+
+        try {
+            CachedSchematic schematic = plugin.getClipboardCache().getSchematic(subSchem.getFile());
+            if (schematic == null) {
+                plugin.getLogger().warning("Error: The schematic " + subSchem.getFile() + " does not exist!");
+                throw new RuntimeException("Cannot find schematic file!");
+            }
+
+            int y = position.getY();
+            if (subSchem.getVerticalRepositioning() != null) {
+                VerticalRepositioning vertRep = subSchem.getVerticalRepositioning();
+                Location location = new Location(world, position.getX(), position.getY(), position.getZ());
+                Location heightBlock = new Location(world, position.getX(),
+                        getHighestBlockY(position.getX(), position.getZ(), vertRep.getSpawnYHeightMap(), planned),
+                        position.getZ());
+
+                int newSpawnY = vertRep.getSpawnY(heightBlock);
+                // Check if there 1) is a range and 2) the New SpawnY is in the range.
+                if (vertRep.getRange() == null || CSUtils.isPairInLocalRange(vertRep.getRange(), position.getY(), newSpawnY)) {
+                    y = newSpawnY;
+                } else if (vertRep.getNoPointSolution().equalsIgnoreCase("PREVENT_SPAWN")) {
+                    return null;
+                } else if (!vertRep.getNoPointSolution().equalsIgnoreCase("CURRENT")) {
+                    y = vertRep.getNoPointSolutionSpawnY(location);
+                }
+            }
+
+            SpawnContext child = parent.getContext().child(new Location(world, position.getX(), y, position.getZ()), rotation);
+            child = child.withPaste(subSchem.getFile(), schematic.getClipboard(), rotation, child.getTransform());
+            return new PlannedPaste(schematic, child, subSchem.isPlacingAir());
+        } catch (IOException | RuntimeException ex) {
+            plugin.getLogger().warning("An error has occurred when attempting to paste a sub schematic.");
+            if (plugin.isDebug()) {
+                ex.printStackTrace();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Get the sub-schematic of a sign.
+     *
+     * @param firstLine  The first line of the sign.
+     * @param secondLine The second line of the sign.
+     * @param random     The randomizer of the spawn.
+     * @return The sub-schematic. (Null if the sign is not a valid sub-schematic sign).
+     */
+    private SubSchematic getSubSchematic(String firstLine, String secondLine, Random random) {
+        // Normal Sub-Schematic
+        if (firstLine.equalsIgnoreCase("[schematic]") || firstLine.equalsIgnoreCase("[schem]")) {
+            SubSchematics subSchematics = structure.getSubSchematics();
+            int number;
+            if (secondLine.startsWith("[")) {
+                try {
+                    number = StylizedInt.parseRange(secondLine).sample(random);
+                } catch (NumberFormatException ex) {
+                    plugin.getLogger().warning("Invalid schematic sign on structure. Cannot parse ranged number.");
+                    return null;
+                }
+            } else {
+                try {
+                    number = Integer.parseInt(secondLine);
+                } catch (NumberFormatException ex) {
+                    plugin.getLogger().warning("Invalid schematic sign on structure. Cannot parse number.");
+                    return null;
+                }
+            }
+
+            if (number < 0 || number >= subSchematics.getSchematics().size()) {
+                plugin.getLogger().warning("Invalid schematic sign on structure. Schematic number is not within the valid bounds.");
+                return null;
+            }
+            return subSchematics.getSchematics().get(number);
+        }
+
+        // Advanced sub-schematic.
+        if (firstLine.equalsIgnoreCase("[advschem]")) {
+            AdvancedSubSchematics advancedSubSchematics = structure.getAdvancedSubSchematics();
+            if (!advancedSubSchematics.containsCategory(secondLine)) {
+                plugin.getLogger().warning("Cannot replace Advanced Sub-Schematic sign.");
+                plugin.getLogger().warning(String.format("The category \"%s\" does not exist!", secondLine));
+                return null;
+            }
+            return advancedSubSchematics.getCategory(secondLine).next(random);
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the highest block of a column, taking the pastes that are already planned into account.
+     *
+     * @param x         The x coordinate.
+     * @param z         The z coordinate.
+     * @param heightMap The height map to use.
+     * @param planned   The pastes that have been planned so far.
+     * @return The y coordinate of the highest block.
+     */
+    private int getHighestBlockY(int x, int z, HeightMap heightMap, List<PlannedPaste> planned) {
+        int highest = world.getHighestBlockAt(x, z, heightMap).getY();
+        boolean solidOnly = heightMap != HeightMap.WORLD_SURFACE && heightMap != HeightMap.WORLD_SURFACE_WG;
+        for (PlannedPaste paste : planned) {
+            highest = Math.max(highest, paste.getHighestBlockY(x, z, solidOnly));
+        }
+        return highest;
+    }
+
+    /**
+     * A schematic that is planned to be pasted.
+     */
+    public static class PlannedPaste {
+        private final CachedSchematic schematic;
+        private final SpawnContext context;
+        private final BlockVector3 location;
+        private final AffineTransform transform;
+        private final AffineTransform inverse;
+        private final boolean useAir;
+        private final BlockVector3 minimum;
+        private final BlockVector3 maximum;
+        private final Set<BlockVector3> clearedSigns;
+
+        private PlannedPaste(CachedSchematic schematic, SpawnContext context, boolean useAir) {
+            Location origin = context.getOrigin();
+            this.schematic = schematic;
+            this.context = context;
+            this.location = BlockVector3.at(origin.getX(), origin.getY(), origin.getZ());
+            this.transform = context.getTransform();
+            this.inverse = transform.inverse();
+            this.useAir = useAir;
+            this.clearedSigns = new HashSet<>();
+
+            Clipboard clipboard = schematic.getClipboard();
+            BlockVector3 first = toWorld(clipboard.getRegion().getMinimumPoint());
+            BlockVector3 second = toWorld(clipboard.getRegion().getMaximumPoint());
+            this.minimum = first.getMinimum(second);
+            this.maximum = first.getMaximum(second);
+        }
+
+        /**
+         * Convert a position in the clipboard to a position in the world.
+         */
+        private BlockVector3 toWorld(BlockVector3 position) {
+            Vector3 offset = transform.apply(position.subtract(schematic.getClipboard().getOrigin()).toVector3());
+            return location.add(
+                    (int) Math.round(offset.getX()),
+                    (int) Math.round(offset.getY()),
+                    (int) Math.round(offset.getZ()));
+        }
+
+        /**
+         * Get the highest block of this paste in a column.
+         *
+         * @param x         The x coordinate.
+         * @param z         The z coordinate.
+         * @param solidOnly If only solid blocks count.
+         * @return The y coordinate of the highest block. ({@link Integer#MIN_VALUE} if there is no block).
+         */
+        private int getHighestBlockY(int x, int z, boolean solidOnly) {
+            if (x < minimum.getX() || x > maximum.getX() || z < minimum.getZ() || z > maximum.getZ())
+                return Integer.MIN_VALUE;
+
+            Clipboard clipboard = schematic.getClipboard();
+            for (int y = maximum.getY(); y >= minimum.getY(); y--) {
+                if (clearedSigns.contains(BlockVector3.at(x, y, z))) continue;
+                Vector3 offset = inverse.apply(Vector3.at(x - location.getX(), y - location.getY(), z - location.getZ()));
+                BlockVector3 position = clipboard.getOrigin().add(
+                        (int) Math.round(offset.getX()),
+                        (int) Math.round(offset.getY()),
+                        (int) Math.round(offset.getZ()));
+                if (!clipboard.getRegion().contains(position)) continue;
+
+                Material material = BukkitAdapter.adapt(clipboard.getBlock(position).getBlockType());
+                if (material == null || material.isAir()) continue;
+                if (solidOnly && !material.isSolid()) continue;
+                return y;
+            }
+            return Integer.MIN_VALUE;
+        }
+
+        /**
+         * Get the schematic to paste.
+         *
+         * @return The schematic to paste.
+         */
+        public CachedSchematic getSchematic() {
+            return schematic;
+        }
+
+        /**
+         * Get the context of the paste.
+         *
+         * @return The context of the paste.
+         */
+        public SpawnContext getContext() {
+            return context;
+        }
+
+        /**
+         * Get the paste location.
+         *
+         * @return The paste location.
+         */
+        public BlockVector3 getLocation() {
+            return location;
+        }
+
+        /**
+         * Get if air is to be used in the paste.
+         *
+         * @return If air is to be used in the paste.
+         */
+        public boolean isPlacingAir() {
+            return useAir;
+        }
+
+        /**
+         * Get the sub-schematic signs of this paste that are to be removed once it is pasted.
+         *
+         * @return The positions of the sub-schematic signs.
+         */
+        public Set<BlockVector3> getClearedSigns() {
+            return Collections.unmodifiableSet(clearedSigns);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.ryandw11.structure.structure;
 
+import com.ryandw11.structure.metrics.SpawnCounter;
+import com.ryandw11.structure.metrics.SpawnMetrics;
+import com.ryandw11.structure.metrics.SpawnStage;
 import com.ryandw11.structure.structure.properties.StructureYSpawning;
 import org.bukkit.Chunk;
 import org.bukkit.Material;
@@ -28,9 +31,25 @@ public class PriorityStructureQueue {
      * @param chunk      The chunk to test the spawn conditions for.
      */
     public PriorityStructureQueue(@NotNull List<Structure> structures, @NotNull Block block, @NotNull Chunk chunk) {
+        this(structures, block, chunk, null);
+    }
+
+    /**
+     * Create a priority queue of structures for a specific spawn location.
+     * <p>{@link Structure#canSpawn(Block, Chunk)} must return true for the specified block
+     * and chunk for it to be added to the queue.</p>
+     *
+     * @param structures The list of structures to attempt and add to the queue.
+     * @param block      The block to test the spawn conditions for.
+     * @param chunk      The chunk to test the spawn conditions for.
+     * @param metrics    The metrics to record the time of the spawn conditions to. (Null to not record them).
+     */
+    public PriorityStructureQueue(@NotNull List<Structure> structures, @NotNull Block block, @NotNull Chunk chunk,
+                                  @Nullable SpawnMetrics metrics) {
         priorityStructureSet = new TreeSet<>();
 
         for (Structure structure : structures) {
+            long start = System.nanoTime();
             StructureYSpawning structureSpawnSettings = structure.getStructureLocation().getSpawnSettings();
 
             // Get the highest block according to the settings for the structure.
@@ -39,9 +58,15 @@ public class PriorityStructureQueue {
                 structureBlock = null;
             }
 
-            if (structure.canSpawn(structureBlock, chunk)) {
+            boolean canSpawn = structure.canSpawn(structureBlock, chunk);
+            if (canSpawn) {
                 priorityStructureSet.add(new PriorityStructure(structure));
             }
+
+            if (metrics != null) {
+                metrics.recordSince(structure.getName(), SpawnStage.CANDIDATE_SELECTION, start);
+                metrics.increment(structure.getName(), canSpawn ? SpawnCounter.CANDIDATE_ACCEPTED : SpawnCounter.CANDIDATE_REJECTED);
+            }
         }
     }
 
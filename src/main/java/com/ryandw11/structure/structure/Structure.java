@@ -302,7 +302,10 @@ public class Structure {
      * <p>This is for internal use only.</p>
      *
      * @param rot The rotation of the sub schematic in radians.
+     * @deprecated The rotation of a sub schematic is stored in its {@link com.ryandw11.structure.schematic.SpawnContext}.
+     * The plugin no longer uses this value.
      */
+    @Deprecated
     public void setSubSchemRotation(double rot) {
         this.subSchemRotation = rot;
     }
@@ -312,7 +315,9 @@ public class Structure {
      * <p>For internal use only.</p>
      *
      * @return The rotation of the current sub schematic in radians.
+     * @deprecated The rotation of a sub schematic is stored in its {@link com.ryandw11.structure.schematic.SpawnContext}.
      */
+    @Deprecated
     public double getSubSchemRotation() {
         return this.subSchemRotation;
     }
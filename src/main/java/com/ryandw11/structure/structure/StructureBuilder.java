@@ -114,9 +114,19 @@ public class StructureBuilder {
      * @param file The file to read from.
      */
     public StructureBuilder(String name, File file) {
-        if (!file.exists())
-            throw new RuntimeException("Cannot build structure: That file does not exist!");
-        config = YamlConfiguration.loadConfiguration(file);
+        this(name, loadConfiguration(file));
+    }
+
+    /**
+     * Build a structure using a yaml configuration that was already loaded.
+     * <p>No further editing of this class is required if you use this method.</p>
+     * <p>Errors are outputted to the console. If an error occurs {@link #build()} will return null.</p>
+     *
+     * @param name   The name of the structure.
+     * @param config The configuration of the structure.
+     */
+    public StructureBuilder(String name, FileConfiguration config) {
+        this.config = config;
 
         plugin = CustomStructures.getInstance();
 
@@ -231,6 +241,12 @@ public class StructureBuilder {
         }
     }
 
+    private static FileConfiguration loadConfiguration(File file) {
+        if (!file.exists())
+            throw new RuntimeException("Cannot build structure: That file does not exist!");
+        return YamlConfiguration.loadConfiguration(file);
+    }
+
     private void checkValidity() {
         if (!config.contains("Schematic")) {
             throw new StructureConfigurationException("Invalid structure config: No Schematic found!");
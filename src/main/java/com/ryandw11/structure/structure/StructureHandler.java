@@ -4,12 +4,25 @@ import com.ryandw11.structure.CustomStructures;
 import com.ryandw11.structure.api.CustomStructuresAPI;
 import com.ryandw11.structure.exceptions.StructureConfigurationException;
 import com.ryandw11.structure.io.StructureDatabaseHandler;
+import com.ryandw11.structure.loottables.LootTableHandler;
+import com.ryandw11.structure.loottables.LootTableType;
 import com.ryandw11.structure.threading.CheckStructureList;
+import com.ryandw11.structure.threading.StructureFileWatcher;
 import com.ryandw11.structure.utils.Pair;
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -25,45 +38,51 @@ public class StructureHandler {
             Comparator.comparingDouble(o -> o.getLeft().distance(new Location(o.getLeft().getWorld(), 0, 0, 0)))
     );
 
-    private final List<Structure> structures;
-    private final List<String> names;
+    private final CustomStructures plugin;
+    // The structures that are currently loaded. This is swapped out as a whole when files are reloaded.
+    private volatile LoadedStructures loadedStructures;
     private final CheckStructureList checkStructureList;
     private StructureDatabaseHandler structureDatabaseHandler;
+    private StructureFileWatcher structureFileWatcher;
+    // Parses the structure and loot table files. This is shared by every load, and shut down with the handler.
+    private final ForkJoinPool loadPool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    // The last reload that was started. The next reload waits for it to finish.
+    private CompletableFuture<List<String>> lastReload = CompletableFuture.completedFuture(Collections.emptyList());
 
     /**
      * Constructor for the structure handler.
+     * <p>The structure files are parsed in parallel, but the calling thread waits for them to be loaded.</p>
      * <p>This is for internal use only. Use {@link CustomStructuresAPI#getStructureHandler()} or {@link CustomStructures#getStructureHandler()} instead.</p>
      *
      * @param stringStructs The list of structures.
      * @param cs            The plugin.
      */
     public StructureHandler(List<String> stringStructs, CustomStructures cs) {
-        structures = new ArrayList<>();
-        names = new ArrayList<>();
+        this.plugin = cs;
         cs.getLogger().info("Loading structures from files.");
-        for (String s : stringStructs) {
-            File struct = new File(cs.getDataFolder() + File.separator + "structures" + File.separator + s.replace(".yml", "") + ".yml");
-            if (!struct.exists()) {
-                cs.getLogger().warning("Structure file: " + s + ".yml does not exist! Did you make a new structure file in the Structure folder?");
-                cs.getLogger().warning("For more information please check to wiki.");
-                continue;
-            }
-            try {
-                Structure tempStruct = new StructureBuilder(s.replace(".yml", ""), struct).build();
-                structures.add(tempStruct);
-                names.add(tempStruct.getName());
-            } catch (StructureConfigurationException ex) {
-                cs.getLogger().warning("The structure '" + s + "' has an invalid configuration file:");
-                cs.getLogger().warning(ex.getMessage());
-            } catch (Exception ex) {
-                cs.getLogger().severe("An unexpected error has occurred when trying to load the structure: " + s + ".");
-                cs.getLogger().severe("Please ensure that your configuration file is valid!");
-                if (cs.isDebug()) {
-                    ex.printStackTrace();
-                } else {
-                    cs.getLogger().severe("Please enable debug mode to see the full error.");
-                }
+        long startTime = System.nanoTime();
+
+        List<StructureFile> structureFiles = findStructureFiles(stringStructs);
+
+        // Phase 1: Parse the structure files and load the loot tables they use in parallel.
+        Map<String, Long> lootTableTimings = parseStructureFiles(structureFiles, Collections.emptySet());
+
+        // Phase 2: Build the structures in order. This resolves the loot tables and sets up the addon sections.
+        for (StructureFile structureFile : structureFiles) {
+            buildStructureFile(structureFile);
+        }
+        loadedStructures = new LoadedStructures(structureFiles, getLootTableStamps(structureFiles, Collections.emptyMap()), null);
+        reportLootTables(structureFiles);
+
+        cs.getLogger().info(String.format("Loaded %d structures and %d loot tables in %dms.", loadedStructures.registry.size(),
+                lootTableTimings.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
+        if (cs.isDebug()) {
+            for (StructureFile structureFile : structureFiles) {
+                cs.getLogger().info(String.format("Structure %s: parsed in %.2fms, built in %.2fms.", structureFile.name,
+                        structureFile.parseTime / 1e6, structureFile.buildTime / 1e6));
             }
+            lootTableTimings.forEach((lootTableName, time) ->
+                    cs.getLogger().info(String.format("Loot table %s: loaded in %.2fms.", lootTableName, time / 1e6)));
         }
 
         checkStructureList = new CheckStructureList(this);
@@ -72,8 +91,298 @@ public class StructureHandler {
 
         if (cs.getConfig().getBoolean("logStructures")) {
             structureDatabaseHandler = new StructureDatabaseHandler(cs);
-            structureDatabaseHandler.runTaskTimerAsynchronously(cs, 20, 300);
+            structureDatabaseHandler.start();
+        }
+
+        if (cs.getConfig().getBoolean("watchFiles")) {
+            structureFileWatcher = StructureFileWatcher.create(cs, this);
+            if (structureFileWatcher != null)
+                structureFileWatcher.runTaskTimerAsynchronously(cs, 20, 20);
+        }
+    }
+
+    /**
+     * Find the files of the structures in the config.
+     *
+     * @param stringStructs The list of structures.
+     * @return The structure files that exist.
+     */
+    private List<StructureFile> findStructureFiles(List<String> stringStructs) {
+        List<StructureFile> structureFiles = new ArrayList<>();
+        for (String s : stringStructs) {
+            File struct = new File(plugin.getDataFolder() + File.separator + "structures" + File.separator + s.replace(".yml", "") + ".yml");
+            if (!struct.exists()) {
+                plugin.getLogger().warning("Structure file: " + s + ".yml does not exist! Did you make a new structure file in the Structure folder?");
+                plugin.getLogger().warning("For more information please check to wiki.");
+                continue;
+            }
+            structureFiles.add(new StructureFile(s, struct));
+        }
+        return structureFiles;
+    }
+
+    /**
+     * Parse the structure files and load the loot tables they use in parallel.
+     *
+     * @param structureFiles     The structure files to parse.
+     * @param reloadedLootTables The loot tables that have to be loaded again from their files.
+     * @return The time it took to load each loot table (in nanoseconds).
+     */
+    private Map<String, Long> parseStructureFiles(List<StructureFile> structureFiles, Set<String> reloadedLootTables) {
+        Map<String, Long> lootTableTimings = new ConcurrentHashMap<>();
+        try {
+            loadPool.submit(() -> structureFiles.parallelStream().forEach(StructureFile::parse)).get();
+
+            LootTableHandler lootTableHandler = plugin.getLootTableHandler();
+            loadPool.submit(() -> reloadedLootTables.parallelStream().forEach(lootTableHandler::reloadLootTable)).get();
+
+            Set<String> lootTableNames = new LinkedHashSet<>();
+            for (StructureFile structureFile : structureFiles) {
+                lootTableNames.addAll(structureFile.lootTableNames);
+            }
+            lootTableTimings.putAll(lootTableHandler.preloadLootTables(lootTableNames, loadPool));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            // The files that were not parsed are loaded one at a time when they are built.
+            plugin.getLogger().warning("An error has occurred when loading the structure files in parallel.");
+            if (plugin.isDebug()) {
+                ex.printStackTrace();
+            }
+        }
+        return lootTableTimings;
+    }
+
+    /**
+     * Build the structure of a parsed structure file.
+     *
+     * @param structureFile The structure file.
+     * @return If the structure was built.
+     */
+    private boolean buildStructureFile(StructureFile structureFile) {
+        String s = structureFile.name;
+        long buildStart = System.nanoTime();
+        try {
+            structureFile.structure = structureFile.config == null
+                    ? new StructureBuilder(structureFile.structureName, structureFile.file).build()
+                    : new StructureBuilder(structureFile.structureName, structureFile.config).build();
+        } catch (StructureConfigurationException ex) {
+            plugin.getLogger().warning("The structure '" + s + "' has an invalid configuration file:");
+            plugin.getLogger().warning(ex.getMessage());
+        } catch (Exception ex) {
+            plugin.getLogger().severe("An unexpected error has occurred when trying to load the structure: " + s + ".");
+            plugin.getLogger().severe("Please ensure that your configuration file is valid!");
+            if (plugin.isDebug()) {
+                ex.printStackTrace();
+            } else {
+                plugin.getLogger().severe("Please enable debug mode to see the full error.");
+            }
+        }
+        // The configuration is not needed anymore once the structure is built.
+        structureFile.config = null;
+        structureFile.buildTime = System.nanoTime() - buildStart;
+        return structureFile.structure != null;
+    }
+
+    /**
+     * Log the loot tables used by structures that are missing or failed to load.
+     *
+     * @param structureFiles The structure files.
+     */
+    private void reportLootTables(List<StructureFile> structureFiles) {
+        Map<String, List<String>> problems = new TreeMap<>();
+        for (StructureFile structureFile : structureFiles) {
+            for (String lootTableName : structureFile.lootTableNames) {
+                if (plugin.getLootTableHandler().getLootTableByName(lootTableName) == null)
+                    problems.computeIfAbsent(lootTableName, name -> new ArrayList<>()).add(structureFile.structureName);
+            }
+        }
+        if (problems.isEmpty()) return;
+
+        plugin.getLogger().warning(problems.size() + " loot table(s) used by structures could not be loaded:");
+        problems.forEach((lootTableName, structureNames) -> {
+            String error = plugin.getLootTableHandler().getLootTableError(lootTableName);
+            plugin.getLogger().warning(String.format("- %s (used by %s): %s", lootTableName, String.join(", ", structureNames),
+                    error == null ? "Unknown error." : error));
+        });
+    }
+
+    /**
+     * Get the last modified times of the loot tables used by structure files.
+     *
+     * @param structureFiles The structure files.
+     * @param previous       The times that were recorded before, used for the loot tables that were not reloaded.
+     * @return The last modified times by loot table name.
+     */
+    private Map<String, Long> getLootTableStamps(List<StructureFile> structureFiles, Map<String, Long> previous) {
+        Map<String, Long> stamps = new HashMap<>();
+        for (StructureFile structureFile : structureFiles) {
+            for (String lootTableName : structureFile.lootTableNames) {
+                stamps.computeIfAbsent(lootTableName, name -> previous.containsKey(name) ? previous.get(name) : getLootTableStamp(name));
+            }
+        }
+        return stamps;
+    }
+
+    private long getLootTableStamp(String lootTableName) {
+        // Minecraft loot tables do not have a file.
+        if (lootTableName.contains(":")) return 0;
+        return new File(plugin.getDataFolder() + "/lootTables/" + lootTableName + ".yml").lastModified();
+    }
+
+    /**
+     * Reload a single structure and the loot tables it uses from their files.
+     *
+     * <p>The other structures that use one of those loot tables are built again. The other structures, the list of
+     * spawned structures and the structure database are not affected. If the structure fails to load, the old version
+     * of the structure is kept.</p>
+     *
+     * <p>The files are parsed off of the main thread. The structures are built and swapped in on the main thread, and
+     * the returned future completes there.</p>
+     *
+     * @param name The name of the structure in the config.
+     * @return If the structure is in the config and was reloaded.
+     */
+    public CompletableFuture<Boolean> reloadStructure(String name) {
+        String fileName = name.replace(".yml", "");
+        List<String> stringStructs = plugin.getConfig().getStringList("Structures");
+        if (stringStructs.stream().noneMatch(s -> s.replace(".yml", "").equals(fileName)))
+            return CompletableFuture.completedFuture(false);
+
+        return reload(stringStructs, structureFile -> structureFile.structureName.equals(fileName), true)
+                .thenApply(reloaded -> reloaded.stream().anyMatch(reloadedName -> reloadedName.replace(".yml", "").equals(fileName)));
+    }
+
+    /**
+     * Reload the structures whose files (or loot table files) changed since they were loaded.
+     *
+     * <p>Structures that were added to or removed from the config are added or removed. The other structures,
+     * the list of spawned structures and the structure database are not affected.</p>
+     *
+     * <p>The files are parsed off of the main thread. The structures are built and swapped in on the main thread, and
+     * the returned future completes there.</p>
+     *
+     * @return The names of the structures that were reloaded.
+     */
+    public CompletableFuture<List<String>> reloadChangedFiles() {
+        return reload(plugin.getConfig().getStringList("Structures"), null, false);
+    }
+
+    /**
+     * Reload structures and swap them in.
+     *
+     * <p>Reloads run one after another, so each one starts from the structures that the one before it swapped in.</p>
+     *
+     * @param stringStructs The list of structures.
+     * @param forced        The structures that should be reloaded even if their files did not change. (Null for none).
+     * @param forcedOnly    If only the forced structures should be reloaded.
+     * @return The names of the structures that were reloaded.
+     */
+    private synchronized CompletableFuture<List<String>> reload(List<String> stringStructs, @Nullable Predicate<StructureFile> forced, boolean forcedOnly) {
+        CompletableFuture<List<String>> reload = lastReload.handle((reloaded, ex) -> null)
+                .thenApplyAsync(ignored -> parseChangedFiles(stringStructs, forced, forcedOnly), loadPool)
+                .thenApplyAsync(this::buildChangedFiles, task -> Bukkit.getScheduler().runTask(plugin, task));
+        lastReload = reload;
+        return reload;
+    }
+
+    /**
+     * Find the structure files that changed and parse them, along with the loot tables that changed.
+     *
+     * <p>This is run off of the main thread.</p>
+     *
+     * @param stringStructs The list of structures.
+     * @param forced        The structures that should be reloaded even if their files did not change. (Null for none).
+     * @param forcedOnly    If only the forced structures should be reloaded.
+     * @return The parsed changes. (Null if nothing changed).
+     */
+    @Nullable
+    private PendingReload parseChangedFiles(List<String> stringStructs, @Nullable Predicate<StructureFile> forced, boolean forcedOnly) {
+        LoadedStructures current = loadedStructures;
+        List<StructureFile> structureFiles = findStructureFiles(stringStructs);
+
+        // Find the loot tables that have to be loaded again. The loot tables of forced structures are always loaded again.
+        Set<String> reloadedLootTables = new HashSet<>();
+        if (!forcedOnly) {
+            current.lootTableStamps.forEach((lootTableName, stamp) -> {
+                if (getLootTableStamp(lootTableName) != stamp)
+                    reloadedLootTables.add(lootTableName);
+            });
+        }
+        for (StructureFile structureFile : structureFiles) {
+            StructureFile previous = current.files.get(structureFile.name);
+            if (previous != null && forced != null && forced.test(structureFile))
+                reloadedLootTables.addAll(previous.lootTableNames);
         }
+
+        // Find the structures that have to be built again. Structures that use a reloaded loot table are built again
+        // as well (even when only forced structures are reloaded), so they do not keep the old version of the loot table.
+        List<StructureFile> changedFiles = new ArrayList<>();
+        for (StructureFile structureFile : structureFiles) {
+            StructureFile previous = current.files.get(structureFile.name);
+            boolean isForced = forced != null && forced.test(structureFile);
+            boolean changed = previous == null || previous.lastModified != structureFile.lastModified;
+            boolean usesReloadedLootTable = previous != null
+                    && previous.lootTableNames.stream().anyMatch(reloadedLootTables::contains);
+            if (isForced || usesReloadedLootTable || (!forcedOnly && changed)) {
+                changedFiles.add(structureFile);
+            } else if (previous != null) {
+                structureFile.structure = previous.structure;
+                structureFile.lootTableNames.addAll(previous.lootTableNames);
+                structureFile.lastModified = previous.lastModified;
+            }
+        }
+        if (changedFiles.isEmpty() && structureFiles.size() == current.files.size()) return null;
+
+        parseStructureFiles(changedFiles, reloadedLootTables);
+        return new PendingReload(current, structureFiles, changedFiles, reloadedLootTables);
+    }
+
+    /**
+     * Build the structures that were parsed by {@link #parseChangedFiles(List, Predicate, boolean)} and swap them in.
+     *
+     * <p>This must be called on the main thread.</p>
+     *
+     * @param pendingReload The parsed changes. (Null if nothing changed).
+     * @return The names of the structures that were reloaded.
+     */
+    private List<String> buildChangedFiles(@Nullable PendingReload pendingReload) {
+        if (pendingReload == null) return Collections.emptyList();
+        LoadedStructures current = pendingReload.current;
+
+        reportLootTables(pendingReload.changedFiles);
+        List<String> reloaded = new ArrayList<>();
+        for (StructureFile structureFile : pendingReload.changedFiles) {
+            if (buildStructureFile(structureFile)) {
+                reloaded.add(structureFile.name);
+                continue;
+            }
+            // Keep the old version of the structure so it can still spawn.
+            StructureFile previous = current.files.get(structureFile.name);
+            if (previous != null && previous.structure != null) {
+                plugin.getLogger().warning("The old version of the structure '" + structureFile.name + "' will be used until the error is fixed.");
+                structureFile.structure = previous.structure;
+            }
+        }
+
+        // Swap in the new structures.
+        loadedStructures = new LoadedStructures(pendingReload.structureFiles, getLootTableStamps(pendingReload.structureFiles,
+                current.lootTableStamps.entrySet().stream()
+                        .filter(entry -> !pendingReload.reloadedLootTables.contains(entry.getKey()))
+                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))), current.registry);
+        plugin.getConfigCache().saveAsync();
+        return reloaded;
+    }
+
+    /**
+     * Get the registry of the loaded structures.
+     *
+     * <p>The registry is replaced when structures are reloaded, so do not store it long term.</p>
+     *
+     * @return The registry of the loaded structures.
+     */
+    public StructureRegistry getRegistry() {
+        return loadedStructures.registry;
     }
 
     /**
@@ -83,7 +392,7 @@ public class StructureHandler {
      * @return The list of structures.
      */
     public List<Structure> getStructures() {
-        return Collections.unmodifiableList(structures);
+        return loadedStructures.registry.getStructures();
     }
 
     /**
@@ -93,10 +402,7 @@ public class StructureHandler {
      * @return The structure. (Returns null if the structure is not found).
      */
     public Structure getStructure(String name) {
-        List<Structure> result = structures.stream().filter(struct -> struct.getName().equals(name)).collect(Collectors.toList());
-        if (result.isEmpty())
-            return null;
-        return result.get(0);
+        return loadedStructures.registry.getStructure(name);
     }
 
     /**
@@ -106,16 +412,17 @@ public class StructureHandler {
      * @return The structure.
      */
     public Structure getStructure(int i) {
-        return structures.get(i);
+        return loadedStructures.registry.getStructures().get(i);
     }
 
     /**
      * Get the names of the structures.
+     * <p>This list is read only and cannot be modified.</p>
      *
      * @return The names of the structures.
      */
     public List<String> getStructureNames() {
-        return names;
+        return loadedStructures.registry.getNames();
     }
 
     /**
@@ -154,14 +461,9 @@ public class StructureHandler {
      * @return If the distance is valid according to its config.
      */
     public boolean validDistance(Structure struct, Location location) {
-        double closest = Double.MAX_VALUE;
+        double closest;
         synchronized (spawnedStructures) {
-            for (Map.Entry<Pair<Location, Long>, Structure> entry : spawnedStructures.entrySet()) {
-                if (entry.getKey().getLeft().getWorld() != location.getWorld()) continue;
-
-                if (entry.getKey().getLeft().distance(location) < closest)
-                    closest = entry.getKey().getLeft().distance(location);
-            }
+            closest = getClosestDistance(spawnedStructures, location, null);
         }
         return struct.getStructureLocation().getDistanceFromOthers() < closest;
     }
@@ -174,22 +476,38 @@ public class StructureHandler {
      * @return If the distance is valid according to its config.
      */
     public boolean validSameDistance(Structure struct, Location location) {
-
+        double closest;
         synchronized (spawnedStructures) {
-            double closest = Double.MAX_VALUE;
-            for (Map.Entry<Pair<Location, Long>, Structure> entry : spawnedStructures.entrySet()) {
+            closest = getClosestDistance(spawnedStructures, location, struct.getName());
+        }
+        return struct.getStructureLocation().getDistanceFromSame() < closest;
+    }
 
-                if (entry.getKey().getLeft().getWorld() != location.getWorld()) continue;
+    /**
+     * Get the distance to the closest spawned structure in the same world as a location.
+     *
+     * <p>The caller must hold the lock of the map.</p>
+     *
+     * @param spawnedStructures The spawned structures.
+     * @param location          The location.
+     * @param structureName     Only count structures with this name. (Null to count every structure).
+     * @return The distance to the closest structure. ({@link Double#MAX_VALUE} if there are none).
+     */
+    static double getClosestDistance(Map<Pair<Location, Long>, Structure> spawnedStructures, Location location,
+                                     @Nullable String structureName) {
+        // Compare the squared distances so the square root is only taken once.
+        double closestSquared = Double.MAX_VALUE;
+        for (Map.Entry<Pair<Location, Long>, Structure> entry : spawnedStructures.entrySet()) {
+            Location spawnedLocation = entry.getKey().getLeft();
+            if (spawnedLocation.getWorld() != location.getWorld()) continue;
 
-                if (!Objects.equals(entry.getValue().getName(), struct.getName())) continue;
+            if (structureName != null && !Objects.equals(entry.getValue().getName(), structureName)) continue;
 
-                if (entry.getKey().getLeft().distance(location) < closest) {
-                    closest = entry.getKey().getLeft().distance(location);
-                }
-            }
-            return struct.getStructureLocation().getDistanceFromSame() < closest;
+            double distanceSquared = spawnedLocation.distanceSquared(location);
+            if (distanceSquared < closestSquared)
+                closestSquared = distanceSquared;
         }
-
+        return closestSquared == Double.MAX_VALUE ? Double.MAX_VALUE : Math.sqrt(closestSquared);
     }
 
     /**
@@ -209,6 +527,98 @@ public class StructureHandler {
         checkStructureList.cancel();
         if (structureDatabaseHandler != null)
             structureDatabaseHandler.cancel();
+        if (structureFileWatcher != null)
+            structureFileWatcher.cancel();
+        loadPool.shutdown();
         spawnedStructures.clear();
     }
+
+    /**
+     * A structure file that is being loaded.
+     */
+    private static class StructureFile {
+        private final String name;
+        private final String structureName;
+        private final File file;
+        private final Set<String> lootTableNames = new LinkedHashSet<>();
+        private long lastModified;
+        private FileConfiguration config;
+        private Structure structure;
+        private long parseTime;
+        private long buildTime;
+
+        private StructureFile(String name, File file) {
+            this.name = name;
+            this.structureName = name.replace(".yml", "");
+            this.file = file;
+            this.lastModified = file.lastModified();
+        }
+
+        /**
+         * Parse the file. This is safe to call off of the main thread.
+         */
+        private void parse() {
+            long start = System.nanoTime();
+            config = CustomStructures.getInstance().getConfigCache().loadConfigurationOrEmpty(file);
+            findLootTableNames();
+            parseTime = System.nanoTime() - start;
+        }
+
+        /**
+         * Find the names of the loot tables used by the structure.
+         */
+        private void findLootTableNames() {
+            ConfigurationSection lootTablesSection = config.getConfigurationSection("LootTables");
+            if (lootTablesSection == null) return;
+            for (String type : lootTablesSection.getKeys(false)) {
+                if (!LootTableType.exists(type)) continue;
+                ConfigurationSection typeSection = lootTablesSection.getConfigurationSection(type);
+                if (typeSection != null)
+                    lootTableNames.addAll(typeSection.getKeys(false));
+            }
+        }
+    }
+
+    /**
+     * The structure files that were parsed by a reload, waiting to be built on the main thread.
+     */
+    private static class PendingReload {
+        // The structures that were loaded when the reload started.
+        private final LoadedStructures current;
+        private final List<StructureFile> structureFiles;
+        private final List<StructureFile> changedFiles;
+        private final Set<String> reloadedLootTables;
+
+        private PendingReload(LoadedStructures current, List<StructureFile> structureFiles, List<StructureFile> changedFiles,
+                              Set<String> reloadedLootTables) {
+            this.current = current;
+            this.structureFiles = structureFiles;
+            this.changedFiles = changedFiles;
+            this.reloadedLootTables = reloadedLootTables;
+        }
+    }
+
+    /**
+     * The loaded structures and the files they were loaded from.
+     */
+    private static class LoadedStructures {
+        private final StructureRegistry registry;
+        // The files the structures were loaded from by their name in the config.
+        private final Map<String, StructureFile> files;
+        // The last modified times of the loot tables used by the structures.
+        private final Map<String, Long> lootTableStamps;
+
+        private LoadedStructures(List<StructureFile> structureFiles, Map<String, Long> lootTableStamps, @Nullable StructureRegistry previous) {
+            List<Structure> structures = new ArrayList<>();
+            Map<String, StructureFile> files = new HashMap<>();
+            for (StructureFile structureFile : structureFiles) {
+                files.put(structureFile.name, structureFile);
+                if (structureFile.structure != null)
+                    structures.add(structureFile.structure);
+            }
+            this.registry = new StructureRegistry(structures, previous);
+            this.files = Collections.unmodifiableMap(files);
+            this.lootTableStamps = Collections.unmodifiableMap(lootTableStamps);
+        }
+    }
 }
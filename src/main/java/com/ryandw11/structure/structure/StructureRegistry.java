@@ -0,0 +1,156 @@
+package com.ryandw11.structure.structure;
+
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * An immutable snapshot of the loaded structures.
+ *
+ * <p>Structures can be looked up by name or by their ID. The ID of a structure is a small number that does not
+ * change while the plugin is running, even if the structure is reloaded, so it can be stored instead of the name.</p>
+ *
+ * <p>A new registry is created every time structures are reloaded. Since a registry never changes, it can be read
+ * from any thread without synchronization.</p>
+ *
+ * <p>Get the current registry from {@link StructureHandler#getRegistry()}.</p>
+ */
+public final class StructureRegistry {
+    private final List<Structure> structures;
+    private final List<String> names;
+    private final Map<String, Structure> structuresByName;
+    private final Map<String, Integer> ids;
+    private final Structure[] structuresById;
+    // The structures that can spawn in any world.
+    private final List<Structure> unrestrictedStructures;
+    // The structures that can spawn in a world, for the worlds that are named by a structure.
+    private final Map<String, List<Structure>> structuresByWorld;
+
+    /**
+     * Create a registry.
+     *
+     * @param structures The structures in order of the config.
+     * @param previous   The registry that is replaced, used to keep the IDs of the structures. (Null if there is none).
+     */
+    StructureRegistry(@NotNull List<Structure> structures, @Nullable StructureRegistry previous) {
+        List<String> names = new ArrayList<>(structures.size());
+        Map<String, Structure> structuresByName = new HashMap<>();
+        Map<String, Integer> ids = previous == null ? new HashMap<>() : new HashMap<>(previous.ids);
+        for (Structure structure : structures) {
+            names.add(structure.getName());
+            structuresByName.putIfAbsent(structure.getName(), structure);
+            ids.putIfAbsent(structure.getName(), ids.size());
+        }
+
+        Structure[] structuresById = new Structure[ids.size()];
+        for (Map.Entry<String, Structure> entry : structuresByName.entrySet()) {
+            structuresById[ids.get(entry.getKey())] = entry.getValue();
+        }
+
+        List<Structure> unrestrictedStructures = new ArrayList<>();
+        Set<String> worldNames = new HashSet<>();
+        for (Structure structure : structures) {
+            List<String> worlds = structure.getStructureLocation().getWorlds();
+            if (worlds.isEmpty())
+                unrestrictedStructures.add(structure);
+            else
+                worldNames.addAll(worlds);
+        }
+        Map<String, List<Structure>> structuresByWorld = new HashMap<>();
+        for (String worldName : worldNames) {
+            List<Structure> worldStructures = new ArrayList<>();
+            for (Structure structure : structures) {
+                List<String> worlds = structure.getStructureLocation().getWorlds();
+                if (worlds.isEmpty() || worlds.contains(worldName))
+                    worldStructures.add(structure);
+            }
+            structuresByWorld.put(worldName, Collections.unmodifiableList(worldStructures));
+        }
+
+        this.structures = Collections.unmodifiableList(new ArrayList<>(structures));
+        this.names = Collections.unmodifiableList(names);
+        this.structuresByName = Collections.unmodifiableMap(structuresByName);
+        this.ids = Collections.unmodifiableMap(ids);
+        this.structuresById = structuresById;
+        this.unrestrictedStructures = Collections.unmodifiableList(unrestrictedStructures);
+        this.structuresByWorld = Collections.unmodifiableMap(structuresByWorld);
+    }
+
+    /**
+     * Get the list of structures in order of the config.
+     *
+     * @return The unmodifiable list of structures.
+     */
+    public List<Structure> getStructures() {
+        return structures;
+    }
+
+    /**
+     * Get the names of the structures in order of the config.
+     *
+     * @return The unmodifiable list of names.
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Get a structure by its name.
+     *
+     * @param name The name of the structure.
+     * @return The structure. (Null if the structure is not found).
+     */
+    @Nullable
+    public Structure getStructure(String name) {
+        return structuresByName.get(name);
+    }
+
+    /**
+     * Get the ID of a structure.
+     *
+     * <p>IDs are not stored between restarts of the server.</p>
+     *
+     * @param name The name of the structure.
+     * @return The ID of the structure. (-1 if the structure is not found).
+     */
+    public int getId(String name) {
+        if (!structuresByName.containsKey(name)) return -1;
+        return ids.get(name);
+    }
+
+    /**
+     * Get a structure by its ID.
+     *
+     * @param id The ID of the structure.
+     * @return The structure. (Null if no loaded structure has the ID).
+     */
+    @Nullable
+    public Structure getStructureById(int id) {
+        if (id < 0 || id >= structuresById.length) return null;
+        return structuresById[id];
+    }
+
+    /**
+     * Get the structures that are allowed to spawn in a world.
+     *
+     * <p>This only filters by the worlds in the config of the structures, when the registry was created.
+     * {@link Structure#canSpawn(org.bukkit.block.Block, org.bukkit.Chunk)} still has to be checked.</p>
+     *
+     * @param world The world.
+     * @return The unmodifiable list of structures, in order of the config.
+     */
+    public List<Structure> getStructures(@NotNull World world) {
+        return structuresByWorld.getOrDefault(world.getName(), unrestrictedStructures);
+    }
+
+    /**
+     * Get the number of structures.
+     *
+     * @return The number of structures.
+     */
+    public int size() {
+        return structures.size();
+    }
+}
@@ -1,7 +1,7 @@
 package com.ryandw11.structure.structure.properties;
 
 import com.ryandw11.structure.exceptions.StructureConfigurationException;
-import com.ryandw11.structure.utils.NumberStylizer;
+import com.ryandw11.structure.utils.StylizedInt;
 import org.bukkit.HeightMap;
 import org.bukkit.Location;
 import org.bukkit.block.Block;
@@ -9,7 +9,6 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Objects;
-import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This handles the SpawnY of a structure.
@@ -19,6 +18,7 @@ public class StructureYSpawning {
     private boolean top = false;
     private boolean calculateSpawnYFirst = true;
     private final String value;
+    private final StylizedInt compiledValue;
     private final HeightMap heightMap;
 
     /**
@@ -41,6 +41,7 @@ public class StructureYSpawning {
         assert value != null;
         if (value.equalsIgnoreCase("top"))
             top = true;
+        compiledValue = StylizedInt.parseSpawnY(value);
 
         if (fc.contains("StructureLocation.CalculateSpawnFirst")) {
             calculateSpawnYFirst = fc.getBoolean("StructureLocation.CalculateSpawnFirst");
@@ -53,12 +54,14 @@ public class StructureYSpawning {
      * @param value                The value of SpawnY.
      * @param heightMap            The height map for the Structure to use to spawn.
      * @param calculateSpawnYFirst If you want the SpawnY to be calculated before the other checks are completed (ex: block whitelist).
+     * @throws StructureConfigurationException If the SpawnY value is an invalid range.
      */
     public StructureYSpawning(String value, HeightMap heightMap, boolean calculateSpawnYFirst) {
         this.value = value;
         this.heightMap = heightMap;
         if (value.equalsIgnoreCase("top"))
             top = true;
+        this.compiledValue = StylizedInt.parseSpawnY(value);
         this.calculateSpawnYFirst = calculateSpawnYFirst;
     }
 
@@ -71,6 +74,15 @@ public class StructureYSpawning {
         return value;
     }
 
+    /**
+     * Get the compiled value of SpawnY.
+     *
+     * @return The compiled value of SpawnY.
+     */
+    public StylizedInt getCompiledValue() {
+        return compiledValue;
+    }
+
     /**
      * Get the SpawnY Height Map.
      *
@@ -130,6 +142,6 @@ public class StructureYSpawning {
      * @return The height according to the rules of SpawnY.
      */
     public int getHeight(@Nullable Location location) {
-        return NumberStylizer.getStylizedSpawnY(value, location);
+        return compiledValue.sampleSpawnY(location);
     }
 }
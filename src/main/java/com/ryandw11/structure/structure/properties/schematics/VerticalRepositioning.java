@@ -1,7 +1,8 @@
 package com.ryandw11.structure.structure.properties.schematics;
 
-import com.ryandw11.structure.utils.NumberStylizer;
+import com.ryandw11.structure.exceptions.StructureConfigurationException;
 import com.ryandw11.structure.utils.Pair;
+import com.ryandw11.structure.utils.StylizedInt;
 import org.bukkit.HeightMap;
 import org.bukkit.Location;
 import org.bukkit.configuration.ConfigurationSection;
@@ -16,6 +17,11 @@ public class VerticalRepositioning {
     private final HeightMap spawnYHeightMap;
     private final String noPointSolution;
 
+    // The compiled forms of the values above.
+    private Pair<Integer, Integer> compiledRange;
+    private StylizedInt compiledSpawnY;
+    private StylizedInt compiledNoPointSolution;
+
     /**
      * Construct the settings from a configuration file.
      *
@@ -42,6 +48,8 @@ public class VerticalRepositioning {
             noPointSolution = section.getString("NoPointSolution");
         else
             noPointSolution = "CURRENT";
+
+        compile(sectionName);
     }
 
     /**
@@ -51,12 +59,38 @@ public class VerticalRepositioning {
      * @param spawnY          The SpawnY setting for the vertical repositioning.
      * @param heightMap       The height map to pick the top block from.
      * @param noPointSolution What to do when the SpawnY selected is out of the range. (CURRENT, PREVENT_SPAWN, Stylized SpawnY Int (without top)).
+     * @throws StructureConfigurationException If the range, SpawnY or no-point solution is not valid.
      */
     public VerticalRepositioning(String range, String spawnY, HeightMap heightMap, String noPointSolution) {
         this.range = range;
         this.spawnY = spawnY;
         this.spawnYHeightMap = heightMap;
         this.noPointSolution = noPointSolution;
+
+        compile(null);
+    }
+
+    /**
+     * Parse the stylized values once so they do not need to be parsed every time a sub-schematic is pasted.
+     *
+     * @param sectionName The name of the sub-schematic section. (Null if it was not loaded from a config).
+     * @throws StructureConfigurationException If the range, SpawnY or no-point solution is not valid.
+     */
+    private void compile(@Nullable String sectionName) {
+        String setting = "Range";
+        try {
+            compiledRange = range.isEmpty() ? null : StylizedInt.parseRange(range).toPair();
+            setting = "SpawnY";
+            compiledSpawnY = StylizedInt.parseSpawnY(spawnY);
+            setting = "NoPointSolution";
+            if (noPointSolution.equalsIgnoreCase("CURRENT") || noPointSolution.equalsIgnoreCase("PREVENT_SPAWN"))
+                compiledNoPointSolution = null;
+            else
+                compiledNoPointSolution = StylizedInt.parseSpawnY(noPointSolution);
+        } catch (NumberFormatException | StructureConfigurationException ex) {
+            throw new StructureConfigurationException(String.format("Invalid %s for the vertical repositioning of sub-schematic %s! %s",
+                    setting, sectionName == null ? "(unnamed)" : sectionName, ex.getMessage()));
+        }
     }
 
     /**
@@ -66,10 +100,7 @@ public class VerticalRepositioning {
      */
     @Nullable
     public Pair<Integer, Integer> getRange() {
-        if(range.isEmpty()) {
-            return null;
-        }
-        return NumberStylizer.parseRangedInput(range);
+        return compiledRange;
     }
 
     /**
@@ -88,7 +119,7 @@ public class VerticalRepositioning {
      * @return The location.
      */
     public int getSpawnY(@Nullable Location location) {
-        return NumberStylizer.getStylizedSpawnY(spawnY, location);
+        return compiledSpawnY.sampleSpawnY(location);
     }
 
     /**
@@ -108,4 +139,19 @@ public class VerticalRepositioning {
     public String getNoPointSolution() {
         return noPointSolution;
     }
+
+    /**
+     * Get the processed no-point solution SpawnY value.
+     *
+     * <p>Only valid if the no-point solution is not CURRENT or PREVENT_SPAWN.</p>
+     *
+     * @param location The location of the top block (if there is one).
+     * @return The SpawnY value.
+     * @throws IllegalStateException If the no-point solution is CURRENT or PREVENT_SPAWN.
+     */
+    public int getNoPointSolutionSpawnY(@Nullable Location location) {
+        if (compiledNoPointSolution == null)
+            throw new IllegalStateException("The no-point solution is not a SpawnY value.");
+        return compiledNoPointSolution.sampleSpawnY(location);
+    }
 }
@@ -0,0 +1,107 @@
+package com.ryandw11.structure.threading;
+
+import com.ryandw11.structure.CustomStructures;
+import com.ryandw11.structure.structure.StructureHandler;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+
+/**
+ * Watches the structures and loot tables folders, and reloads the structures whose files changed.
+ *
+ * <p>The changes are collected until no file has changed for a second, then
+ * {@link StructureHandler#reloadChangedFiles()} is called. The files are parsed off of the main thread, and only the
+ * changed structures are built on the main thread.</p>
+ *
+ * <p>Note: This feature needs to be enabled by the user in the config.</p>
+ */
+public class StructureFileWatcher extends BukkitRunnable {
+
+    private final CustomStructures plugin;
+    private final StructureHandler handler;
+    private final WatchService watchService;
+    private boolean pendingChanges;
+
+    private StructureFileWatcher(CustomStructures plugin, StructureHandler handler, WatchService watchService) {
+        this.plugin = plugin;
+        this.handler = handler;
+        this.watchService = watchService;
+    }
+
+    /**
+     * Create a watcher for the structures and loot tables folders.
+     *
+     * @param plugin  The instance of the plugin.
+     * @param handler The structure handler to reload.
+     * @return The file watcher. (Null if the folders cannot be watched).
+     */
+    @Nullable
+    public static StructureFileWatcher create(CustomStructures plugin, StructureHandler handler) {
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            for (String folder : new String[]{"structures", "lootTables"}) {
+                File directory = new File(plugin.getDataFolder(), folder);
+                if (!directory.exists()) continue;
+                directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+            return new StructureFileWatcher(plugin, handler, watchService);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Unable to watch the structure files for changes.");
+            if (plugin.isDebug())
+                ex.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public void run() {
+        boolean changed = false;
+        try {
+            WatchKey key;
+            while ((key = watchService.poll()) != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path path && path.toString().endsWith(".yml"))
+                        changed = true;
+                }
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException ex) {
+            // The watcher was cancelled.
+            return;
+        }
+
+        // Wait for the files to stop changing so a file is not loaded while it is being saved.
+        if (changed) {
+            pendingChanges = true;
+            return;
+        }
+        if (!pendingChanges) return;
+        pendingChanges = false;
+
+        if (plugin.getStructureHandler() != handler) return;
+        handler.reloadChangedFiles().whenComplete((reloaded, ex) -> {
+            if (ex != null) {
+                plugin.getLogger().severe("An error was encountered when reloading the changed structure files.");
+                if (plugin.isDebug())
+                    ex.printStackTrace();
+            } else if (!reloaded.isEmpty()) {
+                plugin.getLogger().info("Reloaded the following structures: " + String.join(", ", reloaded));
+            }
+        });
+    }
+
+    @Override
+    public synchronized void cancel() throws IllegalStateException {
+        super.cancel();
+        try {
+            watchService.close();
+        } catch (IOException ex) {
+            if (plugin.isDebug())
+                ex.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.ryandw11.structure.threading;
+
+import com.ryandw11.structure.CustomStructures;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the plugin from adding to the lag of a server that cannot keep up.
+ *
+ * <p>This task runs every tick. It measures how long the server takes per tick, and how much time the plugin spent on the
+ * main thread during the tick. Work that does not have to happen right away (pasting structures, filling their loot,
+ * processing their signs, and filling the space below them) is submitted to the controller, which runs it while the
+ * plugin is under its budget for the tick. When the server takes longer than the maximum tick time, the controller
+ * throttles the plugin: the budget is cut to a quarter until the server recovers.</p>
+ *
+ * <p>Work is never dropped while the plugin is running. Work that has waited longer than the maximum spawn delay runs
+ * even when there is no budget left (one task per tick), so structures keep spawning when the server is under load for a
+ * long time. When the plugin is disabled, the work that is still waiting is run right away (see {@link #shutdown()}).
+ * Work that is scheduled through {@link #submitLater(Runnable, long)} and {@link #runAsync(Runnable)} is followed
+ * during that drain as well, since the scheduler does not accept tasks from a disabled plugin.</p>
+ *
+ * <p>Internal Use Only.</p>
+ */
+public class TickBudgetController extends BukkitRunnable {
+
+    private static final long NANOS_PER_TICK = 50_000_000;
+    // The time between ticks always includes the sleep at the end of a tick, so it is only a sign of lag above this.
+    private static final long MIN_INTERVAL_LIMIT_NANOS = 52_500_000;
+    // The weight of the latest tick in the averages.
+    private static final double SMOOTHING = 0.1;
+    // The throttle is only lifted below this fraction of the maximum tick time, so that it does not flap.
+    // (The time between ticks never goes below 50ms, so then it is lifted halfway between the limit and 50ms instead).
+    private static final double RESUME_FRACTION = 0.9;
+    private static final int THROTTLED_BUDGET_DIVISOR = 4;
+    // How often a throttle that is still going on is reported. (In ticks).
+    private static final long REPORT_INTERVAL = 20 * 60 * 5;
+    // The longest time the waiting work may hold up the server when the plugin is disabled.
+    private static final long SHUTDOWN_LIMIT_NANOS = 30_000_000_000L;
+
+    private final CustomStructures plugin;
+    // Paper reports the time the server spends on a tick. (Null on Spigot, then the time between ticks is used).
+    @Nullable
+    private Method averageTickTimeMethod;
+
+    private volatile boolean enabled;
+    private volatile boolean shuttingDown;
+    // Set once the waiting work was drained on shutdown. Work submitted after that cannot run anymore.
+    private volatile boolean stopped;
+    private long maxTickNanos;
+    private long budgetNanos;
+    private long maxDelayNanos;
+
+    private final Queue<DeferredTask> deferredTasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waitingTasks = new AtomicInteger();
+
+    // Only used on the main thread.
+    private long lastTickStart;
+    private long usedNanos;
+    private long throttleStartTick;
+    private long lastReportTick;
+
+    // Read off of the main thread by the metrics dump.
+    private volatile long currentTick;
+    private volatile double averageTickNanos = NANOS_PER_TICK;
+    private volatile double averagePluginNanos;
+    private volatile boolean throttled;
+    private final AtomicLong throttleCount = new AtomicLong();
+    private final AtomicLong throttledTicks = new AtomicLong();
+    private final AtomicLong delayedTasks = new AtomicLong();
+    private final AtomicLong overdueTasks = new AtomicLong();
+    private final AtomicLong skippedRuns = new AtomicLong();
+
+    public TickBudgetController(CustomStructures plugin) {
+        this.plugin = plugin;
+        try {
+            this.averageTickTimeMethod = plugin.getServer().getClass().getMethod("getAverageTickTime");
+        } catch (NoSuchMethodException ex) {
+            this.averageTickTimeMethod = null;
+        }
+        reload();
+    }
+
+    /**
+     * Read the settings of the controller from the config again.
+     *
+     * <p>If the controller was disabled, the work that is still waiting is handed to the scheduler.</p>
+     */
+    public void reload() {
+        this.enabled = plugin.getConfig().getBoolean("throttleSpawning", true);
+        this.maxTickNanos = Math.round(plugin.getConfig().getDouble("maxTickTime", 45) * 1e6);
+        this.budgetNanos = Math.round(plugin.getConfig().getDouble("spawnTickBudget", 5) * 1e6);
+        this.maxDelayNanos = Math.round(plugin.getConfig().getDouble("maxSpawnDelay", 30) * 1e9);
+
+        if (!enabled) {
+            throttled = false;
+            DeferredTask task;
+            while ((task = deferredTasks.poll()) != null) {
+                waitingTasks.decrementAndGet();
+                Bukkit.getScheduler().runTask(plugin, task.task);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        currentTick++;
+        if (lastTickStart != 0) {
+            averageTickNanos = measureTickNanos(now - lastTickStart);
+        }
+        lastTickStart = now;
+        averagePluginNanos += (usedNanos - averagePluginNanos) * SMOOTHING;
+        usedNanos = 0;
+
+        if (!enabled) {
+            // Work that was submitted while the controller was being disabled by a reload.
+            runQueuedTasks();
+            return;
+        }
+        updateThrottle();
+        if (throttled)
+            throttledTicks.incrementAndGet();
+        runDeferredTasks();
+    }
+
+    /**
+     * Get the average time the server takes per tick.
+     *
+     * @param interval The time since the last tick in nanoseconds.
+     * @return The average time per tick in nanoseconds.
+     */
+    private double measureTickNanos(long interval) {
+        if (averageTickTimeMethod != null) {
+            try {
+                return ((Number) averageTickTimeMethod.invoke(plugin.getServer())).doubleValue() * 1e6;
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                // The server claims to have the method but does not support it, so fall back to the time between ticks.
+                averageTickTimeMethod = null;
+            }
+        }
+        return averageTickNanos + (interval - averageTickNanos) * SMOOTHING;
+    }
+
+    private long getTickLimitNanos() {
+        return averageTickTimeMethod != null ? maxTickNanos : Math.max(maxTickNanos, MIN_INTERVAL_LIMIT_NANOS);
+    }
+
+    private double getResumeLimitNanos(long limit) {
+        return averageTickTimeMethod != null ? limit * RESUME_FRACTION : (limit + NANOS_PER_TICK) / 2.0;
+    }
+
+    private void updateThrottle() {
+        long limit = getTickLimitNanos();
+        if (!throttled && averageTickNanos > limit) {
+            throttled = true;
+            throttleStartTick = currentTick;
+            lastReportTick = currentTick;
+            throttleCount.incrementAndGet();
+            plugin.getLogger().warning(String.format(Locale.ROOT, "The server is taking %.1fms per tick. Structures will spawn slower until it recovers.",
+                    averageTickNanos / 1e6));
+        } else if (throttled && averageTickNanos < getResumeLimitNanos(limit)) {
+            throttled = false;
+            plugin.getLogger().info(String.format(Locale.ROOT, "The server has recovered (%.1fms per tick). Structures spawned slower for %d seconds.",
+                    averageTickNanos / 1e6, (currentTick - throttleStartTick) / 20));
+        } else if (throttled && currentTick - lastReportTick >= REPORT_INTERVAL) {
+            lastReportTick = currentTick;
+            plugin.getLogger().warning(String.format(Locale.ROOT, "The server is still taking %.1fms per tick. %d structure tasks are waiting.",
+                    averageTickNanos / 1e6, waitingTasks.get()));
+        }
+    }
+
+    private void runDeferredTasks() {
+        boolean ranOverdueTask = false;
+        DeferredTask next;
+        while ((next = deferredTasks.peek()) != null) {
+            if (!hasBudget()) {
+                if (ranOverdueTask || System.nanoTime() - next.submitNanos < maxDelayNanos) break;
+                ranOverdueTask = true;
+                overdueTasks.incrementAndGet();
+            }
+            deferredTasks.poll();
+            waitingTasks.decrementAndGet();
+            // Tasks normally run on the tick after they are submitted.
+            if (currentTick > next.submitTick + 1)
+                delayedTasks.incrementAndGet();
+            runTask(next.task);
+        }
+    }
+
+    private void runQueuedTasks() {
+        DeferredTask task;
+        while ((task = deferredTasks.poll()) != null) {
+            waitingTasks.decrementAndGet();
+            runTask(task.task);
+        }
+    }
+
+    private void runTask(Runnable task) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } catch (Exception ex) {
+            plugin.getLogger().severe("An error was encountered when running a structure task.");
+            if (plugin.isDebug())
+                ex.printStackTrace();
+        } finally {
+            usedNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Run work on the main thread once the plugin has the budget for it.
+     *
+     * <p>The work runs on the next tick at the earliest. This can be called from any thread.</p>
+     *
+     * @param task The work to run.
+     */
+    public void submit(Runnable task) {
+        if (stopped) {
+            plugin.getLogger().warning("A structure task was submitted after the plugin was disabled, it will not run.");
+            return;
+        }
+        // While shutting down the scheduler does not accept tasks, so follow-up work is queued for the drain instead.
+        if (!enabled && !shuttingDown) {
+            Bukkit.getScheduler().runTask(plugin, task);
+            return;
+        }
+        deferredTasks.add(new DeferredTask(task, currentTick, System.nanoTime()));
+        waitingTasks.incrementAndGet();
+    }
+
+    /**
+     * Run work on the main thread after a delay, once the plugin has the budget for it.
+     *
+     * <p>While the plugin is being disabled the delay is skipped, so the work still runs before the plugin is
+     * disabled. This can be called from any thread.</p>
+     *
+     * @param task  The work to run.
+     * @param delay The delay in ticks.
+     */
+    public void submitLater(Runnable task, long delay) {
+        if (shuttingDown || stopped) {
+            submit(task);
+            return;
+        }
+        Bukkit.getScheduler().runTaskLater(plugin, () -> submit(task), delay);
+    }
+
+    /**
+     * Run work off of the main thread.
+     *
+     * <p>While the plugin is being disabled the work runs right away on the calling thread instead, so the work it
+     * submits is still drained before the plugin is disabled.</p>
+     *
+     * @param task The work to run.
+     */
+    public void runAsync(Runnable task) {
+        if (shuttingDown || stopped) {
+            task.run();
+            return;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
+    }
+
+    /**
+     * Get if the plugin is being disabled, and the waiting work is being drained.
+     *
+     * <p>Work that normally spreads itself over several ticks should finish right away when this is true.</p>
+     *
+     * @return If the waiting work is being drained.
+     */
+    public boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
+    /**
+     * Run all of the work that is still waiting, without a budget.
+     *
+     * <p>Work that submits more work (such as a paste that submits the loot of its containers) is followed until the
+     * queue is empty. If that takes longer than 30 seconds, the rest is dropped and the number of dropped tasks is
+     * logged.</p>
+     *
+     * <p>Internal Use Only. This must be called on the main thread when the plugin is disabled.</p>
+     */
+    public void shutdown() {
+        shuttingDown = true;
+        cancel();
+        long deadline = System.nanoTime() + SHUTDOWN_LIMIT_NANOS;
+        int ran = 0;
+        DeferredTask task;
+        while (System.nanoTime() - deadline < 0 && (task = deferredTasks.poll()) != null) {
+            waitingTasks.decrementAndGet();
+            runTask(task.task);
+            ran++;
+        }
+        stopped = true;
+        shuttingDown = false;
+        int dropped = 0;
+        while (deferredTasks.poll() != null)
+            dropped++;
+        waitingTasks.addAndGet(-dropped);
+
+        if (ran > 0)
+            plugin.getLogger().info("Finished " + ran + " structure tasks that were waiting for budget.");
+        if (dropped > 0)
+            plugin.getLogger().warning(dropped + " structure tasks could not be finished before the plugin was disabled. "
+                    + "Some structures may not be pasted, or have empty containers.");
+    }
+
+    /**
+     * Check if the plugin can still do work on the main thread this tick.
+     *
+     * <p>This must be called on the main thread.</p>
+     *
+     * @return If the plugin is under its budget for this tick.
+     */
+    public boolean hasBudget() {
+        return !enabled || usedNanos < getBudgetNanos();
+    }
+
+    /**
+     * Get the time the plugin can still spend on the main thread this tick.
+     *
+     * <p>This must be called on the main thread.</p>
+     *
+     * @return The time left in nanoseconds. (Long.MAX_VALUE if the controller is disabled).
+     */
+    public long getRemainingBudgetNanos() {
+        if (!enabled) return Long.MAX_VALUE;
+        return Math.max(0, getBudgetNanos() - usedNanos);
+    }
+
+    private long getBudgetNanos() {
+        return throttled ? budgetNanos / THROTTLED_BUDGET_DIVISOR : budgetNanos;
+    }
+
+    /**
+     * Record time the plugin spent on the main thread outside of a submitted task.
+     *
+     * <p>This must be called on the main thread.</p>
+     *
+     * @param nanos The time spent in nanoseconds.
+     */
+    public void recordWork(long nanos) {
+        usedNanos += nanos;
+    }
+
+    /**
+     * Record that a repeating task skipped a run because there was no budget left.
+     */
+    public void recordSkippedRun() {
+        skippedRuns.incrementAndGet();
+    }
+
+    /**
+     * If the controller is enabled in the config.
+     *
+     * @return If the controller is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * If the plugin is throttled because the server is over the maximum tick time.
+     *
+     * @return If the plugin is throttled.
+     */
+    public boolean isThrottled() {
+        return throttled;
+    }
+
+    /**
+     * Get the average time the server takes per tick.
+     *
+     * @return The average time per tick in nanoseconds.
+     */
+    public double getAverageTickNanos() {
+        return averageTickNanos;
+    }
+
+    /**
+     * Get the average time the plugin spends on the main thread per tick.
+     *
+     * @return The average time per tick in nanoseconds.
+     */
+    public double getAveragePluginNanos() {
+        return averagePluginNanos;
+    }
+
+    /**
+     * Get the number of tasks that are waiting for budget.
+     *
+     * @return The number of waiting tasks.
+     */
+    public int getWaitingTasks() {
+        return waitingTasks.get();
+    }
+
+    /**
+     * Write the state of the controller in the Prometheus text format.
+     *
+     * @param output The output to write to.
+     * @throws IOException If the output cannot be written to.
+     */
+    public void writePrometheus(Appendable output) throws IOException {
+        writeMetric(output, "customstructures_server_tick_seconds", "gauge",
+                "The average time the server takes per tick.", averageTickNanos / 1e9);
+        writeMetric(output, "customstructures_main_thread_seconds_per_tick", "gauge",
+                "The average time the plugin spends on the main thread per tick.", averagePluginNanos / 1e9);
+        writeMetric(output, "customstructures_throttled", "gauge",
+                "If structure spawning is slowed down because the server is lagging.", throttled ? 1L : 0L);
+        writeMetric(output, "customstructures_throttles_total", "counter",
+                "The number of times structure spawning was slowed down.", throttleCount.get());
+        writeMetric(output, "customstructures_throttled_ticks_total", "counter",
+                "The number of ticks structure spawning was slowed down for.", throttledTicks.get());
+        writeMetric(output, "customstructures_waiting_tasks", "gauge",
+                "The number of structure tasks waiting for budget.", (long) waitingTasks.get());
+        writeMetric(output, "customstructures_delayed_tasks_total", "counter",
+                "The number of structure tasks that had to wait for budget.", delayedTasks.get());
+        writeMetric(output, "customstructures_overdue_tasks_total", "counter",
+                "The number of structure tasks that ran over the budget because they waited too long.", overdueTasks.get());
+        writeMetric(output, "customstructures_skipped_runs_total", "counter",
+                "The number of times structure picking or bottom fill skipped a tick because there was no budget.", skippedRuns.get());
+    }
+
+    private static void writeMetric(Appendable output, String name, String type, String help, double value) throws IOException {
+        writeMetric(output, name, type, help, String.format(Locale.ROOT, "%.9f", value));
+    }
+
+    private static void writeMetric(Appendable output, String name, String type, String help, long value) throws IOException {
+        writeMetric(output, name, type, help, Long.toString(value));
+    }
+
+    private static void writeMetric(Appendable output, String name, String type, String help, String value) throws IOException {
+        output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        output.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        output.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static class DeferredTask {
+        private final Runnable task;
+        private final long submitTick;
+        private final long submitNanos;
+
+        private DeferredTask(Runnable task, long submitTick, long submitNanos) {
+            this.task = task;
+            this.submitTick = submitTick;
+            this.submitNanos = submitNanos;
+        }
+    }
+}
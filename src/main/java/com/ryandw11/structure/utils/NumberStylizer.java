@@ -1,11 +1,8 @@
 package com.ryandw11.structure.utils;
 
-import com.ryandw11.structure.exceptions.StructureConfigurationException;
 import org.bukkit.Location;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 /**
  * This is the system that allows for a random range or exact numbers to be inputted in the config.
  * <p>
@@ -13,6 +10,9 @@ import java.util.concurrent.ThreadLocalRandom;
  * <p>
  * [4;10] --> Picks a random number between 4 and 10.
  * 10     --> The number 10.
+ *
+ * <p>These methods parse the input every time they are called. Values that are read from the config should be
+ * compiled once into a {@link StylizedInt} instead.</p>
  */
 public final class NumberStylizer {
 
@@ -27,31 +27,10 @@ public final class NumberStylizer {
      *
      * @param input The String input.
      * @return The number. (If invalid 1 is returned).
+     * @throws NumberFormatException If the first number of the range is greater than the second number.
      */
     public static int getStylizedInt(String input) {
-        // [20;25]
-        if (input.contains(";")) {
-            String v = input.replace("[", "").replace("]", "");
-            String[] out = v.split(";");
-            try {
-                int num1 = Integer.parseInt(out[0]);
-                int num2 = Integer.parseInt(out[1]);
-
-                return ThreadLocalRandom.current().nextInt(num1, num2 + 1);
-
-            } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
-                return 1;
-            }
-
-        }
-        // if just num
-        else {
-            try {
-                return Integer.parseInt(input);
-            } catch (NumberFormatException ex) {
-                return 1;
-            }
-        }
+        return StylizedInt.parse(input).sample();
     }
 
     /**
@@ -65,27 +44,7 @@ public final class NumberStylizer {
      *                               is greater than the second number.
      */
     public static Pair<Integer, Integer> parseRangedInput(String input) {
-        // [20;25]
-        if (input.contains(";")) {
-            String v = input.replace("[", "").replace("]", "");
-            String[] out = v.split(";");
-            try {
-                int num1 = Integer.parseInt(out[0]);
-                int num2 = Integer.parseInt(out[1]);
-
-                if (num1 > num2) {
-                    throw new NumberFormatException("Invalid Number Format: Number 1 is greater than Number 2!");
-                }
-
-                return Pair.of(num1, num2);
-
-            } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
-                throw new NumberFormatException("Invalid Number Format: Input is not a range.");
-            }
-
-        } else {
-            throw new NumberFormatException("Invalid Number Format: Input is not a range.");
-        }
+        return StylizedInt.parseRange(input).toPair();
     }
 
     /**
@@ -99,142 +58,19 @@ public final class NumberStylizer {
      *                               is greater than the second number.
      */
     public static int retrieveRangedInput(String input) {
-        // [20;25]
-        if (input.contains(";")) {
-            String v = input.replace("[", "").replace("]", "");
-            String[] out = v.split(";");
-            try {
-                int num1 = Integer.parseInt(out[0]);
-                int num2 = Integer.parseInt(out[1]);
-
-                if (num1 > num2) {
-                    throw new NumberFormatException("Invalid Number Format: Number 1 is greater than Number 2!");
-                }
-
-                return ThreadLocalRandom.current().nextInt(num1, num2 + 1);
-
-            } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
-                throw new NumberFormatException("Invalid Number Format: Input is not a range.");
-            }
-
-        } else {
-            throw new NumberFormatException("Invalid Number Format: Input is not a range.");
-        }
+        return StylizedInt.parseRange(input).sample();
     }
 
     /**
      * Stylize a SpawnY Value.
      *
+     * <p>Use {@link StylizedInt#parseSpawnY(String)} when the same value is used more than once.</p>
+     *
      * @param value    The SpawnY Value.
      * @param location The location of the "top" block.
      * @return The location of the top block.
      */
     public static int getStylizedSpawnY(String value, @Nullable Location location) {
-        boolean top = value.equalsIgnoreCase("top");
-
-        // Ensure that the spawnY is configured correctly for the void.
-        if (location == null) {
-            if (top) throw new StructureConfigurationException("A structure that can spawn in the void must have an " +
-                    "absolute spawn y value. Top is not absolute.");
-            if (value.startsWith("+"))
-                throw new StructureConfigurationException("A structure that can spawn in the void must have an " +
-                        "absolute spawn y value. Relative value is not absolute.");
-            if (value.startsWith("-"))
-                throw new StructureConfigurationException("A structure that can spawn in the void must have an " +
-                        "absolute spawn y value. Relative value is not absolute.");
-        }
-
-        // Get the highest block at the specified location.
-        int currentHeight = -1;
-        if (location != null) {
-            currentHeight = location.getBlockY();
-        }
-
-        if (top) return currentHeight;
-        // If it is a range
-        if (value.contains(";")) {
-            //If +[num;num]
-            if (value.startsWith("+")) {
-                String v = value.replace("[", "").replace("]", "").replace("+", "");
-                String[] out = v.split(";");
-                try {
-                    int num1 = Integer.parseInt(out[0]);
-                    int num2 = Integer.parseInt(out[1]);
-
-                    if (num1 > num2)
-                        throw new StructureConfigurationException("SpawnY Value 1 must be greater than value 2 in '[value1;value2]'.");
-
-                    int randomValue = ThreadLocalRandom.current().nextInt(num1, num2 + 1);
-                    return currentHeight + randomValue;
-
-                } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
-                    return currentHeight;
-                }
-            }
-            // if -[num;num]
-            else if (value.startsWith("-")) {
-                String v = value.replace("[", "").replace("]", "").replace("-", "");
-                String[] out = v.split(";");
-                try {
-                    int num1 = Integer.parseInt(out[0]);
-                    int num2 = Integer.parseInt(out[1]);
-
-                    if (num1 > num2)
-                        throw new StructureConfigurationException("SpawnY Value 1 must be greater than value 2 in '[value1;value2]'.");
-
-                    int randomValue = ThreadLocalRandom.current().nextInt(num1, num2 + 1);
-                    return currentHeight - randomValue;
-
-                } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
-                    return currentHeight;
-                }
-            }
-            // if just [num;num]
-            else {
-                String v = value.replace("[", "").replace("]", "");
-                String[] out = v.split(";");
-                try {
-                    int num1 = Integer.parseInt(out[0]);
-                    int num2 = Integer.parseInt(out[1]);
-
-                    if (num1 > num2)
-                        throw new StructureConfigurationException("SpawnY Value 1 must be greater than value 2 in '[value1;value2]'.");
-
-                    return ThreadLocalRandom.current().nextInt(num1, num2 + 1);
-
-                } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
-                    return currentHeight;
-                }
-            }
-        }
-        // if +[num]
-        else if (value.startsWith("+[")) {
-            String v = value.replace("+", "").replace("[", "").replace("]", "");
-            try {
-                int num = Integer.parseInt(v);
-                return currentHeight + num;
-            } catch (NumberFormatException ex) {
-                return currentHeight;
-            }
-        }
-        // if -[num]
-        else if (value.startsWith("-[")) {
-            String v = value.replace("-", "").replace("[", "").replace("]", "");
-
-            try {
-                int num = Integer.parseInt(v);
-                return currentHeight - num;
-            } catch (NumberFormatException ex) {
-                return currentHeight;
-            }
-        }
-        // if just num
-        else {
-            try {
-                return Integer.parseInt(value);
-            } catch (NumberFormatException ex) {
-                return currentHeight;
-            }
-        }
+        return StylizedInt.parseSpawnY(value).sampleSpawnY(location);
     }
 }
@@ -79,6 +79,18 @@ public class RandomCollection<E> {
      * @return The next value.
      */
     public E next() {
+        return next(random);
+    }
+
+    /**
+     * Get the next value randomly using a specific randomizer.
+     *
+     * <p>This allows the same value to be picked again from the same seed.</p>
+     *
+     * @param random The randomizer.
+     * @return The next value.
+     */
+    public E next(Random random) {
         double value = random.nextDouble() * total;
         return map.higherEntry(value).getValue();
     }
@@ -4,12 +4,16 @@ import com.ryandw11.structure.CustomStructures;
 import com.ryandw11.structure.api.structaddon.StructureSection;
 import com.ryandw11.structure.exceptions.StructureConfigurationException;
 import com.ryandw11.structure.ignoreblocks.IgnoreBlocks;
+import com.ryandw11.structure.metrics.SpawnCounter;
+import com.ryandw11.structure.metrics.SpawnMetrics;
+import com.ryandw11.structure.metrics.SpawnStage;
 import com.ryandw11.structure.schematic.SchematicHandler;
 import com.ryandw11.structure.structure.PriorityStructureQueue;
 import com.ryandw11.structure.structure.Structure;
 import com.ryandw11.structure.structure.StructureHandler;
 import com.ryandw11.structure.structure.properties.BlockLevelLimit;
 import com.ryandw11.structure.structure.properties.StructureYSpawning;
+import com.ryandw11.structure.threading.TickBudgetController;
 import com.sk89q.worldedit.WorldEditException;
 import org.bukkit.Chunk;
 import org.bukkit.Material;
@@ -31,6 +35,9 @@ import java.util.Objects;
  */
 public class StructurePicker extends BukkitRunnable {
 
+    // The number of runs that can be skipped in a row when the plugin is out of budget for the tick.
+    private static final int MAX_SKIPPED_RUNS = 5;
+
     private final CustomStructures plugin;
 
     private final PriorityStructureQueue priorityStructureQueue;
@@ -40,6 +47,7 @@ public class StructurePicker extends BukkitRunnable {
     private final Chunk ch;
     // Variable that contains the structureBlock of the current structure being processed.
     private Block structureBlock;
+    private int skippedRuns;
 
     public StructurePicker(@Nullable Block bl, Chunk ch, CustomStructures plugin) {
         this.plugin = plugin;
@@ -54,11 +62,33 @@ public class StructurePicker extends BukkitRunnable {
             throw new RuntimeException("Plugin Not Initialized.");
         }
 
-        priorityStructureQueue = new PriorityStructureQueue(structureHandler.getStructures(), Objects.requireNonNull(bl), ch);
+        priorityStructureQueue = new PriorityStructureQueue(structureHandler.getRegistry().getStructures(ch.getWorld()), Objects.requireNonNull(bl), ch,
+                plugin.getSpawnMetrics());
     }
 
     @Override
     public void run() {
+        // Wait for a tick where the plugin has not used up its budget yet (but do not wait forever).
+        TickBudgetController controller = plugin.getTickBudgetController();
+        if (!controller.hasBudget() && skippedRuns < MAX_SKIPPED_RUNS) {
+            skippedRuns++;
+            controller.recordSkippedRun();
+            return;
+        }
+        skippedRuns = 0;
+
+        long start = System.nanoTime();
+        try {
+            pickStructure();
+        } finally {
+            controller.recordWork(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Check the next structure in the queue, and schedule it to be pasted if it can spawn.
+     */
+    private void pickStructure() {
         Structure gStructure = null;
         try {
             if (!priorityStructureQueue.hasNextStructure()) {
@@ -82,12 +112,14 @@ public class StructurePicker extends BukkitRunnable {
             // If the block is null, Skip the other steps and spawn.
             if (structureBlock == null) {
                 structureBlock = ch.getBlock(8, structureSpawnSettings.getHeight(null), 8);
+                plugin.getSpawnMetrics().increment(structure.getName(), SpawnCounter.SPAWNED);
+                // It is assumed at this point that the structure has been spawned.
+                // Add it to the list of spawned structures right away, so the distance checks of the chunks that
+                // load before it is pasted see it.
+                plugin.getStructureHandler().putSpawnedStructure(structureBlock.getLocation(),
+                        structure);
                 // Now to finally paste the schematic
-                plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, () -> {
-                    // It is assumed at this point that the structure has been spawned.
-                    // Add it to the list of spawned structures.
-                    plugin.getStructureHandler().putSpawnedStructure(structureBlock.getLocation(),
-                            structure);
+                plugin.getTickBudgetController().submit(() -> {
                     try {
                         SchematicHandler.placeSchematic(structureBlock.getLocation(),
                                 structure.getSchematic(),
@@ -103,108 +135,31 @@ public class StructurePicker extends BukkitRunnable {
                 return;
             }
 
-            // Allows the structures to no longer spawn on plant life.
-            if (structure.getStructureProperties().isIgnoringPlants() && ignoreBlocks.getBlocks().contains(structureBlock.getType())) {
-                for (int i = structureBlock.getY(); i >= 4; i--) {
-                    if (!ignoreBlocks.getBlocks().contains(ch.getBlock(8, i, 8).getType()) && !ch.getBlock(8, i, 8).getType().isAir()) {
-                        structureBlock = ch.getBlock(8, i, 8);
-                        break;
-                    }
-                }
-            }
-
-            // calculate SpawnY if first is true
-            if (structureSpawnSettings.isCalculateSpawnYFirst()) {
-                structureBlock = ch.getBlock(8, structureSpawnSettings.getHeight(structureBlock.getLocation()), 8);
-            }
-
-            if (!structure.getStructureLimitations().hasWhitelistBlock(structureBlock))
+            SpawnMetrics metrics = plugin.getSpawnMetrics();
+            long placementStart = System.nanoTime();
+            boolean validPlacement = checkPlacement(structure, structureSpawnSettings);
+            metrics.recordSince(structure.getName(), SpawnStage.PLACEMENT_CHECKS, placementStart);
+            if (!validPlacement) {
+                metrics.increment(structure.getName(), SpawnCounter.PLACEMENT_REJECTED);
                 return;
-
-            if (structure.getStructureLimitations().hasBlacklistBlock(structureBlock))
-                return;
-
-            // If it can spawn in water
-            if (!structure.getStructureProperties().canSpawnInWater()) {
-                if (structureBlock.getType() == Material.WATER) return;
-            }
-
-            // If the structure can spawn in lava
-            if (!structure.getStructureProperties().canSpawnInLavaLakes()) {
-                if (structureBlock.getType() == Material.LAVA) return;
-            }
-
-            // calculate SpawnY if first is false
-            if (!structureSpawnSettings.isCalculateSpawnYFirst()) {
-                structureBlock = ch.getBlock(8, structureSpawnSettings.getHeight(structureBlock.getLocation()), 8);
             }
 
-            // If the structure is going to be cut off by the world height limit, pick a new structure.
-            if (structure.getStructureLimitations().getWorldHeightRestriction() != -1 &&
-                    structureBlock.getLocation().getY() > ch.getWorld().getMaxHeight() - structure.getStructureLimitations().getWorldHeightRestriction())
+            long addonStart = System.nanoTime();
+            boolean sectionsAllowSpawn = checkStructureSections(structure);
+            metrics.recordSince(structure.getName(), SpawnStage.ADDON_CHECKS, addonStart);
+            if (!sectionsAllowSpawn) {
+                metrics.increment(structure.getName(), SpawnCounter.ADDON_REJECTED);
                 return;
-
-            // If the structure can follows block level limit.
-            // This only triggers if it spawns on the top.
-            if (structure.getStructureLimitations().getBlockLevelLimit().isEnabled()) {
-                BlockLevelLimit limit = structure.getStructureLimitations().getBlockLevelLimit();
-                if (limit.getMode().equalsIgnoreCase("flat")) {
-                    for (int x = limit.getX1() + structureBlock.getX(); x <= limit.getX2() + structureBlock.getX(); x++) {
-                        for (int z = limit.getZ1() + structureBlock.getZ(); z <= limit.getZ2() + structureBlock.getZ(); z++) {
-                            Block top = ch.getWorld().getBlockAt(x, structureBlock.getY() + 1, z);
-                            Block bottom = ch.getWorld().getBlockAt(x, structureBlock.getY() - 1, z);
-                            if (!(top.getType().isAir() || ignoreBlocks.getBlocks().contains(top.getType())))
-                                return;
-                            if (bottom.getType().isAir())
-                                return;
-                        }
-                    }
-                } else if (limit.getMode().equalsIgnoreCase("flat_error")) {
-                    int total = 0;
-                    int error = 0;
-                    for (int x = limit.getX1() + structureBlock.getX(); x <= limit.getX2() + structureBlock.getX(); x++) {
-                        for (int z = limit.getZ1() + structureBlock.getZ(); z <= limit.getZ2() + structureBlock.getZ(); z++) {
-                            Block top = ch.getWorld().getBlockAt(x, structureBlock.getY() + 1, z);
-                            Block bottom = ch.getWorld().getBlockAt(x, structureBlock.getY() - 1, z);
-                            if (!(top.getType().isAir() || ignoreBlocks.getBlocks().contains(top.getType())))
-                                error++;
-                            if (bottom.getType().isAir())
-                                error++;
-
-                            total += 2;
-                        }
-                    }
-
-                    if (((double) error / total) > limit.getError())
-                        return;
-                }
-            }
-
-            for (StructureSection section : structure.getStructureSections()) {
-                // Check if the structure can spawn according to the section.
-                // If an error occurs, report it to the user.
-                try {
-                    if (!section.checkStructureConditions(structure, structureBlock, ch)) return;
-                } catch (Exception ex) {
-                    plugin.getLogger().severe(String.format("[CS Addon] An error has occurred when attempting to spawn " +
-                            "the structure %s with the custom property %s!", structure.getName(), section.getName()));
-                    plugin.getLogger().severe("This is not a CustomStructures error! Please report " +
-                            "this to the developer of the addon.");
-                    if (plugin.isDebug()) {
-                        ex.printStackTrace();
-                    } else {
-                        plugin.getLogger().severe("Enable debug mode to see the stack trace.");
-                    }
-                    return;
-                }
             }
+            metrics.increment(structure.getName(), SpawnCounter.SPAWNED);
 
+            // It is assumed at this point that the structure has been spawned.
+            // Add it to the list of spawned structures right away, so the distance checks of the chunks that load
+            // before it is pasted see it.
+            plugin.getStructureHandler().putSpawnedStructure(structureBlock.getLocation(),
+                    structure);
             // Now to finally paste the schematic
-            plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, () -> {
-                // It is assumed at this point that the structure has been spawned.
-                // Add it to the list of spawned structures.
-                plugin.getStructureHandler().putSpawnedStructure(structureBlock.getLocation(),
-                        structure);
+            plugin.getTickBudgetController().submit(() -> {
                 try {
                     SchematicHandler.placeSchematic(structureBlock.getLocation(),
                             structure.getSchematic(),
@@ -239,4 +194,121 @@ public class StructurePicker extends BukkitRunnable {
         }
     }
 
+    /**
+     * Check the spawn block, the block limitations and the block level limit of a structure.
+     *
+     * <p>This moves the {@link #structureBlock} to where the structure would spawn.</p>
+     *
+     * @param structure              The structure.
+     * @param structureSpawnSettings The spawn settings of the structure.
+     * @return If the structure can be placed.
+     */
+    private boolean checkPlacement(Structure structure, StructureYSpawning structureSpawnSettings) {
+        // Allows the structures to no longer spawn on plant life.
+        if (structure.getStructureProperties().isIgnoringPlants() && ignoreBlocks.getBlocks().contains(structureBlock.getType())) {
+            for (int i = structureBlock.getY(); i >= 4; i--) {
+                if (!ignoreBlocks.getBlocks().contains(ch.getBlock(8, i, 8).getType()) && !ch.getBlock(8, i, 8).getType().isAir()) {
+                    structureBlock = ch.getBlock(8, i, 8);
+                    break;
+                }
+            }
+        }
+
+        // calculate SpawnY if first is true
+        if (structureSpawnSettings.isCalculateSpawnYFirst()) {
+            structureBlock = ch.getBlock(8, structureSpawnSettings.getHeight(structureBlock.getLocation()), 8);
+        }
+
+        if (!structure.getStructureLimitations().hasWhitelistBlock(structureBlock))
+            return false;
+
+        if (structure.getStructureLimitations().hasBlacklistBlock(structureBlock))
+            return false;
+
+        // If it can spawn in water
+        if (!structure.getStructureProperties().canSpawnInWater()) {
+            if (structureBlock.getType() == Material.WATER) return false;
+        }
+
+        // If the structure can spawn in lava
+        if (!structure.getStructureProperties().canSpawnInLavaLakes()) {
+            if (structureBlock.getType() == Material.LAVA) return false;
+        }
+
+        // calculate SpawnY if first is false
+        if (!structureSpawnSettings.isCalculateSpawnYFirst()) {
+            structureBlock = ch.getBlock(8, structureSpawnSettings.getHeight(structureBlock.getLocation()), 8);
+        }
+
+        // If the structure is going to be cut off by the world height limit, pick a new structure.
+        if (structure.getStructureLimitations().getWorldHeightRestriction() != -1 &&
+                structureBlock.getLocation().getY() > ch.getWorld().getMaxHeight() - structure.getStructureLimitations().getWorldHeightRestriction())
+            return false;
+
+        // If the structure can follows block level limit.
+        // This only triggers if it spawns on the top.
+        if (structure.getStructureLimitations().getBlockLevelLimit().isEnabled()) {
+            BlockLevelLimit limit = structure.getStructureLimitations().getBlockLevelLimit();
+            if (limit.getMode().equalsIgnoreCase("flat")) {
+                for (int x = limit.getX1() + structureBlock.getX(); x <= limit.getX2() + structureBlock.getX(); x++) {
+                    for (int z = limit.getZ1() + structureBlock.getZ(); z <= limit.getZ2() + structureBlock.getZ(); z++) {
+                        Block top = ch.getWorld().getBlockAt(x, structureBlock.getY() + 1, z);
+                        Block bottom = ch.getWorld().getBlockAt(x, structureBlock.getY() - 1, z);
+                        if (!(top.getType().isAir() || ignoreBlocks.getBlocks().contains(top.getType())))
+                            return false;
+                        if (bottom.getType().isAir())
+                            return false;
+                    }
+                }
+            } else if (limit.getMode().equalsIgnoreCase("flat_error")) {
+                int total = 0;
+                int error = 0;
+                for (int x = limit.getX1() + structureBlock.getX(); x <= limit.getX2() + structureBlock.getX(); x++) {
+                    for (int z = limit.getZ1() + structureBlock.getZ(); z <= limit.getZ2() + structureBlock.getZ(); z++) {
+                        Block top = ch.getWorld().getBlockAt(x, structureBlock.getY() + 1, z);
+                        Block bottom = ch.getWorld().getBlockAt(x, structureBlock.getY() - 1, z);
+                        if (!(top.getType().isAir() || ignoreBlocks.getBlocks().contains(top.getType())))
+                            error++;
+                        if (bottom.getType().isAir())
+                            error++;
+
+                        total += 2;
+                    }
+                }
+
+                if (((double) error / total) > limit.getError())
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check the conditions of the addon structure sections of a structure.
+     *
+     * @param structure The structure.
+     * @return If all of the sections allow the structure to spawn.
+     */
+    private boolean checkStructureSections(Structure structure) {
+        for (StructureSection section : structure.getStructureSections()) {
+            // Check if the structure can spawn according to the section.
+            // If an error occurs, report it to the user.
+            try {
+                if (!section.checkStructureConditions(structure, structureBlock, ch)) return false;
+            } catch (Exception ex) {
+                plugin.getLogger().severe(String.format("[CS Addon] An error has occurred when attempting to spawn " +
+                        "the structure %s with the custom property %s!", structure.getName(), section.getName()));
+                plugin.getLogger().severe("This is not a CustomStructures error! Please report " +
+                        "this to the developer of the addon.");
+                if (plugin.isDebug()) {
+                    ex.printStackTrace();
+                } else {
+                    plugin.getLogger().severe("Enable debug mode to see the stack trace.");
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
 }
@@ -0,0 +1,339 @@
+package com.ryandw11.structure.utils;
+
+import com.ryandw11.structure.exceptions.StructureConfigurationException;
+import org.bukkit.Location;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The compiled form of a stylized integer from the config.
+ *
+ * <p>Parse the value once using {@link #parse(String)}, {@link #parseRange(String)} or {@link #parseSpawnY(String)}
+ * and then sample it as often as needed. Sampling does not allocate.</p>
+ * <p>
+ * Valid Inputs:
+ * <p>
+ * 10      --> The number 10. ({@link Type#CONSTANT})<br>
+ * [4;10]  --> A random number between 4 and 10. ({@link Type#RANGE})<br>
+ * +[4;10] --> A random number between 4 and 10 added to the current height. ({@link Type#RELATIVE})<br>
+ * top     --> The current height. ({@link Type#TOP})
+ *
+ * <p>See {@link NumberStylizer} for the string based equivalents.</p>
+ */
+public final class StylizedInt {
+
+    /**
+     * The kind of stylized integer.
+     */
+    public enum Type {
+        /**
+         * A single number.
+         */
+        CONSTANT,
+        /**
+         * A random number within an inclusive range.
+         */
+        RANGE,
+        /**
+         * A random offset (within an inclusive range) from the current height.
+         */
+        RELATIVE,
+        /**
+         * The current height.
+         */
+        TOP
+    }
+
+    private static final StylizedInt ONE = new StylizedInt(Type.CONSTANT, 1, 1, false);
+    // Used when a SpawnY value cannot be parsed. (This keeps the current height).
+    private static final StylizedInt CURRENT = new StylizedInt(Type.RELATIVE, 0, 0, false);
+    private static final StylizedInt CURRENT_RELATIVE = new StylizedInt(Type.RELATIVE, 0, 0, true);
+
+    private final Type type;
+    private final int lower;
+    private final int upper;
+    private final boolean requiresLocation;
+
+    private StylizedInt(Type type, int lower, int upper, boolean requiresLocation) {
+        this.type = type;
+        this.lower = lower;
+        this.upper = upper;
+        this.requiresLocation = requiresLocation;
+    }
+
+    /**
+     * Create a constant stylized integer.
+     *
+     * @param value The value.
+     * @return The stylized integer.
+     */
+    public static StylizedInt constant(int value) {
+        return new StylizedInt(Type.CONSTANT, value, value, false);
+    }
+
+    /**
+     * Create a ranged stylized integer.
+     *
+     * @param lower The inclusive lower bound.
+     * @param upper The inclusive upper bound.
+     * @return The stylized integer.
+     * @throws IllegalArgumentException If the lower bound is greater than the upper bound.
+     */
+    public static StylizedInt range(int lower, int upper) {
+        if (lower > upper)
+            throw new IllegalArgumentException("The lower bound cannot be greater than the upper bound!");
+        return new StylizedInt(Type.RANGE, lower, upper, false);
+    }
+
+    /**
+     * Parse a random range or an exact number.
+     *
+     * <p>This follows the rules of {@link NumberStylizer#getStylizedInt(String)}: an input that cannot be
+     * parsed is treated as 1.</p>
+     *
+     * @param input The String input.
+     * @return The compiled stylized integer.
+     * @throws NumberFormatException If the first number of the range is greater than the second number.
+     */
+    public static StylizedInt parse(@NotNull String input) {
+        int separator = input.indexOf(';');
+        if (separator == -1) {
+            try {
+                return constant(Integer.parseInt(input));
+            } catch (NumberFormatException ex) {
+                return ONE;
+            }
+        }
+
+        int lower;
+        int upper;
+        try {
+            lower = parseBound(input, 0, separator);
+            upper = parseBound(input, separator + 1, boundEnd(input, separator + 1));
+        } catch (NumberFormatException ex) {
+            return ONE;
+        }
+
+        if (lower > upper)
+            throw new NumberFormatException("Invalid Number Format: Number 1 is greater than Number 2!");
+        return new StylizedInt(Type.RANGE, lower, upper, false);
+    }
+
+    /**
+     * Parse an int range.
+     *
+     * <p>Example Input: [4;10]</p>
+     *
+     * @param input The String input.
+     * @return The compiled range.
+     * @throws NumberFormatException If the format is not valid or if the first number
+     *                               is greater than the second number.
+     */
+    public static StylizedInt parseRange(@NotNull String input) {
+        int separator = input.indexOf(';');
+        if (separator == -1)
+            throw new NumberFormatException("Invalid Number Format: Input is not a range.");
+
+        int lower;
+        int upper;
+        try {
+            lower = parseBound(input, 0, separator);
+            upper = parseBound(input, separator + 1, boundEnd(input, separator + 1));
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException("Invalid Number Format: Input is not a range.");
+        }
+
+        if (lower > upper)
+            throw new NumberFormatException("Invalid Number Format: Input is not a range.");
+        return new StylizedInt(Type.RANGE, lower, upper, false);
+    }
+
+    /**
+     * Parse a SpawnY value.
+     *
+     * <p>Values that cannot be parsed keep the current height, like {@link NumberStylizer#getStylizedSpawnY(String, Location)}.</p>
+     *
+     * @param value The SpawnY value.
+     * @return The compiled SpawnY value.
+     * @throws StructureConfigurationException If the first number of a range is greater than the second number.
+     */
+    public static StylizedInt parseSpawnY(@NotNull String value) {
+        if (value.equalsIgnoreCase("top"))
+            return new StylizedInt(Type.TOP, 0, 0, true);
+
+        boolean positive = value.startsWith("+");
+        boolean negative = value.startsWith("-");
+        int separator = value.indexOf(';');
+
+        // If it is a range
+        if (separator != -1) {
+            int start = positive || negative ? 1 : 0;
+            int num1;
+            int num2;
+            try {
+                num1 = parseBound(value, start, separator);
+                num2 = parseBound(value, separator + 1, boundEnd(value, separator + 1));
+            } catch (NumberFormatException ex) {
+                return positive || negative ? CURRENT_RELATIVE : CURRENT;
+            }
+
+            if (num1 > num2)
+                throw new StructureConfigurationException("SpawnY Value 1 must be greater than value 2 in '[value1;value2]'.");
+
+            // +[num;num]
+            if (positive)
+                return new StylizedInt(Type.RELATIVE, num1, num2, true);
+            // -[num;num]
+            if (negative)
+                return new StylizedInt(Type.RELATIVE, -num2, -num1, true);
+            // [num;num]
+            return new StylizedInt(Type.RANGE, num1, num2, false);
+        }
+
+        // +[num] or -[num]
+        if (value.startsWith("+[") || value.startsWith("-[")) {
+            try {
+                int num = parseBound(value, 1, value.length());
+                return positive ? new StylizedInt(Type.RELATIVE, num, num, true)
+                        : new StylizedInt(Type.RELATIVE, -num, -num, true);
+            } catch (NumberFormatException ex) {
+                return CURRENT_RELATIVE;
+            }
+        }
+
+        // Just num
+        try {
+            int num = Integer.parseInt(value);
+            return new StylizedInt(Type.CONSTANT, num, num, positive || negative);
+        } catch (NumberFormatException ex) {
+            return positive || negative ? CURRENT_RELATIVE : CURRENT;
+        }
+    }
+
+    /**
+     * Find the end of the bound that starts at an index. (The next separator or the end of the input).
+     */
+    private static int boundEnd(String input, int start) {
+        int next = input.indexOf(';', start);
+        return next == -1 ? input.length() : next;
+    }
+
+    /**
+     * Parse one bound of a range, ignoring the surrounding brackets and spaces.
+     */
+    private static int parseBound(String input, int start, int end) {
+        while (start < end && isIgnored(input.charAt(start))) start++;
+        while (end > start && isIgnored(input.charAt(end - 1))) end--;
+        return Integer.parseInt(input, start, end, 10);
+    }
+
+    private static boolean isIgnored(char c) {
+        return c == '[' || c == ']' || c == ' ';
+    }
+
+    /**
+     * Get the type of the stylized integer.
+     *
+     * @return The type of the stylized integer.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Get the inclusive lower bound. (For relative values this is the lowest offset).
+     *
+     * @return The inclusive lower bound.
+     */
+    public int getLower() {
+        return lower;
+    }
+
+    /**
+     * Get the inclusive upper bound. (For relative values this is the highest offset).
+     *
+     * @return The inclusive upper bound.
+     */
+    public int getUpper() {
+        return upper;
+    }
+
+    /**
+     * Check if the value needs a location to be sampled. (It is top or relative).
+     *
+     * @return If the value needs a location to be sampled.
+     */
+    public boolean requiresLocation() {
+        return requiresLocation;
+    }
+
+    /**
+     * Get the bounds as a pair.
+     *
+     * @return The pair containing the lower and upper bound.
+     */
+    public Pair<Integer, Integer> toPair() {
+        return Pair.of(lower, upper);
+    }
+
+    /**
+     * Pick a value.
+     *
+     * <p>For relative and top values this is the offset from the current height.</p>
+     *
+     * @return The picked value.
+     */
+    public int sample() {
+        return lower == upper ? lower : ThreadLocalRandom.current().nextInt(lower, upper + 1);
+    }
+
+    /**
+     * Pick a value using a specific randomizer.
+     *
+     * <p>For relative and top values this is the offset from the current height.</p>
+     *
+     * @param random The randomizer.
+     * @return The picked value.
+     */
+    public int sample(@NotNull Random random) {
+        return lower == upper ? lower : lower + random.nextInt(upper - lower + 1);
+    }
+
+    /**
+     * Pick a SpawnY value.
+     *
+     * @param location The location of the "top" block. (Null if the structure is spawning in the void).
+     * @return The picked Y value.
+     * @throws StructureConfigurationException If the value is not absolute and the location is null.
+     */
+    public int sampleSpawnY(@Nullable Location location) {
+        // Ensure that the spawnY is configured correctly for the void.
+        if (location == null && requiresLocation) {
+            if (type == Type.TOP)
+                throw new StructureConfigurationException("A structure that can spawn in the void must have an " +
+                        "absolute spawn y value. Top is not absolute.");
+            throw new StructureConfigurationException("A structure that can spawn in the void must have an " +
+                    "absolute spawn y value. Relative value is not absolute.");
+        }
+
+        int currentHeight = location == null ? -1 : location.getBlockY();
+        return switch (type) {
+            case TOP -> currentHeight;
+            case RELATIVE -> currentHeight + sample();
+            default -> sample();
+        };
+    }
+
+    @Override
+    public String toString() {
+        return switch (type) {
+            case CONSTANT -> Integer.toString(lower);
+            case RANGE -> "[" + lower + ";" + upper + "]";
+            case RELATIVE -> "+[" + lower + ";" + upper + "]";
+            case TOP -> "top";
+        };
+    }
+}